@@ -2,8 +2,12 @@ package com.sach.mapstash;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
 
-@SpringBootApplication
+// R2DBC is only used by the reactive read path, which builds its own pool (ReactiveConfig).
+// Excluded here rather than in spring.autoconfigure.exclude, which the sharded profile overrides.
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
 public class MapstashApplication {
 
 	public static void main(String[] args) {
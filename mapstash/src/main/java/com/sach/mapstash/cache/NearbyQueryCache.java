@@ -0,0 +1,286 @@
+package com.sach.mapstash.cache;
+
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.geo.GeoMath;
+import com.sach.mapstash.geo.Geohash;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Short-lived, shared results for GET /api/pins/nearby.
+ * <p>
+ * Requests are quantized: the center is snapped to a geohash cell and the radius rounded up
+ * to a power-of-two bucket. One query from the cell center, with the bucket radius plus half
+ * the cell diagonal, covers every circle whose center is in the cell and whose radius fits the
+ * bucket. So all clients standing around the same venue share one entry, and each gets it
+ * filtered down to their exact center and radius.
+ * <p>
+ * Concurrent misses for the same entry are coalesced: the first request runs the query, the
+ * others wait for its result (single flight). Entries expire after the TTL, and a committed
+ * write whose old or new location is inside an entry's query circle removes it right away,
+ * even while its query is still running. A removed entry is never put back, so data read
+ * before a write can't outlive it.
+ * <p>
+ * Deliberately global, not partitioned by user: /api/pins/nearby searches every pin, so one
+ * entry serves every client. The /api/users/{userId}/pins/nearby queries never go through it.
+ */
+@Component
+public class NearbyQueryCache {
+
+    // smallest radius bucket, buckets double from here
+    private static final double MIN_RADIUS_BUCKET = 50;
+
+    private final long ttlNanos;
+    private final double maxRadius;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public NearbyQueryCache(@Value("${mapstash.nearby-cache.ttl:5s}") Duration ttl,
+                            @Value("${mapstash.nearby-cache.max-radius:20000}") double maxRadius,
+                            @Value("${mapstash.nearby-cache.max-entries:5000}") int maxEntries) {
+        this(ttl, maxRadius, maxEntries, System::nanoTime);
+    }
+
+    NearbyQueryCache(Duration ttl, double maxRadius, int maxEntries, LongSupplier nanoClock) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxRadius = maxRadius;
+        this.maxEntries = maxEntries;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Runs a nearby query through the cache.
+     * @param kind what the loader returns, e.g. "full" or "summary" - part of the key
+     * @param loader the uncached nearby query (center latitude, center longitude, radius)
+     * @return the pins within radiusInMeters of the center, ordered by id - also when the cache is
+     *         bypassed, so a request doesn't change order depending on its radius or the cache filling up
+     */
+    public <T> List<T> get(String kind, double latitude, double longitude, double radiusInMeters, Loader<T> loader,
+                           Function<T, Long> id, ToDoubleFunction<T> pinLatitude, ToDoubleFunction<T> pinLongitude) {
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)
+                || !(radiusInMeters > 0 && radiusInMeters <= maxRadius)) {
+            // not worth sharing (or invalid - let the service decide)
+            return sortedById(loader.load(latitude, longitude, radiusInMeters), id);
+        }
+
+        Key key = key(kind, latitude, longitude, radiusInMeters);
+        Entry entry = entry(key, loader);
+        if (entry == null) {
+            return sortedById(loader.load(latitude, longitude, radiusInMeters), id); // cache full of live entries
+        }
+
+        return within(this.<T>await(entry), latitude, longitude, radiusInMeters, id, pinLatitude, pinLongitude);
+    }
+
+    /**
+     * The answer from an entry that has finished loading, without running or waiting on a query -
+     * for callers with a deadline, who run their own query on a miss. Counts as a hit, not as a miss.
+     * @return the pins within radiusInMeters of the center ordered by id, or null if nothing usable is cached
+     */
+    public <T> List<T> getIfCached(String kind, double latitude, double longitude, double radiusInMeters,
+                                   Function<T, Long> id, ToDoubleFunction<T> pinLatitude, ToDoubleFunction<T> pinLongitude) {
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)
+                || !(radiusInMeters > 0 && radiusInMeters <= maxRadius)) {
+            return null;
+        }
+        Entry entry = entries.get(key(kind, latitude, longitude, radiusInMeters));
+        if (entry == null || !entry.result.isDone() || entry.result.isCompletedExceptionally()
+                || entry.isExpired(nanoClock.getAsLong())) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return within(this.<T>await(entry), latitude, longitude, radiusInMeters, id, pinLatitude, pinLongitude);
+    }
+
+    // drop every entry whose query circle contains the pin's old or new location
+    @TransactionalEventListener
+    public void onPinChange(PinChangeEvent event) {
+        entries.values().removeIf(entry ->
+                (event.hasOldLocation() && entry.covers(event.getOldLatitude(), event.getOldLongitude()))
+                        || (event.hasNewLocation() && entry.covers(event.getNewLatitude(), event.getNewLongitude())));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    // --- Helpers ---
+
+    // an entry's pins cut down to the exact circle
+    private static <T> List<T> within(List<T> pins, double latitude, double longitude, double radiusInMeters,
+                                      Function<T, Long> id, ToDoubleFunction<T> pinLatitude, ToDoubleFunction<T> pinLongitude) {
+        List<T> nearby = new ArrayList<>();
+        for (T pin : pins) {
+            if (GeoMath.haversineDistance(latitude, longitude, pinLatitude.applyAsDouble(pin), pinLongitude.applyAsDouble(pin)) <= radiusInMeters) {
+                nearby.add(pin);
+            }
+        }
+        return sortedById(nearby, id);
+    }
+
+    // same order whether or not the cache was used
+    private static <T> List<T> sortedById(List<T> pins, Function<T, Long> id) {
+        List<T> sorted = new ArrayList<>(pins);
+        sorted.sort(Comparator.comparing(id));
+        return sorted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Entry entry(Key key, Loader<T> loader) {
+        while (true) {
+            long now = nanoClock.getAsLong();
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(key, entry);
+                entry = null;
+            }
+            if (entry != null) {
+                hits.incrementAndGet(); // includes waiting on a query that's still running
+                return entry;
+            }
+
+            if (entries.size() >= maxEntries) {
+                entries.values().removeIf(existing -> existing.isExpired(now));
+                if (entries.size() >= maxEntries) {
+                    return null;
+                }
+            }
+
+            Entry fresh = new Entry(key);
+            if (entries.putIfAbsent(key, fresh) != null) {
+                continue; // someone else just started it, wait on theirs
+            }
+
+            misses.incrementAndGet();
+            try {
+                List<T> superset = loader.load(key.centerLatitude, key.centerLongitude, key.queryRadius);
+                fresh.expiresAtNanos = nanoClock.getAsLong() + ttlNanos;
+                fresh.result.complete((List<Object>) superset);
+            } catch (RuntimeException | Error e) {
+                entries.remove(key, fresh); // the waiters get the same exception, the next request retries
+                fresh.result.completeExceptionally(e);
+                throw e;
+            }
+            return fresh;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> await(Entry entry) {
+        try {
+            return (List<T>) entry.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause; // the leader's exception, e.g. a DB error
+            }
+            throw e;
+        }
+    }
+
+    private static Key key(String kind, double latitude, double longitude, double radiusInMeters) {
+        double radiusBucket = MIN_RADIUS_BUCKET;
+        while (radiusBucket < radiusInMeters) {
+            radiusBucket *= 2;
+        }
+
+        // the coarsest cell whose height is at most half the bucket: the query circle is
+        // then at most ~1.6x the bucket radius, and cells stay big enough to be shared
+        double metersPerDegree = Math.toRadians(1) * GeoMath.EARTH_RADIUS_METERS;
+        int precision = 1;
+        while (precision < Geohash.MAX_PRECISION && Geohash.cellHeight(precision) * metersPerDegree > radiusBucket / 2) {
+            precision++;
+        }
+
+        long cell = Geohash.encode(latitude, longitude, precision);
+        double[] bounds = Geohash.bounds(cell, precision);
+        double centerLatitude = (bounds[0] + bounds[1]) / 2;
+        double centerLongitude = (bounds[2] + bounds[3]) / 2;
+        // the corner nearest the equator is the farthest one from the center
+        double cornerLatitude = Math.abs(bounds[0]) < Math.abs(bounds[1]) ? bounds[0] : bounds[1];
+        double halfDiagonal = GeoMath.haversineDistance(centerLatitude, centerLongitude, cornerLatitude, bounds[2]);
+
+        return new Key(kind, cell, precision, radiusBucket, centerLatitude, centerLongitude, radiusBucket + halfDiagonal);
+    }
+
+    /**
+     * The uncached nearby query, e.g. PinService::findNearbyPins.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        List<T> load(double latitude, double longitude, double radiusInMeters);
+    }
+
+    // equality is kind + cell + bucket, the rest is derived from them
+    private static final class Key {
+        private final String kind;
+        private final long cell;
+        private final int precision;
+        private final double radiusBucket;
+        private final double centerLatitude;
+        private final double centerLongitude;
+        private final double queryRadius;
+
+        private Key(String kind, long cell, int precision, double radiusBucket,
+                    double centerLatitude, double centerLongitude, double queryRadius) {
+            this.kind = kind;
+            this.cell = cell;
+            this.precision = precision;
+            this.radiusBucket = radiusBucket;
+            this.centerLatitude = centerLatitude;
+            this.centerLongitude = centerLongitude;
+            this.queryRadius = queryRadius;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return cell == key.cell && precision == key.precision
+                    && Double.compare(radiusBucket, key.radiusBucket) == 0 && kind.equals(key.kind);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, cell, precision, radiusBucket);
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final CompletableFuture<List<Object>> result = new CompletableFuture<>();
+        private volatile long expiresAtNanos;
+
+        private Entry(Key key) {
+            this.key = key;
+        }
+
+        // still loading never counts as expired
+        private boolean isExpired(long now) {
+            return result.isDone() && expiresAtNanos - now <= 0;
+        }
+
+        private boolean covers(double latitude, double longitude) {
+            return GeoMath.haversineDistance(key.centerLatitude, key.centerLongitude, latitude, longitude) <= key.queryRadius;
+        }
+    }
+}
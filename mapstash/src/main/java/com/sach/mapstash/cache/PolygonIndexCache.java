@@ -0,0 +1,69 @@
+package com.sach.mapstash.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sach.mapstash.geo.PolygonIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Built {@link PolygonIndex}es for POST /api/pins/within, keyed by a hash of the geometry.
+ * <p>
+ * Clients tend to send the same few shapes over and over (a neighbourhood, a delivery zone),
+ * so the edge bands are built once per shape instead of once per request. Polygons don't
+ * depend on pin data, so entries never go stale - the least recently used ones are simply
+ * dropped once there are more than max-entries.
+ * <p>
+ * Shared by every client. There's nothing to partition by user, since it holds no pin data.
+ */
+@Component
+public class PolygonIndexCache {
+
+    private final Map<String, PolygonIndex> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PolygonIndexCache(@Value("${mapstash.polygon-cache.max-entries:256}") int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PolygonIndex> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the index for the GeoJSON geometry, building and caching it on a miss.
+     * @throws IllegalArgumentException if the GeoJSON isn't a valid Polygon or MultiPolygon
+     */
+    public PolygonIndex get(JsonNode geoJson) {
+        String key = PolygonIndex.geoJsonKey(geoJson);
+        synchronized (entries) {
+            PolygonIndex cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        // built outside the lock - two threads may both build a new shape, the result is the same
+        misses.incrementAndGet();
+        PolygonIndex index = PolygonIndex.fromGeoJson(geoJson);
+        synchronized (entries) {
+            entries.put(key, index);
+        }
+        return index;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+}
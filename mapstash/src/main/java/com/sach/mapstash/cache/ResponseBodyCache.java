@@ -0,0 +1,282 @@
+package com.sach.mapstash.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sach.mapstash.event.PinChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of fully serialized JSON response bodies for the hot collection endpoints
+ * (GET /api/pins, GET /api/tags and their /api/users/{userId} versions).
+ * <p>
+ * Entries live in partitions: one global partition plus one per user. Every committed
+ * pin write bumps the data version of the global partition and of the owner's partition,
+ * so one user's writes never invalidate another user's cached bodies. An entry is only
+ * served while its version matches, so a hit is just the cached byte array (plain or
+ * gzipped) written straight to the response - no query, no mapping, no serialization.
+ * <p>
+ * User partitions are created on first use and can be evicted on their own
+ * (idle ones are dropped once there are more than max-user-partitions).
+ */
+@Component
+public class ResponseBodyCache {
+
+    public static final String GLOBAL_PARTITION = "global";
+
+    private final ObjectMapper objectMapper;
+    private final int maxUserPartitions;
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+
+    // every version handed out comes from this clock, so an evicted and re-created
+    // partition can never reuse an old version (and ETag)
+    private final AtomicLong versionClock = new AtomicLong();
+
+    // the clock restarts with the process, so the ETag needs something that doesn't
+    private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+
+    public ResponseBodyCache(ObjectMapper objectMapper,
+                             @Value("${mapstash.response-cache.max-user-partitions:10000}") int maxUserPartitions) {
+        this.objectMapper = objectMapper;
+        this.maxUserPartitions = maxUserPartitions;
+    }
+
+    /**
+     * Returns the cached body for the key from the global partition, or loads, serializes and caches it.
+     * @param key endpoint + normalized parameters, e.g. "pins:summary". Keep the key space small and fixed.
+     * @param loader produces the response object on a miss.
+     */
+    public CachedBody get(String key, Supplier<?> loader) {
+        return get(GLOBAL_PARTITION, key, loader);
+    }
+
+    /**
+     * Same as {@link #get(String, Supplier)} but from the user's own partition.
+     */
+    public CachedBody getForUser(Long userId, String key, Supplier<?> loader) {
+        return get(userPartition(userId), key, loader);
+    }
+
+    /**
+     * Drops everything cached for the user (e.g. on logout, or to free memory).
+     */
+    public void evictUser(Long userId) {
+        partitions.remove(userPartition(userId));
+    }
+
+    private CachedBody get(String partitionName, String key, Supplier<?> loader) {
+        Partition partition = partitions.computeIfAbsent(partitionName, name -> new Partition(versionClock.incrementAndGet()));
+        partition.lastAccessNanos = System.nanoTime();
+
+        long version = partition.version;
+        CachedBody cached = partition.entries.get(key);
+        if (cached != null && cached.version == version) {
+            return cached;
+        }
+
+        byte[] raw = serialize(loader.get());
+        CachedBody body = new CachedBody(version, raw, gzip(raw), "W/\"" + instanceId + "-" + version + "\"");
+
+        // a write committed while we were loading - still answer with it, but don't keep it around
+        if (partition.version == version) {
+            partition.entries.put(key, body);
+        }
+
+        if (partitions.size() > maxUserPartitions + 1) {
+            evictIdlePartitions();
+        }
+        return body;
+    }
+
+    /**
+     * Builds the response for a cached body: 304 if the client already has this version,
+     * otherwise the gzipped bytes when the client accepts gzip, else the raw bytes.
+     */
+    public ResponseEntity<byte[]> toResponse(CachedBody body, String acceptEncoding, String ifNoneMatch) {
+        if (ifNoneMatch != null && matchesAny(ifNoneMatch, body.etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(body.etag)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(body.etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+
+        if (acceptsGzip(acceptEncoding)) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .contentLength(body.gzipped.length)
+                    .body(body.gzipped);
+        }
+        return builder.contentLength(body.raw.length)
+                .body(body.raw);
+    }
+
+    // the version is bumped after commit, so a reader can never cache pre-write data under the new version
+    @TransactionalEventListener
+    public void onPinChange(PinChangeEvent event) {
+        bump(GLOBAL_PARTITION);
+        if (event.getUserId() != null) {
+            bump(userPartition(event.getUserId()));
+        }
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    // --- Helpers ---
+
+    private void bump(String partitionName) {
+        Partition partition = partitions.get(partitionName);
+        if (partition != null) { // nothing cached for it -> nothing to invalidate
+            partition.version = versionClock.incrementAndGet();
+        }
+    }
+
+    private static String userPartition(Long userId) {
+        return "user:" + userId;
+    }
+
+    // drop the least recently used tenth of the user partitions
+    private synchronized void evictIdlePartitions() {
+        if (partitions.size() <= maxUserPartitions + 1) {
+            return; // another thread already did it
+        }
+        List<Map.Entry<String, Partition>> userPartitions = new ArrayList<>();
+        for (Map.Entry<String, Partition> entry : partitions.entrySet()) {
+            if (!entry.getKey().equals(GLOBAL_PARTITION)) {
+                userPartitions.add(entry);
+            }
+        }
+        userPartitions.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccessNanos));
+
+        int toEvict = Math.max(1, userPartitions.size() / 10);
+        for (int i = 0; i < toEvict; i++) {
+            partitions.remove(userPartitions.get(i).getKey());
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize cached response", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream, shouldn't happen
+        }
+        return out.toByteArray();
+    }
+
+    // If-None-Match is "*" or a list of entity tags: W/"a", "b". It uses the weak comparison (RFC 9110 13.1.2),
+    // so W/"x" and "x" match each other - but only whole tags, never part of one
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        String trimmed = ifNoneMatch.trim();
+        if (trimmed.equals("*")) {
+            return true;
+        }
+        String opaqueTag = stripWeak(etag);
+        int start = 0;
+        boolean quoted = false;
+        for (int i = 0; i <= trimmed.length(); i++) {
+            if (i == trimmed.length() || (trimmed.charAt(i) == ',' && !quoted)) {
+                if (stripWeak(trimmed.substring(start, i).trim()).equals(opaqueTag)) {
+                    return true;
+                }
+                start = i + 1;
+            } else if (trimmed.charAt(i) == '"') {
+                quoted = !quoted;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    // "gzip", "gzip, deflate, br", "br;q=1.0, gzip;q=0.8" -> true, "gzip;q=0" -> false
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] coding = part.trim().split(";");
+            if (coding[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < coding.length; i++) {
+                    String param = coding[i].trim();
+                    if (param.startsWith("q=") && isZero(param.substring(2))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZero(String qValue) {
+        try {
+            return Double.parseDouble(qValue) == 0;
+        } catch (NumberFormatException e) {
+            return false; // malformed q, ignore it
+        }
+    }
+
+    private static final class Partition {
+        private final Map<String, CachedBody> entries = new ConcurrentHashMap<>();
+        private volatile long version;
+        private volatile long lastAccessNanos;
+
+        Partition(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * One serialized response body, in both encodings, for one data version.
+     */
+    public static final class CachedBody {
+        private final long version;
+        private final byte[] raw;
+        private final byte[] gzipped;
+        private final String etag;
+
+        CachedBody(long version, byte[] raw, byte[] gzipped, String etag) {
+            this.version = version;
+            this.raw = raw;
+            this.gzipped = gzipped;
+            this.etag = etag;
+        }
+
+        public long getVersion() { return version; }
+        public int getRawLength() { return raw.length; }
+        public int getGzippedLength() { return gzipped.length; }
+        public String getEtag() { return etag; }
+    }
+}
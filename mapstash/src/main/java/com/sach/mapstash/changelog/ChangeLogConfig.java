@@ -0,0 +1,37 @@
+package com.sach.mapstash.changelog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Wires the pin change log when mapstash.change-log.enabled=true. Works with any PinService
+ * (JPA or sharded), it only listens to the committed PinChangeEvents. Changes that couldn't be
+ * appended are counted in mapstash.changelog.append.failures.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "mapstash.change-log", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ChangeLogProperties.class)
+public class ChangeLogConfig {
+
+    @Bean(destroyMethod = "close")
+    public PinChangeLog pinChangeLog(ChangeLogProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        long segmentSize = properties.getSegmentSize().toBytes();
+        if (segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("mapstash.change-log.segment-size must be under 2GB: " + properties.getSegmentSize());
+        }
+        PinChangeLog log = new PinChangeLog(Paths.get(properties.getDirectory()), (int) segmentSize,
+                properties.getFlushInterval(), properties.getMaxSegments(), properties.getRetention());
+        meterRegistry.ifAvailable(registry -> FunctionCounter
+                .builder("mapstash.changelog.append.failures", log, PinChangeLog::getFailedAppendCount)
+                .description("Committed pin changes missing from the change log")
+                .register(registry));
+        return log;
+    }
+}
@@ -0,0 +1,43 @@
+package com.sach.mapstash.changelog;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * mapstash.change-log.* - see {@link PinChangeLog}.
+ */
+@ConfigurationProperties(prefix = "mapstash.change-log")
+public class ChangeLogProperties {
+
+    private boolean enabled = false;
+
+    // where the segment files go. Locked while the log is open: a second process pointed at it fails to start
+    private String directory = "changelog";
+
+    // size of each segment file (mapped in full), also the cap on a single record
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    // records appended within this window are forced to disk together, 0 = on every append
+    private Duration flushInterval = Duration.ofMillis(100);
+
+    // segments kept, oldest deleted first. 0 = no limit
+    private int maxSegments = 32;
+
+    // segments whose records are all older than this are deleted. 0 = no limit
+    private Duration retention = Duration.ofDays(7);
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public String getDirectory() { return directory; }
+    public void setDirectory(String directory) { this.directory = directory; }
+    public DataSize getSegmentSize() { return segmentSize; }
+    public void setSegmentSize(DataSize segmentSize) { this.segmentSize = segmentSize; }
+    public Duration getFlushInterval() { return flushInterval; }
+    public void setFlushInterval(Duration flushInterval) { this.flushInterval = flushInterval; }
+    public int getMaxSegments() { return maxSegments; }
+    public void setMaxSegments(int maxSegments) { this.maxSegments = maxSegments; }
+    public Duration getRetention() { return retention; }
+    public void setRetention(Duration retention) { this.retention = retention; }
+}
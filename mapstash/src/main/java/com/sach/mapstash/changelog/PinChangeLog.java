@@ -0,0 +1,540 @@
+package com.sach.mapstash.changelog;
+
+import com.sach.mapstash.event.PinChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of committed pin changes, for consumers that would otherwise re-poll the
+ * pins table (search sync, analytics, cache warmers). Read it with {@link #reader(long)}.
+ * <p>
+ * The log is a directory of segment files, each named after the offset of its first byte,
+ * so an offset is a position in the whole log. Records (see {@link PinChangeRecord}) are
+ * written straight into the memory-mapped active segment - no buffers or arrays are
+ * allocated per append. The payload and checksum go in first and the length last, so a
+ * record only becomes readable once it's complete, and a torn one at the end of the log
+ * (crash mid-append) is dropped on the next start. A record that doesn't fit in the
+ * active segment goes to a new one, which starts at the offset where the old one stopped.
+ * <p>
+ * Appends are made durable in groups: one force of the mapped segment every flush-interval
+ * covers everything appended since the last one (a zero interval forces on every append).
+ * Old segments are deleted past max-segments or once everything in them is older than the
+ * retention - checked when the log rolls, and every minute for a log that's gone quiet.
+ * <p>
+ * Records go in the order the after-commit listeners run, which isn't always the order the
+ * writes committed in: two changes to one pin can come out swapped. Each event carries the
+ * sequence number it got inside the write, so a consumer keeping per-pin state skips a record
+ * whose sequence is below the last one it applied for that pin (tag count deltas add up the
+ * same in any order). The append happens after the commit, so a change whose append fails -
+ * or that was committed just before a crash - is missing from the log. Failures are logged
+ * and counted ({@link #getFailedAppendCount()}), never thrown back at the request.
+ * <p>
+ * One writer per directory: the log holds an exclusive lock on a lock file there while it's
+ * open, and fails to open if another process (or another log in this one) has it.
+ */
+public class PinChangeLog implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PinChangeLog.class);
+
+    private static final String SUFFIX = ".log";
+    private static final String LOCK = "lock";
+
+    // how often the retention is checked between rolls
+    static final Duration RETENTION_SWEEP_INTERVAL = Duration.ofMinutes(1);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long retentionMillis;
+    private final boolean syncEveryAppend;
+    private final LongSupplier clock;
+    private final FileChannel lockFile;
+    private final FileLock directoryLock;
+
+    // base offset -> file, oldest first. Shared with the readers
+    private final NavigableMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+
+    private final CRC32 crc = new CRC32(); // writer only, under the lock
+
+    private final AtomicLong failedAppends = new AtomicLong();
+
+    // active segment, guarded by this
+    private long activeBase;
+    private MappedByteBuffer active;
+    private ByteBuffer checksumView; // second view of the active segment, so the CRC pass never moves active's limit
+    private int writePosition;
+    private int flushedPosition;
+    private boolean closed;
+
+    private final ScheduledExecutorService flusher; // periodic flush and retention sweep
+
+    /**
+     * Opens (or creates) the log in the directory and recovers the write position.
+     * @param segmentSize bytes per segment file, also the largest possible record
+     * @param flushInterval how often appended records are forced to disk, zero for every append
+     * @param maxSegments segments kept, 0 for no limit
+     * @param retention how long records are kept at least, zero for no time limit
+     */
+    public PinChangeLog(Path directory, int segmentSize, Duration flushInterval, int maxSegments, Duration retention) {
+        this(directory, segmentSize, flushInterval, maxSegments, retention, System::currentTimeMillis);
+    }
+
+    PinChangeLog(Path directory, int segmentSize, Duration flushInterval, int maxSegments, Duration retention,
+                 LongSupplier clock) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("mapstash.change-log.segment-size must be at least 1KB: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.retentionMillis = retention.toMillis();
+        this.syncEveryAppend = flushInterval.isZero();
+        this.clock = clock;
+
+        try {
+            Files.createDirectories(directory);
+            this.lockFile = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            this.directoryLock = tryLock(lockFile);
+            if (directoryLock == null) {
+                lockFile.close();
+                throw new IllegalStateException("The change log in " + directory + " is in use by another process");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open the change log in " + directory, e);
+        }
+
+        try {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(file -> file.getFileName().toString().matches("\\d{20}\\" + SUFFIX))
+                        .forEach(file -> segments.put(baseOffsetOf(file), file));
+            }
+            if (segments.isEmpty()) {
+                openSegment(0);
+            } else {
+                recover(segments.lastKey());
+            }
+        } catch (IOException e) {
+            closeLockFile();
+            throw new UncheckedIOException("Can't open the change log in " + directory, e);
+        } catch (RuntimeException e) {
+            closeLockFile();
+            throw e;
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pin-change-log-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!syncEveryAppend) {
+            long interval = flushInterval.toMillis();
+            flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        if (retentionMillis > 0) {
+            long interval = RETENTION_SWEEP_INTERVAL.toMillis();
+            flusher.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // only committed changes: a rolled back write never shows up in the log. The write has
+    // committed by now, so a failure here is recorded instead of failing the request
+    @TransactionalEventListener
+    public void onPinChange(PinChangeEvent event) {
+        try {
+            append(event, clock.getAsLong());
+        } catch (RuntimeException e) {
+            failedAppends.incrementAndGet();
+            log.error("Change not written to the change log in {}: {}", directory, event, e);
+        }
+    }
+
+    /**
+     * Appends the change.
+     * @return the record's offset
+     */
+    public synchronized long append(PinChangeEvent event, long timestamp) {
+        if (closed) {
+            throw new IllegalStateException("The change log is closed");
+        }
+
+        int payloadSize = payloadSize(event);
+        int recordSize = PinChangeRecord.HEADER_SIZE + payloadSize;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Change of pin " + event.getPinId() + " needs " + recordSize
+                    + " bytes, more than mapstash.change-log.segment-size");
+        }
+        if (writePosition + recordSize > active.capacity()) {
+            roll();
+        }
+
+        int start = writePosition;
+        int payloadStart = start + PinChangeRecord.HEADER_SIZE;
+        writePayload(event, timestamp, payloadStart);
+
+        crc.reset();
+        checksumView.limit(payloadStart + payloadSize).position(payloadStart);
+        crc.update(checksumView);
+        checksumView.limit(checksumView.capacity());
+        active.putInt(start + 4, (int) crc.getValue());
+        active.putInt(start, payloadSize); // last: the record is readable from here on
+
+        writePosition = start + recordSize;
+        if (syncEveryAppend) {
+            active.force();
+            flushedPosition = writePosition;
+        }
+        return activeBase + start;
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     */
+    public void flush() {
+        MappedByteBuffer segment;
+        int position;
+        synchronized (this) {
+            if (closed || flushedPosition == writePosition) {
+                return;
+            }
+            segment = active;
+            position = writePosition;
+        }
+        segment.force(0, position); // outside the lock, appends carry on meanwhile
+        synchronized (this) {
+            if (segment == active) {
+                flushedPosition = Math.max(flushedPosition, position);
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments that are past the retention now. Runs every RETENTION_SWEEP_INTERVAL,
+     * so they go even when nothing is appended and the log never rolls.
+     */
+    void sweep() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                applyRetention();
+            } catch (IOException | RuntimeException e) {
+                // logged, not thrown: an exception would cancel the scheduled sweeps
+                log.warn("Retention sweep of the change log in {} failed", directory, e);
+            }
+        }
+    }
+
+    /**
+     * A reader positioned at the offset.
+     * @param offset 0, {@link #startOffset()}, {@link #endOffset()} or a next offset from an earlier read.
+     *               An offset before startOffset (deleted by retention) starts at startOffset.
+     */
+    public PinChangeLogReader reader(long offset) {
+        return new PinChangeLogReader(this, offset);
+    }
+
+    // offset of the oldest record still kept
+    public long startOffset() {
+        return segments.firstKey();
+    }
+
+    // offset the next append will get (if it fits in the active segment)
+    public synchronized long endOffset() {
+        return activeBase + writePosition;
+    }
+
+    // changes that committed but couldn't be appended, since the log was opened
+    public long getFailedAppendCount() {
+        return failedAppends.get();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                try {
+                    active.force();
+                } finally {
+                    closeLockFile();
+                }
+            }
+        }
+    }
+
+    // --- For the readers ---
+
+    // the segment holding the offset: the last one starting at or before it
+    Map.Entry<Long, Path> segmentFor(long offset) {
+        Map.Entry<Long, Path> segment = segments.floorEntry(offset);
+        return segment != null ? segment : segments.firstEntry();
+    }
+
+    // the segment that starts exactly at the offset, if the log has rolled there
+    Path segmentStartingAt(long offset) {
+        return segments.get(offset);
+    }
+
+    // --- Helpers ---
+
+    // null if the lock is held, by another process or by another log in this one
+    private static FileLock tryLock(FileChannel lockFile) throws IOException {
+        try {
+            return lockFile.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    // releases the directory, even when the log failed half way through opening
+    private void closeLockFile() {
+        try {
+            directoryLock.release();
+            lockFile.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't close the change log in " + directory, e);
+        }
+    }
+
+    private void openSegment(long baseOffset) throws IOException {
+        Path file = directory.resolve(String.format("%020d", baseOffset) + SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize); // grows the file, zero filled
+        }
+        checksumView = active.duplicate();
+        activeBase = baseOffset;
+        writePosition = 0;
+        flushedPosition = 0;
+        segments.put(baseOffset, file);
+    }
+
+    // reopen the newest segment, skip the complete records and wipe whatever follows them
+    private void recover(long baseOffset) throws IOException {
+        Path file = segments.get(baseOffset);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentSize));
+        }
+        checksumView = active.duplicate();
+        activeBase = baseOffset;
+
+        int position = 0;
+        while (true) {
+            int length = validRecordLength(active, position, active.capacity());
+            if (length < 0) {
+                break;
+            }
+            position += PinChangeRecord.HEADER_SIZE + length;
+        }
+        for (int i = position; i < active.capacity(); i++) {
+            active.put(i, (byte) 0);
+        }
+        active.force();
+        writePosition = position;
+        flushedPosition = position;
+    }
+
+    private void roll() {
+        try {
+            active.force();
+            openSegment(activeBase + writePosition);
+            applyRetention();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't roll the change log in " + directory, e);
+        }
+    }
+
+    private void applyRetention() throws IOException {
+        long now = clock.getAsLong();
+        while (segments.size() > 1) {
+            Map.Entry<Long, Path> oldest = segments.firstEntry();
+            boolean tooMany = maxSegments > 0 && segments.size() > maxSegments;
+            // everything in a segment is older than the first record of the next one
+            boolean tooOld = retentionMillis > 0
+                    && firstTimestamp(segments.higherEntry(oldest.getKey()).getValue()) < now - retentionMillis;
+            if (!tooMany && !tooOld) {
+                return;
+            }
+            segments.remove(oldest.getKey());
+            Files.deleteIfExists(oldest.getValue());
+        }
+    }
+
+    private long firstTimestamp(Path segment) throws IOException {
+        if (segment.equals(segments.get(activeBase))) {
+            // just rolled, nothing in it yet: the segment before it may still hold recent records
+            return writePosition == 0 ? Long.MAX_VALUE : active.getLong(PinChangeRecord.HEADER_SIZE);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer timestamp = ByteBuffer.allocate(8);
+            channel.read(timestamp, PinChangeRecord.HEADER_SIZE);
+            return timestamp.getLong(0);
+        }
+    }
+
+    /**
+     * Length of the complete, intact record at the position, or -1 if there's none there
+     * (end of the written data, or a record that's torn or not fully visible yet).
+     */
+    static int validRecordLength(ByteBuffer segment, int position, int limit) {
+        if (position + PinChangeRecord.HEADER_SIZE > limit) {
+            return -1;
+        }
+        int length = segment.getInt(position);
+        if (length <= 0 || length > limit - position - PinChangeRecord.HEADER_SIZE) {
+            return -1;
+        }
+        CRC32 checksum = new CRC32();
+        ByteBuffer payload = segment.duplicate();
+        payload.limit(position + PinChangeRecord.HEADER_SIZE + length).position(position + PinChangeRecord.HEADER_SIZE);
+        checksum.update(payload);
+        return (int) checksum.getValue() == segment.getInt(position + 4) ? length : -1;
+    }
+
+    private static long baseOffsetOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static int payloadSize(PinChangeEvent event) {
+        int size = 8 + 8 + 1 + 1 + 8; // timestamp, sequence, type, flags, pin id
+        if (event.getUserId() != null) {
+            size += 8;
+        }
+        if (event.hasOldLocation()) {
+            size += 16;
+        }
+        if (event.hasNewLocation()) {
+            size += 16;
+        }
+        return size + namesSize(event.getAddedTagNames()) + namesSize(event.getRemovedTagNames());
+    }
+
+    private static int namesSize(List<String> names) {
+        if (names.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many tag names in one change: " + names.size());
+        }
+        int size = 2;
+        for (int i = 0; i < names.size(); i++) {
+            int length = utf8Length(names.get(i));
+            if (length > 0xFFFF) {
+                throw new IllegalArgumentException("Tag name too long: " + length + " bytes");
+            }
+            size += 2 + length;
+        }
+        return size;
+    }
+
+    private void writePayload(PinChangeEvent event, long timestamp, int position) {
+        int flags = (event.getUserId() != null ? PinChangeRecord.HAS_USER : 0)
+                | (event.hasOldLocation() ? PinChangeRecord.HAS_OLD_LOCATION : 0)
+                | (event.hasNewLocation() ? PinChangeRecord.HAS_NEW_LOCATION : 0);
+        active.putLong(position, timestamp);
+        active.putLong(position + 8, event.getSequence());
+        active.put(position + 16, (byte) event.getType().ordinal());
+        active.put(position + 17, (byte) flags);
+        active.putLong(position + 18, event.getPinId());
+        position += 26;
+
+        if (event.getUserId() != null) {
+            active.putLong(position, event.getUserId());
+            position += 8;
+        }
+        if (event.hasOldLocation()) {
+            active.putDouble(position, event.getOldLatitude());
+            active.putDouble(position + 8, event.getOldLongitude());
+            position += 16;
+        }
+        if (event.hasNewLocation()) {
+            active.putDouble(position, event.getNewLatitude());
+            active.putDouble(position + 8, event.getNewLongitude());
+            position += 16;
+        }
+        position = writeNames(event.getAddedTagNames(), position);
+        writeNames(event.getRemovedTagNames(), position);
+    }
+
+    private int writeNames(List<String> names, int position) {
+        active.putShort(position, (short) names.size());
+        position += 2;
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            int lengthPosition = position;
+            position = writeUtf8(name, position + 2);
+            active.putShort(lengthPosition, (short) (position - lengthPosition - 2));
+        }
+        return position;
+    }
+
+    // String.getBytes would allocate - encode char by char instead
+    private int writeUtf8(String value, int position) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                active.put(position++, (byte) c);
+            } else if (c < 0x800) {
+                active.put(position++, (byte) (0xC0 | (c >> 6)));
+                active.put(position++, (byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                active.put(position++, (byte) (0xF0 | (codePoint >> 18)));
+                active.put(position++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                active.put(position++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                active.put(position++, (byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                active.put(position++, (byte) '?'); // unpaired surrogate, like String.getBytes does
+            } else {
+                active.put(position++, (byte) (0xE0 | (c >> 12)));
+                active.put(position++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                active.put(position++, (byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return position;
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
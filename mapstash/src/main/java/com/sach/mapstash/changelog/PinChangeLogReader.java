@@ -0,0 +1,114 @@
+package com.sach.mapstash.changelog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the {@link PinChangeLog} forwards from an offset, and keeps following it: once it
+ * has caught up, {@link #next()} returns null until something new is appended.
+ * <p>
+ * A consumer stores {@link #position()} (or the last record's next offset) with whatever it
+ * did with the records, and opens a new reader there after a restart. If retention deleted
+ * that part of the log in the meantime, the reader skips to the oldest record still kept -
+ * position() then jumps forward, which is how a consumer can tell it missed changes.
+ * <p>
+ * Not thread-safe: one reader per consumer thread.
+ */
+public class PinChangeLogReader {
+
+    private final PinChangeLog log;
+
+    private long segmentBase;
+    private MappedByteBuffer segment;
+    private int position; // in the segment
+
+    PinChangeLogReader(PinChangeLog log, long offset) {
+        this.log = log;
+        seek(offset);
+    }
+
+    /**
+     * The next record, or null if there's nothing after the current position yet.
+     */
+    public PinChangeRecord next() {
+        while (true) {
+            int length = PinChangeLog.validRecordLength(segment, position, segment.capacity());
+            if (length >= 0) {
+                PinChangeRecord record = PinChangeRecord.decode(segment, position + PinChangeRecord.HEADER_SIZE,
+                        length, segmentBase + position);
+                position += PinChangeRecord.HEADER_SIZE + length;
+                return record;
+            }
+
+            // nothing readable here: either the writer rolled to a new segment at this offset,
+            // or this is the end of the log (or a record still being written - it'll be there next time)
+            long offset = position();
+            Path next = offset != segmentBase ? log.segmentStartingAt(offset) : null;
+            if (next == null) {
+                if (offset < log.startOffset()) {
+                    seek(offset); // our segment was deleted under us, skip ahead
+                    continue;
+                }
+                return null;
+            }
+            open(offset, next);
+        }
+    }
+
+    /**
+     * Up to max records, fewer (possibly none) if the reader catches up.
+     */
+    public List<PinChangeRecord> poll(int max) {
+        List<PinChangeRecord> records = new ArrayList<>();
+        while (records.size() < max) {
+            PinChangeRecord record = next();
+            if (record == null) {
+                break;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    // offset of the next record this reader will return
+    public long position() {
+        return segmentBase + position;
+    }
+
+    // --- Helpers ---
+
+    private void seek(long offset) {
+        while (true) {
+            Map.Entry<Long, Path> found = log.segmentFor(offset);
+            long start = Math.max(offset, found.getKey());
+            try {
+                open(found.getKey(), found.getValue());
+                position = (int) Math.min(start - found.getKey(), segment.capacity());
+                return;
+            } catch (UncheckedIOException e) {
+                if (!(e.getCause() instanceof NoSuchFileException)) {
+                    throw e;
+                }
+                // deleted by retention between the lookup and the open, look again
+            }
+        }
+    }
+
+    private void open(long base, Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read change log segment " + file, e);
+        }
+        segmentBase = base;
+        position = 0;
+    }
+}
@@ -0,0 +1,112 @@
+package com.sach.mapstash.changelog;
+
+import com.sach.mapstash.event.PinChangeEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One entry of the {@link PinChangeLog}: a committed pin change, where it sits in the log and
+ * when it was appended.
+ * <p>
+ * On disk a record is an 8 byte header - payload length, CRC32 of the payload - followed by
+ * the payload: append time (epoch millis), the event's sequence number, change type, a flags
+ * byte saying which of the optional fields follow, pin id, owner id, old and new position, then
+ * the added and removed tag names (count, then length-prefixed UTF-8 each). Big-endian throughout.
+ */
+public class PinChangeRecord {
+
+    static final int HEADER_SIZE = 8;
+
+    static final int HAS_USER = 1;
+    static final int HAS_OLD_LOCATION = 2;
+    static final int HAS_NEW_LOCATION = 4;
+
+    private static final PinChangeEvent.Type[] TYPES = PinChangeEvent.Type.values();
+
+    private final long offset;
+    private final long nextOffset;
+    private final long timestamp;
+    private final PinChangeEvent event;
+
+    PinChangeRecord(long offset, long nextOffset, long timestamp, PinChangeEvent event) {
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+        this.timestamp = timestamp;
+        this.event = event;
+    }
+
+    // where this record starts in the log
+    public long getOffset() { return offset; }
+    // where the record after it starts - the offset to resume from once this one is processed
+    public long getNextOffset() { return nextOffset; }
+    // when it was appended (epoch millis), just after the change committed
+    public long getTimestamp() { return timestamp; }
+    public PinChangeEvent getEvent() { return event; }
+
+    /**
+     * Reads the payload at buffer[start, start + length).
+     */
+    static PinChangeRecord decode(ByteBuffer buffer, int start, int length, long offset) {
+        int position = start;
+        long timestamp = buffer.getLong(position);
+        long sequence = buffer.getLong(position + 8);
+        PinChangeEvent.Type type = TYPES[buffer.get(position + 16)];
+        int flags = buffer.get(position + 17);
+        long pinId = buffer.getLong(position + 18);
+        position += 26;
+
+        Long userId = null;
+        if ((flags & HAS_USER) != 0) {
+            userId = buffer.getLong(position);
+            position += 8;
+        }
+        Double oldLatitude = null;
+        Double oldLongitude = null;
+        if ((flags & HAS_OLD_LOCATION) != 0) {
+            oldLatitude = buffer.getDouble(position);
+            oldLongitude = buffer.getDouble(position + 8);
+            position += 16;
+        }
+        Double newLatitude = null;
+        Double newLongitude = null;
+        if ((flags & HAS_NEW_LOCATION) != 0) {
+            newLatitude = buffer.getDouble(position);
+            newLongitude = buffer.getDouble(position + 8);
+            position += 16;
+        }
+
+        List<String> added = new ArrayList<>();
+        position = readNames(buffer, position, added);
+        List<String> removed = new ArrayList<>();
+        readNames(buffer, position, removed);
+
+        PinChangeEvent event = new PinChangeEvent(sequence, type, pinId, userId, oldLatitude, oldLongitude,
+                newLatitude, newLongitude, added, removed);
+        return new PinChangeRecord(offset, offset + HEADER_SIZE + length, timestamp, event);
+    }
+
+    private static int readNames(ByteBuffer buffer, int position, List<String> names) {
+        int count = Short.toUnsignedInt(buffer.getShort(position));
+        position += 2;
+        for (int i = 0; i < count; i++) {
+            int length = Short.toUnsignedInt(buffer.getShort(position));
+            byte[] bytes = new byte[length];
+            buffer.get(position + 2, bytes);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+            position += 2 + length;
+        }
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return "PinChangeRecord{" +
+                "offset=" + offset +
+                ", timestamp=" + timestamp +
+                ", event=" + event +
+                '}';
+    }
+}
@@ -0,0 +1,27 @@
+package com.sach.mapstash.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.util.Assert;
+
+/**
+ * Jackson based converter for MessagePack, same idea as Spring's
+ * MappingJackson2CborHttpMessageConverter (there isn't a built-in one for msgpack).
+ */
+public class MessagePackHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public static final String APPLICATION_X_MSGPACK_VALUE = "application/x-msgpack";
+    public static final String APPLICATION_MSGPACK_VALUE = "application/msgpack";
+    public static final MediaType APPLICATION_X_MSGPACK = MediaType.parseMediaType(APPLICATION_X_MSGPACK_VALUE);
+    public static final MediaType APPLICATION_MSGPACK = MediaType.parseMediaType(APPLICATION_MSGPACK_VALUE);
+
+    /**
+     * @param objectMapper mapper backed by a MessagePackFactory
+     */
+    public MessagePackHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper, APPLICATION_X_MSGPACK, APPLICATION_MSGPACK);
+        Assert.isInstanceOf(MessagePackFactory.class, objectMapper.getFactory(), "MessagePackFactory required");
+    }
+}
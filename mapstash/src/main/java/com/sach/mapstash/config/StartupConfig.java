@@ -0,0 +1,24 @@
+package com.sach.mapstash.config;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Startup settings that apply whatever the profile.
+ * <p>
+ * With spring.main.lazy-initialization (the "fast-start" profile) beans are only created when
+ * first used. The in-memory indexes (HeatmapIndex, TagSuggestIndex) load everything in
+ * afterSingletonsInstantiated, which never runs for a lazy bean - they'd answer from an empty
+ * index. So anything that loads at startup stays eager.
+ */
+@Configuration
+public class StartupConfig {
+
+    // static: it's read before the other beans are created
+    @Bean
+    static LazyInitializationExcludeFilter eagerStartupLoaders() {
+        return (beanName, beanDefinition, beanType) -> SmartInitializingSingleton.class.isAssignableFrom(beanType);
+    }
+}
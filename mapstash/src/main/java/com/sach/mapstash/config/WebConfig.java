@@ -1,20 +1,74 @@
 package com.sach.mapstash.config; // Use your package name
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.sach.mapstash.controller.PinController;
+import com.sach.mapstash.ratelimit.RateLimitInterceptor;
+import com.sach.mapstash.ratelimit.RateLimitProperties;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
 public class WebConfig implements WebMvcConfigurer {
 
+    private final ObjectMapper objectMapper; // the JSON mapper Spring Boot configured (java time module etc.)
+    private final RateLimitInterceptor rateLimitInterceptor;
+
+    public WebConfig(ObjectMapper objectMapper, RateLimitInterceptor rateLimitInterceptor) {
+        this.objectMapper = objectMapper;
+        this.rateLimitInterceptor = rateLimitInterceptor;
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**") // Apply CORS configuration to your API endpoints
                 .allowedOrigins("http://localhost:3000") // Allow requests ONLY from your React app's origin
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS") // Specify allowed HTTP methods
                 .allowedHeaders("*") // Allow all headers
+                .exposedHeaders(HttpHeaders.RETRY_AFTER, // so the frontend can read it on a 429
+                        PinController.PARTIAL_RESULTS_HEADER, PinController.SEARCHED_RADIUS_HEADER) // and see a cut-short nearby search
                 .allowCredentials(false); // Set to true if you need cookies/auth headers later, but then allowedOrigins cannot be "*"
         // You can adjust maxAge for preflight request caching if needed
         // .maxAge(3600);
     }
-}
\ No newline at end of file
+
+    // per-client token buckets + the expensive-query limit, costs come from @RateLimited on the endpoints
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns("/api/**");
+    }
+
+    // Binary formats picked by the Accept header. They go after the JSON converter,
+    // so JSON stays the default for */* and for clients that don't ask for anything.
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring registers a plain CBOR converter when jackson-dataformat-cbor is on the classpath - swap it for ours
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(cborMapper(objectMapper)));
+        converters.add(new MessagePackHttpMessageConverter(messagePackMapper(objectMapper)));
+    }
+
+    // CBOR with string references: every repeated string (tag names, field names) after the
+    // first one is written as a small index into the strings already seen
+    static ObjectMapper cborMapper(ObjectMapper jsonMapper) {
+        CBORFactory factory = CBORFactory.builder()
+                .enable(CBORGenerator.Feature.STRINGREF)
+                .build();
+        return jsonMapper.copyWith(factory);
+    }
+
+    static ObjectMapper messagePackMapper(ObjectMapper jsonMapper) {
+        return jsonMapper.copyWith(new MessagePackFactory());
+    }
+}
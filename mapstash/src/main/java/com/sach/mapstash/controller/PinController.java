@@ -1,25 +1,70 @@
 package com.sach.mapstash.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sach.mapstash.cache.NearbyQueryCache;
+import com.sach.mapstash.cache.PolygonIndexCache;
+import com.sach.mapstash.cache.ResponseBodyCache;
+import com.sach.mapstash.config.MessagePackHttpMessageConverter;
 import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.HeatmapDto;
 import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinPageDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.dto.RouteQueryDto;
+import com.sach.mapstash.dto.TimeWindowQueryDto;
 import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.exception.BadRequestException;
 import com.sach.mapstash.exception.ResourceNotFoundException; // Import custom exception
+import com.sach.mapstash.geo.PolygonIndex;
+import com.sach.mapstash.geo.Polyline;
+import com.sach.mapstash.heatmap.HeatmapIndex;
+import com.sach.mapstash.ratelimit.RateLimited;
+import com.sach.mapstash.service.Deadline;
+import com.sach.mapstash.service.NearbyResult;
 import com.sach.mapstash.service.PinService;
+import com.sach.mapstash.service.TagNames;
+import com.sach.mapstash.service.TimeWindowQuery;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 @RestController // Combination of @Controller and @ResponseBody
 @RequestMapping("/api/pins") //path for all endpoints in this controller
 public class PinController {
 
+    static final double DEFAULT_ROUTE_BUFFER = 200; // meters
+    static final double MAX_ROUTE_BUFFER = 50_000;
+    static final int MAX_ROUTE_POINTS = 10_000;
+
+    static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout"; // milliseconds, same as ?timeout=
+    static final long MAX_TIMEOUT_MILLIS = 60_000;
+    public static final String PARTIAL_RESULTS_HEADER = "X-Partial-Results";
+    public static final String SEARCHED_RADIUS_HEADER = "X-Searched-Radius";
+
     private final PinService pinService;
+    private final ResponseBodyCache responseCache; // pre-serialized JSON for GET /api/pins
+    private final Optional<HeatmapIndex> heatmapIndex; // empty with mapstash.heatmap.enabled=false
+    private final PolygonIndexCache polygonCache; // edge-banded polygons for POST /within, by geometry hash
+    private final NearbyQueryCache nearbyCache; // shared, coalesced nearby results per geohash cell + radius bucket
 
     // Constructor injection
-    public PinController(PinService pinService) {
+    public PinController(PinService pinService, ResponseBodyCache responseCache, Optional<HeatmapIndex> heatmapIndex,
+                         PolygonIndexCache polygonCache, NearbyQueryCache nearbyCache) {
         this.pinService = pinService;
+        this.responseCache = responseCache;
+        this.heatmapIndex = heatmapIndex;
+        this.polygonCache = polygonCache;
+        this.nearbyCache = nearbyCache;
     }
 
     // --- Endpoint Mappings ---
@@ -35,8 +80,43 @@ public class PinController {
 
 
     //GET /api/pins - get all pins
+    //?fields=summary returns PinSummaryDtos (id, title, coords, tag names) - no notes
+    //JSON comes pre-serialized (and gzipped if accepted) from the response cache until the next write
+    //?createdAfter=&createdBefore=&updatedAfter= (ISO date-times), optionally with lat/lng/radius like /nearby,
+    //pages through a time window instead: {"items": [...], "nextCursor": "..."} - repeat the request with
+    //&cursor=<nextCursor> for the next page, &limit= sets the page size (100, max 1000). See TimeWindowQuery
+    //updatedAfter sees every edit: a pin's updated_at moves when its title, notes or tags change
     @GetMapping
-    public ResponseEntity<List<PinDto>> getAllPins() {
+    @RateLimited(cost = 5, expensive = true)
+    public ResponseEntity<?> getAllPins(
+            @RequestParam(name = "fields", required = false) String fields,
+            @ModelAttribute TimeWindowQueryDto window,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        if (window.isPresent()) {
+            return ResponseEntity.ok(timeWindowPage(window, fields));
+        }
+        ResponseBodyCache.CachedBody body = isSummary(fields)
+                ? responseCache.get("pins:summary", pinService::getAllPinSummaries)
+                : responseCache.get("pins:full", pinService::getAllPins);
+        return responseCache.toResponse(body, acceptEncoding, ifNoneMatch);
+    }
+
+
+    //GET /api/pins with Accept: application/cbor or msgpack - goes through the message converters instead
+    @GetMapping(produces = {MediaType.APPLICATION_CBOR_VALUE,
+            MessagePackHttpMessageConverter.APPLICATION_X_MSGPACK_VALUE,
+            MessagePackHttpMessageConverter.APPLICATION_MSGPACK_VALUE})
+    @RateLimited(cost = 5, expensive = true)
+    public ResponseEntity<?> getAllPinsBinary(@RequestParam(name = "fields", required = false) String fields,
+                                              @ModelAttribute TimeWindowQueryDto window) {
+        if (window.isPresent()) {
+            return ResponseEntity.ok(timeWindowPage(window, fields));
+        }
+        if (isSummary(fields)) {
+            return ResponseEntity.ok(pinService.getAllPinSummaries());
+        }
         List<PinDto> pins = pinService.getAllPins();
         return ResponseEntity.ok(pins); // Shortcut for status 200 OK
     }
@@ -81,16 +161,211 @@ public class PinController {
     //GET /api/pins/nearby - find pins within a radius
     //params - lat and long of centre points, radius in meters
     // return ResponseEntity with status 200 (OK) and list of nearby PinDtos.
+    //?fields=summary works the same as on GET /api/pins
+    //goes through the nearby cache: requests from around the same spot share one query (results ordered by id)
+    //?timeout= or an X-Request-Timeout header (milliseconds, up to a minute) bounds the search: when it runs out the response
+    //has X-Partial-Results: true and holds the pins within X-Searched-Radius meters - the closest ones
     @GetMapping("/nearby")
-    public ResponseEntity<List<PinDto>> findNearbyPins(
+    @RateLimited(cost = 5, expensive = true)
+    public ResponseEntity<List<?>> findNearbyPins(
             @RequestParam(name = "lat") double lat,
             @RequestParam(name = "lng") double lng,
-            @RequestParam(name = "radius", defaultValue = "2000") double radius) { // Default radius = 2km
+            @RequestParam(name = "radius", defaultValue = "2000") double radius, // Default radius = 2km
+            @RequestParam(name = "fields", required = false) String fields,
+            @RequestParam(name = "timeout", required = false) Long timeout,
+            @RequestHeader(name = REQUEST_TIMEOUT_HEADER, required = false) Long timeoutHeader) {
+
+        Deadline deadline = deadline(timeout != null ? timeout : timeoutHeader);
+        if (deadline != null && isSummary(fields)) {
+            return nearbyWithDeadline("summary", lat, lng, radius, deadline, pinService::findNearbyPinSummaries,
+                    PinSummaryDto::getId, PinSummaryDto::getLatitude, PinSummaryDto::getLongitude);
+        }
+        if (deadline != null) {
+            return nearbyWithDeadline("full", lat, lng, radius, deadline, pinService::findNearbyPins,
+                    PinDto::getId, PinDto::getLatitude, PinDto::getLongitude);
+        }
 
-        List<PinDto> nearbyPins = pinService.findNearbyPins(lat, lng, radius);
+        if (isSummary(fields)) {
+            return ResponseEntity.ok(nearbyCache.get("summary", lat, lng, radius, pinService::findNearbyPinSummaries,
+                    PinSummaryDto::getId, PinSummaryDto::getLatitude, PinSummaryDto::getLongitude));
+        }
+        List<PinDto> nearbyPins = nearbyCache.get("full", lat, lng, radius, pinService::findNearbyPins,
+                PinDto::getId, PinDto::getLatitude, PinDto::getLongitude);
         return ResponseEntity.ok(nearbyPins);
     }
 
-  
+
+    //POST /api/pins/along-route - pins within `buffer` meters of a route, ordered from start to end
+    //body: {"polyline": "...", "buffer": 300} or {"points": [[lat, lng], ...], "buffer": 300}
+    //?fields=summary works the same as on GET /api/pins
+    @PostMapping("/along-route")
+    @RateLimited(cost = 10, expensive = true)
+    public ResponseEntity<List<?>> findPinsAlongRoute(
+            @RequestBody RouteQueryDto routeQuery,
+            @RequestParam(name = "fields", required = false) String fields) {
+
+        List<double[]> route = parseRoute(routeQuery);
+        double buffer = routeQuery.getBuffer() != null ? routeQuery.getBuffer() : DEFAULT_ROUTE_BUFFER;
+        if (!(buffer > 0 && buffer <= MAX_ROUTE_BUFFER)) {
+            throw new BadRequestException("buffer must be between 0 and " + (long) MAX_ROUTE_BUFFER + " meters");
+        }
+
+        if (isSummary(fields)) {
+            return ResponseEntity.ok(pinService.findPinSummariesAlongRoute(route, buffer));
+        }
+        return ResponseEntity.ok(pinService.findPinsAlongRoute(route, buffer));
+    }
+
+
+    //POST /api/pins/within - pins inside a GeoJSON Polygon or MultiPolygon (a Feature holding one works too)
+    //coordinates are [lng, lat] like all GeoJSON, holes are respected
+    //?tags=coffee,wifi only keeps pins that have all of those tags
+    //?fields=summary works the same as on GET /api/pins
+    @PostMapping("/within")
+    @RateLimited(cost = 10, expensive = true)
+    public ResponseEntity<List<?>> findPinsWithin(
+            @RequestBody JsonNode geometry,
+            @RequestParam(name = "tags", required = false) List<String> tags,
+            @RequestParam(name = "fields", required = false) String fields) {
+
+        PolygonIndex area;
+        try {
+            area = polygonCache.get(geometry);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid GeoJSON polygon: " + e.getMessage());
+        }
+        List<String> tagNames = TagNames.normalize(tags);
+
+        if (isSummary(fields)) {
+            return ResponseEntity.ok(pinService.findPinSummariesWithin(area, tagNames));
+        }
+        return ResponseEntity.ok(pinService.findPinsWithin(area, tagNames));
+    }
+
+
+    //GET /api/pins/heatmap?bbox=minLng,minLat,maxLng,maxLat&resolution=1-8
+    //pin counts per geohash cell for zoomed-out views, read from the in-memory grid (HeatmapIndex)
+    //resolution is the geohash precision, left out = picked from the bbox size
+    @GetMapping("/heatmap")
+    @RateLimited(cost = 2) // in-memory, no DB
+    public ResponseEntity<HeatmapDto> getHeatmap(
+            @RequestParam(name = "bbox") String bbox,
+            @RequestParam(name = "resolution", required = false) Integer resolution) {
+
+        HeatmapIndex index = heatmapIndex.orElseThrow(() -> new ResourceNotFoundException("The heatmap is disabled"));
+        double[] box = parseBbox(bbox);
+        return ResponseEntity.ok(index.heatmap(box[1], box[3], box[0], box[2], resolution));
+    }
+
+
+    // --- Helpers ---
+
+    private PinPageDto<?> timeWindowPage(TimeWindowQueryDto window, String fields) {
+        TimeWindowQuery query;
+        try {
+            query = TimeWindowQuery.of(window);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid time window: " + e.getMessage());
+        }
+        if (isSummary(fields)) {
+            return pinService.findPinSummariesInTimeWindow(query);
+        }
+        return pinService.findPinsInTimeWindow(query);
+    }
+
+    // a finished cache entry answers right away; on a miss the search runs on its own (a partial
+    // result can't be shared), and its complete results aren't cached either - the cache's own
+    // queries are for a larger, quantized circle
+    private <T> ResponseEntity<List<?>> nearbyWithDeadline(String kind, double lat, double lng, double radius, Deadline deadline,
+                                                           NearbyWithDeadline<T> search, Function<T, Long> id,
+                                                           ToDoubleFunction<T> pinLatitude, ToDoubleFunction<T> pinLongitude) {
+        List<T> cached = nearbyCache.getIfCached(kind, lat, lng, radius, id, pinLatitude, pinLongitude);
+        if (cached != null) {
+            return ResponseEntity.ok(cached);
+        }
+
+        NearbyResult<T> result = search.find(lat, lng, radius, deadline);
+        List<T> pins = new ArrayList<>(result.getPins());
+        pins.sort(Comparator.comparing(id)); // same order as the cached path
+        if (!result.isPartial()) {
+            return ResponseEntity.ok(pins);
+        }
+        return ResponseEntity.ok()
+                .header(PARTIAL_RESULTS_HEADER, "true")
+                .header(SEARCHED_RADIUS_HEADER, String.valueOf(result.getSearchedRadius()))
+                .body(pins);
+    }
+
+    // null when the request has no timeout
+    private Deadline deadline(Long timeoutMillis) {
+        if (timeoutMillis == null) {
+            return null;
+        }
+        if (timeoutMillis <= 0 || timeoutMillis > MAX_TIMEOUT_MILLIS) {
+            throw new BadRequestException("timeout must be between 1 and " + MAX_TIMEOUT_MILLIS + " milliseconds");
+        }
+        return Deadline.after(Duration.ofMillis(timeoutMillis));
+    }
+
+    // route points as {lat, lng}, from the polyline if there is one
+    private List<double[]> parseRoute(RouteQueryDto routeQuery) {
+        List<double[]> route = new ArrayList<>();
+        if (routeQuery.getPolyline() != null && !routeQuery.getPolyline().isEmpty()) {
+            int precision = routeQuery.getPrecision() != null ? routeQuery.getPrecision() : Polyline.DEFAULT_PRECISION;
+            try {
+                route = Polyline.decode(routeQuery.getPolyline(), precision);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid polyline: " + e.getMessage());
+            }
+        } else if (routeQuery.getPoints() != null) {
+            for (List<Double> point : routeQuery.getPoints()) {
+                if (point == null || point.size() != 2 || point.get(0) == null || point.get(1) == null) {
+                    throw new BadRequestException("points must be [latitude, longitude] pairs");
+                }
+                route.add(new double[]{point.get(0), point.get(1)});
+            }
+        }
+
+        if (route.size() < 2 || route.size() > MAX_ROUTE_POINTS) {
+            throw new BadRequestException("A route needs between 2 and " + MAX_ROUTE_POINTS + " points");
+        }
+        for (int i = 0; i < route.size(); i++) {
+            double[] point = route.get(i);
+            if (!(point[0] >= -90 && point[0] <= 90 && point[1] >= -180 && point[1] <= 180)) {
+                throw new BadRequestException("Invalid route point: " + point[0] + ", " + point[1]);
+            }
+            if (i > 0 && Math.abs(point[1] - route.get(i - 1)[1]) > 180) {
+                throw new BadRequestException("Routes crossing the antimeridian are not supported");
+            }
+        }
+        return route;
+    }
+
+    // "minLng,minLat,maxLng,maxLat" (west,south,east,north - same order as GeoJSON)
+    private double[] parseBbox(String bbox) {
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            throw new BadRequestException("bbox must be minLng,minLat,maxLng,maxLat");
+        }
+        double[] box = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                box[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("bbox must be minLng,minLat,maxLng,maxLat");
+        }
+        return box;
+    }
+
+    private boolean isSummary(String fields) {
+        return "summary".equalsIgnoreCase(fields);
+    }
+
+    // PinService::findNearbyPins / findNearbyPinSummaries with a deadline
+    @FunctionalInterface
+    private interface NearbyWithDeadline<T> {
+        NearbyResult<T> find(double latitude, double longitude, double radiusInMeters, Deadline deadline);
+    }
 
 }
\ No newline at end of file
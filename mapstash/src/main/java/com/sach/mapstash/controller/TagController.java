@@ -1,9 +1,17 @@
 package com.sach.mapstash.controller;
 
+import com.sach.mapstash.cache.ResponseBodyCache;
+import com.sach.mapstash.config.MessagePackHttpMessageConverter;
+import com.sach.mapstash.ratelimit.RateLimited;
 import com.sach.mapstash.service.PinService; // Still uses PinService as it has the tag logic
+import com.sach.mapstash.suggest.TagSuggestIndex;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -13,17 +21,48 @@ import java.util.List;
 public class TagController {
 
     private final PinService pinService; // service containing the method
+    private final ResponseBodyCache responseCache;
+    private final TagSuggestIndex suggestIndex; // in-memory tag names + pin counts for /suggest
 
-    public TagController(PinService pinService) {
+    public TagController(PinService pinService, ResponseBodyCache responseCache, TagSuggestIndex suggestIndex) {
         this.pinService = pinService;
+        this.responseCache = responseCache;
+        this.suggestIndex = suggestIndex;
     }
 
 
     //GET /api/tags - get a list of all unique tag names used across pins.
-    //return ResponseEntity with status 200 (OK) and a list of tag name strings
+    //return ResponseEntity with status 200 (OK) and a list of tag name strings (pre-serialized JSON, see ResponseBodyCache)
     @GetMapping
-    public ResponseEntity<List<String>> getAllTagNames() {
+    @RateLimited(cost = 2)
+    public ResponseEntity<byte[]> getAllTagNames(
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        ResponseBodyCache.CachedBody body = responseCache.get("tags", pinService::getAllTagNames);
+        return responseCache.toResponse(body, acceptEncoding, ifNoneMatch);
+    }
+
+
+    //GET /api/tags with Accept: application/cbor or msgpack
+    @GetMapping(produces = {MediaType.APPLICATION_CBOR_VALUE,
+            MessagePackHttpMessageConverter.APPLICATION_X_MSGPACK_VALUE,
+            MessagePackHttpMessageConverter.APPLICATION_MSGPACK_VALUE})
+    @RateLimited(cost = 2)
+    public ResponseEntity<List<String>> getAllTagNamesBinary() {
         List<String> tagNames = pinService.getAllTagNames();
         return ResponseEntity.ok(tagNames);
     }
-}
\ No newline at end of file
+
+
+    //GET /api/tags/suggest?prefix=caf&limit=10 - autocomplete for the tag input
+    //return the most used tags starting with the prefix (most pins first), straight from memory - no database
+    @GetMapping("/suggest")
+    @RateLimited(cost = 1)
+    public ResponseEntity<List<String>> suggestTags(
+            @RequestParam(name = "prefix", required = false) String prefix,
+            @RequestParam(name = "limit", defaultValue = "" + TagSuggestIndex.DEFAULT_LIMIT) int limit) {
+
+        return ResponseEntity.ok(suggestIndex.suggest(prefix, limit));
+    }
+}
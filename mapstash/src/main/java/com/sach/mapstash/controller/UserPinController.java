@@ -0,0 +1,131 @@
+package com.sach.mapstash.controller;
+
+import com.sach.mapstash.cache.ResponseBodyCache;
+import com.sach.mapstash.config.MessagePackHttpMessageConverter;
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.ratelimit.RateLimited;
+import com.sach.mapstash.exception.ResourceNotFoundException;
+import com.sach.mapstash.service.PinService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Same endpoints as PinController/TagController, scoped to one user's pins.
+// There are no accounts yet, so the user comes from the path - once auth exists
+// this should come from the authenticated principal instead.
+// Only the response cache is partitioned by user. The global in-memory structures (nearby cache,
+// heatmap, tag suggestions) cover every pin, so nothing here reads them - these go to the service.
+@RestController
+@RequestMapping("/api/users/{userId}")
+public class UserPinController {
+
+    private final PinService pinService;
+    private final ResponseBodyCache responseCache; // uses the user's own partition
+
+    public UserPinController(PinService pinService, ResponseBodyCache responseCache) {
+        this.pinService = pinService;
+        this.responseCache = responseCache;
+    }
+
+
+    //POST /api/users/{userId}/pins - create a pin owned by the user
+    @PostMapping("/pins")
+    public ResponseEntity<PinDto> createPin(@PathVariable Long userId, @RequestBody CreatePinDto createPinDto) {
+        PinDto createdPin = pinService.createPinForUser(userId, createPinDto);
+        return new ResponseEntity<>(createdPin, HttpStatus.CREATED);
+    }
+
+
+    //GET /api/users/{userId}/pins - all of the user's pins (?fields=summary supported)
+    @GetMapping("/pins")
+    @RateLimited(cost = 3) // one user's pins, through the user_id index
+    public ResponseEntity<byte[]> getAllPins(
+            @PathVariable Long userId,
+            @RequestParam(name = "fields", required = false) String fields,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        ResponseBodyCache.CachedBody body = isSummary(fields)
+                ? responseCache.getForUser(userId, "pins:summary", () -> pinService.getAllPinSummariesForUser(userId))
+                : responseCache.getForUser(userId, "pins:full", () -> pinService.getAllPinsForUser(userId));
+        return responseCache.toResponse(body, acceptEncoding, ifNoneMatch);
+    }
+
+
+    //GET /api/users/{userId}/pins with Accept: application/cbor or msgpack
+    @GetMapping(path = "/pins", produces = {MediaType.APPLICATION_CBOR_VALUE,
+            MessagePackHttpMessageConverter.APPLICATION_X_MSGPACK_VALUE,
+            MessagePackHttpMessageConverter.APPLICATION_MSGPACK_VALUE})
+    @RateLimited(cost = 3)
+    public ResponseEntity<List<?>> getAllPinsBinary(@PathVariable Long userId,
+                                                    @RequestParam(name = "fields", required = false) String fields) {
+        if (isSummary(fields)) {
+            return ResponseEntity.ok(pinService.getAllPinSummariesForUser(userId));
+        }
+        return ResponseEntity.ok(pinService.getAllPinsForUser(userId));
+    }
+
+
+    //GET /api/users/{userId}/pins/{id} - 404 if missing or owned by someone else
+    @GetMapping("/pins/{id}")
+    public ResponseEntity<PinDto> getPinById(@PathVariable Long userId, @PathVariable Long id) {
+        return pinService.getPinByIdForUser(userId, id)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResourceNotFoundException("Pin not found with id: " + id + " for user: " + userId));
+    }
+
+
+    //PUT /api/users/{userId}/pins/{id}
+    @PutMapping("/pins/{id}")
+    public ResponseEntity<PinDto> updatePin(@PathVariable Long userId, @PathVariable Long id,
+                                            @RequestBody UpdatePinDto updatePinDto) {
+        PinDto updatedPin = pinService.updatePinForUser(userId, id, updatePinDto);
+        return ResponseEntity.ok(updatedPin);
+    }
+
+
+    //DELETE /api/users/{userId}/pins/{id}
+    @DeleteMapping("/pins/{id}")
+    public ResponseEntity<Void> deletePin(@PathVariable Long userId, @PathVariable Long id) {
+        pinService.deletePinForUser(userId, id);
+        return ResponseEntity.noContent().build();
+    }
+
+
+    //GET /api/users/{userId}/pins/nearby - same params as /api/pins/nearby
+    @GetMapping("/pins/nearby")
+    @RateLimited(cost = 3)
+    public ResponseEntity<List<?>> findNearbyPins(
+            @PathVariable Long userId,
+            @RequestParam(name = "lat") double lat,
+            @RequestParam(name = "lng") double lng,
+            @RequestParam(name = "radius", defaultValue = "2000") double radius,
+            @RequestParam(name = "fields", required = false) String fields) {
+
+        if (isSummary(fields)) {
+            return ResponseEntity.ok(pinService.findNearbyPinSummariesForUser(userId, lat, lng, radius));
+        }
+        return ResponseEntity.ok(pinService.findNearbyPinsForUser(userId, lat, lng, radius));
+    }
+
+
+    //GET /api/users/{userId}/tags - tag names used on the user's pins
+    @GetMapping("/tags")
+    @RateLimited(cost = 2)
+    public ResponseEntity<List<String>> getAllTagNames(@PathVariable Long userId) {
+        return ResponseEntity.ok(pinService.getAllTagNamesForUser(userId));
+    }
+
+
+    // --- Helpers ---
+
+    private boolean isSummary(String fields) {
+        return "summary".equalsIgnoreCase(fields);
+    }
+}
@@ -0,0 +1,57 @@
+package com.sach.mapstash.dto;
+
+import java.util.Objects;
+
+//one cell of a heatmap: a geohash cell, its centre and how many pins are in it
+public class HeatmapCellDto {
+    private String geohash;
+    private Double latitude; // cell centre
+    private Double longitude;
+    private Integer count;
+
+    // --- Constructors ---
+    public HeatmapCellDto() {
+    }
+
+    public HeatmapCellDto(String geohash, Double latitude, Double longitude, Integer count) {
+        this.geohash = geohash;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.count = count;
+    }
+
+    // --- Getters and Setters ---
+    public String getGeohash() { return geohash; }
+    public void setGeohash(String geohash) { this.geohash = geohash; }
+    public Double getLatitude() { return latitude; }
+    public void setLatitude(Double latitude) { this.latitude = latitude; }
+    public Double getLongitude() { return longitude; }
+    public void setLongitude(Double longitude) { this.longitude = longitude; }
+    public Integer getCount() { return count; }
+    public void setCount(Integer count) { this.count = count; }
+
+    // --- equals() and hashCode() ---
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HeatmapCellDto that = (HeatmapCellDto) o;
+        return Objects.equals(geohash, that.geohash) && Objects.equals(latitude, that.latitude) && Objects.equals(longitude, that.longitude) && Objects.equals(count, that.count);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(geohash, latitude, longitude, count);
+    }
+
+    // --- toString() ---
+    @Override
+    public String toString() {
+        return "HeatmapCellDto{" +
+                "geohash='" + geohash + '\'' +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -0,0 +1,48 @@
+package com.sach.mapstash.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+//response of GET /api/pins/heatmap - only non-empty cells are listed
+public class HeatmapDto {
+    private Integer resolution; // geohash precision of the cells (picked from the bbox if the client didn't ask)
+    private List<HeatmapCellDto> cells;
+
+    // --- Constructors ---
+    public HeatmapDto() {
+    }
+
+    public HeatmapDto(Integer resolution, List<HeatmapCellDto> cells) {
+        this.resolution = resolution;
+        this.cells = cells;
+    }
+
+    // --- Getters and Setters ---
+    public Integer getResolution() { return resolution; }
+    public void setResolution(Integer resolution) { this.resolution = resolution; }
+    public List<HeatmapCellDto> getCells() { return cells; }
+    public void setCells(List<HeatmapCellDto> cells) { this.cells = cells; }
+
+    // --- equals() and hashCode() ---
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HeatmapDto that = (HeatmapDto) o;
+        return Objects.equals(resolution, that.resolution) && Objects.equals(cells, that.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(resolution, cells);
+    }
+
+    // --- toString() ---
+    @Override
+    public String toString() {
+        return "HeatmapDto{" +
+                "resolution=" + resolution +
+                ", cells=" + cells +
+                '}';
+    }
+}
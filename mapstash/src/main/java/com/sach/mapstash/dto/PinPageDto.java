@@ -0,0 +1,48 @@
+package com.sach.mapstash.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+//one page of a GET /api/pins time-window listing (PinDtos, or PinSummaryDtos with ?fields=summary)
+public class PinPageDto<T> {
+    private List<T> items;
+    private String nextCursor; // pass as ?cursor= with the same parameters for the next page, null = no more pages
+
+    // --- Constructors ---
+    public PinPageDto() {
+    }
+
+    public PinPageDto(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // --- Getters and Setters ---
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    // --- equals() and hashCode() ---
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PinPageDto<?> that = (PinPageDto<?>) o;
+        return Objects.equals(items, that.items) && Objects.equals(nextCursor, that.nextCursor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(items, nextCursor);
+    }
+
+    // --- toString() ---
+    @Override
+    public String toString() {
+        return "PinPageDto{" +
+                "items=" + items +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,64 @@
+package com.sach.mapstash.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+//narrow pin data sent to the map - no notes, no timestamps
+//notes are a TEXT column so they only get loaded through getPinById
+public class PinSummaryDto {
+    private Long id;
+    private String title;
+    private Double latitude;
+    private Double longitude;
+    private List<String> tags; // tag names only, sorted like PinDto tags
+
+    // --- Constructors ---
+    public PinSummaryDto() {
+    }
+
+    public PinSummaryDto(Long id, String title, Double latitude, Double longitude, List<String> tags) {
+        this.id = id;
+        this.title = title;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.tags = tags;
+    }
+
+    // --- Getters and Setters ---
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+    public Double getLatitude() { return latitude; }
+    public void setLatitude(Double latitude) { this.latitude = latitude; }
+    public Double getLongitude() { return longitude; }
+    public void setLongitude(Double longitude) { this.longitude = longitude; }
+    public List<String> getTags() { return tags; }
+    public void setTags(List<String> tags) { this.tags = tags; }
+
+    // --- equals() and hashCode() ---
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PinSummaryDto that = (PinSummaryDto) o;
+        return Objects.equals(id, that.id) && Objects.equals(title, that.title) && Objects.equals(latitude, that.latitude) && Objects.equals(longitude, that.longitude) && Objects.equals(tags, that.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, latitude, longitude, tags);
+    }
+
+    // --- toString() ---
+    @Override
+    public String toString() {
+        return "PinSummaryDto{" +
+                "id=" + id +
+                ", title='" + title + '\'' +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", tags=" + tags +
+                '}';
+    }
+}
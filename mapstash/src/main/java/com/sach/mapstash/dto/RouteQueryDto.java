@@ -0,0 +1,59 @@
+package com.sach.mapstash.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+// DTO for POST /api/pins/along-route - the route comes either as an encoded polyline
+// (what Google Maps / OSRM directions return) or as plain [latitude, longitude] pairs
+public class RouteQueryDto {
+    private String polyline;
+    private Integer precision; // polyline precision, 5 if not given (6 for OSRM/Valhalla "polyline6")
+    private List<List<Double>> points; // used when there's no polyline
+    private Double buffer; // max distance from the route in meters
+
+    // --- Constructors ---
+    public RouteQueryDto() {
+    }
+
+    public RouteQueryDto(String polyline, Integer precision, List<List<Double>> points, Double buffer) {
+        this.polyline = polyline;
+        this.precision = precision;
+        this.points = points;
+        this.buffer = buffer;
+    }
+
+    // --- Getters and Setters ---
+    public String getPolyline() { return polyline; }
+    public void setPolyline(String polyline) { this.polyline = polyline; }
+    public Integer getPrecision() { return precision; }
+    public void setPrecision(Integer precision) { this.precision = precision; }
+    public List<List<Double>> getPoints() { return points; }
+    public void setPoints(List<List<Double>> points) { this.points = points; }
+    public Double getBuffer() { return buffer; }
+    public void setBuffer(Double buffer) { this.buffer = buffer; }
+
+    // --- equals() and hashCode() ---
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RouteQueryDto that = (RouteQueryDto) o;
+        return Objects.equals(polyline, that.polyline) && Objects.equals(precision, that.precision) && Objects.equals(points, that.points) && Objects.equals(buffer, that.buffer);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(polyline, precision, points, buffer);
+    }
+
+    // --- toString() ---
+    @Override
+    public String toString() {
+        return "RouteQueryDto{" +
+                "polyline='" + polyline + '\'' +
+                ", precision=" + precision +
+                ", points=" + points +
+                ", buffer=" + buffer +
+                '}';
+    }
+}
@@ -1,5 +1,7 @@
 package com.sach.mapstash.dto;
 
+import java.util.Objects;
+
 public class TagDto {
     private Long id; // Or integer, matching Tag entity ID type
     private String name;
@@ -18,6 +20,25 @@ public class TagDto {
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
 
-    // Optional: equals() and hashCode()
-    //cba
+    // equals() and hashCode() - PinDto.equals compares its tag lists, so these are needed
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TagDto tagDto = (TagDto) o;
+        return Objects.equals(id, tagDto.id) && Objects.equals(name, tagDto.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name);
+    }
+
+    @Override
+    public String toString() {
+        return "TagDto{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                '}';
+    }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.sach.mapstash.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+// query parameters of the GET /api/pins time-window listing, bound from the query string
+// (times are ISO local date-times, like createdAt/updatedAt in PinDto)
+public class TimeWindowQueryDto {
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdAfter; // inclusive
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdBefore; // exclusive
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime updatedAfter; // inclusive
+    private Double lat; // lat + lng (+ radius, default 2km) = only pins nearby, like /api/pins/nearby
+    private Double lng;
+    private Double radius;
+    private String cursor; // nextCursor of the previous page
+    private Integer limit; // page size
+
+    // --- Constructors ---
+    public TimeWindowQueryDto() {
+    }
+
+    // --- Getters and Setters ---
+    public LocalDateTime getCreatedAfter() { return createdAfter; }
+    public void setCreatedAfter(LocalDateTime createdAfter) { this.createdAfter = createdAfter; }
+    public LocalDateTime getCreatedBefore() { return createdBefore; }
+    public void setCreatedBefore(LocalDateTime createdBefore) { this.createdBefore = createdBefore; }
+    public LocalDateTime getUpdatedAfter() { return updatedAfter; }
+    public void setUpdatedAfter(LocalDateTime updatedAfter) { this.updatedAfter = updatedAfter; }
+    public Double getLat() { return lat; }
+    public void setLat(Double lat) { this.lat = lat; }
+    public Double getLng() { return lng; }
+    public void setLng(Double lng) { this.lng = lng; }
+    public Double getRadius() { return radius; }
+    public void setRadius(Double radius) { this.radius = radius; }
+    public String getCursor() { return cursor; }
+    public void setCursor(String cursor) { this.cursor = cursor; }
+    public Integer getLimit() { return limit; }
+    public void setLimit(Integer limit) { this.limit = limit; }
+
+    // any of the parameters switches GET /api/pins from the full list to the paged listing
+    public boolean isPresent() {
+        return createdAfter != null || createdBefore != null || updatedAfter != null
+                || lat != null || lng != null || radius != null || cursor != null || limit != null;
+    }
+
+    // --- equals() and hashCode() ---
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TimeWindowQueryDto that = (TimeWindowQueryDto) o;
+        return Objects.equals(createdAfter, that.createdAfter) && Objects.equals(createdBefore, that.createdBefore)
+                && Objects.equals(updatedAfter, that.updatedAfter) && Objects.equals(lat, that.lat)
+                && Objects.equals(lng, that.lng) && Objects.equals(radius, that.radius)
+                && Objects.equals(cursor, that.cursor) && Objects.equals(limit, that.limit);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(createdAfter, createdBefore, updatedAfter, lat, lng, radius, cursor, limit);
+    }
+
+    // --- toString() ---
+    @Override
+    public String toString() {
+        return "TimeWindowQueryDto{" +
+                "createdAfter=" + createdAfter +
+                ", createdBefore=" + createdBefore +
+                ", updatedAfter=" + updatedAfter +
+                ", lat=" + lat +
+                ", lng=" + lng +
+                ", radius=" + radius +
+                ", cursor='" + cursor + '\'' +
+                ", limit=" + limit +
+                '}';
+    }
+}
@@ -0,0 +1,131 @@
+package com.sach.mapstash.event;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Published by the pin service whenever a pin is created, updated or deleted.
+ * Listeners that keep derived state (caches, indexes) should use
+ * {@code @TransactionalEventListener} so they only react once the write has committed.
+ * <p>
+ * Carries the pin's position before and after the change (null for "before" on a create
+ * and "after" on a delete), so spatial indexes can move it without reloading the pin.
+ * Likewise the tag names that were added to and removed from the pin, for tag usage counts.
+ * <p>
+ * Each event gets a sequence number when it's created, which the engines do inside the write
+ * (under the pin's row or write lock), so of two changes to the same pin the later one has the
+ * higher number - even if its listeners happen to run first. The numbers grow across restarts
+ * too (they start from the clock), but they aren't contiguous: rolled back writes use them up.
+ */
+public class PinChangeEvent {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    // last sequence handed out, in microseconds since the epoch or just ahead of that under load
+    private static final AtomicLong lastSequence = new AtomicLong();
+
+    private final long sequence;
+    private final Type type;
+    private final Long pinId;
+    private final Long userId; // owner of the pin, null for shared pins
+    private final Double oldLatitude;
+    private final Double oldLongitude;
+    private final Double newLatitude;
+    private final Double newLongitude;
+    private final List<String> addedTagNames;
+    private final List<String> removedTagNames;
+
+    public PinChangeEvent(Type type, Long pinId, Long userId,
+                          Double oldLatitude, Double oldLongitude, Double newLatitude, Double newLongitude,
+                          Collection<String> addedTagNames, Collection<String> removedTagNames) {
+        this(nextSequence(), type, pinId, userId, oldLatitude, oldLongitude, newLatitude, newLongitude,
+                addedTagNames, removedTagNames);
+    }
+
+    /**
+     * An event with a sequence number assigned earlier, e.g. one read back from a log.
+     */
+    public PinChangeEvent(long sequence, Type type, Long pinId, Long userId,
+                          Double oldLatitude, Double oldLongitude, Double newLatitude, Double newLongitude,
+                          Collection<String> addedTagNames, Collection<String> removedTagNames) {
+        this.sequence = sequence;
+        this.type = type;
+        this.pinId = pinId;
+        this.userId = userId;
+        this.oldLatitude = oldLatitude;
+        this.oldLongitude = oldLongitude;
+        this.newLatitude = newLatitude;
+        this.newLongitude = newLongitude;
+        this.addedTagNames = List.copyOf(addedTagNames);
+        this.removedTagNames = List.copyOf(removedTagNames);
+    }
+
+    /**
+     * @param tagNames the new pin's tags
+     */
+    public static PinChangeEvent created(Long pinId, Long userId, Double latitude, Double longitude,
+                                         Collection<String> tagNames) {
+        return new PinChangeEvent(Type.CREATED, pinId, userId, null, null, latitude, longitude, tagNames, List.of());
+    }
+
+    /**
+     * @param addedTagNames tags the pin didn't have before
+     * @param removedTagNames tags the pin no longer has
+     */
+    public static PinChangeEvent updated(Long pinId, Long userId, Double oldLatitude, Double oldLongitude,
+                                         Double newLatitude, Double newLongitude,
+                                         Collection<String> addedTagNames, Collection<String> removedTagNames) {
+        return new PinChangeEvent(Type.UPDATED, pinId, userId, oldLatitude, oldLongitude, newLatitude, newLongitude,
+                addedTagNames, removedTagNames);
+    }
+
+    /**
+     * @param tagNames the deleted pin's tags
+     */
+    public static PinChangeEvent deleted(Long pinId, Long userId, Double latitude, Double longitude,
+                                         Collection<String> tagNames) {
+        return new PinChangeEvent(Type.DELETED, pinId, userId, latitude, longitude, null, null, List.of(), tagNames);
+    }
+
+    public long getSequence() { return sequence; }
+    public Type getType() { return type; }
+    public Long getPinId() { return pinId; }
+    public Long getUserId() { return userId; }
+    public Double getOldLatitude() { return oldLatitude; }
+    public Double getOldLongitude() { return oldLongitude; }
+    public Double getNewLatitude() { return newLatitude; }
+    public Double getNewLongitude() { return newLongitude; }
+    public List<String> getAddedTagNames() { return addedTagNames; }
+    public List<String> getRemovedTagNames() { return removedTagNames; }
+
+    // true if the pin had a position before the change
+    public boolean hasOldLocation() {
+        return oldLatitude != null && oldLongitude != null;
+    }
+
+    // true if the pin has a position after the change
+    public boolean hasNewLocation() {
+        return newLatitude != null && newLongitude != null;
+    }
+
+    // strictly increasing, and past anything handed out before a restart unless the clock went back
+    private static long nextSequence() {
+        long now = System.currentTimeMillis() * 1000;
+        return lastSequence.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    @Override
+    public String toString() {
+        return "PinChangeEvent{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", pinId=" + pinId +
+                ", userId=" + userId +
+                ", old=" + oldLatitude + "," + oldLongitude +
+                ", new=" + newLatitude + "," + newLongitude +
+                ", addedTags=" + addedTagNames +
+                ", removedTags=" + removedTagNames +
+                '}';
+    }
+}
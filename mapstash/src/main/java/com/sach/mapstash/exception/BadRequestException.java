@@ -0,0 +1,18 @@
+package com.sach.mapstash.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when request parameters are present but invalid (e.g. a malformed bbox).
+ * Annotated with @ResponseStatus(HttpStatus.BAD_REQUEST) so Spring MVC answers with a 400.
+ */
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class BadRequestException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
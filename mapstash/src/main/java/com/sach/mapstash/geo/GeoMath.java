@@ -0,0 +1,53 @@
+package com.sach.mapstash.geo;
+
+/**
+ * Distance and bounding-box helpers shared by every PinService implementation,
+ * so they all agree on what "within radius" means.
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_METERS = 6371 * 1000; // Approx Earth radius in meters
+
+    private GeoMath() {
+    }
+
+    /**
+     * Calculates the distance between two points on Earth using the Haversine formula.
+     * @return distance in meters
+     */
+    public static double haversineDistance(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return EARTH_RADIUS_METERS * c;
+    }
+
+    /**
+     * Returns {minLat, maxLat, minLng, maxLng} enclosing the circle. Falls back to the full
+     * longitude range near the poles or when the box would cross the antimeridian.
+     */
+    public static double[] boundingBox(double latitude, double longitude, double radiusInMeters) {
+        double latDelta = Math.toDegrees(radiusInMeters / EARTH_RADIUS_METERS);
+        double minLat = Math.max(-90, latitude - latDelta);
+        double maxLat = Math.min(90, latitude + latDelta);
+
+        double minLng = -180;
+        double maxLng = 180;
+        double sinLngDelta = Math.sin(radiusInMeters / EARTH_RADIUS_METERS) / Math.cos(Math.toRadians(latitude));
+        if (minLat > -90 && maxLat < 90 && sinLngDelta < 1) {
+            double lngDelta = Math.toDegrees(Math.asin(sinLngDelta));
+            if (longitude - lngDelta >= -180 && longitude + lngDelta <= 180) {
+                minLng = longitude - lngDelta;
+                maxLng = longitude + lngDelta;
+            }
+        }
+
+        return new double[]{minLat, maxLat, minLng, maxLng};
+    }
+}
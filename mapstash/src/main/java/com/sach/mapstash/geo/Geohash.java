@@ -0,0 +1,147 @@
+package com.sach.mapstash.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal geohash support, working on the interleaved bits as a long instead of the
+ * base32 string (precision = number of base32 characters, 5 bits each, max 12).
+ * <p>
+ * Bits alternate longitude/latitude starting with longitude, same as standard geohash,
+ * so {@link #toBase32(long, int)} gives the usual string form.
+ */
+public final class Geohash {
+
+    public static final int MAX_PRECISION = 12;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private Geohash() {
+    }
+
+    /**
+     * @return the cell containing the point, as 5 * precision interleaved bits
+     */
+    public static long encode(double latitude, double longitude, int precision) {
+        checkPrecision(precision);
+        long latIndex = index(latitude, -90, 180, latBits(precision));
+        long lngIndex = index(longitude, -180, 360, lngBits(precision));
+        return interleave(latIndex, lngIndex, precision);
+    }
+
+    public static String encodeToString(double latitude, double longitude, int precision) {
+        return toBase32(encode(latitude, longitude, precision), precision);
+    }
+
+    public static String toBase32(long hash, int precision) {
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (hash & 31)];
+            hash >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return the cell's {minLat, maxLat, minLng, maxLng}
+     */
+    public static double[] bounds(long hash, int precision) {
+        checkPrecision(precision);
+        long latIndex = 0;
+        long lngIndex = 0;
+        int totalBits = precision * 5;
+        for (int i = 0; i < totalBits; i++) {
+            long bit = (hash >>> (totalBits - 1 - i)) & 1;
+            if (i % 2 == 0) {
+                lngIndex = (lngIndex << 1) | bit;
+            } else {
+                latIndex = (latIndex << 1) | bit;
+            }
+        }
+        double latHeight = cellHeight(precision);
+        double lngWidth = cellWidth(precision);
+        double minLat = -90 + latIndex * latHeight;
+        double minLng = -180 + lngIndex * lngWidth;
+        return new double[]{minLat, minLat + latHeight, minLng, minLng + lngWidth};
+    }
+
+    /** Height of a cell in degrees of latitude. */
+    public static double cellHeight(int precision) {
+        return 180.0 / (1L << latBits(precision));
+    }
+
+    /** Width of a cell in degrees of longitude. */
+    public static double cellWidth(int precision) {
+        return 360.0 / (1L << lngBits(precision));
+    }
+
+    /**
+     * Number of cells {@link #coveringCells} would return, without building them.
+     */
+    public static long countCoveringCells(double minLat, double maxLat, double minLng, double maxLng, int precision) {
+        checkPrecision(precision);
+        long latCount = index(maxLat, -90, 180, latBits(precision)) - index(minLat, -90, 180, latBits(precision)) + 1;
+        long lngCount = index(maxLng, -180, 360, lngBits(precision)) - index(minLng, -180, 360, lngBits(precision)) + 1;
+        return latCount * lngCount;
+    }
+
+    /**
+     * All cells at the given precision that overlap the box. Check
+     * {@link #countCoveringCells} first - a big box at a fine precision is a lot of cells.
+     */
+    public static List<Long> coveringCells(double minLat, double maxLat, double minLng, double maxLng, int precision) {
+        checkPrecision(precision);
+        long minLatIndex = index(minLat, -90, 180, latBits(precision));
+        long maxLatIndex = index(maxLat, -90, 180, latBits(precision));
+        long minLngIndex = index(minLng, -180, 360, lngBits(precision));
+        long maxLngIndex = index(maxLng, -180, 360, lngBits(precision));
+
+        List<Long> cells = new ArrayList<>();
+        for (long latIndex = minLatIndex; latIndex <= maxLatIndex; latIndex++) {
+            for (long lngIndex = minLngIndex; lngIndex <= maxLngIndex; lngIndex++) {
+                cells.add(interleave(latIndex, lngIndex, precision));
+            }
+        }
+        return cells;
+    }
+
+    // --- Helpers ---
+
+    private static int latBits(int precision) {
+        return precision * 5 / 2;
+    }
+
+    private static int lngBits(int precision) {
+        return (precision * 5 + 1) / 2;
+    }
+
+    // position of the value on a grid of 2^bits cells over [min, min + range], clamped to the grid
+    private static long index(double value, double min, double range, int bits) {
+        long cells = 1L << bits;
+        long index = (long) Math.floor((value - min) / range * cells);
+        return Math.max(0, Math.min(cells - 1, index));
+    }
+
+    private static long interleave(long latIndex, long lngIndex, int precision) {
+        int totalBits = precision * 5;
+        int latBit = latBits(precision) - 1;
+        int lngBit = lngBits(precision) - 1;
+        long hash = 0;
+        for (int i = 0; i < totalBits; i++) {
+            long bit;
+            if (i % 2 == 0) {
+                bit = (lngIndex >>> lngBit--) & 1;
+            } else {
+                bit = (latIndex >>> latBit--) & 1;
+            }
+            hash = (hash << 1) | bit;
+        }
+        return hash;
+    }
+
+    private static void checkPrecision(int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and " + MAX_PRECISION + ": " + precision);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.sach.mapstash.geo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A GeoJSON Polygon or MultiPolygon prepared for fast point-in-polygon tests.
+ * <p>
+ * Each polygon's edges (outer ring and holes) are put into horizontal latitude bands. A
+ * containment test only ray-casts against the edges in the point's band (even-odd rule,
+ * so holes work), not against every vertex. Candidates come from one bounding-box query
+ * per polygon ({@link #getSearchBoxes()}), see {@link #select}.
+ * <p>
+ * Coordinates are planar lng/lat as in GeoJSON: polygons crossing the antimeridian must be split.
+ */
+public final class PolygonIndex {
+
+    public static final int MAX_VERTICES = 100_000;
+
+    // a MultiPolygon with more parts than this is searched with one box around all of them
+    private static final int MAX_SEARCH_BOXES = 64;
+
+    // bounds the band lists to a few ints per edge, however the edges are shaped
+    static final int MAX_BAND_ENTRIES_PER_EDGE = 8;
+
+    private final List<Polygon> polygons = new ArrayList<>();
+    private final List<double[]> searchBoxes = new ArrayList<>();
+    private final int vertexCount;
+
+    private PolygonIndex(List<List<double[][]>> rawPolygons) {
+        int vertices = 0;
+        for (List<double[][]> rings : rawPolygons) {
+            Polygon polygon = new Polygon(rings);
+            polygons.add(polygon);
+            vertices += polygon.edgeCount;
+        }
+        this.vertexCount = vertices;
+
+        if (polygons.size() <= MAX_SEARCH_BOXES) {
+            for (Polygon polygon : polygons) {
+                searchBoxes.add(new double[]{polygon.minLat, polygon.maxLat, polygon.minLng, polygon.maxLng});
+            }
+        } else {
+            double[] all = {90, -90, 180, -180};
+            for (Polygon polygon : polygons) {
+                all[0] = Math.min(all[0], polygon.minLat);
+                all[1] = Math.max(all[1], polygon.maxLat);
+                all[2] = Math.min(all[2], polygon.minLng);
+                all[3] = Math.max(all[3], polygon.maxLng);
+            }
+            searchBoxes.add(all);
+        }
+    }
+
+    /**
+     * Builds the index from a GeoJSON Polygon or MultiPolygon geometry (or a Feature holding one).
+     * @throws IllegalArgumentException if the GeoJSON isn't a valid polygon
+     */
+    public static PolygonIndex fromGeoJson(JsonNode geoJson) {
+        JsonNode geometry = geometryOf(geoJson);
+        String type = geometry.path("type").asText();
+        JsonNode coordinates = geometry.path("coordinates");
+
+        List<List<double[][]>> rawPolygons = new ArrayList<>();
+        int[] vertices = {0};
+        if ("Polygon".equals(type)) {
+            rawPolygons.add(parseRings(coordinates, vertices));
+        } else if ("MultiPolygon".equals(type)) {
+            if (!coordinates.isArray() || coordinates.isEmpty()) {
+                throw new IllegalArgumentException("MultiPolygon needs at least one polygon");
+            }
+            for (JsonNode polygon : coordinates) {
+                rawPolygons.add(parseRings(polygon, vertices));
+            }
+        } else {
+            throw new IllegalArgumentException("Expected a Polygon or MultiPolygon, got: " + (type.isEmpty() ? "nothing" : type));
+        }
+        return new PolygonIndex(rawPolygons);
+    }
+
+    /**
+     * Key identifying the geometry (type plus every coordinate), without building anything.
+     * Two requests for the same shape get the same key regardless of JSON formatting.
+     */
+    public static String geoJsonKey(JsonNode geoJson) {
+        JsonNode geometry = geometryOf(geoJson);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(geometry.path("type").asText().getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES);
+            digestCoordinates(geometry.path("coordinates"), digest, buffer);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public List<double[]> getSearchBoxes() {
+        return searchBoxes;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    // (band, edge) entries across all polygons - bounded by MAX_BAND_ENTRIES_PER_EDGE times the edges
+    long getBandEntryCount() {
+        long entries = 0;
+        for (Polygon polygon : polygons) {
+            entries += polygon.bandEntryCount();
+        }
+        return entries;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        for (Polygon polygon : polygons) {
+            if (polygon.contains(latitude, longitude)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the bounding-box query for every search box and keeps the candidates inside the
+     * polygon(s), without duplicates, ordered by id.
+     */
+    public <T> List<T> select(Function<double[], List<T>> boundingBoxQuery, Function<T, Long> id,
+                              ToDoubleFunction<T> latitude, ToDoubleFunction<T> longitude) {
+        Map<Long, T> inside = new TreeMap<>();
+        for (double[] box : searchBoxes) {
+            for (T candidate : boundingBoxQuery.apply(box)) {
+                Long key = id.apply(candidate);
+                if (!inside.containsKey(key) && contains(latitude.applyAsDouble(candidate), longitude.applyAsDouble(candidate))) {
+                    inside.put(key, candidate);
+                }
+            }
+        }
+        return new ArrayList<>(inside.values());
+    }
+
+    // --- Helpers ---
+
+    private static JsonNode geometryOf(JsonNode geoJson) {
+        if (geoJson == null || !geoJson.isObject()) {
+            throw new IllegalArgumentException("Expected a GeoJSON object");
+        }
+        return "Feature".equals(geoJson.path("type").asText()) ? geoJson.path("geometry") : geoJson;
+    }
+
+    // rings of one polygon as {lngs, lats} arrays, implicitly closed
+    private static List<double[][]> parseRings(JsonNode rings, int[] vertices) {
+        if (!rings.isArray() || rings.isEmpty()) {
+            throw new IllegalArgumentException("A polygon needs at least one ring");
+        }
+        List<double[][]> parsed = new ArrayList<>();
+        for (JsonNode ring : rings) {
+            if (!ring.isArray() || ring.size() < 3) {
+                throw new IllegalArgumentException("A ring needs at least 3 positions");
+            }
+            vertices[0] += ring.size();
+            if (vertices[0] > MAX_VERTICES) {
+                throw new IllegalArgumentException("Too many vertices, the limit is " + MAX_VERTICES);
+            }
+
+            double[] lngs = new double[ring.size()];
+            double[] lats = new double[ring.size()];
+            for (int i = 0; i < ring.size(); i++) {
+                JsonNode position = ring.get(i);
+                if (!position.isArray() || position.size() < 2 || !position.get(0).isNumber() || !position.get(1).isNumber()) {
+                    throw new IllegalArgumentException("Positions must be [longitude, latitude]");
+                }
+                lngs[i] = position.get(0).asDouble();
+                lats[i] = position.get(1).asDouble();
+                if (lngs[i] < -180 || lngs[i] > 180 || lats[i] < -90 || lats[i] > 90) {
+                    throw new IllegalArgumentException("Position out of range: [" + lngs[i] + ", " + lats[i] + "]");
+                }
+            }
+            parsed.add(new double[][]{lngs, lats});
+        }
+        return parsed;
+    }
+
+    private static void digestCoordinates(JsonNode node, MessageDigest digest, ByteBuffer buffer) {
+        if (node.isArray()) {
+            digest.update((byte) '[');
+            for (JsonNode child : node) {
+                digestCoordinates(child, digest, buffer);
+            }
+            digest.update((byte) ']');
+        } else if (node.isNumber()) {
+            buffer.clear();
+            buffer.putDouble(node.asDouble());
+            digest.update(buffer.array());
+        } else {
+            digest.update((byte) '?');
+        }
+    }
+
+    private static final class Polygon {
+        private final double minLat;
+        private final double maxLat;
+        private final double minLng;
+        private final double maxLng;
+        private final int edgeCount;
+
+        // every non-horizontal edge once, as {lng1, lat1, lng2, lat2} at edge * 4
+        private final double[] edges;
+
+        // the indexes of the edges overlapping band b are bandEdges[bandStart[b] .. bandStart[b + 1])
+        private final double bandHeight;
+        private final int[] bandStart;
+        private final int[] bandEdges;
+
+        private Polygon(List<double[][]> rings) {
+            double minLat = 90, maxLat = -90, minLng = 180, maxLng = -180;
+            int edges = 0;
+            for (double[][] ring : rings) {
+                for (int i = 0; i < ring[0].length; i++) {
+                    minLng = Math.min(minLng, ring[0][i]);
+                    maxLng = Math.max(maxLng, ring[0][i]);
+                    minLat = Math.min(minLat, ring[1][i]);
+                    maxLat = Math.max(maxLat, ring[1][i]);
+                }
+                edges += ring[0].length;
+            }
+            this.minLat = minLat;
+            this.maxLat = maxLat;
+            this.minLng = minLng;
+            this.maxLng = maxLng;
+            this.edgeCount = edges;
+
+            double[] flat = new double[edges * 4];
+            int stored = 0;
+            for (double[][] ring : rings) {
+                double[] lngs = ring[0];
+                double[] lats = ring[1];
+                for (int i = 0; i < lngs.length; i++) {
+                    int next = (i + 1) % lngs.length; // closes the ring whether or not the last position repeats the first
+                    if (lats[i] == lats[next]) {
+                        continue; // horizontal edges never cross a horizontal ray
+                    }
+                    flat[stored * 4] = lngs[i];
+                    flat[stored * 4 + 1] = lats[i];
+                    flat[stored * 4 + 2] = lngs[next];
+                    flat[stored * 4 + 3] = lats[next];
+                    stored++;
+                }
+            }
+            this.edges = Arrays.copyOf(flat, stored * 4);
+
+            // ~ sqrt(edges) bands keeps both the band count and the edges per band small - as long as edges
+            // are short. Tall ones (a zig-zag spanning the whole polygon) are listed in every band they cross,
+            // so use fewer bands until that stays under MAX_BAND_ENTRIES_PER_EDGE per edge. One band is a plain scan.
+            int bandCount = Math.max(1, Math.min(4096, (int) Math.sqrt(edges) * 2));
+            long maxEntries = (long) MAX_BAND_ENTRIES_PER_EDGE * Math.max(stored, 1);
+            while (bandCount > 1 && bandEntries(bandCount) > maxEntries) {
+                bandCount /= 2;
+            }
+            this.bandHeight = Math.max((maxLat - minLat) / bandCount, 1e-12);
+
+            // counting pass, then fill: one int per (band, edge), no copies of the coordinates
+            this.bandStart = new int[bandCount + 1];
+            for (int edge = 0; edge < stored; edge++) {
+                for (int b = lowBand(edge, bandCount); b <= highBand(edge, bandCount); b++) {
+                    bandStart[b + 1]++;
+                }
+            }
+            for (int b = 0; b < bandCount; b++) {
+                bandStart[b + 1] += bandStart[b];
+            }
+            this.bandEdges = new int[bandStart[bandCount]];
+            int[] filled = Arrays.copyOf(bandStart, bandCount);
+            for (int edge = 0; edge < stored; edge++) {
+                for (int b = lowBand(edge, bandCount); b <= highBand(edge, bandCount); b++) {
+                    bandEdges[filled[b]++] = edge;
+                }
+            }
+        }
+
+        private boolean contains(double latitude, double longitude) {
+            if (latitude < minLat || latitude > maxLat || longitude < minLng || longitude > maxLng) {
+                return false;
+            }
+
+            // cast a ray east from the point, count the edges it crosses
+            int band = band(latitude, bandStart.length - 1);
+            boolean inside = false;
+            for (int i = bandStart[band]; i < bandStart[band + 1]; i++) {
+                int e = bandEdges[i] * 4;
+                double lng1 = edges[e], lat1 = edges[e + 1], lng2 = edges[e + 2], lat2 = edges[e + 3];
+                if ((lat1 > latitude) != (lat2 > latitude)) {
+                    double crossingLng = lng1 + (latitude - lat1) / (lat2 - lat1) * (lng2 - lng1);
+                    if (longitude < crossingLng) {
+                        inside = !inside;
+                    }
+                }
+            }
+            return inside;
+        }
+
+        // (band, edge) pairs the index would hold with this many bands
+        private long bandEntries(int bandCount) {
+            double height = Math.max((maxLat - minLat) / bandCount, 1e-12);
+            long entries = 0;
+            for (int e = 0; e < edges.length; e += 4) {
+                entries += band(Math.max(edges[e + 1], edges[e + 3]), bandCount, height)
+                        - band(Math.min(edges[e + 1], edges[e + 3]), bandCount, height) + 1;
+            }
+            return entries;
+        }
+
+        private int lowBand(int edge, int bandCount) {
+            return band(Math.min(edges[edge * 4 + 1], edges[edge * 4 + 3]), bandCount);
+        }
+
+        private int highBand(int edge, int bandCount) {
+            return band(Math.max(edges[edge * 4 + 1], edges[edge * 4 + 3]), bandCount);
+        }
+
+        private int band(double latitude, int bandCount) {
+            return band(latitude, bandCount, bandHeight);
+        }
+
+        private int band(double latitude, int bandCount, double height) {
+            int band = (int) ((latitude - minLat) / height);
+            return Math.max(0, Math.min(bandCount - 1, band));
+        }
+
+        private int bandEntryCount() {
+            return bandEdges.length;
+        }
+    }
+}
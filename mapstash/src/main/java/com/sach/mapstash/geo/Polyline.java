@@ -0,0 +1,60 @@
+package com.sach.mapstash.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoder for the Encoded Polyline Algorithm Format (Google Maps / OSRM / Mapbox routes).
+ */
+public final class Polyline {
+
+    public static final int DEFAULT_PRECISION = 5; // Google; OSRM/Valhalla can also use 6
+
+    private Polyline() {
+    }
+
+    /**
+     * @param encoded the encoded polyline
+     * @param precision number of decimal digits the coordinates were encoded with
+     * @return the points as {latitude, longitude}
+     * @throws IllegalArgumentException if the string isn't a valid polyline
+     */
+    public static List<double[]> decode(String encoded, int precision) {
+        if (precision < 1 || precision > 7) {
+            throw new IllegalArgumentException("Polyline precision must be between 1 and 7: " + precision);
+        }
+        double factor = Math.pow(10, precision);
+
+        List<double[]> points = new ArrayList<>();
+        int[] index = {0};
+        long latitude = 0;
+        long longitude = 0;
+        while (index[0] < encoded.length()) {
+            latitude += nextValue(encoded, index);
+            longitude += nextValue(encoded, index);
+            points.add(new double[]{latitude / factor, longitude / factor});
+        }
+        return points;
+    }
+
+    // --- Helpers ---
+
+    // one zig-zag encoded varint, 5 bits per character
+    private static long nextValue(String encoded, int[] index) {
+        long result = 0;
+        int shift = 0;
+        int chunk;
+        do {
+            if (index[0] >= encoded.length() || shift > 60) {
+                throw new IllegalArgumentException("Truncated or malformed polyline");
+            }
+            chunk = encoded.charAt(index[0]++) - 63;
+            if (chunk < 0 || chunk > 63) {
+                throw new IllegalArgumentException("Invalid polyline character at " + (index[0] - 1));
+            }
+            result |= (long) (chunk & 0x1f) << shift;
+            shift += 5;
+        } while (chunk >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+    }
+}
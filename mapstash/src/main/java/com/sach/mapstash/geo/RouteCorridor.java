@@ -0,0 +1,253 @@
+package com.sach.mapstash.geo;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The area within a buffer distance of a route (polyline), for "pins along my route".
+ * <p>
+ * Finding the pins takes two steps:
+ * <ol>
+ *   <li>{@link #getSearchBoxes()}: the route is cut into a bounded number of consecutive
+ *   chunks, and each chunk's buffered bounding box is handed to the normal bounding-box
+ *   query (index range scan). This gives a handful of small boxes instead of one huge box
+ *   around the whole route.</li>
+ *   <li>{@link #select}: each candidate is checked exactly. The route is split into short
+ *   pieces kept in a uniform grid, so a candidate is only measured against the few pieces
+ *   in its own grid cell, never against every segment. It is kept if it's within the
+ *   buffer, and the results are ordered by how far along the route its closest point is.</li>
+ * </ol>
+ * Distances to a piece use a local flat projection around the pin, which is accurate
+ * because pieces are short. Routes must not cross the antimeridian.
+ */
+public final class RouteCorridor {
+
+    public static final int MAX_SEARCH_BOXES = 64;
+
+    // upper bound on grid pieces, so a long route with a small buffer can't blow up memory
+    private static final int MAX_PIECES = 20_000;
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * GeoMath.EARTH_RADIUS_METERS;
+
+    private final double bufferInMeters;
+    private final List<Piece> pieces = new ArrayList<>();
+    private final double cellHeight; // grid cell size in degrees
+    private final double cellWidth;
+    private final Map<Long, List<Piece>> grid = new HashMap<>();
+    private final List<double[]> searchBoxes = new ArrayList<>();
+
+    /**
+     * @param route points as {latitude, longitude}, at least two
+     * @param bufferInMeters max distance from the route, greater than 0
+     */
+    public RouteCorridor(List<double[]> route, double bufferInMeters) {
+        if (route.size() < 2) {
+            throw new IllegalArgumentException("A route needs at least two points");
+        }
+        if (!(bufferInMeters > 0)) {
+            throw new IllegalArgumentException("Buffer must be greater than 0: " + bufferInMeters);
+        }
+        this.bufferInMeters = bufferInMeters;
+
+        double totalLength = 0;
+        double maxAbsLatitude = 0;
+        for (int i = 0; i < route.size(); i++) {
+            double[] point = route.get(i);
+            maxAbsLatitude = Math.max(maxAbsLatitude, Math.abs(point[0]));
+            if (i > 0) {
+                double[] previous = route.get(i - 1);
+                if (Math.abs(point[1] - previous[1]) > 180) {
+                    throw new IllegalArgumentException("Routes crossing the antimeridian are not supported");
+                }
+                totalLength += GeoMath.haversineDistance(previous[0], previous[1], point[0], point[1]);
+            }
+        }
+
+        // pieces about one buffer long (longer for very long routes, see MAX_PIECES)
+        double pieceLength = Math.max(bufferInMeters, totalLength / MAX_PIECES);
+        buildPieces(route, pieceLength);
+
+        // grid cells at least one piece (>= one buffer) across, so a piece's buffered box
+        // only touches a few cells. Longitude cells are widened for the route's highest latitude.
+        this.cellHeight = pieceLength / METERS_PER_DEGREE;
+        this.cellWidth = cellHeight / Math.max(0.01, Math.cos(Math.toRadians(Math.min(89, maxAbsLatitude + 2 * cellHeight))));
+        for (Piece piece : pieces) {
+            indexPiece(piece);
+        }
+
+        buildSearchBoxes(Math.max(totalLength / MAX_SEARCH_BOXES, 20 * bufferInMeters));
+    }
+
+    /**
+     * Bounding boxes {minLat, maxLat, minLng, maxLng} that together cover the corridor.
+     */
+    public List<double[]> getSearchBoxes() {
+        return searchBoxes;
+    }
+
+    /**
+     * Runs the bounding-box query for every search box, drops duplicates and everything
+     * outside the corridor, and orders the rest by position along the route.
+     */
+    public <T> List<T> select(Function<double[], List<T>> boundingBoxQuery, Function<T, Long> id,
+                              ToDoubleFunction<T> latitude, ToDoubleFunction<T> longitude) {
+        Map<Long, Match<T>> matches = new HashMap<>();
+        for (double[] box : searchBoxes) {
+            for (T candidate : boundingBoxQuery.apply(box)) {
+                Long key = id.apply(candidate);
+                if (matches.containsKey(key)) {
+                    continue; // neighbouring boxes overlap
+                }
+                Match<T> match = match(candidate, latitude.applyAsDouble(candidate), longitude.applyAsDouble(candidate));
+                if (match != null) {
+                    matches.put(key, match);
+                }
+            }
+        }
+
+        List<Match<T>> ordered = new ArrayList<>(matches.values());
+        ordered.sort(Comparator.<Match<T>>comparingDouble(match -> match.alongRoute)
+                .thenComparingDouble(match -> match.distance));
+        List<T> result = new ArrayList<>(ordered.size());
+        for (Match<T> match : ordered) {
+            result.add(match.value);
+        }
+        return result;
+    }
+
+    // --- Helpers ---
+
+    private <T> Match<T> match(T value, double latitude, double longitude) {
+        List<Piece> nearby = grid.get(cellKey(cellRow(latitude), cellColumn(longitude)));
+        if (nearby == null) {
+            return null;
+        }
+
+        // local flat projection around the point: meters east (x) and north (y)
+        double metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        Match<T> best = null;
+        for (Piece piece : nearby) {
+            double ax = (piece.startLng - longitude) * metersPerDegreeLng;
+            double ay = (piece.startLat - latitude) * METERS_PER_DEGREE;
+            double dx = (piece.endLng - longitude) * metersPerDegreeLng - ax;
+            double dy = (piece.endLat - latitude) * METERS_PER_DEGREE - ay;
+
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+            double distance = Math.hypot(ax + t * dx, ay + t * dy);
+
+            if (distance <= bufferInMeters && (best == null || distance < best.distance)) {
+                best = new Match<>(value, distance, piece.startAlongRoute + t * piece.length);
+            }
+        }
+        return best;
+    }
+
+    private void buildPieces(List<double[]> route, double pieceLength) {
+        double alongRoute = 0;
+        for (int i = 1; i < route.size(); i++) {
+            double[] from = route.get(i - 1);
+            double[] to = route.get(i);
+            double segmentLength = GeoMath.haversineDistance(from[0], from[1], to[0], to[1]);
+            int count = Math.max(1, (int) Math.ceil(segmentLength / pieceLength));
+
+            for (int j = 0; j < count; j++) {
+                double t0 = (double) j / count;
+                double t1 = (double) (j + 1) / count;
+                pieces.add(new Piece(
+                        from[0] + (to[0] - from[0]) * t0, from[1] + (to[1] - from[1]) * t0,
+                        from[0] + (to[0] - from[0]) * t1, from[1] + (to[1] - from[1]) * t1,
+                        alongRoute + segmentLength * t0, segmentLength / count));
+            }
+            alongRoute += segmentLength;
+        }
+    }
+
+    private void indexPiece(Piece piece) {
+        double[] box = bufferedBox(piece);
+        for (long row = cellRow(box[0]); row <= cellRow(box[1]); row++) {
+            for (long column = cellColumn(box[2]); column <= cellColumn(box[3]); column++) {
+                grid.computeIfAbsent(cellKey(row, column), key -> new ArrayList<>()).add(piece);
+            }
+        }
+    }
+
+    private void buildSearchBoxes(double chunkLength) {
+        double[] current = null;
+        double chunkStart = 0;
+        for (Piece piece : pieces) {
+            if (current != null && piece.startAlongRoute - chunkStart >= chunkLength) {
+                searchBoxes.add(current);
+                current = null;
+            }
+            double[] box = bufferedBox(piece);
+            if (current == null) {
+                current = box;
+                chunkStart = piece.startAlongRoute;
+            } else {
+                current[0] = Math.min(current[0], box[0]);
+                current[1] = Math.max(current[1], box[1]);
+                current[2] = Math.min(current[2], box[2]);
+                current[3] = Math.max(current[3], box[3]);
+            }
+        }
+        searchBoxes.add(current);
+    }
+
+    // the piece's bounding box grown by the buffer, {minLat, maxLat, minLng, maxLng}.
+    // Not GeoMath.boundingBox: its whole-world fallback near the poles would put the piece in every grid column
+    private double[] bufferedBox(Piece piece) {
+        double latDelta = bufferInMeters / METERS_PER_DEGREE;
+        double minLat = Math.max(-90, Math.min(piece.startLat, piece.endLat) - latDelta);
+        double maxLat = Math.min(90, Math.max(piece.startLat, piece.endLat) + latDelta);
+        double widest = Math.min(89, Math.max(Math.abs(minLat), Math.abs(maxLat)));
+        double lngDelta = latDelta / Math.max(0.01, Math.cos(Math.toRadians(widest)));
+        return new double[]{
+                minLat, maxLat,
+                Math.max(-180, Math.min(piece.startLng, piece.endLng) - lngDelta),
+                Math.min(180, Math.max(piece.startLng, piece.endLng) + lngDelta)};
+    }
+
+    private long cellRow(double latitude) {
+        return (long) Math.floor((latitude + 90) / cellHeight);
+    }
+
+    private long cellColumn(double longitude) {
+        return (long) Math.floor((longitude + 180) / cellWidth);
+    }
+
+    private static long cellKey(long row, long column) {
+        return (row << 32) ^ column;
+    }
+
+    private static final class Piece {
+        private final double startLat;
+        private final double startLng;
+        private final double endLat;
+        private final double endLng;
+        private final double startAlongRoute; // meters from the start of the route
+        private final double length;
+
+        private Piece(double startLat, double startLng, double endLat, double endLng, double startAlongRoute, double length) {
+            this.startLat = startLat;
+            this.startLng = startLng;
+            this.endLat = endLat;
+            this.endLng = endLng;
+            this.startAlongRoute = startAlongRoute;
+            this.length = length;
+        }
+    }
+
+    private static final class Match<T> {
+        private final T value;
+        private final double distance;
+        private final double alongRoute;
+
+        private Match(T value, double distance, double alongRoute) {
+            this.value = value;
+            this.distance = distance;
+            this.alongRoute = alongRoute;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.sach.mapstash.heatmap;
+
+import com.sach.mapstash.dto.HeatmapCellDto;
+import com.sach.mapstash.dto.HeatmapDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.exception.BadRequestException;
+import com.sach.mapstash.geo.Geohash;
+import com.sach.mapstash.service.PinService;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pin counts per geohash cell at every precision from 1 to max-resolution (a grid pyramid),
+ * kept in memory for GET /api/pins/heatmap.
+ * <p>
+ * Built once at startup from the pin service, then kept up to date from committed
+ * PinChangeEvents (+1 on the new cell, -1 on the old one, at every level), so a heatmap
+ * read only touches the cells it returns. Only non-empty cells are stored.
+ * <p>
+ * Like the response cache this is per process: writes made by another instance
+ * aren't seen until a restart.
+ * <p>
+ * Deliberately global, not partitioned by user: it counts every pin, like /api/pins does,
+ * and there is no per-user heatmap endpoint.
+ * <p>
+ * The startup load reads every pin. With mapstash.heatmap.enabled=false the index isn't created
+ * at all, and GET /api/pins/heatmap answers 404.
+ */
+@Component
+@ConditionalOnProperty(prefix = "mapstash.heatmap", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class HeatmapIndex implements SmartInitializingSingleton {
+
+    public static final int MIN_RESOLUTION = 1;
+
+    // when the client doesn't pick a resolution: the finest one that keeps the viewport under this many cells
+    static final long AUTO_MAX_CELLS = 1024;
+
+    // an explicit resolution that would make a read look at more cells than this is refused
+    static final long MAX_CELLS = 65_536;
+
+    private final PinService pinService;
+    private final int maxResolution;
+
+    // levels.get(precision): cell -> pin count
+    private final List<Map<Long, Integer>> levels = new ArrayList<>();
+
+    public HeatmapIndex(PinService pinService,
+                        @Value("${mapstash.heatmap.max-resolution:8}") int maxResolution) {
+        if (maxResolution < MIN_RESOLUTION || maxResolution > Geohash.MAX_PRECISION) {
+            throw new IllegalArgumentException("mapstash.heatmap.max-resolution must be between "
+                    + MIN_RESOLUTION + " and " + Geohash.MAX_PRECISION + ": " + maxResolution);
+        }
+        this.pinService = pinService;
+        this.maxResolution = maxResolution;
+        for (int precision = 0; precision <= maxResolution; precision++) {
+            levels.add(new ConcurrentHashMap<>()); // index 0 unused
+        }
+    }
+
+    // load every pin once all beans are ready, before the web server takes requests
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (PinSummaryDto pin : pinService.getAllPinSummaries()) {
+            add(pin.getLatitude(), pin.getLongitude(), 1);
+        }
+    }
+
+    @TransactionalEventListener
+    public void onPinChange(PinChangeEvent event) {
+        if (event.hasOldLocation() && event.hasNewLocation()
+                && cellOf(event.getOldLatitude(), event.getOldLongitude()) == cellOf(event.getNewLatitude(), event.getNewLongitude())) {
+            return; // didn't change cell, nothing to do
+        }
+        if (event.hasOldLocation()) {
+            add(event.getOldLatitude(), event.getOldLongitude(), -1);
+        }
+        if (event.hasNewLocation()) {
+            add(event.getNewLatitude(), event.getNewLongitude(), 1);
+        }
+    }
+
+    /**
+     * Non-empty cells overlapping the box. minLng greater than maxLng means the box crosses the antimeridian.
+     * @param resolution geohash precision of the cells, or null to pick one from the size of the box
+     */
+    public HeatmapDto heatmap(double minLat, double maxLat, double minLng, double maxLng, Integer resolution) {
+        // written as "not valid" so NaN fails too
+        if (!(minLat >= -90 && maxLat <= 90 && minLat <= maxLat)) {
+            throw new BadRequestException("Invalid bbox latitudes: " + minLat + ", " + maxLat);
+        }
+        if (!(minLng >= -180 && minLng <= 180 && maxLng >= -180 && maxLng <= 180)) {
+            throw new BadRequestException("Invalid bbox longitudes: " + minLng + ", " + maxLng);
+        }
+
+        List<double[]> boxes = new ArrayList<>();
+        if (minLng <= maxLng) {
+            boxes.add(new double[]{minLat, maxLat, minLng, maxLng});
+        } else {
+            boxes.add(new double[]{minLat, maxLat, minLng, 180});
+            boxes.add(new double[]{minLat, maxLat, -180, maxLng});
+        }
+
+        int precision;
+        if (resolution == null) {
+            precision = autoResolution(boxes);
+        } else {
+            if (resolution < MIN_RESOLUTION || resolution > maxResolution) {
+                throw new BadRequestException("resolution must be between " + MIN_RESOLUTION + " and " + maxResolution);
+            }
+            // a read looks at the viewport's cells or the level's non-empty cells, whichever is fewer
+            if (Math.min(countCells(boxes, resolution), levels.get(resolution).size()) > MAX_CELLS) {
+                throw new BadRequestException("resolution " + resolution + " is too fine for this bbox, use a lower one");
+            }
+            precision = resolution;
+        }
+
+        Map<Long, Integer> level = levels.get(precision);
+        List<HeatmapCellDto> cells = new ArrayList<>();
+        for (double[] box : boxes) {
+            if (Geohash.countCoveringCells(box[0], box[1], box[2], box[3], precision) <= level.size()) {
+                // look up each cell of the viewport
+                for (long cell : Geohash.coveringCells(box[0], box[1], box[2], box[3], precision)) {
+                    Integer count = level.get(cell);
+                    if (count != null) {
+                        cells.add(toDto(cell, precision, count));
+                    }
+                }
+            } else {
+                // fewer non-empty cells than viewport cells: walk the non-empty ones instead
+                for (Map.Entry<Long, Integer> entry : level.entrySet()) {
+                    double[] bounds = Geohash.bounds(entry.getKey(), precision);
+                    if (bounds[0] <= box[1] && bounds[1] > box[0] && bounds[2] <= box[3] && bounds[3] > box[2]) {
+                        cells.add(toDto(entry.getKey(), precision, entry.getValue()));
+                    }
+                }
+            }
+        }
+        cells.sort(Comparator.comparing(HeatmapCellDto::getGeohash));
+        return new HeatmapDto(precision, cells);
+    }
+
+    public int getMaxResolution() {
+        return maxResolution;
+    }
+
+    // --- Helpers ---
+
+    private void add(double latitude, double longitude, int delta) {
+        long cell = cellOf(latitude, longitude);
+        // a cell's parent is the same hash minus its last base32 character (5 bits)
+        for (int precision = maxResolution; precision >= MIN_RESOLUTION; precision--) {
+            levels.get(precision).compute(cell, (key, count) -> {
+                int updated = (count == null ? 0 : count) + delta;
+                return updated > 0 ? updated : null; // empty cells are removed
+            });
+            cell >>>= 5;
+        }
+    }
+
+    private long cellOf(double latitude, double longitude) {
+        return Geohash.encode(latitude, longitude, maxResolution);
+    }
+
+    private int autoResolution(List<double[]> boxes) {
+        for (int precision = maxResolution; precision > MIN_RESOLUTION; precision--) {
+            if (countCells(boxes, precision) <= AUTO_MAX_CELLS) {
+                return precision;
+            }
+        }
+        return MIN_RESOLUTION; // 32 cells for the whole world
+    }
+
+    private static long countCells(List<double[]> boxes, int precision) {
+        long total = 0;
+        for (double[] box : boxes) {
+            total += Geohash.countCoveringCells(box[0], box[1], box[2], box[3], precision);
+        }
+        return total;
+    }
+
+    private static HeatmapCellDto toDto(long cell, int precision, int count) {
+        double[] bounds = Geohash.bounds(cell, precision);
+        return new HeatmapCellDto(Geohash.toBase32(cell, precision),
+                (bounds[0] + bounds[1]) / 2, (bounds[2] + bounds[3]) / 2, count);
+    }
+}
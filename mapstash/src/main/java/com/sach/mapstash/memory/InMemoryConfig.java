@@ -0,0 +1,32 @@
+package com.sach.mapstash.memory;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import java.nio.file.Paths;
+
+/**
+ * Wires the in-memory PinService for the "in-memory" profile. The JPA datasource is switched
+ * off in application-in-memory.properties. Transaction management is enabled explicitly for
+ * the same reason as in ShardingConfig: without a datasource Boot doesn't turn it on, and the
+ * @TransactionalEventListeners need it.
+ */
+@Configuration
+@Profile("in-memory")
+@EnableConfigurationProperties(InMemoryProperties.class)
+@EnableTransactionManagement
+public class InMemoryConfig {
+
+    @Bean(destroyMethod = "close")
+    public InMemoryPinService inMemoryPinService(InMemoryProperties properties, ApplicationEventPublisher eventPublisher) {
+        if (properties.getSnapshotInterval().isZero() || properties.getSnapshotInterval().isNegative()) {
+            throw new IllegalStateException("mapstash.in-memory.snapshot-interval must be positive");
+        }
+        return new InMemoryPinService(Paths.get(properties.getDirectory()), properties.getFlushInterval(),
+                properties.getSnapshotInterval(), eventPublisher);
+    }
+}
@@ -0,0 +1,685 @@
+package com.sach.mapstash.memory;
+
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinPageDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.dto.TagDto;
+import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.exception.ResourceNotFoundException;
+import com.sach.mapstash.geo.GeoMath;
+import com.sach.mapstash.service.Deadline;
+import com.sach.mapstash.service.NearbyResult;
+import com.sach.mapstash.service.PinCursor;
+import com.sach.mapstash.service.PinDtos;
+import com.sach.mapstash.service.PinService;
+import com.sach.mapstash.service.TagNames;
+import com.sach.mapstash.service.TimeWindowQuery;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * PinService that keeps everything in memory ("in-memory" profile), for single-node
+ * deployments with a small dataset where the database round trips are most of the latency.
+ * Made durable by a {@link PinJournal} in a local directory.
+ * <p>
+ * The indexes mirror the ones the JPA schema has: pins by id, pins by (latitude, id) for
+ * bounding boxes (range on latitude, longitude checked per pin, like idx_pin_lat_lng), pins by
+ * (created_at, id) and (updated_at, id) for time windows, each user's pins by id, and tags by
+ * name with their pin counts. Queries do the same filtering
+ * as PinServiceImpl and build the DTOs through PinDtos, so both engines return the same
+ * results - everything is returned in id order, which is one of the orders the JPA engine
+ * may use where it doesn't specify one.
+ * <p>
+ * Reads share a lock, writes take it exclusively: a write is journaled first and only then
+ * applied to the indexes, so a failed journal write changes nothing. Each write runs in a
+ * local transaction, so the PinChangeEvent listeners (caches, heatmap, change log) run after
+ * it like they do after a database commit.
+ * <p>
+ * Simple structures on purpose, rather than concurrent maps with a 2-D spatial index: plain
+ * TreeMaps behind that one lock, and a bounding box is a latitude range with the longitude
+ * checked per pin. A write changes several indexes and the journal, which a reader must see
+ * change together, and the sorted maps give the id and time orders the queries return. At the
+ * small single-node sizes this engine is for, a latitude band is a short scan and reads don't
+ * wait for each other. If either becomes the bottleneck, geohash cells (cell -> pins) with
+ * per-cell locking are the next step - measure with PinServiceBenchmark first.
+ */
+public class InMemoryPinService implements PinService, AutoCloseable {
+
+    private static final int TITLE_LENGTH = 255;   // pins.title
+    private static final int TAG_NAME_LENGTH = 100; // tags.name
+
+    // byLocation's order: a bounding box is one latitude range of it
+    private static final Comparator<StoredPin> LOCATION_ORDER =
+            Comparator.<StoredPin>comparingDouble(pin -> pin.latitude).thenComparingLong(pin -> pin.id);
+    // byCreatedAt's / byUpdatedAt's order: a time-window page is one range of them
+    private static final Comparator<StoredPin> CREATED_ORDER =
+            Comparator.<StoredPin, LocalDateTime>comparing(pin -> pin.createdAt).thenComparingLong(pin -> pin.id);
+    private static final Comparator<StoredPin> UPDATED_ORDER =
+            Comparator.<StoredPin, LocalDateTime>comparing(pin -> pin.updatedAt).thenComparingLong(pin -> pin.id);
+
+    private final PinJournal journal;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate tx = new TransactionTemplate(new LocalTransactionManager());
+    private final ScheduledExecutorService snapshots;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // all guarded by lock
+    private final NavigableMap<Long, StoredPin> pins = new TreeMap<>();
+    private final NavigableSet<StoredPin> byLocation = new TreeSet<>(LOCATION_ORDER);
+    private final NavigableSet<StoredPin> byCreatedAt = new TreeSet<>(CREATED_ORDER);
+    private final NavigableSet<StoredPin> byUpdatedAt = new TreeSet<>(UPDATED_ORDER);
+    private final Map<Long, NavigableMap<Long, StoredPin>> byUser = new HashMap<>();
+    private final Map<Long, StoredTag> tagsById = new HashMap<>();
+    private final NavigableMap<String, StoredTag> tagsByName = new TreeMap<>();
+    private long nextPinId = 1;
+    private long nextTagId = 1;
+    private long writesSinceSnapshot;
+
+    /**
+     * Loads the store from the directory (snapshot, then journal) and snapshots it every
+     * snapshotInterval if anything changed.
+     * @param flushInterval how often journal appends are forced to disk, zero for every write
+     */
+    public InMemoryPinService(Path directory, Duration flushInterval, Duration snapshotInterval,
+                              ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        this.journal = new PinJournal(directory, flushInterval);
+        journal.recover(new PinJournal.Replay() {
+            @Override
+            public void counters(long pinId, long tagId) {
+                nextPinId = pinId;
+                nextTagId = tagId;
+            }
+
+            @Override
+            public void tag(long id, String name) {
+                if (!tagsById.containsKey(id)) { // already in the snapshot if the journal wasn't emptied after it
+                    addTag(new StoredTag(id, name));
+                }
+            }
+
+            @Override
+            public void put(StoredPin pin) {
+                apply(pin);
+            }
+
+            @Override
+            public void delete(long pinId) {
+                StoredPin pin = pins.get(pinId);
+                if (pin != null) {
+                    remove(pin);
+                }
+                nextPinId = Math.max(nextPinId, pinId + 1);
+            }
+        });
+
+        this.snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pin-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = snapshotInterval.toMillis();
+        snapshots.scheduleWithFixedDelay(this::snapshot, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a snapshot (and empties the journal) if anything changed since the last one.
+     * Reads carry on meanwhile, writes wait.
+     */
+    public void snapshot() {
+        lock.readLock().lock();
+        try {
+            if (writesSinceSnapshot > 0) {
+                journal.writeSnapshot(nextPinId, nextTagId, tagsById.values(), pins.values());
+                writesSinceSnapshot = 0; // fine under the read lock: writes can't run meanwhile
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        snapshots.shutdownNow();
+        snapshot();
+        journal.close();
+    }
+
+    // as if the process died: nothing more reaches the directory, and another instance can open it. For the tests
+    void halt() {
+        snapshots.shutdownNow();
+        journal.halt();
+    }
+
+    // --- Writes ---
+
+    @Override
+    public PinDto createPin(CreatePinDto createPinDto) {
+        return create(null, createPinDto);
+    }
+
+    @Override
+    public PinDto createPinForUser(Long userId, CreatePinDto createPinDto) {
+        return create(userId, createPinDto);
+    }
+
+    @Override
+    public PinDto updatePin(Long id, UpdatePinDto updatePinDto) {
+        return update(null, id, updatePinDto);
+    }
+
+    @Override
+    public PinDto updatePinForUser(Long userId, Long id, UpdatePinDto updatePinDto) {
+        return update(userId, id, updatePinDto);
+    }
+
+    @Override
+    public void deletePin(Long id) {
+        delete(null, id);
+    }
+
+    @Override
+    public void deletePinForUser(Long userId, Long id) {
+        delete(userId, id);
+    }
+
+    // --- Reads ---
+
+    @Override
+    public List<PinDto> getAllPins() {
+        return read(() -> toPinDtos(pins.values(), pin -> true));
+    }
+
+    @Override
+    public List<PinSummaryDto> getAllPinSummaries() {
+        return read(() -> toSummaries(pins.values(), pin -> true));
+    }
+
+    @Override
+    public Optional<PinDto> getPinById(Long id) {
+        return read(() -> Optional.ofNullable(findPin(null, id)).map(this::toPinDto));
+    }
+
+    @Override
+    public List<PinDto> getAllPinsForUser(Long userId) {
+        return read(() -> toPinDtos(pinsOf(userId), pin -> true));
+    }
+
+    @Override
+    public List<PinSummaryDto> getAllPinSummariesForUser(Long userId) {
+        return read(() -> toSummaries(pinsOf(userId), pin -> true));
+    }
+
+    @Override
+    public Optional<PinDto> getPinByIdForUser(Long userId, Long id) {
+        // another user's pin looks exactly like a missing one
+        return read(() -> Optional.ofNullable(findPin(userId, id)).map(this::toPinDto));
+    }
+
+    @Override
+    public List<PinDto> findNearbyPins(double latitude, double longitude, double radiusInMeters) {
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        return read(() -> toPinDtos(inBox(box[0], box[1], box[2], box[3]), inRadius(latitude, longitude, radiusInMeters)));
+    }
+
+    @Override
+    public List<PinSummaryDto> findNearbyPinSummaries(double latitude, double longitude, double radiusInMeters) {
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        return read(() -> toSummaries(inBox(box[0], box[1], box[2], box[3]), inRadius(latitude, longitude, radiusInMeters)));
+    }
+
+    // no statement to time out and no connection held, and one pass over byLocation is quicker than
+    // the rings would be - always the complete answer
+    @Override
+    public NearbyResult<PinDto> findNearbyPins(double latitude, double longitude, double radiusInMeters, Deadline deadline) {
+        return NearbyResult.complete(findNearbyPins(latitude, longitude, radiusInMeters), radiusInMeters);
+    }
+
+    @Override
+    public NearbyResult<PinSummaryDto> findNearbyPinSummaries(double latitude, double longitude, double radiusInMeters,
+                                                              Deadline deadline) {
+        return NearbyResult.complete(findNearbyPinSummaries(latitude, longitude, radiusInMeters), radiusInMeters);
+    }
+
+    @Override
+    public List<PinDto> findNearbyPinsForUser(Long userId, double latitude, double longitude, double radiusInMeters) {
+        // the user's own pins only, so the cost is their pin count like with idx_pin_user_lat_lng
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        return read(() -> toPinDtos(pinsOf(userId), inBox(box).and(inRadius(latitude, longitude, radiusInMeters))));
+    }
+
+    @Override
+    public List<PinSummaryDto> findNearbyPinSummariesForUser(Long userId, double latitude, double longitude, double radiusInMeters) {
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        return read(() -> toSummaries(pinsOf(userId), inBox(box).and(inRadius(latitude, longitude, radiusInMeters))));
+    }
+
+    @Override
+    public List<PinDto> findPinsInBoundingBox(double minLat, double maxLat, double minLng, double maxLng) {
+        return read(() -> toPinDtos(inBox(minLat, maxLat, minLng, maxLng), pin -> true));
+    }
+
+    @Override
+    public List<PinSummaryDto> findPinSummariesInBoundingBox(double minLat, double maxLat, double minLng, double maxLng) {
+        return read(() -> toSummaries(inBox(minLat, maxLat, minLng, maxLng), pin -> true));
+    }
+
+    @Override
+    public PinPageDto<PinDto> findPinsInTimeWindow(TimeWindowQuery query) {
+        return read(() -> query.page(toPinDtos(scanTimeWindow(query), pin -> true)));
+    }
+
+    @Override
+    public PinPageDto<PinSummaryDto> findPinSummariesInTimeWindow(TimeWindowQuery query) {
+        return read(() -> {
+            List<StoredPin> scanned = scanTimeWindow(query);
+            PinCursor last = null;
+            if (!scanned.isEmpty()) {
+                StoredPin pin = scanned.get(scanned.size() - 1);
+                last = new PinCursor(query.getOrder(),
+                        query.getOrder() == TimeWindowQuery.Order.CREATED ? pin.createdAt : pin.updatedAt, pin.id);
+            }
+            return query.page(toSummaries(scanned, pin -> true), last, PinSummaryDto::getLatitude, PinSummaryDto::getLongitude);
+        });
+    }
+
+    @Override
+    public List<String> getAllTagNames() {
+        return read(() -> new ArrayList<>(tagsByName.keySet()));
+    }
+
+    @Override
+    public Map<String, Long> getTagUsageCounts() {
+        return read(() -> {
+            Map<String, Long> counts = new HashMap<>();
+            for (StoredTag tag : tagsByName.values()) {
+                counts.put(tag.name, (long) tag.pinCount);
+            }
+            return counts;
+        });
+    }
+
+    @Override
+    public List<String> getAllTagNamesForUser(Long userId) {
+        return read(() -> {
+            Set<String> names = new TreeSet<>();
+            for (StoredPin pin : pinsOf(userId)) {
+                for (long tagId : pin.tagIds) {
+                    names.add(tagsById.get(tagId).name);
+                }
+            }
+            return new ArrayList<>(names);
+        });
+    }
+
+    // --- Helper Methods ---
+
+    private PinDto create(Long userId, CreatePinDto createPinDto) {
+        requireValue(createPinDto.getLatitude(), "latitude");
+        requireValue(createPinDto.getLongitude(), "longitude");
+        checkTitle(createPinDto.getTitle());
+        List<String> tagNames = checkTagNames(TagNames.normalize(createPinDto.getTags()));
+
+        return tx.execute(status -> {
+            StoredPin pin;
+            PinChangeEvent change;
+            lock.writeLock().lock();
+            try {
+                List<StoredTag> newTags = new ArrayList<>();
+                long[] tagIds = resolveTags(tagNames, newTags);
+                LocalDateTime now = now();
+                pin = new StoredPin(nextPinId, createPinDto.getTitle(), createPinDto.getNotes(),
+                        createPinDto.getLatitude(), createPinDto.getLongitude(), userId, now, now, tagIds);
+
+                journal.appendPut(newTags, pin); // first: if this throws, nothing changed
+                newTags.forEach(this::addTag);
+                apply(pin);
+                writesSinceSnapshot++;
+                // created under the lock, so its sequence follows the order of the writes
+                change = PinChangeEvent.created(pin.id, userId, pin.latitude, pin.longitude, tagNames);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            eventPublisher.publishEvent(change);
+            return read(() -> toPinDto(pin));
+        });
+    }
+
+    private PinDto update(Long userId, Long id, UpdatePinDto updatePinDto) {
+        checkTitle(updatePinDto.getTitle());
+        List<String> tagNames = checkTagNames(TagNames.normalize(updatePinDto.getTags()));
+
+        return tx.execute(status -> {
+            StoredPin existing;
+            StoredPin updated;
+            List<String> added = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            PinChangeEvent change;
+            lock.writeLock().lock();
+            try {
+                existing = findPin(userId, id);
+                if (existing == null) {
+                    throw notFound(userId, id);
+                }
+
+                List<StoredTag> newTags = new ArrayList<>();
+                long[] tagIds = resolveTags(tagNames, newTags);
+                Set<Long> current = idSet(existing.tagIds);
+                Set<Long> wanted = idSet(tagIds);
+                for (int i = 0; i < tagIds.length; i++) {
+                    if (!current.contains(tagIds[i])) {
+                        added.add(tagNames.get(i));
+                    }
+                }
+                for (long tagId : existing.tagIds) {
+                    if (!wanted.contains(tagId)) {
+                        removed.add(tagsById.get(tagId).name);
+                    }
+                }
+
+                // like the JPA engine: updated_at moves when the title, the notes or the tags change
+                boolean changed = !Objects.equals(existing.title, updatePinDto.getTitle())
+                        || !Objects.equals(existing.notes, updatePinDto.getNotes())
+                        || !added.isEmpty() || !removed.isEmpty();
+                updated = new StoredPin(existing.id, updatePinDto.getTitle(), updatePinDto.getNotes(),
+                        existing.latitude, existing.longitude, existing.userId, existing.createdAt,
+                        changed ? now() : existing.updatedAt, tagIds);
+
+                journal.appendPut(newTags, updated);
+                newTags.forEach(this::addTag);
+                apply(updated);
+                writesSinceSnapshot++;
+                change = PinChangeEvent.updated(updated.id, updated.userId,
+                        existing.latitude, existing.longitude, updated.latitude, updated.longitude, added, removed);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            eventPublisher.publishEvent(change);
+            return read(() -> toPinDto(updated));
+        });
+    }
+
+    private void delete(Long userId, Long id) {
+        tx.executeWithoutResult(status -> {
+            StoredPin existing;
+            List<String> tagNames = new ArrayList<>();
+            PinChangeEvent change;
+            lock.writeLock().lock();
+            try {
+                existing = findPin(userId, id);
+                if (existing == null) {
+                    throw notFound(userId, id);
+                }
+                for (long tagId : existing.tagIds) {
+                    tagNames.add(tagsById.get(tagId).name);
+                }
+
+                journal.appendDelete(existing.id);
+                remove(existing);
+                writesSinceSnapshot++;
+                change = PinChangeEvent.deleted(existing.id, existing.userId,
+                        existing.latitude, existing.longitude, tagNames);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            eventPublisher.publishEvent(change);
+        });
+    }
+
+    // ids for the names, in the same order - existing tags are reused, missing ones get new ids (added to newTags, not stored yet)
+    private long[] resolveTags(List<String> names, List<StoredTag> newTags) {
+        long[] tagIds = new long[names.size()];
+        long nextId = nextTagId;
+        for (int i = 0; i < names.size(); i++) {
+            StoredTag tag = tagsByName.get(names.get(i));
+            if (tag == null) {
+                tag = new StoredTag(nextId++, names.get(i));
+                newTags.add(tag);
+            }
+            tagIds[i] = tag.id;
+        }
+        return tagIds;
+    }
+
+    private void addTag(StoredTag tag) {
+        tagsById.put(tag.id, tag);
+        tagsByName.put(tag.name, tag);
+        nextTagId = Math.max(nextTagId, tag.id + 1);
+    }
+
+    // puts the pin in every index, replacing the version already there
+    private void apply(StoredPin pin) {
+        StoredPin previous = pins.get(pin.id);
+        if (previous != null) {
+            remove(previous);
+        }
+        pins.put(pin.id, pin);
+        byLocation.add(pin);
+        byCreatedAt.add(pin);
+        byUpdatedAt.add(pin);
+        if (pin.userId != null) {
+            byUser.computeIfAbsent(pin.userId, k -> new TreeMap<>()).put(pin.id, pin);
+        }
+        for (long tagId : pin.tagIds) {
+            tagsById.get(tagId).pinCount++;
+        }
+        nextPinId = Math.max(nextPinId, pin.id + 1);
+    }
+
+    private void remove(StoredPin pin) {
+        pins.remove(pin.id);
+        byLocation.remove(pin);
+        byCreatedAt.remove(pin);
+        byUpdatedAt.remove(pin);
+        if (pin.userId != null) {
+            NavigableMap<Long, StoredPin> own = byUser.get(pin.userId);
+            own.remove(pin.id);
+            if (own.isEmpty()) {
+                byUser.remove(pin.userId);
+            }
+        }
+        for (long tagId : pin.tagIds) {
+            tagsById.get(tagId).pinCount--;
+        }
+    }
+
+    // null if missing, or owned by someone else for user-scoped calls
+    private StoredPin findPin(Long userId, Long id) {
+        if (id == null) {
+            return null;
+        }
+        StoredPin pin = pins.get(id);
+        if (pin == null || (userId != null && !userId.equals(pin.userId))) {
+            return null;
+        }
+        return pin;
+    }
+
+    private Collection<StoredPin> pinsOf(Long userId) {
+        NavigableMap<Long, StoredPin> own = byUser.get(userId);
+        return own != null ? own.values() : Collections.emptyList();
+    }
+
+    // the latitude range from the location index, longitudes checked one by one, then in id order
+    private List<StoredPin> inBox(double minLat, double maxLat, double minLng, double maxLng) {
+        List<StoredPin> found = new ArrayList<>();
+        if (!(minLat <= maxLat)) {
+            return found;
+        }
+        StoredPin from = new StoredPin(Long.MIN_VALUE, null, null, minLat, 0, null, null, null, null);
+        StoredPin to = new StoredPin(Long.MAX_VALUE, null, null, maxLat, 0, null, null, null, null);
+        for (StoredPin pin : byLocation.subSet(from, true, to, true)) {
+            if (pin.longitude >= minLng && pin.longitude <= maxLng) {
+                found.add(pin);
+            }
+        }
+        found.sort(Comparator.comparingLong(pin -> pin.id));
+        return found;
+    }
+
+    private static Predicate<StoredPin> inBox(double[] box) {
+        return pin -> pin.latitude >= box[0] && pin.latitude <= box[1] && pin.longitude >= box[2] && pin.longitude <= box[3];
+    }
+
+    private static Predicate<StoredPin> inRadius(double latitude, double longitude, double radiusInMeters) {
+        return pin -> GeoMath.haversineDistance(latitude, longitude, pin.latitude, pin.longitude) <= radiusInMeters;
+    }
+
+    // the first limit pins from the query's start key that are in the window and its bounding box, under the read lock
+    private List<StoredPin> scanTimeWindow(TimeWindowQuery query) {
+        PinCursor start = query.start();
+        boolean byCreated = query.getOrder() == TimeWindowQuery.Order.CREATED;
+        Predicate<StoredPin> inBox = inBox(query.boundingBox());
+        StoredPin from = byCreated
+                ? new StoredPin(start.getId(), null, null, 0, 0, null, start.getTime(), null, null)
+                : new StoredPin(start.getId(), null, null, 0, 0, null, null, start.getTime(), null);
+
+        List<StoredPin> scanned = new ArrayList<>();
+        for (StoredPin pin : (byCreated ? byCreatedAt : byUpdatedAt).tailSet(from, false)) {
+            if (byCreated && !pin.createdAt.isBefore(query.createdUpperBound())) {
+                break;
+            }
+            if ((byCreated && pin.updatedAt.isBefore(query.updatedLowerBound())) || !inBox.test(pin)) {
+                continue;
+            }
+            scanned.add(pin);
+            if (scanned.size() == query.getLimit()) {
+                break;
+            }
+        }
+        return scanned;
+    }
+
+    private List<PinDto> toPinDtos(Collection<StoredPin> source, Predicate<StoredPin> filter) {
+        List<PinDto> pinDtos = new ArrayList<>();
+        for (StoredPin pin : source) {
+            if (filter.test(pin)) {
+                pinDtos.add(toPinDto(pin));
+            }
+        }
+        return pinDtos;
+    }
+
+    private List<PinSummaryDto> toSummaries(Collection<StoredPin> source, Predicate<StoredPin> filter) {
+        List<PinSummaryDto> summaries = new ArrayList<>();
+        for (StoredPin pin : source) {
+            if (filter.test(pin)) {
+                List<String> names = new ArrayList<>(pin.tagIds.length);
+                for (long tagId : pin.tagIds) {
+                    names.add(tagsById.get(tagId).name);
+                }
+                summaries.add(PinDtos.pinSummaryDto(pin.id, pin.title, pin.latitude, pin.longitude, names));
+            }
+        }
+        return summaries;
+    }
+
+    private PinDto toPinDto(StoredPin pin) {
+        List<TagDto> tags = new ArrayList<>(pin.tagIds.length);
+        for (long tagId : pin.tagIds) {
+            tags.add(new TagDto(tagId, tagsById.get(tagId).name));
+        }
+        return PinDtos.pinDto(pin.id, pin.title, pin.notes, pin.latitude, pin.longitude, pin.userId,
+                pin.createdAt, pin.updatedAt, tags);
+    }
+
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Set<Long> idSet(long[] ids) {
+        Set<Long> set = new HashSet<>();
+        for (long id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    // what the datetime(6) columns keep
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    // the database would refuse these rows, so this engine does too (same exception type)
+    private static void requireValue(Object value, String column) {
+        if (value == null) {
+            throw new DataIntegrityViolationException("pins." + column + " can't be null");
+        }
+    }
+
+    private static void checkTitle(String title) {
+        requireValue(title, "title");
+        if (title.length() > TITLE_LENGTH) {
+            throw new DataIntegrityViolationException("pins.title is limited to " + TITLE_LENGTH + " characters");
+        }
+    }
+
+    private static List<String> checkTagNames(List<String> names) {
+        for (String name : names) {
+            if (name.length() > TAG_NAME_LENGTH) {
+                throw new DataIntegrityViolationException("tags.name is limited to " + TAG_NAME_LENGTH + " characters");
+            }
+        }
+        return names;
+    }
+
+    private static ResourceNotFoundException notFound(Long userId, Long id) {
+        if (userId == null) {
+            return new ResourceNotFoundException("Pin not found with id: " + id);
+        }
+        return new ResourceNotFoundException("Pin not found with id: " + id + " for user: " + userId);
+    }
+
+    /**
+     * Nothing to begin or commit - the journal append is the commit. It only gives each write a
+     * transaction, so @TransactionalEventListeners run once the write is done (and not at all
+     * if it failed).
+     */
+    private static final class LocalTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
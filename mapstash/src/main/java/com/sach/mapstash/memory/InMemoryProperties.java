@@ -0,0 +1,28 @@
+package com.sach.mapstash.memory;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * mapstash.in-memory.* - only used with the "in-memory" profile, see {@link InMemoryPinService}.
+ */
+@ConfigurationProperties(prefix = "mapstash.in-memory")
+public class InMemoryProperties {
+
+    // where the snapshot and the journal go. One process per directory
+    private String directory = "data";
+
+    // journal appends within this window are forced to disk together, 0 = on every write
+    private Duration flushInterval = Duration.ofMillis(100);
+
+    // how often the whole store is written out (if it changed), which empties the journal
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+
+    public String getDirectory() { return directory; }
+    public void setDirectory(String directory) { this.directory = directory; }
+    public Duration getFlushInterval() { return flushInterval; }
+    public void setFlushInterval(Duration flushInterval) { this.flushInterval = flushInterval; }
+    public Duration getSnapshotInterval() { return snapshotInterval; }
+    public void setSnapshotInterval(Duration snapshotInterval) { this.snapshotInterval = snapshotInterval; }
+}
@@ -0,0 +1,454 @@
+package com.sach.mapstash.memory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Makes the in-memory engine durable: a write-ahead journal of every change, plus now and
+ * then a snapshot of the whole store, so the journal (and the replay at startup) stays short.
+ * <p>
+ * Both live in one directory, snapshot.bin and journal.log. Journal records are framed like
+ * the change log's - payload length, CRC32 of the payload, payload - and hold either a put
+ * (the whole pin, plus the tags that write created) or a delete. A snapshot is written to a
+ * temp file that then replaces the old one, and the journal is emptied after that - once the
+ * directory itself is forced, so the rename can't be lost while the emptied journal survives.
+ * A crash in between replays records the snapshot already contains, which is harmless: a put
+ * carries the whole pin and deleting a missing pin does nothing.
+ * <p>
+ * One process per directory: opening takes an exclusive lock on its lock file, and fails if
+ * another journal (in this process or another one) holds it.
+ * <p>
+ * Appends reach the OS right away, so a crash of the process loses nothing. Forcing them to
+ * the disk is grouped like the change log's: once per flush-interval, or on every append if
+ * the interval is zero.
+ */
+final class PinJournal implements AutoCloseable {
+
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final String JOURNAL = "journal.log";
+    private static final String LOCK = "lock";
+
+    // directories can't be opened as channels there (and NTFS journals the rename itself)
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+    private static final int SNAPSHOT_MAGIC = 0x4D534E50; // "MSNP"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    /**
+     * What recovery hands back, in order: the snapshot's counters, tags and pins, then the
+     * journal's changes.
+     */
+    interface Replay {
+        void counters(long nextPinId, long nextTagId);
+        void tag(long id, String name);
+        void put(StoredPin pin);
+        void delete(long pinId);
+    }
+
+    private final Path directory;
+    private final boolean syncEveryAppend;
+    private final FileChannel lockFile;
+    private final FileLock directoryLock;
+    private final FileChannel journal;
+    private final ScheduledExecutorService flusher;
+
+    // guarded by this
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private boolean dirty;
+    private boolean closed;
+
+    PinJournal(Path directory, Duration flushInterval) {
+        this.directory = directory;
+        this.syncEveryAppend = flushInterval.isZero();
+        try {
+            Files.createDirectories(directory);
+            this.lockFile = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            this.directoryLock = tryLock(lockFile);
+            if (directoryLock == null) {
+                lockFile.close();
+                throw new IllegalStateException("The pin journal in " + directory + " is in use by another process");
+            }
+            this.journal = FileChannel.open(directory.resolve(JOURNAL),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open the pin journal in " + directory, e);
+        }
+
+        if (syncEveryAppend) {
+            this.flusher = null;
+        } else {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "pin-journal-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = flushInterval.toMillis();
+            flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Loads the snapshot, then replays the journal on top of it. A torn record at the end of
+     * the journal (crash mid-append) is cut off, appends continue after the last good one.
+     */
+    synchronized void recover(Replay replay) {
+        try {
+            Path snapshot = directory.resolve(SNAPSHOT);
+            if (Files.exists(snapshot)) {
+                readSnapshot(snapshot, replay);
+            }
+
+            ByteBuffer records = ByteBuffer.allocate((int) journal.size());
+            while (records.hasRemaining() && journal.read(records, records.position()) >= 0) {
+                // read it all
+            }
+            int position = 0;
+            while (true) {
+                int length = validRecordLength(records, position);
+                if (length < 0) {
+                    break;
+                }
+                DataInputStream in = new DataInputStream(
+                        new ByteArrayInputStream(records.array(), position + HEADER_SIZE, length));
+                if (in.readByte() == PUT) {
+                    int newTags = in.readInt();
+                    for (int i = 0; i < newTags; i++) {
+                        replay.tag(in.readLong(), readString(in));
+                    }
+                    replay.put(readPin(in));
+                } else {
+                    replay.delete(in.readLong());
+                }
+                position += HEADER_SIZE + length;
+            }
+            journal.truncate(position);
+            journal.position(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't recover the pin journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Journals a create or update: the tags it created (ids and names, in order) and the pin as it is now.
+     */
+    synchronized void appendPut(Collection<StoredTag> newTags, StoredPin pin) {
+        try {
+            startRecord();
+            recordOut.writeByte(PUT);
+            recordOut.writeInt(newTags.size());
+            for (StoredTag tag : newTags) {
+                recordOut.writeLong(tag.id);
+                writeString(recordOut, tag.name);
+            }
+            writePin(recordOut, pin);
+            writeRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write to the pin journal in " + directory, e);
+        }
+    }
+
+    synchronized void appendDelete(long pinId) {
+        try {
+            startRecord();
+            recordOut.writeByte(DELETE);
+            recordOut.writeLong(pinId);
+            writeRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write to the pin journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Replaces the snapshot with this state and empties the journal. The caller keeps writes
+     * out until it returns, so the state and the journal agree.
+     */
+    synchronized void writeSnapshot(long nextPinId, long nextTagId, Collection<StoredTag> tags, Collection<StoredPin> pins) {
+        if (closed) {
+            throw new IllegalStateException("The pin journal is closed");
+        }
+        Path snapshot = directory.resolve(SNAPSHOT);
+        Path temp = directory.resolve(SNAPSHOT + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                CheckedOutputStream checked = new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 64 * 1024));
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(nextPinId);
+                out.writeLong(nextTagId);
+                out.writeInt(tags.size());
+                for (StoredTag tag : tags) {
+                    out.writeLong(tag.id);
+                    writeString(out, tag.name);
+                }
+                out.writeInt(pins.size());
+                for (StoredPin pin : pins) {
+                    writePin(out, pin);
+                }
+                out.flush();
+                out.writeLong(checked.getChecksum().getValue()); // not part of the sum itself
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+
+            journal.truncate(0);
+            journal.position(0);
+            journal.force(true);
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write the pin snapshot in " + directory, e);
+        }
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     */
+    void flush() {
+        synchronized (this) {
+            if (closed || !dirty) {
+                return;
+            }
+            dirty = false;
+        }
+        try {
+            journal.force(false); // outside the lock, appends carry on meanwhile
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true; // try again next time
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                journal.force(false);
+                journal.close();
+                directoryLock.release();
+                lockFile.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't close the pin journal in " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * As if the process died here: closes the files without forcing anything and lets go of
+     * the directory, so another journal can recover it. For the tests.
+     */
+    void halt() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (this) {
+            closed = true;
+            try {
+                journal.close();
+                lockFile.close(); // releases the lock
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't close the pin journal in " + directory, e);
+            }
+        }
+    }
+
+    // --- Helpers ---
+
+    private void startRecord() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The pin journal is closed");
+        }
+        record.reset();
+        recordOut.writeLong(0); // header, filled in by writeRecord
+    }
+
+    private void writeRecord() throws IOException {
+        byte[] bytes = record.toByteArray();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        buffer.putInt(0, bytes.length - HEADER_SIZE);
+        buffer.putInt(4, (int) crc.getValue());
+
+        long start = journal.position();
+        try {
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+        } catch (IOException e) {
+            // don't leave half a record for the next append to follow
+            journal.truncate(start);
+            journal.position(start);
+            throw e;
+        }
+        if (syncEveryAppend) {
+            journal.force(false);
+        } else {
+            dirty = true;
+        }
+    }
+
+    // null if the lock is held, by another process or by another journal in this one
+    private static FileLock tryLock(FileChannel lockFile) throws IOException {
+        try {
+            return lockFile.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    // forces the directory entries, i.e. the snapshot's rename
+    private void syncDirectory() throws IOException {
+        if (WINDOWS) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    // length of the complete, intact record at the position, or -1 at the end of the good data
+    private static int validRecordLength(ByteBuffer records, int position) {
+        if (position + HEADER_SIZE > records.capacity()) {
+            return -1;
+        }
+        int length = records.getInt(position);
+        if (length <= 0 || length > records.capacity() - position - HEADER_SIZE) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(records.array(), position + HEADER_SIZE, length);
+        return (int) crc.getValue() == records.getInt(position + 4) ? length : -1;
+    }
+
+    private static void readSnapshot(Path snapshot, Replay replay) throws IOException {
+        try (InputStream file = Files.newInputStream(snapshot)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 64 * 1024), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IllegalStateException(snapshot + " is not a pin snapshot (or from another version)");
+            }
+            replay.counters(in.readLong(), in.readLong());
+            int tags = in.readInt();
+            for (int i = 0; i < tags; i++) {
+                replay.tag(in.readLong(), readString(in));
+            }
+            int pins = in.readInt();
+            for (int i = 0; i < pins; i++) {
+                replay.put(readPin(in));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IllegalStateException(snapshot + " is corrupt (checksum mismatch)");
+            }
+        }
+    }
+
+    private static void writePin(DataOutput out, StoredPin pin) throws IOException {
+        out.writeLong(pin.id);
+        writeString(out, pin.title);
+        writeString(out, pin.notes);
+        out.writeDouble(pin.latitude);
+        out.writeDouble(pin.longitude);
+        out.writeBoolean(pin.userId != null);
+        if (pin.userId != null) {
+            out.writeLong(pin.userId);
+        }
+        writeTime(out, pin.createdAt);
+        writeTime(out, pin.updatedAt);
+        out.writeInt(pin.tagIds.length);
+        for (long tagId : pin.tagIds) {
+            out.writeLong(tagId);
+        }
+    }
+
+    private static StoredPin readPin(DataInput in) throws IOException {
+        long id = in.readLong();
+        String title = readString(in);
+        String notes = readString(in);
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        Long userId = in.readBoolean() ? in.readLong() : null;
+        LocalDateTime createdAt = readTime(in);
+        LocalDateTime updatedAt = readTime(in);
+        long[] tagIds = new long[in.readInt()];
+        for (int i = 0; i < tagIds.length; i++) {
+            tagIds[i] = in.readLong();
+        }
+        return new StoredPin(id, title, notes, latitude, longitude, userId, createdAt, updatedAt, tagIds);
+    }
+
+    // writeUTF caps strings at 64KB, notes can be longer. -1 length = null
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutput out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInput in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
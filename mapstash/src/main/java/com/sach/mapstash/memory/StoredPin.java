@@ -0,0 +1,33 @@
+package com.sach.mapstash.memory;
+
+import java.time.LocalDateTime;
+
+/**
+ * One pin as the in-memory engine keeps it: the pins row plus the ids of its tags.
+ * Immutable - an update replaces the whole object, so a reader never sees half of one.
+ */
+final class StoredPin {
+
+    final long id;
+    final String title;
+    final String notes;
+    final double latitude;
+    final double longitude;
+    final Long userId; // null for shared pins
+    final LocalDateTime createdAt;
+    final LocalDateTime updatedAt;
+    final long[] tagIds;
+
+    StoredPin(long id, String title, String notes, double latitude, double longitude, Long userId,
+              LocalDateTime createdAt, LocalDateTime updatedAt, long[] tagIds) {
+        this.id = id;
+        this.title = title;
+        this.notes = notes;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.userId = userId;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.tagIds = tagIds;
+    }
+}
@@ -0,0 +1,17 @@
+package com.sach.mapstash.memory;
+
+/**
+ * One tag as the in-memory engine keeps it. Like a tags row it stays once created, even when
+ * no pin uses it anymore.
+ */
+final class StoredTag {
+
+    final long id;
+    final String name;
+    int pinCount; // pins using it, guarded by the store's lock
+
+    StoredTag(long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+}
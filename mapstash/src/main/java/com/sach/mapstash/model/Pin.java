@@ -10,7 +10,16 @@ import java.util.Objects;
 import java.util.Set;
 
 @Entity // JPA: Marks this class as a JPA entity
-@Table(name = "pins") // Maps to the 'pins' table
+@Table(name = "pins", // Maps to the 'pins' table
+        indexes = { // Lets bounding-box lookups do a range scan instead of a full table scan
+                @Index(name = "idx_pin_lat_lng", columnList = "latitude, longitude"),
+                // user-scoped queries: led by user_id so one user's queries only touch their own rows
+                @Index(name = "idx_pin_user_id", columnList = "user_id, id"),
+                @Index(name = "idx_pin_user_lat_lng", columnList = "user_id, latitude, longitude"),
+                // time-window pages: keyset ranges in (time, id) order, so no sort and no offset
+                @Index(name = "idx_pin_created_at", columnList = "created_at, id"),
+                @Index(name = "idx_pin_updated_at", columnList = "updated_at, id")
+        })
 public class Pin {
 
     @Id // JPA: Primary Key
@@ -30,7 +39,7 @@ public class Pin {
     @Column(name = "longitude", nullable = false) // Maps to 'longitude'
     private Double longitude;
 
-    @Column(name = "user_id") // Maps to 'user_id', nullable for MVP
+    @Column(name = "user_id") // Maps to 'user_id', nullable - null means a shared (pre-accounts) pin
     private Long userId; // Will eventually link to a User entity
 
     @Column(name = "created_at", nullable = false, updatable = false) // Maps to 'created_at'
@@ -125,6 +134,12 @@ public class Pin {
     // No public setter for updatedAt - managed by @UpdateTimestamp
     // public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
 
+    // for changes that only touch pin_tags: makes the row dirty, so the flush runs its UPDATE
+    // and @UpdateTimestamp moves updated_at
+    public void markUpdated() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
     public Set<Tag> getTags() {
         return tags;
     }
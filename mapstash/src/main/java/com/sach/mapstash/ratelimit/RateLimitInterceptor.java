@@ -0,0 +1,60 @@
+package com.sach.mapstash.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+
+/**
+ * Applies the {@link RateLimiter} to every /api controller call, using the endpoint's
+ * {@link RateLimited} cost. Refused requests get a 429 with Retry-After (whole seconds).
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String EXPENSIVE_PERMIT = RateLimitInterceptor.class.getName() + ".expensivePermit";
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, RateLimitProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!properties.isEnabled() || !(handler instanceof HandlerMethod handlerMethod)) {
+            return true; // CORS preflights, static resources
+        }
+
+        RateLimited limit = handlerMethod.getMethodAnnotation(RateLimited.class);
+        int cost = limit != null ? limit.cost() : RateLimited.DEFAULT_COST;
+        boolean expensive = limit != null && limit.expensive();
+
+        long waitNanos = rateLimiter.tryAdmit(rateLimiter.clientId(request::getHeader, request.getRemoteAddr()), cost, expensive);
+        if (waitNanos > 0) {
+            long retryAfterSeconds = RateLimiter.retryAfterSeconds(waitNanos);
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests, retry after " + retryAfterSeconds + "s");
+            return false;
+        }
+        if (expensive) {
+            request.setAttribute(EXPENSIVE_PERMIT, Boolean.TRUE);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(EXPENSIVE_PERMIT) != null) {
+            request.removeAttribute(EXPENSIVE_PERMIT);
+            rateLimiter.exitExpensive();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.sach.mapstash.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * mapstash.rate-limit.*
+ */
+@ConfigurationProperties(prefix = "mapstash.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // bucket size per client - the biggest burst a client can send after being idle
+    private int capacity = 100;
+
+    // tokens given back per second, i.e. the sustained rate
+    private double refillPerSecond = 10;
+
+    // expensive endpoints running at once, across all clients. Keep it below the DB pool size
+    // so cheap requests (getPinById, writes) still get a connection
+    private int maxConcurrentExpensive = 8;
+
+    // refilled buckets are dropped once there are more clients than this
+    private int maxClients = 10_000;
+
+    // take the client id from this header (e.g. X-Forwarded-For behind a proxy) instead of the remote address
+    private String clientIdHeader;
+
+    // proxies of ours in front of the app, each appending the address it saw to client-id-header:
+    // the client is this many entries from the right (1 = the last one, added by the proxy the app talks to)
+    private int trustedProxyHops = 1;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getCapacity() { return capacity; }
+    public void setCapacity(int capacity) { this.capacity = capacity; }
+    public double getRefillPerSecond() { return refillPerSecond; }
+    public void setRefillPerSecond(double refillPerSecond) { this.refillPerSecond = refillPerSecond; }
+    public int getMaxConcurrentExpensive() { return maxConcurrentExpensive; }
+    public void setMaxConcurrentExpensive(int maxConcurrentExpensive) { this.maxConcurrentExpensive = maxConcurrentExpensive; }
+    public int getMaxClients() { return maxClients; }
+    public void setMaxClients(int maxClients) { this.maxClients = maxClients; }
+    public String getClientIdHeader() { return clientIdHeader; }
+    public void setClientIdHeader(String clientIdHeader) { this.clientIdHeader = clientIdHeader; }
+    public int getTrustedProxyHops() { return trustedProxyHops; }
+    public void setTrustedProxyHops(int trustedProxyHops) { this.trustedProxyHops = trustedProxyHops; }
+}
@@ -0,0 +1,28 @@
+package com.sach.mapstash.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Cost of a controller endpoint for the per-client rate limit (see {@link RateLimitInterceptor}).
+ * Endpoints without it cost {@link #DEFAULT_COST} token.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    int DEFAULT_COST = 1;
+
+    /**
+     * Tokens taken from the client's bucket per request.
+     */
+    int cost() default DEFAULT_COST;
+
+    /**
+     * Heavy database work (table scans, many rows). These also need one of the
+     * mapstash.rate-limit.max-concurrent-expensive permits while they run.
+     */
+    boolean expensive() default false;
+}
@@ -0,0 +1,173 @@
+package com.sach.mapstash.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Admission control for the API: a token bucket per client (see {@link TokenBucket}) plus
+ * a global limit on how many expensive queries run at once.
+ * <p>
+ * Counters are published to Micrometer (GET /actuator/metrics/mapstash.ratelimit.requests):
+ * requests by outcome (allowed, throttled = client out of tokens, overloaded = no expensive-query
+ * permit free), plus gauges for the tracked clients and the expensive queries in flight.
+ * <p>
+ * Which client a request counts against ({@link #clientId}) and how a wait becomes a Retry-After
+ * ({@link #retryAfterSeconds}) are decided here rather than in {@link RateLimitInterceptor}, so
+ * every front end that admits requests - the servlet interceptor and the reactive router - applies
+ * the same rules.
+ */
+@Component
+public class RateLimiter {
+
+    // expensive queries take well under a second, so a permit is usually free again by then
+    static final long OVERLOADED_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimitProperties properties;
+    private final LongSupplier nanoClock;
+    private final long nanosPerToken;
+    private final long capacityNanos;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private volatile int cleanupThreshold;
+    private final Semaphore expensivePermits;
+
+    private final Counter allowed;
+    private final Counter throttled;
+    private final Counter overloaded;
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        if (properties.getCapacity() < 1 || !(properties.getRefillPerSecond() > 0) || properties.getMaxConcurrentExpensive() < 1
+                || properties.getTrustedProxyHops() < 1) {
+            throw new IllegalStateException("mapstash.rate-limit needs capacity >= 1, refill-per-second > 0, "
+                    + "max-concurrent-expensive >= 1 and trusted-proxy-hops >= 1");
+        }
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / properties.getRefillPerSecond());
+        this.capacityNanos = nanosPerToken * properties.getCapacity();
+        this.cleanupThreshold = properties.getMaxClients();
+        this.expensivePermits = new Semaphore(properties.getMaxConcurrentExpensive());
+
+        this.allowed = requestCounter(meterRegistry, "allowed");
+        this.throttled = requestCounter(meterRegistry, "throttled");
+        this.overloaded = requestCounter(meterRegistry, "overloaded");
+        Gauge.builder("mapstash.ratelimit.clients", buckets, Map::size)
+                .description("Clients with a token bucket")
+                .register(meterRegistry);
+        Gauge.builder("mapstash.ratelimit.expensive.in-flight", expensivePermits,
+                        permits -> properties.getMaxConcurrentExpensive() - permits.availablePermits())
+                .description("Expensive queries currently running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decides whether a request may run: takes tokens from the client's bucket and, for
+     * expensive endpoints, one of the global permits (without waiting for it).
+     * @param cost tokens to take, capped at the bucket capacity so every endpoint stays reachable
+     * @param expensive whether the request needs an expensive-query permit. If it gets one,
+     *                  {@link #exitExpensive()} must be called when the request is done.
+     * @return 0 if admitted, otherwise how many nanoseconds the client should wait before retrying
+     */
+    public long tryAdmit(String clientId, int cost, boolean expensive) {
+        long now = nanoClock.getAsLong();
+        if (buckets.size() >= cleanupThreshold) {
+            dropRefilledBuckets(now); // before the lookup, a brand new bucket counts as refilled too
+        }
+        int tokens = Math.min(cost, properties.getCapacity());
+        TokenBucket bucket;
+        long wait;
+        do {
+            bucket = buckets.computeIfAbsent(clientId, id -> new TokenBucket(now));
+            wait = bucket.tryConsume(tokens, now, nanosPerToken, capacityNanos);
+            // a sweep may have dropped the bucket (still full) between the lookup and the consume: the
+            // tokens then went to an orphan, so charge the client's current bucket instead. Once it's
+            // no longer full a sweep leaves it alone
+        } while (buckets.get(clientId) != bucket);
+        if (wait > 0) {
+            throttled.increment();
+            return wait;
+        }
+        if (expensive && !expensivePermits.tryAcquire()) {
+            // the server is busy, not the client over its limit: its retry shouldn't cost it twice
+            bucket.refund(tokens, nanosPerToken);
+            overloaded.increment();
+            return OVERLOADED_RETRY_NANOS;
+        }
+        allowed.increment();
+        return 0;
+    }
+
+    public void exitExpensive() {
+        expensivePermits.release();
+    }
+
+    /**
+     * Who a request counts against: with mapstash.rate-limit.client-id-header set (X-Forwarded-For:
+     * client, proxy1, ...) the address trusted-proxy-hops entries from the right, else the remote address.
+     * Entries further left were sent by the client and can be anything, so they're never used -
+     * unless the list is shorter than the hops, then the leftmost one is the best there is.
+     * @param headers header lookup by name
+     */
+    public String clientId(UnaryOperator<String> headers, String remoteAddress) {
+        String header = properties.getClientIdHeader();
+        if (header != null && !header.isBlank()) {
+            String value = headers.apply(header);
+            if (value != null && !value.isBlank()) {
+                String[] hops = value.split(",");
+                String client = hops[Math.max(0, hops.length - properties.getTrustedProxyHops())].trim();
+                if (!client.isEmpty()) {
+                    return client;
+                }
+            }
+        }
+        return remoteAddress;
+    }
+
+    // Retry-After is in whole seconds, rounded up so the client doesn't come back too early
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public int getClientCount() {
+        return buckets.size();
+    }
+
+    // --- Helpers ---
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("mapstash.ratelimit.requests")
+                .description("API requests seen by the rate limiter")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    // a refilled bucket is the same as a brand new one, so dropping it changes nothing for that client
+    private synchronized void dropRefilledBuckets(long now) {
+        if (buckets.size() < cleanupThreshold) {
+            return; // another thread already did it
+        }
+        for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+            if (entry.getValue().isFull(now)) {
+                buckets.remove(entry.getKey(), entry.getValue()); // not one created for the client meanwhile
+            }
+        }
+
+        // lots of clients that are all still active: don't rescan on every new client
+        cleanupThreshold = Math.max(properties.getMaxClients(), buckets.size() * 2);
+    }
+}
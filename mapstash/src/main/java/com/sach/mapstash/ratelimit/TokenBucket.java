@@ -0,0 +1,51 @@
+package com.sach.mapstash.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket for one client.
+ * <p>
+ * Instead of a token count plus a last-refill time (two values that would need a lock),
+ * the whole state is one number: the moment the bucket will be full again. Taking n tokens
+ * pushes that moment n refill intervals further out; the request is refused if that would
+ * put it more than a full bucket's worth of time in the future. One CAS per request.
+ */
+final class TokenBucket {
+
+    private final AtomicLong fullAtNanos;
+
+    TokenBucket(long nowNanos) {
+        this.fullAtNanos = new AtomicLong(nowNanos); // starts full
+    }
+
+    /**
+     * @param nanosPerToken refill interval of one token
+     * @param capacityNanos refill time of the whole bucket (capacity * nanosPerToken)
+     * @return 0 if the tokens were taken, otherwise how long until they would be available
+     */
+    long tryConsume(int cost, long nowNanos, long nanosPerToken, long capacityNanos) {
+        while (true) {
+            long fullAt = fullAtNanos.get();
+            long next = Math.max(fullAt, nowNanos) + cost * nanosPerToken;
+            long wait = next - nowNanos - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back tokens taken by {@link #tryConsume} for a request that didn't run after all:
+     * moves the full-again moment back by what it took. Landing in the past just means full.
+     */
+    void refund(int cost, long nanosPerToken) {
+        fullAtNanos.addAndGet(-cost * nanosPerToken);
+    }
+
+    boolean isFull(long nowNanos) {
+        return fullAtNanos.get() - nowNanos <= 0;
+    }
+}
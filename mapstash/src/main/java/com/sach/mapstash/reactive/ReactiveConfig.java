@@ -0,0 +1,173 @@
+package com.sach.mapstash.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sach.mapstash.ratelimit.RateLimitProperties;
+import com.sach.mapstash.ratelimit.RateLimiter;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ServletHttpHandlerAdapter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+
+/**
+ * Wires the reactive read path for the "reactive" profile: GET /api/reactive/pins,
+ * /api/reactive/pins/{id}, /api/reactive/pins/nearby and /api/reactive/tags, served by
+ * WebFlux handlers over an R2DBC pool.
+ * <p>
+ * The app stays a servlet app - the router is mounted as its own servlet next to the
+ * DispatcherServlet, and Tomcat's non-blocking servlet I/O drives it, so a request doesn't
+ * hold a thread while it waits for the database or for a slow client. Writes still go
+ * through the normal /api endpoints.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(ReactiveProperties.class)
+public class ReactiveConfig {
+
+    static final String SERVLET_MAPPING = "/api/reactive/*";
+
+    // the pool is kept out of the context: Boot backs off the JDBC DataSource (and with it JPA)
+    // as soon as there's a ConnectionFactory bean
+    @Bean
+    public ReactiveDatabase reactiveDatabase(ReactiveProperties properties) {
+        if (properties.getUrl() == null || properties.getUrl().isBlank()) {
+            throw new IllegalStateException("The reactive profile needs mapstash.reactive.url (e.g. r2dbc:mysql://localhost:3306/mapstashdb)");
+        }
+
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(properties.getUrl()).mutate();
+        if (properties.getUsername() != null) {
+            options.option(ConnectionFactoryOptions.USER, properties.getUsername());
+        }
+        if (properties.getPassword() != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, properties.getPassword());
+        }
+        return new ReactiveDatabase(new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .maxSize(properties.getPoolMaxSize())
+                .build()));
+    }
+
+    @Bean
+    public ReactivePinReader reactivePinReader(ReactiveDatabase reactiveDatabase) {
+        return new ReactivePinReader(reactiveDatabase.databaseClient);
+    }
+
+    @Bean
+    public ReactivePinHandler reactivePinHandler(ReactivePinReader reactivePinReader) {
+        return new ReactivePinHandler(reactivePinReader);
+    }
+
+    // paths are relative to the servlet mapping. Same token costs as the servlet endpoints;
+    // there's no expensive-query permit here, the connection pool size caps the concurrent queries
+    @Bean
+    public RouterFunction<ServerResponse> reactiveRoutes(ReactivePinHandler handler, RateLimiter rateLimiter,
+                                                         RateLimitProperties rateLimitProperties) {
+        return RouterFunctions.route()
+                .add(RouterFunctions.route(GET("/pins/nearby"), handler::findNearbyPins) // before /pins/{id}
+                        .filter(rateLimit(rateLimiter, rateLimitProperties, 5)))
+                .add(RouterFunctions.route(GET("/pins/{id}"), handler::getPinById)
+                        .filter(rateLimit(rateLimiter, rateLimitProperties, 1)))
+                .add(RouterFunctions.route(GET("/pins"), handler::getAllPins)
+                        .filter(rateLimit(rateLimiter, rateLimitProperties, 5)))
+                .add(RouterFunctions.route(GET("/tags"), handler::getAllTagNames)
+                        .filter(rateLimit(rateLimiter, rateLimitProperties, 2)))
+                .build();
+    }
+
+    @Bean
+    public ServletRegistrationBean<ServletHttpHandlerAdapter> reactiveReadServlet(RouterFunction<ServerResponse> reactiveRoutes,
+                                                                                  ObjectMapper objectMapper) {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    // Boot's mapper, so the JSON is byte for byte what the servlet endpoints write
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .webFilter(corsFilter())
+                .build();
+
+        ServletRegistrationBean<ServletHttpHandlerAdapter> registration = new ServletRegistrationBean<>(
+                new ServletHttpHandlerAdapter(RouterFunctions.toHttpHandler(reactiveRoutes, strategies)), SERVLET_MAPPING);
+        registration.setName("reactiveReadServlet");
+        registration.setAsyncSupported(true);
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+
+    // --- Helpers ---
+
+    // WebConfig's CORS rules only cover the DispatcherServlet
+    private static CorsWebFilter corsFilter() {
+        CorsConfiguration cors = new CorsConfiguration();
+        cors.setAllowedOrigins(List.of("http://localhost:3000"));
+        cors.setAllowedMethods(List.of(HttpMethod.GET.name(), HttpMethod.OPTIONS.name()));
+        cors.addAllowedHeader("*");
+        cors.addExposedHeader(HttpHeaders.RETRY_AFTER);
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", cors);
+        return new CorsWebFilter(source);
+    }
+
+    private static HandlerFilterFunction<ServerResponse, ServerResponse> rateLimit(RateLimiter rateLimiter,
+                                                                                 RateLimitProperties properties, int cost) {
+        return (request, next) -> {
+            if (!properties.isEnabled()) {
+                return next.handle(request);
+            }
+            String remoteAddress = request.remoteAddress().map(ReactiveConfig::hostAddress).orElse("unknown");
+            long waitNanos = rateLimiter.tryAdmit(
+                    rateLimiter.clientId(request.headers()::firstHeader, remoteAddress), cost, false);
+            if (waitNanos > 0) {
+                return ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, Long.toString(RateLimiter.retryAfterSeconds(waitNanos)))
+                        .build();
+            }
+            return next.handle(request);
+        };
+    }
+
+    // same form as HttpServletRequest.getRemoteAddr(), so a client shares its bucket across both paths
+    private static String hostAddress(InetSocketAddress address) {
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
+    // the R2DBC pool, closed with the context
+    public static class ReactiveDatabase implements DisposableBean {
+        private final ConnectionPool pool;
+        private final DatabaseClient databaseClient;
+
+        ReactiveDatabase(ConnectionPool pool) {
+            this.pool = pool;
+            this.databaseClient = DatabaseClient.create(pool);
+        }
+
+        @Override
+        public void destroy() {
+            pool.dispose();
+        }
+    }
+}
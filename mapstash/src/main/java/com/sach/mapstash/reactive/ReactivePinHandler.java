@@ -0,0 +1,88 @@
+package com.sach.mapstash.reactive;
+
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * WebFlux handlers for the reactive read endpoints. Same parameters and JSON as the
+ * servlet controllers; lists are streamed as a JSON array, or as one pin per line with
+ * Accept: application/x-ndjson.
+ */
+public class ReactivePinHandler {
+
+    private final ReactivePinReader reader;
+
+    public ReactivePinHandler(ReactivePinReader reader) {
+        this.reader = reader;
+    }
+
+    //GET /api/reactive/pins (?fields=summary)
+    public Mono<ServerResponse> getAllPins(ServerRequest request) {
+        if (isSummary(request)) {
+            return ServerResponse.ok().contentType(listType(request)).body(reader.findAllPinSummaries(), PinSummaryDto.class);
+        }
+        return ServerResponse.ok().contentType(listType(request)).body(reader.findAllPins(), PinDto.class);
+    }
+
+    //GET /api/reactive/pins/{id} - 404 if n/a
+    public Mono<ServerResponse> getPinById(ServerRequest request) {
+        long id;
+        try {
+            id = Long.parseLong(request.pathVariable("id"));
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        return reader.findPinById(id)
+                .flatMap(pin -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(pin))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    //GET /api/reactive/pins/nearby?lat=&lng=&radius= (?fields=summary)
+    public Mono<ServerResponse> findNearbyPins(ServerRequest request) {
+        double lat;
+        double lng;
+        double radius;
+        try {
+            lat = Double.parseDouble(request.queryParam("lat").orElseThrow(() -> new NumberFormatException("lat is required")));
+            lng = Double.parseDouble(request.queryParam("lng").orElseThrow(() -> new NumberFormatException("lng is required")));
+            radius = Double.parseDouble(request.queryParam("radius").orElse("2000")); // Default radius = 2km, like the servlet API
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+
+        if (isSummary(request)) {
+            return ServerResponse.ok().contentType(listType(request))
+                    .body(reader.findNearbyPinSummaries(lat, lng, radius), PinSummaryDto.class);
+        }
+        return ServerResponse.ok().contentType(listType(request)).body(reader.findNearbyPins(lat, lng, radius), PinDto.class);
+    }
+
+    //GET /api/reactive/tags
+    //collected into one JSON array - the list is short, and a Flux<String> would be written as plain text
+    public Mono<ServerResponse> getAllTagNames(ServerRequest request) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(reader.findAllTagNames().collectList(), new ParameterizedTypeReference<List<String>>() {});
+    }
+
+    // --- Helpers ---
+
+    private static boolean isSummary(ServerRequest request) {
+        return request.queryParam("fields").map("summary"::equalsIgnoreCase).orElse(false);
+    }
+
+    private static MediaType listType(ServerRequest request) {
+        for (MediaType accepted : request.headers().accept()) {
+            if (accepted.isCompatibleWith(MediaType.APPLICATION_NDJSON) && !accepted.isWildcardType()) {
+                return MediaType.APPLICATION_NDJSON;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+}
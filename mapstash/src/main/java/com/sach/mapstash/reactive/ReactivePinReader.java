@@ -0,0 +1,153 @@
+package com.sach.mapstash.reactive;
+
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.dto.TagDto;
+import com.sach.mapstash.geo.GeoMath;
+import com.sach.mapstash.service.PinDtos;
+import io.r2dbc.spi.Row;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only pin queries over R2DBC, for the reactive read path.
+ * <p>
+ * Each query joins the pins with their tags, ordered by pin id, and folds consecutive rows of
+ * the same pin into one DTO. Pins are emitted one by one as rows arrive, so a large result is
+ * never held in memory and a slow client slows the query down (backpressure) instead of
+ * piling up a buffer. The DTOs are built by {@link PinDtos}, like in the blocking services.
+ */
+public class ReactivePinReader {
+
+    private static final String PIN_QUERY = "SELECT p.id, p.title, p.notes, p.latitude, p.longitude, p.user_id, "
+            + "p.created_at, p.updated_at, t.id AS tag_id, t.name AS tag_name "
+            + "FROM pins p LEFT JOIN pin_tags pt ON pt.pin_id = p.id LEFT JOIN tags t ON t.id = pt.tag_id ";
+
+    private static final String SUMMARY_QUERY = "SELECT p.id, p.title, p.latitude, p.longitude, t.name AS tag_name "
+            + "FROM pins p LEFT JOIN pin_tags pt ON pt.pin_id = p.id LEFT JOIN tags t ON t.id = pt.tag_id ";
+
+    private static final String BOUNDING_BOX = "WHERE p.latitude BETWEEN :minLat AND :maxLat "
+            + "AND p.longitude BETWEEN :minLng AND :maxLng ";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactivePinReader(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<PinDto> findAllPins() {
+        return pins("", Map.of());
+    }
+
+    public Flux<PinSummaryDto> findAllPinSummaries() {
+        return summaries("", Map.of());
+    }
+
+    public Mono<PinDto> findPinById(long id) {
+        return pins("WHERE p.id = :id ", Map.of("id", id)).next();
+    }
+
+    // same semantics as PinService.findNearbyPins: bounding box in SQL, exact distance check here
+    public Flux<PinDto> findNearbyPins(double latitude, double longitude, double radiusInMeters) {
+        return pins(BOUNDING_BOX, boundingBoxParams(latitude, longitude, radiusInMeters))
+                .filter(pin -> GeoMath.haversineDistance(latitude, longitude, pin.getLatitude(), pin.getLongitude()) <= radiusInMeters);
+    }
+
+    public Flux<PinSummaryDto> findNearbyPinSummaries(double latitude, double longitude, double radiusInMeters) {
+        return summaries(BOUNDING_BOX, boundingBoxParams(latitude, longitude, radiusInMeters))
+                .filter(pin -> GeoMath.haversineDistance(latitude, longitude, pin.getLatitude(), pin.getLongitude()) <= radiusInMeters);
+    }
+
+    public Flux<String> findAllTagNames() {
+        return databaseClient.sql("SELECT DISTINCT name FROM tags ORDER BY name")
+                .map((row, metadata) -> row.get("name", String.class))
+                .all();
+    }
+
+    // --- Helpers ---
+
+    private Flux<PinDto> pins(String where, Map<String, Object> params) {
+        return bind(databaseClient.sql(PIN_QUERY + where + "ORDER BY p.id"), params)
+                .map((row, metadata) -> new PinTagRow(row, true))
+                .all()
+                .bufferUntilChanged(pinRow -> pinRow.id)
+                .map(ReactivePinReader::toPinDto);
+    }
+
+    private Flux<PinSummaryDto> summaries(String where, Map<String, Object> params) {
+        return bind(databaseClient.sql(SUMMARY_QUERY + where + "ORDER BY p.id"), params)
+                .map((row, metadata) -> new PinTagRow(row, false))
+                .all()
+                .bufferUntilChanged(pinRow -> pinRow.id)
+                .map(ReactivePinReader::toPinSummaryDto);
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, Map<String, Object> params) {
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            spec = spec.bind(param.getKey(), param.getValue());
+        }
+        return spec;
+    }
+
+    private static Map<String, Object> boundingBoxParams(double latitude, double longitude, double radiusInMeters) {
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        return Map.of("minLat", box[0], "maxLat", box[1], "minLng", box[2], "maxLng", box[3]);
+    }
+
+    // rows of one pin (one per tag, or a single row with no tag)
+    private static PinDto toPinDto(List<PinTagRow> rows) {
+        PinTagRow first = rows.get(0);
+        List<TagDto> tags = new ArrayList<>();
+        for (PinTagRow row : rows) {
+            if (row.tagName != null) {
+                tags.add(new TagDto(row.tagId, row.tagName));
+            }
+        }
+        return PinDtos.pinDto(first.id, first.title, first.notes, first.latitude, first.longitude, first.userId,
+                first.createdAt, first.updatedAt, tags);
+    }
+
+    private static PinSummaryDto toPinSummaryDto(List<PinTagRow> rows) {
+        PinTagRow first = rows.get(0);
+        List<String> tagNames = new ArrayList<>();
+        for (PinTagRow row : rows) {
+            if (row.tagName != null) {
+                tagNames.add(row.tagName);
+            }
+        }
+        return PinDtos.pinSummaryDto(first.id, first.title, first.latitude, first.longitude, tagNames);
+    }
+
+    // copied out of the R2DBC row, which is only valid inside the mapping callback
+    private static final class PinTagRow {
+        private final Long id;
+        private final String title;
+        private final String notes;
+        private final Double latitude;
+        private final Double longitude;
+        private final Long userId;
+        private final LocalDateTime createdAt;
+        private final LocalDateTime updatedAt;
+        private final Long tagId;
+        private final String tagName;
+
+        private PinTagRow(Row row, boolean full) {
+            this.id = row.get("id", Long.class);
+            this.title = row.get("title", String.class);
+            this.latitude = row.get("latitude", Double.class);
+            this.longitude = row.get("longitude", Double.class);
+            this.tagName = row.get("tag_name", String.class);
+            this.notes = full ? row.get("notes", String.class) : null;
+            this.userId = full ? row.get("user_id", Long.class) : null;
+            this.createdAt = full ? row.get("created_at", LocalDateTime.class) : null;
+            this.updatedAt = full ? row.get("updated_at", LocalDateTime.class) : null;
+            this.tagId = full ? row.get("tag_id", Long.class) : null;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.sach.mapstash.reactive;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * mapstash.reactive.* - only used with the "reactive" profile.
+ */
+@ConfigurationProperties(prefix = "mapstash.reactive")
+public class ReactiveProperties {
+
+    // R2DBC url of the same database the JPA datasource uses, e.g. r2dbc:mysql://localhost:3306/mapstash
+    private String url;
+    private String username;
+    private String password;
+
+    // connections to the database. This is also the cap on concurrent reactive queries,
+    // waiting for a connection doesn't hold a thread
+    private int poolMaxSize = 20;
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+    public String getPassword() { return password; }
+    public void setPassword(String password) { this.password = password; }
+    public int getPoolMaxSize() { return poolMaxSize; }
+    public void setPoolMaxSize(int poolMaxSize) { this.poolMaxSize = poolMaxSize; }
+}
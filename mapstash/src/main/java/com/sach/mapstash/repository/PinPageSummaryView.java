@@ -0,0 +1,21 @@
+package com.sach.mapstash.repository;
+
+import java.time.LocalDateTime;
+
+// a PinSummaryView plus the two keys a time-window page can be ordered by,
+// so the page's next cursor doesn't need the full pin
+public class PinPageSummaryView extends PinSummaryView {
+
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+
+    public PinPageSummaryView(Long id, String title, Double latitude, Double longitude,
+                              LocalDateTime createdAt, LocalDateTime updatedAt) {
+        super(id, title, latitude, longitude);
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
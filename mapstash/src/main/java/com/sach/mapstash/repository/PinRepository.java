@@ -1,9 +1,19 @@
 package com.sach.mapstash.repository;
 
 import com.sach.mapstash.model.Pin;
+import com.sach.mapstash.model.Tag;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 
 @Repository
@@ -12,5 +22,149 @@ public interface PinRepository extends JpaRepository<Pin, Long> { // Extends Jpa
     // Basic CRUD methods (save, findById, findAll, deleteById, etc.) are inherited from JpaRepository.
     //MAGIC
 
+    // The List<Pin> finders below fetch Pin.tags in the same query (@EntityGraph) - every caller maps
+    // the pins to PinDtos with their tag names, lazy loading would be one more query per pin.
 
-}
\ No newline at end of file
+    @EntityGraph(attributePaths = "tags")
+    @Query("SELECT p FROM Pin p ORDER BY p.id")
+    List<Pin> findAllWithTags();
+
+
+    // --- Summary queries (narrow columns only, notes are never selected) ---
+
+    @Query("SELECT new com.sach.mapstash.repository.PinSummaryView(p.id, p.title, p.latitude, p.longitude) " +
+            "FROM Pin p ORDER BY p.id")
+    List<PinSummaryView> findAllSummaries();
+
+    @Query("SELECT new com.sach.mapstash.repository.PinTagNameView(p.id, t.name) FROM Pin p JOIN p.tags t")
+    List<PinTagNameView> findAllPinTagNames();
+
+    //bounding box versions - the caller does the exact radius check afterwards
+    @Query("SELECT new com.sach.mapstash.repository.PinSummaryView(p.id, p.title, p.latitude, p.longitude) " +
+            "FROM Pin p " +
+            "WHERE p.latitude BETWEEN :minLat AND :maxLat AND p.longitude BETWEEN :minLng AND :maxLng " +
+            "ORDER BY p.id")
+    List<PinSummaryView> findSummariesInBoundingBox(@Param("minLat") double minLat, @Param("maxLat") double maxLat,
+                                                    @Param("minLng") double minLng, @Param("maxLng") double maxLng);
+
+    @EntityGraph(attributePaths = "tags")
+    List<Pin> findByLatitudeBetweenAndLongitudeBetween(double minLat, double maxLat, double minLng, double maxLng);
+
+    @Query("SELECT new com.sach.mapstash.repository.PinTagNameView(p.id, t.name) FROM Pin p JOIN p.tags t " +
+            "WHERE p.latitude BETWEEN :minLat AND :maxLat AND p.longitude BETWEEN :minLng AND :maxLng")
+    List<PinTagNameView> findPinTagNamesInBoundingBox(@Param("minLat") double minLat, @Param("maxLat") double maxLat,
+                                                      @Param("minLng") double minLng, @Param("maxLng") double maxLng);
+
+
+    // --- User-scoped queries (all use the user_id-led indexes) ---
+
+    @EntityGraph(attributePaths = "tags")
+    List<Pin> findByUserIdOrderById(Long userId);
+
+    Optional<Pin> findByIdAndUserId(Long id, Long userId);
+
+    @EntityGraph(attributePaths = "tags")
+    List<Pin> findByUserIdAndLatitudeBetweenAndLongitudeBetween(Long userId, double minLat, double maxLat,
+                                                                double minLng, double maxLng);
+
+    @Query("SELECT new com.sach.mapstash.repository.PinSummaryView(p.id, p.title, p.latitude, p.longitude) " +
+            "FROM Pin p WHERE p.userId = :userId ORDER BY p.id")
+    List<PinSummaryView> findSummariesByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT new com.sach.mapstash.repository.PinTagNameView(p.id, t.name) FROM Pin p JOIN p.tags t WHERE p.userId = :userId")
+    List<PinTagNameView> findPinTagNamesByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT new com.sach.mapstash.repository.PinSummaryView(p.id, p.title, p.latitude, p.longitude) " +
+            "FROM Pin p " +
+            "WHERE p.userId = :userId " +
+            "AND p.latitude BETWEEN :minLat AND :maxLat AND p.longitude BETWEEN :minLng AND :maxLng " +
+            "ORDER BY p.id")
+    List<PinSummaryView> findSummariesByUserIdInBoundingBox(@Param("userId") Long userId,
+                                                            @Param("minLat") double minLat, @Param("maxLat") double maxLat,
+                                                            @Param("minLng") double minLng, @Param("maxLng") double maxLng);
+
+    @Query("SELECT new com.sach.mapstash.repository.PinTagNameView(p.id, t.name) FROM Pin p JOIN p.tags t " +
+            "WHERE p.userId = :userId " +
+            "AND p.latitude BETWEEN :minLat AND :maxLat AND p.longitude BETWEEN :minLng AND :maxLng")
+    List<PinTagNameView> findPinTagNamesByUserIdInBoundingBox(@Param("userId") Long userId,
+                                                              @Param("minLat") double minLat, @Param("maxLat") double maxLat,
+                                                              @Param("minLng") double minLng, @Param("maxLng") double maxLng);
+
+    //tag names this user has actually used
+    @Query("SELECT DISTINCT t.name FROM Pin p JOIN p.tags t WHERE p.userId = :userId ORDER BY t.name")
+    List<String> findTagNamesByUserId(@Param("userId") Long userId);
+
+
+    // --- Time-window pages (see TimeWindowQuery) ---
+    // Keyset: (time, id) after the start key, written so the time column alone bounds the range
+    // (time >= x AND (time > x OR id > y)) - read off idx_pin_created_at / idx_pin_updated_at in
+    // index order, the other conditions only filter that range and the limit ends the scan.
+    // The area versions add the bounding box, the database may then range-scan idx_pin_lat_lng
+    // instead when the area is the narrower range (sorting only the area's rows).
+
+    @Query("SELECT p.id FROM Pin p " +
+            "WHERE p.createdAt >= :afterTime AND (p.createdAt > :afterTime OR p.id > :afterId) " +
+            "AND p.createdAt < :createdBefore AND p.updatedAt >= :updatedFrom " +
+            "ORDER BY p.createdAt, p.id")
+    List<Long> findPageIdsByCreatedAt(@Param("afterTime") LocalDateTime afterTime, @Param("afterId") long afterId,
+                                      @Param("createdBefore") LocalDateTime createdBefore,
+                                      @Param("updatedFrom") LocalDateTime updatedFrom, Limit limit);
+
+    @Query("SELECT p.id FROM Pin p " +
+            "WHERE p.createdAt >= :afterTime AND (p.createdAt > :afterTime OR p.id > :afterId) " +
+            "AND p.createdAt < :createdBefore AND p.updatedAt >= :updatedFrom " +
+            "AND p.latitude BETWEEN :minLat AND :maxLat AND p.longitude BETWEEN :minLng AND :maxLng " +
+            "ORDER BY p.createdAt, p.id")
+    List<Long> findPageIdsByCreatedAtInBoundingBox(@Param("afterTime") LocalDateTime afterTime,
+                                                   @Param("afterId") long afterId,
+                                                   @Param("createdBefore") LocalDateTime createdBefore,
+                                                   @Param("updatedFrom") LocalDateTime updatedFrom,
+                                                   @Param("minLat") double minLat, @Param("maxLat") double maxLat,
+                                                   @Param("minLng") double minLng, @Param("maxLng") double maxLng,
+                                                   Limit limit);
+
+    @Query("SELECT p.id FROM Pin p " +
+            "WHERE p.updatedAt >= :afterTime AND (p.updatedAt > :afterTime OR p.id > :afterId) " +
+            "ORDER BY p.updatedAt, p.id")
+    List<Long> findPageIdsByUpdatedAt(@Param("afterTime") LocalDateTime afterTime, @Param("afterId") long afterId,
+                                      Limit limit);
+
+    @Query("SELECT p.id FROM Pin p " +
+            "WHERE p.updatedAt >= :afterTime AND (p.updatedAt > :afterTime OR p.id > :afterId) " +
+            "AND p.latitude BETWEEN :minLat AND :maxLat AND p.longitude BETWEEN :minLng AND :maxLng " +
+            "ORDER BY p.updatedAt, p.id")
+    List<Long> findPageIdsByUpdatedAtInBoundingBox(@Param("afterTime") LocalDateTime afterTime,
+                                                   @Param("afterId") long afterId,
+                                                   @Param("minLat") double minLat, @Param("maxLat") double maxLat,
+                                                   @Param("minLng") double minLng, @Param("maxLng") double maxLng,
+                                                   Limit limit);
+
+    // the pins with their tags in one query (in no particular order)
+    @EntityGraph(attributePaths = "tags")
+    List<Pin> findWithTagsByIdIn(Collection<Long> ids);
+
+    // summary versions of the page's pins (in no particular order), the timestamps are for the next cursor
+    @Query("SELECT new com.sach.mapstash.repository.PinPageSummaryView(p.id, p.title, p.latitude, p.longitude, " +
+            "p.createdAt, p.updatedAt) FROM Pin p WHERE p.id IN :ids")
+    List<PinPageSummaryView> findPageSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.sach.mapstash.repository.PinTagNameView(p.id, t.name) FROM Pin p JOIN p.tags t WHERE p.id IN :ids")
+    List<PinTagNameView> findPinTagNamesByIdIn(@Param("ids") Collection<Long> ids);
+
+
+    // --- pin_tags rows, straight on the join table (never loads Pin.tags or Tag.pins) ---
+
+    // the pin's tags (id and name), without initializing Pin.tags
+    @Query(value = "SELECT t.* FROM pin_tags pt JOIN tags t ON t.id = pt.tag_id WHERE pt.pin_id = :pinId", nativeQuery = true)
+    List<Tag> findTagsByPinId(@Param("pinId") Long pinId);
+
+    @Modifying
+    @Query(value = "DELETE FROM pin_tags WHERE pin_id = :pinId AND tag_id IN (:tagIds)", nativeQuery = true)
+    int deletePinTags(@Param("pinId") Long pinId, @Param("tagIds") Collection<Long> tagIds);
+
+    // one statement for any number of tags
+    @Modifying
+    @Query(value = "INSERT INTO pin_tags (pin_id, tag_id) SELECT :pinId, t.id FROM tags t WHERE t.id IN (:tagIds)",
+            nativeQuery = true)
+    int insertPinTags(@Param("pinId") Long pinId, @Param("tagIds") Collection<Long> tagIds);
+}
@@ -0,0 +1,24 @@
+package com.sach.mapstash.repository;
+
+// Spring Data projection: only these columns end up in the SELECT
+// (so the notes TEXT column never leaves the database). A plain class built by the
+// query's constructor expression - an interface projection would put a proxy around every row.
+public class PinSummaryView {
+
+    private final Long id;
+    private final String title;
+    private final Double latitude;
+    private final Double longitude;
+
+    public PinSummaryView(Long id, String title, Double latitude, Double longitude) {
+        this.id = id;
+        this.title = title;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public Long getId() { return id; }
+    public String getTitle() { return title; }
+    public Double getLatitude() { return latitude; }
+    public Double getLongitude() { return longitude; }
+}
@@ -0,0 +1,17 @@
+package com.sach.mapstash.repository;
+
+// one row per (pin, tag) pair - used to attach tag names to summaries
+// without loading Pin.tags collections one pin at a time
+public class PinTagNameView {
+
+    private final Long pinId;
+    private final String tagName;
+
+    public PinTagNameView(Long pinId, String tagName) {
+        this.pinId = pinId;
+        this.tagName = tagName;
+    }
+
+    public Long getPinId() { return pinId; }
+    public String getTagName() { return tagName; }
+}
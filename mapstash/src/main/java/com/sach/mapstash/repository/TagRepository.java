@@ -1,15 +1,19 @@
 package com.sach.mapstash.repository; // Adjust package name if needed (e.g., use '.data' or '.repositories')
 
 import com.sach.mapstash.model.Tag;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query; // Import for @Query
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List; // Import List
 import java.util.Optional; // Import Optional
 
 @Repository // Declares this interface as a Spring Data Repository (component)
-public interface TagRepository extends JpaRepository<Tag, Long> { // extends JpaRepository for Tag entity with Long ID
+public interface TagRepository extends JpaRepository<Tag, Long>, TagRepositoryCustom { // extends JpaRepository for Tag entity with Long ID
 
 
     Optional<Tag> findByNameIgnoreCase(String name); // changed to IgnoreCase for flexibility
@@ -19,9 +23,20 @@ public interface TagRepository extends JpaRepository<Tag, Long> { // extends Jpa
 
     List<Tag> findByNameInIgnoreCase(List<String> names); // Added for batch lookup
 
+    // locking read after insertMissingTags: sees rows other transactions committed after ours
+    // started (a plain select under REPEATABLE READ wouldn't). Exact match on the unique index.
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT t FROM Tag t WHERE t.name IN :names")
+    List<Tag> findByNameInLocking(@Param("names") Collection<String> names);
+
 //basically just returns the tag names, instead of the whole row
     //jpql: same same but different
     //used to populate the dropdown with available tags. i think it works
     @Query("SELECT DISTINCT t.name FROM Tag t ORDER BY t.name")
     List<String> findAllTagNames();
+
+    // every tag with the number of pins using it (0 for unused tags), straight on the join table
+    @Query(value = "SELECT t.name AS name, COUNT(pt.pin_id) AS pinCount FROM tags t " +
+            "LEFT JOIN pin_tags pt ON pt.tag_id = t.id GROUP BY t.name", nativeQuery = true)
+    List<TagUsageView> findTagUsage();
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.sach.mapstash.repository;
+
+import java.util.Collection;
+
+// plain-JDBC additions to TagRepository (implemented in TagRepositoryCustomImpl)
+public interface TagRepositoryCustom {
+
+    /**
+     * Inserts the tags in one batch, skipping names that already exist - including ones
+     * another transaction is creating right now (this waits for it instead of failing on uk_tag_name).
+     * Read the tags back with {@link TagRepository#findByNameInLocking}.
+     * @param names normalized (lowercase, trimmed) tag names
+     */
+    void insertMissingTags(Collection<String> names);
+}
@@ -0,0 +1,43 @@
+package com.sach.mapstash.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// picked up by Spring Data as the implementation of TagRepositoryCustom.
+// JdbcTemplate joins the surrounding JPA transaction (same connection).
+public class TagRepositoryCustomImpl implements TagRepositoryCustom {
+
+    // a duplicate name turns into a no-op update instead of a constraint violation
+    private static final String UPSERT_SQL =
+            "INSERT INTO tags (name, created_at, updated_at) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TagRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertMissingTags(Collection<String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+
+        // same order in every transaction, so two overlapping batches can't deadlock on each other's rows
+        List<String> sortedNames = new ArrayList<>(names);
+        Collections.sort(sortedNames);
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(UPSERT_SQL, sortedNames, sortedNames.size(), (ps, name) -> {
+            ps.setString(1, name);
+            ps.setTimestamp(2, now);
+            ps.setTimestamp(3, now);
+        });
+    }
+}
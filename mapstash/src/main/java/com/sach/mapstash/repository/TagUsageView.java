@@ -0,0 +1,9 @@
+package com.sach.mapstash.repository;
+
+// one row per tag: its name and how many pins use it
+public interface TagUsageView {
+
+    String getName();
+
+    Long getPinCount();
+}
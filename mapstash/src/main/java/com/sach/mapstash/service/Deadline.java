@@ -0,0 +1,53 @@
+package com.sach.mapstash.service;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * The point in time a caller stops waiting for an answer, e.g. from a request's timeout.
+ * Work past it is wasted: the client has given up, but the query would still hold a connection.
+ */
+public final class Deadline {
+
+    private final long expiresAtNanos;
+    private final LongSupplier nanoClock;
+
+    Deadline(Duration timeout, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.expiresAtNanos = nanoClock.getAsLong() + timeout.toNanos();
+    }
+
+    /**
+     * @param timeout time from now, must be positive
+     * @throws IllegalArgumentException for a zero or negative timeout
+     */
+    public static Deadline after(Duration timeout) {
+        if (timeout.isZero() || timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        return new Deadline(timeout, System::nanoTime);
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - nanoClock.getAsLong() <= 0;
+    }
+
+    // zero once expired
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - nanoClock.getAsLong()));
+    }
+
+    /**
+     * The time left as a JDBC timeout, which only comes in whole seconds: rounded up, at least 1
+     * (0 would mean no timeout at all). A statement can so run up to a second past the deadline.
+     */
+    public int remainingSeconds() {
+        long millis = remaining().toMillis();
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, (millis + 999) / 1000));
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{remaining=" + remaining() + '}';
+    }
+}
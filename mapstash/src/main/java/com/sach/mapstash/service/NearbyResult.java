@@ -0,0 +1,85 @@
+package com.sach.mapstash.service;
+
+import java.util.List;
+import java.util.function.DoubleFunction;
+
+/**
+ * What a nearby query under a {@link Deadline} found: every pin within {@link #getSearchedRadius()}
+ * of the center. When the deadline cut the search short that's less than the requested radius,
+ * and the result is partial - the closest pins, not an arbitrary subset.
+ * <p>
+ * The search goes outward in rings: the whole query at radius/8, /4, /2, then the full radius, each
+ * a small statement of its own with the time left as its timeout. Inner pins are read again by
+ * every ring, so after each one the search estimates what the full radius would take - that
+ * ring's time, scaled up by the area - and goes straight to it if that fits in the time left
+ * twice over. Usually the deadline is far off and that's two statements, radius/8 then the full
+ * one, reading 1/64 more rows than a single query; only a tight deadline walks every ring.
+ */
+public final class NearbyResult<T> {
+
+    // the first ring's radius is the requested one divided by this, doubling up to the full radius
+    static final int FIRST_RING_DIVISOR = 8;
+
+    // the full radius is searched next once its estimated time, times this, is within the time left
+    static final double SKIP_MARGIN = 2;
+
+    private final List<T> pins;
+    private final double searchedRadius;
+    private final boolean partial;
+
+    private NearbyResult(List<T> pins, double searchedRadius, boolean partial) {
+        this.pins = pins;
+        this.searchedRadius = searchedRadius;
+        this.partial = partial;
+    }
+
+    public static <T> NearbyResult<T> complete(List<T> pins, double radiusInMeters) {
+        return new NearbyResult<>(pins, radiusInMeters, false);
+    }
+
+    /**
+     * Runs the ring search.
+     * @param withinRadius the complete nearby query around the same center, for a given radius
+     * @throws RuntimeException what withinRadius threw, if the deadline hadn't passed yet. Once it has,
+     * a failing ring (a statement the driver cancelled, a transaction past its timeout) ends the search instead.
+     */
+    public static <T> NearbyResult<T> scan(double radiusInMeters, Deadline deadline, DoubleFunction<List<T>> withinRadius) {
+        if (!(radiusInMeters > 0)) {
+            return complete(withinRadius.apply(radiusInMeters), radiusInMeters); // nothing to split up
+        }
+        List<T> found = List.of();
+        double searched = 0;
+        double ring = radiusInMeters / FIRST_RING_DIVISOR;
+        while (searched < radiusInMeters) {
+            if (deadline.isExpired()) {
+                return new NearbyResult<>(found, searched, true);
+            }
+            double radius = Math.min(ring, radiusInMeters);
+            long before = deadline.remaining().toNanos();
+            try {
+                found = withinRadius.apply(radius);
+            } catch (RuntimeException e) {
+                if (!deadline.isExpired()) {
+                    throw e;
+                }
+                return new NearbyResult<>(found, searched, true);
+            }
+            searched = radius;
+
+            // rows, and so time, grow with the area searched
+            long left = deadline.remaining().toNanos();
+            double growth = (radiusInMeters / radius) * (radiusInMeters / radius);
+            ring = (before - left) * growth * SKIP_MARGIN < left ? radiusInMeters : radius * 2;
+        }
+        return new NearbyResult<>(found, searched, false);
+    }
+
+    public List<T> getPins() { return pins; }
+    public double getSearchedRadius() { return searchedRadius; }
+    public boolean isPartial() { return partial; }
+
+    @Override
+    public String toString() {
+        return "NearbyResult{" + pins.size() + " pins within " + searchedRadius + "m" + (partial ? ", partial" : "") + '}';
+    }
+}
@@ -0,0 +1,78 @@
+package com.sach.mapstash.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Where a time-window listing carries on: the sort key (created_at or updated_at, see
+ * {@link TimeWindowQuery.Order}) and the id of the last pin a page covered. Clients get it as an
+ * opaque string and send it back unchanged.
+ */
+public final class PinCursor {
+
+    private final TimeWindowQuery.Order order;
+    private final LocalDateTime time;
+    private final long id;
+
+    public PinCursor(TimeWindowQuery.Order order, LocalDateTime time, long id) {
+        this.order = Objects.requireNonNull(order);
+        this.time = Objects.requireNonNull(time);
+        this.id = id;
+    }
+
+    public TimeWindowQuery.Order getOrder() { return order; }
+    public LocalDateTime getTime() { return time; }
+    public long getId() { return id; }
+
+    /**
+     * @return true if this comes after other in (time, id) order
+     */
+    public boolean isAfter(PinCursor other) {
+        int byTime = time.compareTo(other.time);
+        return byTime > 0 || (byTime == 0 && id > other.id);
+    }
+
+    // "C2025-01-31T10:15:30.123456,42" (U for updated order), base64url so it survives a query string
+    public String encode() {
+        String raw = order.name().charAt(0) + time.toString() + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the string isn't one encode() made
+     */
+    public static PinCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int comma = raw.lastIndexOf(',');
+            TimeWindowQuery.Order order = switch (raw.charAt(0)) {
+                case 'C' -> TimeWindowQuery.Order.CREATED;
+                case 'U' -> TimeWindowQuery.Order.UPDATED;
+                default -> throw new IllegalArgumentException("unknown order");
+            };
+            return new PinCursor(order, LocalDateTime.parse(raw.substring(1, comma)), Long.parseLong(raw.substring(comma + 1)));
+        } catch (RuntimeException e) { // bad base64, date, number, or too short
+            throw new IllegalArgumentException("not a cursor returned by this API", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PinCursor that = (PinCursor) o;
+        return id == that.id && order == that.order && time.equals(that.time);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(order, time, id);
+    }
+
+    @Override
+    public String toString() {
+        return "PinCursor{" + order + " " + time + ", " + id + '}';
+    }
+}
@@ -0,0 +1,39 @@
+package com.sach.mapstash.service;
+
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.dto.TagDto;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds the pin DTOs for every read path (JPA, sharded JDBC, reactive R2DBC), so they all
+ * return exactly the same JSON - in particular the same tag order.
+ */
+public final class PinDtos {
+
+    // tags are listed alphabetically, ignoring case
+    public static final Comparator<TagDto> TAG_ORDER = (tag1, tag2) -> tag1.getName().compareToIgnoreCase(tag2.getName());
+
+    private PinDtos() {
+    }
+
+    /**
+     * @param tags the pin's tags, sorted in place
+     */
+    public static PinDto pinDto(Long id, String title, String notes, Double latitude, Double longitude, Long userId,
+                                LocalDateTime createdAt, LocalDateTime updatedAt, List<TagDto> tags) {
+        tags.sort(TAG_ORDER);
+        return new PinDto(id, title, notes, latitude, longitude, userId, createdAt, updatedAt, tags);
+    }
+
+    /**
+     * @param tagNames the pin's tag names, sorted in place
+     */
+    public static PinSummaryDto pinSummaryDto(Long id, String title, Double latitude, Double longitude, List<String> tagNames) {
+        tagNames.sort(String::compareToIgnoreCase);
+        return new PinSummaryDto(id, title, latitude, longitude, tagNames);
+    }
+}
@@ -2,9 +2,16 @@ package com.sach.mapstash.service;
 
 import com.sach.mapstash.dto.CreatePinDto;
 import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinPageDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.dto.TagDto;
 import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.exception.ResourceNotFoundException;
+import com.sach.mapstash.geo.PolygonIndex;
+import com.sach.mapstash.geo.RouteCorridor;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface PinService {
@@ -22,6 +29,13 @@ public interface PinService {
      */
     List<PinDto> getAllPins();
 
+    /**
+     * Retrieves a narrow summary (id, title, coordinates, tag names) of all Pins.
+     * Notes are not selected, use getPinById for the full Pin.
+     * @return A list of Pin summaries.
+     */
+    List<PinSummaryDto> getAllPinSummaries();
+
     /**
      * Retrieves a single Pin by its ID.
      * @param id The ID of the Pin to retrieve.
@@ -54,11 +68,198 @@ public interface PinService {
      */
     List<PinDto> findNearbyPins(double latitude, double longitude, double radiusInMeters);
 
+    /**
+     * Summary version of findNearbyPins - same radius semantics, narrow columns only.
+     * @param latitude Latitude of the center point.
+     * @param longitude Longitude of the center point.
+     * @param radiusInMeters Radius in meters.
+     * @return A list of Pin summaries within the radius.
+     */
+    List<PinSummaryDto> findNearbyPinSummaries(double latitude, double longitude, double radiusInMeters);
+
+    /**
+     * findNearbyPins that stops at the deadline, with the closest Pins found by then.
+     * Searches outward in rings, see NearbyResult.
+     * @param deadline when the caller stops waiting.
+     * @return the Pins within the searched radius, marked partial if that's less than radiusInMeters.
+     */
+    default NearbyResult<PinDto> findNearbyPins(double latitude, double longitude, double radiusInMeters, Deadline deadline) {
+        return NearbyResult.scan(radiusInMeters, deadline, radius -> findNearbyPins(latitude, longitude, radius));
+    }
+
+    /**
+     * Summary version of findNearbyPins with a deadline.
+     */
+    default NearbyResult<PinSummaryDto> findNearbyPinSummaries(double latitude, double longitude, double radiusInMeters,
+                                                               Deadline deadline) {
+        return NearbyResult.scan(radiusInMeters, deadline, radius -> findNearbyPinSummaries(latitude, longitude, radius));
+    }
+
+    /**
+     * Finds Pins inside a latitude/longitude box (minLng must not be greater than maxLng).
+     * @return A list of Pin DTOs inside the box, in no particular order.
+     */
+    List<PinDto> findPinsInBoundingBox(double minLat, double maxLat, double minLng, double maxLng);
+
+    /**
+     * Summary version of findPinsInBoundingBox.
+     * @return A list of Pin summaries inside the box, in no particular order.
+     */
+    List<PinSummaryDto> findPinSummariesInBoundingBox(double minLat, double maxLat, double minLng, double maxLng);
+
+    /**
+     * Finds Pins within a distance of a route, ordered by position along the route.
+     * Built on findPinsInBoundingBox, one query per stretch of the route (see RouteCorridor).
+     * @param route points as {latitude, longitude}, at least two.
+     * @param bufferInMeters Max distance from the route in meters.
+     * @return A list of Pin DTOs along the route.
+     */
+    default List<PinDto> findPinsAlongRoute(List<double[]> route, double bufferInMeters) {
+        RouteCorridor corridor = new RouteCorridor(route, bufferInMeters);
+        return corridor.select(box -> findPinsInBoundingBox(box[0], box[1], box[2], box[3]),
+                PinDto::getId, PinDto::getLatitude, PinDto::getLongitude);
+    }
+
+    /**
+     * Summary version of findPinsAlongRoute.
+     */
+    default List<PinSummaryDto> findPinSummariesAlongRoute(List<double[]> route, double bufferInMeters) {
+        RouteCorridor corridor = new RouteCorridor(route, bufferInMeters);
+        return corridor.select(box -> findPinSummariesInBoundingBox(box[0], box[1], box[2], box[3]),
+                PinSummaryDto::getId, PinSummaryDto::getLatitude, PinSummaryDto::getLongitude);
+    }
+
+    /**
+     * Finds Pins inside a polygon (or multipolygon), ordered by id.
+     * Built on findPinsInBoundingBox, one query per polygon, then an exact point-in-polygon test.
+     * @param area the prepared polygon(s).
+     * @param tagNames normalized tag names the Pins must all have, empty for no filter.
+     * @return A list of Pin DTOs inside the area.
+     */
+    default List<PinDto> findPinsWithin(PolygonIndex area, List<String> tagNames) {
+        List<PinDto> pins = area.select(box -> findPinsInBoundingBox(box[0], box[1], box[2], box[3]),
+                PinDto::getId, PinDto::getLatitude, PinDto::getLongitude);
+        if (!tagNames.isEmpty()) {
+            pins.removeIf(pin -> !TagNames.hasAll(pin.getTags().stream().map(TagDto::getName).toList(), tagNames));
+        }
+        return pins;
+    }
+
+    /**
+     * Summary version of findPinsWithin.
+     */
+    default List<PinSummaryDto> findPinSummariesWithin(PolygonIndex area, List<String> tagNames) {
+        List<PinSummaryDto> pins = area.select(box -> findPinSummariesInBoundingBox(box[0], box[1], box[2], box[3]),
+                PinSummaryDto::getId, PinSummaryDto::getLatitude, PinSummaryDto::getLongitude);
+        pins.removeIf(pin -> !TagNames.hasAll(pin.getTags(), tagNames));
+        return pins;
+    }
+
+    /**
+     * One page of the Pins in a created/updated time window, optionally only those near a point.
+     * Reads one range of the created_at or updated_at index from the cursor on, see TimeWindowQuery.
+     * @param query the window, area, cursor and page size.
+     * @return the page's Pins in the window's order, and the cursor of the next page.
+     */
+    PinPageDto<PinDto> findPinsInTimeWindow(TimeWindowQuery query);
+
+    /**
+     * Summary version of findPinsInTimeWindow: same pages and cursors, notes never read.
+     */
+    PinPageDto<PinSummaryDto> findPinSummariesInTimeWindow(TimeWindowQuery query);
+
     /**
      * Retrieves a list of all unique tag names used across all pins.
      * @return A list of unique tag name strings.
      */
     List<String> getAllTagNames();
+
+    /**
+     * Retrieves every tag with the number of pins using it (0 for tags no pin uses anymore).
+     * @return tag name to pin count.
+     */
+    Map<String, Long> getTagUsageCounts();
+
+
+    // --- User-scoped variants ---
+    // Each one only ever reads or writes the given user's pins (backed by the user_id-led indexes),
+    // so their cost depends on that user's pin count, not the whole table.
+    // A pin owned by someone else is treated exactly like a missing pin.
+
+    /**
+     * Creates a new Pin owned by the given user.
+     * @param userId The owning user.
+     * @param createPinDto DTO containing data for the new pin.
+     * @return DTO representation of the created Pin.
+     */
+    PinDto createPinForUser(Long userId, CreatePinDto createPinDto);
+
+    /**
+     * Retrieves all Pins owned by the given user.
+     * @param userId The owning user.
+     * @return A list of the user's Pins.
+     */
+    List<PinDto> getAllPinsForUser(Long userId);
+
+    /**
+     * Summary version of getAllPinsForUser.
+     * @param userId The owning user.
+     * @return A list of Pin summaries for the user.
+     */
+    List<PinSummaryDto> getAllPinSummariesForUser(Long userId);
+
+    /**
+     * Retrieves one of the user's Pins by ID.
+     * @param userId The owning user.
+     * @param id The ID of the Pin.
+     * @return An Optional containing the Pin DTO if it exists and belongs to the user, otherwise empty.
+     */
+    Optional<PinDto> getPinByIdForUser(Long userId, Long id);
+
+    /**
+     * Updates one of the user's Pins.
+     * @param userId The owning user.
+     * @param id The ID of the Pin to update.
+     * @param updatePinDto DTO containing the updated data.
+     * @return DTO representation of the updated Pin.
+     * @throws ResourceNotFoundException if the Pin doesn't exist or belongs to another user.
+     */
+    PinDto updatePinForUser(Long userId, Long id, UpdatePinDto updatePinDto);
+
+    /**
+     * Deletes one of the user's Pins.
+     * @param userId The owning user.
+     * @param id The ID of the Pin to delete.
+     * @throws ResourceNotFoundException if the Pin doesn't exist or belongs to another user.
+     */
+    void deletePinForUser(Long userId, Long id);
+
+    /**
+     * findNearbyPins limited to the user's Pins.
+     * @param userId The owning user.
+     * @param latitude Latitude of the center point.
+     * @param longitude Longitude of the center point.
+     * @param radiusInMeters Radius in meters.
+     * @return A list of the user's Pin DTOs within the radius.
+     */
+    List<PinDto> findNearbyPinsForUser(Long userId, double latitude, double longitude, double radiusInMeters);
+
+    /**
+     * findNearbyPinSummaries limited to the user's Pins.
+     * @param userId The owning user.
+     * @param latitude Latitude of the center point.
+     * @param longitude Longitude of the center point.
+     * @param radiusInMeters Radius in meters.
+     * @return A list of the user's Pin summaries within the radius.
+     */
+    List<PinSummaryDto> findNearbyPinSummariesForUser(Long userId, double latitude, double longitude, double radiusInMeters);
+
+    /**
+     * Retrieves the unique tag names used on the user's Pins.
+     * @param userId The owning user.
+     * @return A sorted list of tag names.
+     */
+    List<String> getAllTagNamesForUser(Long userId);
 }
 
 
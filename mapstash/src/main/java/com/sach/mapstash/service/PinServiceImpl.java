@@ -2,60 +2,69 @@ package com.sach.mapstash.service;
 
 import com.sach.mapstash.dto.CreatePinDto;
 import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinPageDto;
+import com.sach.mapstash.dto.PinSummaryDto;
 import com.sach.mapstash.dto.TagDto;
 import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.event.PinChangeEvent;
 import com.sach.mapstash.exception.ResourceNotFoundException;
+import com.sach.mapstash.geo.GeoMath;
+import com.sach.mapstash.geo.PolygonIndex;
 import com.sach.mapstash.model.Pin;
 import com.sach.mapstash.model.Tag;
+import com.sach.mapstash.repository.PinPageSummaryView;
 import com.sach.mapstash.repository.PinRepository;
+import com.sach.mapstash.repository.PinSummaryView;
+import com.sach.mapstash.repository.PinTagNameView;
 import com.sach.mapstash.repository.TagRepository;
+import com.sach.mapstash.repository.TagUsageView;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 @Service
+@Profile("!sharded & !in-memory") // those profiles use ShardedPinService / InMemoryPinService instead
 public class PinServiceImpl implements PinService {
 
     private final PinRepository pinRepository;
     private final TagRepository tagRepository;
+    private final ApplicationEventPublisher eventPublisher; // PinChangeEvents for caches/indexes
+    private final PlatformTransactionManager transactionManager; // for reads with a deadline
 
     // Constructor Injection
-    public PinServiceImpl(PinRepository pinRepository, TagRepository tagRepository) {
+    public PinServiceImpl(PinRepository pinRepository, TagRepository tagRepository,
+                          ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
         this.pinRepository = pinRepository;
         this.tagRepository = tagRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionManager = transactionManager;
     }
 
     @Override
     @Transactional
     public PinDto createPin(CreatePinDto createPinDto) {
-        // Create a new Pin object and set its properties
-        Pin pin = new Pin();
-        pin.setTitle(createPinDto.getTitle());
-        pin.setNotes(createPinDto.getNotes());
-        pin.setLatitude(createPinDto.getLatitude());
-        pin.setLongitude(createPinDto.getLongitude());
-        // userId will be null for MVP
-
-        // handle Tags - get the resolved tags and add them to the pin
-        Set<Tag> resolvedTags = resolveTags(createPinDto.getTags());
-
-        for (Tag tag : resolvedTags) {
-            pin.addTag(tag);
-        }
-
-        // save the pin to database
-        Pin savedPin = pinRepository.save(pin);
+        // shared pin, no owner
+        return savePinForOwner(null, createPinDto);
+    }
 
-        // Convert the saved pin to DTO and return
-        return mapPinToPinDto(savedPin);
+    @Override
+    @Transactional
+    public PinDto createPinForUser(Long userId, CreatePinDto createPinDto) {
+        return savePinForOwner(userId, createPinDto);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<PinDto> getAllPins() {
-        // Get all pins from database
-        List<Pin> allPins = pinRepository.findAll();
+        // Get all pins from database, with their tags (one query)
+        List<Pin> allPins = pinRepository.findAllWithTags();
 
         // Create a list to store the DTOs
         List<PinDto> pinDtos = new ArrayList<>();
@@ -68,6 +77,35 @@ public class PinServiceImpl implements PinService {
         return pinDtos;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinSummaryDto> getAllPinSummaries() {
+        // two narrow queries (pins + pin/tag name pairs) instead of loading entities and their tag collections
+        List<PinSummaryView> summaries = pinRepository.findAllSummaries();
+        List<PinTagNameView> tagNames = pinRepository.findAllPinTagNames();
+
+        return mapToPinSummaryDtos(summaries, tagNames);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinDto> getAllPinsForUser(Long userId) {
+        List<PinDto> pinDtos = new ArrayList<>();
+        for (Pin pin : pinRepository.findByUserIdOrderById(userId)) {
+            pinDtos.add(mapPinToPinDto(pin));
+        }
+        return pinDtos;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinSummaryDto> getAllPinSummariesForUser(Long userId) {
+        List<PinSummaryView> summaries = pinRepository.findSummariesByUserId(userId);
+        List<PinTagNameView> tagNames = pinRepository.findPinTagNamesByUserId(userId);
+
+        return mapToPinSummaryDtos(summaries, tagNames);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Optional<PinDto> getPinById(Long id) {
@@ -84,6 +122,13 @@ public class PinServiceImpl implements PinService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<PinDto> getPinByIdForUser(Long userId, Long id) {
+        // another user's pin looks exactly like a missing one
+        return pinRepository.findByIdAndUserId(id, userId).map(this::mapPinToPinDto);
+    }
+
     @Override
     @Transactional
     public PinDto updatePin(Long id, UpdatePinDto updatePinDto) {
@@ -93,79 +138,162 @@ public class PinServiceImpl implements PinService {
             throw new ResourceNotFoundException("Pin not found with id: " + id);
         }
 
-        Pin existingPin = pinOptional.get();
-
-        // update basic properties
-        existingPin.setTitle(updatePinDto.getTitle());
-        existingPin.setNotes(updatePinDto.getNotes());
-
-        // handle tag updates
-        Set<Tag> resolvedTags = resolveTags(updatePinDto.getTags());
-
-        //fFind tags to remove (existing tags that are not in the new list)
-        Set<Tag> tagsToRemove = new HashSet<>();
-        for (Tag existingTag : existingPin.getTags()) {
-            if (!resolvedTags.contains(existingTag)) {
-                tagsToRemove.add(existingTag);
-            }
-        }
-
-        // Remove old tags
-        for (Tag tagToRemove : tagsToRemove) {
-            existingPin.removeTag(tagToRemove);
-        }
+        return applyUpdate(pinOptional.get(), updatePinDto);
+    }
 
-        // add new tags
-        for (Tag newTag : resolvedTags) {
-            existingPin.addTag(newTag);
-        }
+    @Override
+    @Transactional
+    public PinDto updatePinForUser(Long userId, Long id, UpdatePinDto updatePinDto) {
+        Pin existingPin = pinRepository.findByIdAndUserId(id, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Pin not found with id: " + id + " for user: " + userId));
 
-        // save and return updated pin
-        Pin updatedPin = pinRepository.save(existingPin);
-        return mapPinToPinDto(updatedPin);
+        return applyUpdate(existingPin, updatePinDto);
     }
 
     @Override
     @Transactional
     public void deletePin(Long id) {
-        // check if pin exists before trying to delete
-        boolean pinExists = pinRepository.existsById(id);
-        if (!pinExists) {
-            throw new ResourceNotFoundException("Pin not found with id: " + id);
-        }
+        // load the pin before deleting (deleteById does this anyway) - the change event needs its owner
+        Pin pin = pinRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Pin not found with id: " + id));
+        List<String> tagNames = tagNamesOf(pinRepository.findTagsByPinId(id));
 
         // delete the pin
-        pinRepository.deleteById(id);
+        pinRepository.delete(pin);
+        eventPublisher.publishEvent(PinChangeEvent.deleted(id, pin.getUserId(), pin.getLatitude(), pin.getLongitude(), tagNames));
+    }
+
+    @Override
+    @Transactional
+    public void deletePinForUser(Long userId, Long id) {
+        Pin pin = pinRepository.findByIdAndUserId(id, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Pin not found with id: " + id + " for user: " + userId));
+        List<String> tagNames = tagNamesOf(pinRepository.findTagsByPinId(id));
+
+        pinRepository.delete(pin);
+        eventPublisher.publishEvent(PinChangeEvent.deleted(id, userId, pin.getLatitude(), pin.getLongitude(), tagNames));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<PinDto> findNearbyPins(double latitude, double longitude, double radiusInMeters) {
-        // get all pins from database (inefficient for large datasets, ok for MVP)
-        List<Pin> allPins = pinRepository.findAll();
-        List<Pin> nearbyPins = new ArrayList<>();
+        // bounding box in SQL (uses idx_pin_lat_lng) instead of loading every pin, exact check in memory
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        List<Pin> candidates = pinRepository.findByLatitudeBetweenAndLongitudeBetween(box[0], box[1], box[2], box[3]);
 
+        return filterByDistance(candidates, latitude, longitude, radiusInMeters);
+    }
 
-        for (Pin pin : allPins) {
-            double distance = calculateHaversineDistance(
-                    latitude, longitude,
-                    pin.getLatitude(), pin.getLongitude()
-            );
+    @Override
+    public NearbyResult<PinDto> findNearbyPins(double latitude, double longitude, double radiusInMeters, Deadline deadline) {
+        // no transaction around the whole search - each ring gets its own, connection released in between
+        return NearbyResult.scan(radiusInMeters, deadline,
+                radius -> withinDeadline(deadline, () -> findNearbyPins(latitude, longitude, radius)));
+    }
 
-            // if pin is within radius, add it to nearby pins
-            if (distance <= radiusInMeters) {
-                nearbyPins.add(pin);
-            }
+    @Override
+    public NearbyResult<PinSummaryDto> findNearbyPinSummaries(double latitude, double longitude, double radiusInMeters,
+                                                              Deadline deadline) {
+        return NearbyResult.scan(radiusInMeters, deadline,
+                radius -> withinDeadline(deadline, () -> findNearbyPinSummaries(latitude, longitude, radius)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinDto> findNearbyPinsForUser(Long userId, double latitude, double longitude, double radiusInMeters) {
+        // bounding box on the (user_id, latitude, longitude) index, exact check in memory
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        List<Pin> candidates = pinRepository.findByUserIdAndLatitudeBetweenAndLongitudeBetween(
+                userId, box[0], box[1], box[2], box[3]);
+
+        return filterByDistance(candidates, latitude, longitude, radiusInMeters);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinSummaryDto> findNearbyPinSummaries(double latitude, double longitude, double radiusInMeters) {
+        // narrow the candidates down to a bounding box in SQL (uses idx_pin_lat_lng), exact check below
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        List<PinSummaryView> candidates = pinRepository.findSummariesInBoundingBox(box[0], box[1], box[2], box[3]);
+        List<PinTagNameView> tagNames = pinRepository.findPinTagNamesInBoundingBox(box[0], box[1], box[2], box[3]);
+
+        return mapToPinSummaryDtos(filterSummariesByDistance(candidates, latitude, longitude, radiusInMeters), tagNames);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinSummaryDto> findNearbyPinSummariesForUser(Long userId, double latitude, double longitude, double radiusInMeters) {
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        List<PinSummaryView> candidates = pinRepository.findSummariesByUserIdInBoundingBox(
+                userId, box[0], box[1], box[2], box[3]);
+        List<PinTagNameView> tagNames = pinRepository.findPinTagNamesByUserIdInBoundingBox(
+                userId, box[0], box[1], box[2], box[3]);
+
+        return mapToPinSummaryDtos(filterSummariesByDistance(candidates, latitude, longitude, radiusInMeters), tagNames);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinDto> findPinsInBoundingBox(double minLat, double maxLat, double minLng, double maxLng) {
+        List<PinDto> pinDtos = new ArrayList<>();
+        for (Pin pin : pinRepository.findByLatitudeBetweenAndLongitudeBetween(minLat, maxLat, minLng, maxLng)) {
+            pinDtos.add(mapPinToPinDto(pin));
         }
+        return pinDtos;
+    }
 
-        // convert nearby pins to DTOs
-        List<PinDto> nearbyPinDtos = new ArrayList<>();
-        for (Pin nearbyPin : nearbyPins) {
-            PinDto pinDto = mapPinToPinDto(nearbyPin);
-            nearbyPinDtos.add(pinDto);
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinSummaryDto> findPinSummariesInBoundingBox(double minLat, double maxLat, double minLng, double maxLng) {
+        List<PinSummaryView> summaries = pinRepository.findSummariesInBoundingBox(minLat, maxLat, minLng, maxLng);
+        List<PinTagNameView> tagNames = pinRepository.findPinTagNamesInBoundingBox(minLat, maxLat, minLng, maxLng);
+
+        return mapToPinSummaryDtos(summaries, tagNames);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PinPageDto<PinDto> findPinsInTimeWindow(TimeWindowQuery query) {
+        // the page's ids off the (created_at, id) / (updated_at, id) index, then those pins with their tags
+        List<Long> ids = findPageIds(query);
+        if (ids.isEmpty()) {
+            return query.page(List.of());
         }
 
-        return nearbyPinDtos;
+        Map<Long, Pin> loaded = new HashMap<>();
+        for (Pin pin : pinRepository.findWithTagsByIdIn(ids)) {
+            loaded.put(pin.getId(), pin);
+        }
+        List<PinDto> scanned = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            scanned.add(mapPinToPinDto(loaded.get(id)));
+        }
+        return query.page(scanned);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PinPageDto<PinSummaryDto> findPinSummariesInTimeWindow(TimeWindowQuery query) {
+        // same ids, then only the summary columns and the tag names (3 queries, notes never read)
+        List<Long> ids = findPageIds(query);
+        if (ids.isEmpty()) {
+            return query.page(List.of(), null, PinSummaryDto::getLatitude, PinSummaryDto::getLongitude);
+        }
+
+        Map<Long, PinPageSummaryView> loaded = new HashMap<>();
+        for (PinPageSummaryView summary : pinRepository.findPageSummariesByIdIn(ids)) {
+            loaded.put(summary.getId(), summary);
+        }
+        List<PinPageSummaryView> summaries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            summaries.add(loaded.get(id));
+        }
+        PinPageSummaryView last = summaries.get(summaries.size() - 1);
+        PinCursor lastKey = new PinCursor(query.getOrder(),
+                query.getOrder() == TimeWindowQuery.Order.CREATED ? last.getCreatedAt() : last.getUpdatedAt(), last.getId());
+
+        List<PinSummaryDto> scanned = mapToPinSummaryDtos(summaries, pinRepository.findPinTagNamesByIdIn(ids));
+        return query.page(scanned, lastKey, PinSummaryDto::getLatitude, PinSummaryDto::getLongitude);
     }
 
     @Override
@@ -175,36 +303,200 @@ public class PinServiceImpl implements PinService {
         return tagRepository.findAllTagNames();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Long> getTagUsageCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (TagUsageView usage : tagRepository.findTagUsage()) {
+            counts.put(usage.getName(), usage.getPinCount());
+        }
+        return counts;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<String> getAllTagNamesForUser(Long userId) {
+        return pinRepository.findTagNamesByUserId(userId);
+    }
+
+    // The default route and polygon searches call findPinsInBoundingBox / findPinSummariesInBoundingBox
+    // on this, not through the proxy, so without a transaction here each box's pins would be mapped
+    // after their session closed (lazy tags) - a LazyInitializationException without open-in-view,
+    // an N+1 with it. Also gives all the boxes one consistent read.
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinDto> findPinsAlongRoute(List<double[]> route, double bufferInMeters) {
+        return PinService.super.findPinsAlongRoute(route, bufferInMeters);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinSummaryDto> findPinSummariesAlongRoute(List<double[]> route, double bufferInMeters) {
+        return PinService.super.findPinSummariesAlongRoute(route, bufferInMeters);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinDto> findPinsWithin(PolygonIndex area, List<String> tagNames) {
+        return PinService.super.findPinsWithin(area, tagNames);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PinSummaryDto> findPinSummariesWithin(PolygonIndex area, List<String> tagNames) {
+        return PinService.super.findPinSummariesWithin(area, tagNames);
+    }
+
     // --- Helper Methods ---
 
 
+    // a read-only transaction timing out with the deadline: the JPA transaction manager gives every
+    // statement in it the time left as its JDBC query timeout, so the database cancels it rather
+    // than running on after the client has gone
+    private <T> T withinDeadline(Deadline deadline, Supplier<T> read) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        tx.setTimeout(deadline.remainingSeconds());
+        return tx.execute(status -> read.get());
+    }
+
+
+    private List<Long> findPageIds(TimeWindowQuery query) {
+        PinCursor start = query.start();
+        Limit limit = Limit.of(query.getLimit());
+        if (query.getOrder() == TimeWindowQuery.Order.UPDATED) {
+            if (!query.hasArea()) {
+                return pinRepository.findPageIdsByUpdatedAt(start.getTime(), start.getId(), limit);
+            }
+            double[] box = query.boundingBox();
+            return pinRepository.findPageIdsByUpdatedAtInBoundingBox(start.getTime(), start.getId(),
+                    box[0], box[1], box[2], box[3], limit);
+        }
+
+        if (!query.hasArea()) {
+            return pinRepository.findPageIdsByCreatedAt(start.getTime(), start.getId(),
+                    query.createdUpperBound(), query.updatedLowerBound(), limit);
+        }
+        double[] box = query.boundingBox();
+        return pinRepository.findPageIdsByCreatedAtInBoundingBox(start.getTime(), start.getId(),
+                query.createdUpperBound(), query.updatedLowerBound(), box[0], box[1], box[2], box[3], limit);
+    }
+
+
+    private PinDto savePinForOwner(Long userId, CreatePinDto createPinDto) {
+        // Create a new Pin object and set its properties
+        Pin pin = new Pin();
+        pin.setTitle(createPinDto.getTitle());
+        pin.setNotes(createPinDto.getNotes());
+        pin.setLatitude(createPinDto.getLatitude());
+        pin.setLongitude(createPinDto.getLongitude());
+        pin.setUserId(userId); // null for shared pins
+
+        // handle Tags - get the resolved tags and add them to the pin
+        Set<Tag> resolvedTags = resolveTags(createPinDto.getTags());
+
+        // owning side only - addTag would also initialize every Tag.pins collection
+        for (Tag tag : resolvedTags) {
+            pin.getTags().add(tag);
+        }
+
+        // save the pin to database
+        Pin savedPin = pinRepository.save(pin);
+        eventPublisher.publishEvent(PinChangeEvent.created(savedPin.getId(), userId,
+                savedPin.getLatitude(), savedPin.getLongitude(), tagNamesOf(resolvedTags)));
+
+        // Convert the saved pin to DTO and return
+        return mapPinToPinDto(savedPin);
+    }
+
+
+    private PinDto applyUpdate(Pin existingPin, UpdatePinDto updatePinDto) {
+        // position before the update, for the change event (the API can't move pins yet, but listeners shouldn't assume that)
+        Double oldLatitude = existingPin.getLatitude();
+        Double oldLongitude = existingPin.getLongitude();
+        boolean rowChanged = !Objects.equals(existingPin.getTitle(), updatePinDto.getTitle())
+                || !Objects.equals(existingPin.getNotes(), updatePinDto.getNotes());
+
+        // update basic properties
+        existingPin.setTitle(updatePinDto.getTitle());
+        existingPin.setNotes(updatePinDto.getNotes());
+
+        // handle tag updates: diff by id against the join table, so neither Pin.tags nor the
+        // (possibly huge) Tag.pins collections get loaded, and unchanged rows are left alone
+        Set<Tag> resolvedTags = resolveTags(updatePinDto.getTags());
+
+        Set<Long> wantedTagIds = new HashSet<>();
+        for (Tag tag : resolvedTags) {
+            wantedTagIds.add(tag.getId());
+        }
+        Map<Long, String> currentTags = new HashMap<>();
+        for (Tag tag : pinRepository.findTagsByPinId(existingPin.getId())) {
+            currentTags.put(tag.getId(), tag.getName());
+        }
+        Set<Long> currentTagIds = currentTags.keySet();
+
+        Set<Long> tagIdsToRemove = new HashSet<>(currentTagIds);
+        tagIdsToRemove.removeAll(wantedTagIds);
+        Set<Long> tagIdsToAdd = new HashSet<>(wantedTagIds);
+        tagIdsToAdd.removeAll(currentTagIds);
+
+        // a tag edit is an edit too: updated_at has to move for it (GET /api/pins?updatedAfter=), and the
+        // pin_tags statements below flush the row first
+        if (!rowChanged && (!tagIdsToRemove.isEmpty() || !tagIdsToAdd.isEmpty())) {
+            existingPin.markUpdated();
+        }
+
+        // one delete and one insert at most
+        if (!tagIdsToRemove.isEmpty()) {
+            pinRepository.deletePinTags(existingPin.getId(), tagIdsToRemove);
+        }
+        if (!tagIdsToAdd.isEmpty()) {
+            pinRepository.insertPinTags(existingPin.getId(), tagIdsToAdd);
+        }
+
+        // save and return updated pin (tags for the DTO come from what we just resolved)
+        Pin updatedPin = pinRepository.save(existingPin);
+        List<String> addedTagNames = new ArrayList<>();
+        for (Tag tag : resolvedTags) {
+            if (tagIdsToAdd.contains(tag.getId())) {
+                addedTagNames.add(tag.getName());
+            }
+        }
+        List<String> removedTagNames = new ArrayList<>();
+        for (Long tagId : tagIdsToRemove) {
+            removedTagNames.add(currentTags.get(tagId));
+        }
+        eventPublisher.publishEvent(PinChangeEvent.updated(updatedPin.getId(), updatedPin.getUserId(),
+                oldLatitude, oldLongitude, updatedPin.getLatitude(), updatedPin.getLongitude(),
+                addedTagNames, removedTagNames));
+        return mapPinToPinDto(updatedPin, resolvedTags);
+    }
+
+
     private PinDto mapPinToPinDto(Pin pin) {
         if (pin == null) {
             return null;
         }
+        return mapPinToPinDto(pin, pin.getTags());
+    }
 
+
+    private PinDto mapPinToPinDto(Pin pin, Collection<Tag> tags) {
         // create list to store tag DTOs
         List<TagDto> tagDtos = new ArrayList<>();
 
         // check if pin has tags
-        if (pin.getTags() != null) {
+        if (tags != null) {
             // Convert each Tag entity to TagDto
-            for (Tag tagEntity : pin.getTags()) {
+            for (Tag tagEntity : tags) {
                 TagDto tagDto = new TagDto(tagEntity.getId(), tagEntity.getName());
                 tagDtos.add(tagDto);
             }
-
-            // soort the tags alphabetically (case-insensitive)
-            tagDtos.sort(new Comparator<TagDto>() {
-                @Override
-                public int compare(TagDto tag1, TagDto tag2) {
-                    return tag1.getName().compareToIgnoreCase(tag2.getName());
-                }
-            });
         }
 
-        // Create and return the PinDto
-        return new PinDto(
+        // Create and return the PinDto (PinDtos sorts the tags, the same way for every read path)
+        return PinDtos.pinDto(
                 pin.getId(),
                 pin.getTitle(),
                 pin.getNotes(),
@@ -218,6 +510,70 @@ public class PinServiceImpl implements PinService {
     }
 
 
+    private static List<String> tagNamesOf(Collection<Tag> tags) {
+        List<String> names = new ArrayList<>(tags.size());
+        for (Tag tag : tags) {
+            names.add(tag.getName());
+        }
+        return names;
+    }
+
+
+    private List<PinDto> filterByDistance(List<Pin> candidates, double latitude, double longitude, double radiusInMeters) {
+        List<PinDto> nearbyPinDtos = new ArrayList<>();
+        for (Pin pin : candidates) {
+            double distance = GeoMath.haversineDistance(
+                    latitude, longitude,
+                    pin.getLatitude(), pin.getLongitude()
+            );
+
+            // if pin is within radius, convert and keep it
+            if (distance <= radiusInMeters) {
+                nearbyPinDtos.add(mapPinToPinDto(pin));
+            }
+        }
+        return nearbyPinDtos;
+    }
+
+
+    private List<PinSummaryView> filterSummariesByDistance(List<PinSummaryView> candidates, double latitude,
+                                                          double longitude, double radiusInMeters) {
+        List<PinSummaryView> nearby = new ArrayList<>();
+        for (PinSummaryView candidate : candidates) {
+            double distance = GeoMath.haversineDistance(
+                    latitude, longitude,
+                    candidate.getLatitude(), candidate.getLongitude()
+            );
+            if (distance <= radiusInMeters) {
+                nearby.add(candidate);
+            }
+        }
+        return nearby;
+    }
+
+
+    private List<PinSummaryDto> mapToPinSummaryDtos(List<? extends PinSummaryView> summaries, List<PinTagNameView> tagNames) {
+        // group the tag names by pin id
+        Map<Long, List<String>> tagNamesByPinId = new HashMap<>();
+        for (PinTagNameView row : tagNames) {
+            tagNamesByPinId.computeIfAbsent(row.getPinId(), k -> new ArrayList<>()).add(row.getTagName());
+        }
+
+        List<PinSummaryDto> summaryDtos = new ArrayList<>(summaries.size());
+        for (PinSummaryView summary : summaries) {
+            List<String> names = tagNamesByPinId.getOrDefault(summary.getId(), new ArrayList<>());
+            summaryDtos.add(PinDtos.pinSummaryDto(
+                    summary.getId(),
+                    summary.getTitle(),
+                    summary.getLatitude(),
+                    summary.getLongitude(),
+                    names
+            ));
+        }
+        return summaryDtos;
+    }
+
+
     private Set<Tag> resolveTags(List<String> tagNames) {
         // handle null or empty input
         if (tagNames == null || tagNames.isEmpty()) {
@@ -227,15 +583,7 @@ public class PinServiceImpl implements PinService {
         Set<Tag> tags = new HashSet<>();
 
         // process tag names: lowercase, trim, remove duplicates and empty strings
-        List<String> processedTagNames = new ArrayList<>();
-        for (String tagName : tagNames) {
-            if (tagName != null) {
-                String processed = tagName.toLowerCase().trim();
-                if (!processed.isEmpty() && !processedTagNames.contains(processed)) {
-                    processedTagNames.add(processed);
-                }
-            }
-        }
+        List<String> processedTagNames = TagNames.normalize(tagNames);
 
         // if no valid tag names after processing, return empty set
         if (processedTagNames.isEmpty()) {
@@ -253,44 +601,25 @@ public class PinServiceImpl implements PinService {
         // Create set of existing tag names (lowercase for comparison)
         Set<String> existingTagNames = new HashSet<>();
         for (Tag existingTag : existingTags) {
-            existingTagNames.add(existingTag.getName().toLowerCase());
+            existingTagNames.add(existingTag.getName().toLowerCase(Locale.ROOT));
         }
 
-        // Find tag names that don't exist yet and create new Tag entities
-        List<Tag> newTags = new ArrayList<>();
+        // Find tag names that don't exist yet
+        List<String> missingTagNames = new ArrayList<>();
         for (String tagName : processedTagNames) {
             if (!existingTagNames.contains(tagName)) {
-                Tag newTag = new Tag(tagName);
-                newTags.add(newTag);
+                missingTagNames.add(tagName);
             }
         }
 
-        // Save new tags to database if any
-        if (!newTags.isEmpty()) {
-            List<Tag> savedNewTags = tagRepository.saveAll(newTags);
-            for (Tag savedTag : savedNewTags) {
-                tags.add(savedTag);
-            }
+        // Create them with an upsert + locking re-read rather than saveAll: if another request
+        // creates the same tag at the same time we reuse its row instead of hitting uk_tag_name
+        // and rolling back this whole pin write
+        if (!missingTagNames.isEmpty()) {
+            tagRepository.insertMissingTags(missingTagNames);
+            tags.addAll(tagRepository.findByNameInLocking(missingTagNames));
         }
 
         return tags;
     }
-
-
-     // Calculates the distance between two points on Earth using the Haversine formula.
-
-    private double calculateHaversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int EARTH_RADIUS_METERS = 6371 * 1000; // Approx Earth radius in meters
-
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS_METERS * c;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package com.sach.mapstash.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tag name rules shared by the PinService implementations.
+ */
+public final class TagNames {
+
+    private TagNames() {
+    }
+
+    /**
+     * Lowercases (locale-independent, so "I" is "i" on a Turkish JVM too) and trims one name.
+     * Anything matched against stored tag names - tag filters, suggest prefixes - goes through here.
+     * @param tagName raw name, not null
+     */
+    public static String normalize(String tagName) {
+        return tagName.toLowerCase(Locale.ROOT).trim();
+    }
+
+    /**
+     * Lowercases and trims the names, dropping nulls, empty strings and duplicates (first occurrence wins).
+     * @param tagNames raw names from the client, may be null
+     * @return normalized names, never null
+     */
+    public static List<String> normalize(List<String> tagNames) {
+        if (tagNames == null || tagNames.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<String> processedTagNames = new LinkedHashSet<>();
+        for (String tagName : tagNames) {
+            if (tagName != null) {
+                String processed = normalize(tagName);
+                if (!processed.isEmpty()) {
+                    processedTagNames.add(processed);
+                }
+            }
+        }
+        return new ArrayList<>(processedTagNames);
+    }
+
+    /**
+     * Tag filter for list queries: true if the pin has every one of the required tags.
+     * @param pinTagNames the pin's (already normalized) tag names
+     * @param requiredTagNames normalized names, empty means no filter
+     */
+    public static boolean hasAll(Collection<String> pinTagNames, List<String> requiredTagNames) {
+        if (requiredTagNames.isEmpty()) {
+            return true;
+        }
+        return pinTagNames != null && new HashSet<>(pinTagNames).containsAll(requiredTagNames);
+    }
+}
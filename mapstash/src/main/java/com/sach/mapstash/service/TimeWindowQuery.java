@@ -0,0 +1,157 @@
+package com.sach.mapstash.service;
+
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinPageDto;
+import com.sach.mapstash.dto.TimeWindowQueryDto;
+import com.sach.mapstash.geo.GeoMath;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A checked GET /api/pins time-window request, the way every PinService engine runs it.
+ * <p>
+ * Pins come in (created_at, id) order, or in (updated_at, id) order when updatedAfter is the only
+ * time bound ("recently edited pins"). Either way a page is one range of idx_pin_created_at /
+ * idx_pin_updated_at read from {@link #start()} on in index order, the other conditions only
+ * filter it - no sort and no offset. With an area the database may range-scan idx_pin_lat_lng
+ * instead when that's the narrower range. createdAfter and updatedAfter are inclusive,
+ * createdBefore is exclusive.
+ * <p>
+ * A page is the first limit pins from the start key that are in the window and in the area's
+ * bounding box, minus the ones outside the exact radius - so it can come back short, even empty,
+ * with a next cursor (the same way nearby drops the bounding box's corners). Ordering by
+ * updated_at, a pin edited while a client pages through shows up again further on.
+ */
+public final class TimeWindowQuery {
+
+    public enum Order { CREATED, UPDATED }
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    public static final double DEFAULT_RADIUS = 2000; // meters, same as /api/pins/nearby
+
+    // stand-ins for an open side of the window, inside what a datetime(6) column takes
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1000, 1, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final double[] WORLD = {-90, 90, -180, 180};
+
+    private final LocalDateTime createdAfter;
+    private final LocalDateTime createdBefore;
+    private final LocalDateTime updatedAfter;
+    private final double[] center; // {latitude, longitude, radius}, null = anywhere
+    private final PinCursor after;
+    private final int limit;
+    private final Order order;
+
+    /**
+     * @param after the cursor of the previous page, null for the first one
+     * @param limit page size, null for the default
+     * @throws IllegalArgumentException for an incomplete area, a bad limit or a cursor from a differently ordered window
+     */
+    public TimeWindowQuery(LocalDateTime createdAfter, LocalDateTime createdBefore, LocalDateTime updatedAfter,
+                           Double latitude, Double longitude, Double radiusInMeters, PinCursor after, Integer limit) {
+        // the columns keep microseconds, so compare at that precision in every engine
+        this.createdAfter = micros(createdAfter);
+        this.createdBefore = micros(createdBefore);
+        this.updatedAfter = micros(updatedAfter);
+        this.order = updatedAfter != null && createdAfter == null && createdBefore == null ? Order.UPDATED : Order.CREATED;
+
+        if ((latitude == null) != (longitude == null) || (latitude == null && radiusInMeters != null)) {
+            throw new IllegalArgumentException("lat and lng go together (radius needs both)");
+        }
+        double radius = radiusInMeters != null ? radiusInMeters : DEFAULT_RADIUS;
+        if (latitude != null && !(radius > 0)) {
+            throw new IllegalArgumentException("radius must be positive");
+        }
+        this.center = latitude != null ? new double[] {latitude, longitude, radius} : null;
+
+        this.limit = limit != null ? limit : DEFAULT_LIMIT;
+        if (this.limit < 1 || this.limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        if (after != null && after.getOrder() != order) {
+            throw new IllegalArgumentException("cursor belongs to a window with different time bounds");
+        }
+        this.after = after;
+    }
+
+    /**
+     * @throws IllegalArgumentException for a malformed cursor, or any of the constructor's reasons
+     */
+    public static TimeWindowQuery of(TimeWindowQueryDto dto) {
+        PinCursor after = dto.getCursor() != null ? PinCursor.decode(dto.getCursor()) : null;
+        return new TimeWindowQuery(dto.getCreatedAfter(), dto.getCreatedBefore(), dto.getUpdatedAfter(),
+                dto.getLat(), dto.getLng(), dto.getRadius(), after, dto.getLimit());
+    }
+
+    public Order getOrder() { return order; }
+    public int getLimit() { return limit; }
+
+    /**
+     * The key the page starts after: the cursor, or just before the window's lower bound.
+     */
+    public PinCursor start() {
+        LocalDateTime from = order == Order.CREATED ? createdAfter : updatedAfter;
+        PinCursor first = new PinCursor(order, from != null ? from : BEGINNING, 0); // ids start at 1
+        return after != null && after.isAfter(first) ? after : first;
+    }
+
+    // for CREATED order: created_at < this ends the range
+    public LocalDateTime createdUpperBound() {
+        return createdBefore != null ? createdBefore : END;
+    }
+
+    // for CREATED order: rows in the range must have updated_at >= this
+    public LocalDateTime updatedLowerBound() {
+        return updatedAfter != null ? updatedAfter : BEGINNING;
+    }
+
+    /**
+     * @return {minLat, maxLat, minLng, maxLng} around the area, the whole world if there's none
+     */
+    public double[] boundingBox() {
+        return center != null ? GeoMath.boundingBox(center[0], center[1], center[2]) : WORLD.clone();
+    }
+
+    public boolean hasArea() {
+        return center != null;
+    }
+
+    /**
+     * Turns what an engine read into the page.
+     * @param scanned the first (up to) limit pins from start() in the window and bounding box, in order
+     */
+    public PinPageDto<PinDto> page(List<PinDto> scanned) {
+        PinCursor last = null;
+        if (!scanned.isEmpty()) {
+            PinDto pin = scanned.get(scanned.size() - 1);
+            last = new PinCursor(order, order == Order.CREATED ? pin.getCreatedAt() : pin.getUpdatedAt(), pin.getId());
+        }
+        return page(scanned, last, PinDto::getLatitude, PinDto::getLongitude);
+    }
+
+    /**
+     * Same for pins that don't carry their timestamps (summaries).
+     * @param last the key of the last scanned pin in this window's order, null if none were scanned
+     */
+    public <T> PinPageDto<T> page(List<T> scanned, PinCursor last, ToDoubleFunction<T> latitude, ToDoubleFunction<T> longitude) {
+        List<T> items = new ArrayList<>(scanned.size());
+        for (T pin : scanned) {
+            if (center == null || GeoMath.haversineDistance(center[0], center[1], latitude.applyAsDouble(pin), longitude.applyAsDouble(pin)) <= center[2]) {
+                items.add(pin);
+            }
+        }
+
+        // fewer than limit rows means the range ran out
+        String nextCursor = scanned.size() >= limit ? last.encode() : null;
+        return new PinPageDto<>(items, nextCursor);
+    }
+
+    private static LocalDateTime micros(LocalDateTime time) {
+        return time != null ? time.truncatedTo(ChronoUnit.MICROS) : null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.sach.mapstash.sharding;
+
+import com.sach.mapstash.geo.Geohash;
+
+import java.util.BitSet;
+
+/**
+ * Decides which shard a pin lives on, and which shards an area can touch.
+ * <p>
+ * A pin goes to the shard of the coarse geohash cell it falls in (cell hashed onto the
+ * shard count), so nearby pins end up together and an area query only has to ask the
+ * shards of the cells it overlaps. The shard is also packed into the low bits of every
+ * id handed out, so lookups by id go straight to the right shard.
+ * <p>
+ * The cell-to-shard mapping depends on the shard count and the routing precision -
+ * changing either one means moving existing pins.
+ */
+public class GeoShardRouter {
+
+    public static final int SHARD_BITS = 10;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    // past this many cells an area just fans out to every shard
+    private static final long MAX_ROUTING_CELLS = 4096;
+
+    private final int shardCount;
+    private final int precision;
+
+    /**
+     * @param shardCount number of shards (1..1024)
+     * @param precision geohash precision of the routing cells, 2 = roughly 1250km x 625km
+     */
+    public GeoShardRouter(int shardCount, int precision) {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + MAX_SHARDS + ": " + shardCount);
+        }
+        this.shardCount = shardCount;
+        this.precision = precision;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int shardFor(double latitude, double longitude) {
+        return shardForCell(Geohash.encode(latitude, longitude, precision));
+    }
+
+    /**
+     * @return the shards whose cells overlap the box {minLat, maxLat, minLng, maxLng}
+     */
+    public BitSet shardsFor(double minLat, double maxLat, double minLng, double maxLng) {
+        BitSet shards = new BitSet(shardCount);
+        if (Geohash.countCoveringCells(minLat, maxLat, minLng, maxLng, precision) > MAX_ROUTING_CELLS) {
+            shards.set(0, shardCount);
+            return shards;
+        }
+        for (long cell : Geohash.coveringCells(minLat, maxLat, minLng, maxLng, precision)) {
+            shards.set(shardForCell(cell));
+            if (shards.cardinality() == shardCount) {
+                break;
+            }
+        }
+        return shards;
+    }
+
+    // --- id encoding: global id = (id within the shard << SHARD_BITS) | shard ---
+
+    public static long toGlobalId(int shard, long localId) {
+        return (localId << SHARD_BITS) | shard;
+    }
+
+    public static int shardOf(long globalId) {
+        return (int) (globalId & (MAX_SHARDS - 1));
+    }
+
+    public static long localIdOf(long globalId) {
+        return globalId >>> SHARD_BITS;
+    }
+
+    // --- Helpers ---
+
+    private int shardForCell(long cell) {
+        // spread neighbouring cells out so one busy region doesn't pile onto consecutive shards
+        long mixed = cell * 0x9E3779B97F4A7C15L;
+        return Math.floorMod(Long.hashCode(mixed ^ (mixed >>> 29)), shardCount);
+    }
+}
@@ -0,0 +1,774 @@
+package com.sach.mapstash.sharding;
+
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinPageDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.dto.TagDto;
+import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.exception.ResourceNotFoundException;
+import com.sach.mapstash.geo.GeoMath;
+import com.sach.mapstash.service.Deadline;
+import com.sach.mapstash.service.NearbyResult;
+import com.sach.mapstash.service.PinCursor;
+import com.sach.mapstash.service.PinDtos;
+import com.sach.mapstash.service.PinService;
+import com.sach.mapstash.service.TagNames;
+import com.sach.mapstash.service.TimeWindowQuery;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * PinService spread over several databases ("sharded" profile), see {@link GeoShardRouter}.
+ * <p>
+ * Each shard has the same pins/tags/pin_tags tables as the JPA schema and only holds the
+ * pins of its own geohash cells (plus the tags those pins use). Writes go to one shard.
+ * Reads by id go straight to the shard encoded in the id. Area queries run in parallel
+ * on the shards whose cells overlap the area, everything else runs on all shards, and
+ * the results are merged ordered by id. Pin and tag ids in the DTOs are global ids
+ * (shard packed into the low bits).
+ */
+public class ShardedPinService implements PinService {
+
+    private static final String PIN_COLUMNS = "id, title, notes, latitude, longitude, user_id, created_at, updated_at";
+    private static final String SUMMARY_COLUMNS = "id, title, latitude, longitude";
+    private static final String BOUNDING_BOX =
+            "latitude BETWEEN :minLat AND :maxLat AND longitude BETWEEN :minLng AND :maxLng";
+    private static final int IN_CLAUSE_CHUNK = 1000; // keep IN (...) lists a sane size
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final GeoShardRouter router;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService fanOutExecutor;
+
+    public ShardedPinService(List<DataSource> dataSources, GeoShardRouter router, ApplicationEventPublisher eventPublisher) {
+        if (dataSources.size() != router.getShardCount()) {
+            throw new IllegalArgumentException("Router expects " + router.getShardCount() + " shards, got " + dataSources.size());
+        }
+        for (int i = 0; i < dataSources.size(); i++) {
+            shards.add(new Shard(i, dataSources.get(i)));
+        }
+        this.router = router;
+        this.eventPublisher = eventPublisher;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fanOutExecutor = Executors.newFixedThreadPool(Math.max(2, dataSources.size() * 2), runnable -> {
+            Thread thread = new Thread(runnable, "shard-fanout-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the tables on every shard if they don't exist yet.
+     */
+    public void initializeSchema() {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("schema-sharded.sql"));
+        for (Shard shard : shards) {
+            populator.execute(shard.dataSource);
+        }
+    }
+
+    /**
+     * Stops the fan-out threads and closes the shards' pools (the data sources that are
+     * AutoCloseable, like the Hikari pools ShardingConfig builds) - they belong to this service.
+     */
+    public void shutdown() {
+        fanOutExecutor.shutdownNow();
+        RuntimeException failure = null;
+        for (Shard shard : shards) {
+            if (shard.dataSource instanceof AutoCloseable pool) {
+                try {
+                    pool.close();
+                } catch (Exception e) {
+                    // keep closing the others
+                    if (failure == null) {
+                        failure = new IllegalStateException("Can't close the pool of shard " + shard.index, e);
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // --- Writes (always a single shard, in that shard's transaction) ---
+
+    @Override
+    public PinDto createPin(CreatePinDto createPinDto) {
+        return createOnShard(null, createPinDto);
+    }
+
+    @Override
+    public PinDto createPinForUser(Long userId, CreatePinDto createPinDto) {
+        return createOnShard(userId, createPinDto);
+    }
+
+    @Override
+    public PinDto updatePin(Long id, UpdatePinDto updatePinDto) {
+        return updateOnShard(null, id, updatePinDto);
+    }
+
+    @Override
+    public PinDto updatePinForUser(Long userId, Long id, UpdatePinDto updatePinDto) {
+        return updateOnShard(userId, id, updatePinDto);
+    }
+
+    @Override
+    public void deletePin(Long id) {
+        deleteOnShard(null, id);
+    }
+
+    @Override
+    public void deletePinForUser(Long userId, Long id) {
+        deleteOnShard(userId, id);
+    }
+
+    // --- Reads by id (single shard) ---
+
+    @Override
+    public Optional<PinDto> getPinById(Long id) {
+        return findOnShard(null, id);
+    }
+
+    @Override
+    public Optional<PinDto> getPinByIdForUser(Long userId, Long id) {
+        return findOnShard(userId, id);
+    }
+
+    // --- Reads over everything (all shards) ---
+
+    @Override
+    public List<PinDto> getAllPins() {
+        return mergePins(fanOut(allShards(), shard -> queryPins(shard, "", new MapSqlParameterSource(), null)));
+    }
+
+    @Override
+    public List<PinSummaryDto> getAllPinSummaries() {
+        return mergeSummaries(fanOut(allShards(), shard -> querySummaries(shard, "", new MapSqlParameterSource(), null)));
+    }
+
+    @Override
+    public List<PinDto> getAllPinsForUser(Long userId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("userId", userId);
+        return mergePins(fanOut(allShards(), shard -> queryPins(shard, "WHERE user_id = :userId", params, null)));
+    }
+
+    @Override
+    public List<PinSummaryDto> getAllPinSummariesForUser(Long userId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("userId", userId);
+        return mergeSummaries(fanOut(allShards(), shard -> querySummaries(shard, "WHERE user_id = :userId", params, null)));
+    }
+
+    @Override
+    public List<String> getAllTagNames() {
+        List<String> names = fanOut(allShards(), shard ->
+                shard.jdbc.queryForList("SELECT DISTINCT name FROM tags", new MapSqlParameterSource(), String.class));
+        return new ArrayList<>(new TreeSet<>(names));
+    }
+
+    // each shard only has the tags its own pins use, so the same name's counts add up
+    @Override
+    public Map<String, Long> getTagUsageCounts() {
+        List<Map<String, Long>> perShard = fanOut(allShards(), shard -> {
+            Map<String, Long> counts = new HashMap<>();
+            shard.jdbc.query("SELECT t.name, COUNT(pt.pin_id) FROM tags t " +
+                            "LEFT JOIN pin_tags pt ON pt.tag_id = t.id GROUP BY t.name",
+                    new MapSqlParameterSource(),
+                    rs -> {
+                        counts.put(rs.getString(1), rs.getLong(2));
+                    });
+            return List.of(counts);
+        });
+        Map<String, Long> counts = new HashMap<>();
+        for (Map<String, Long> shardCounts : perShard) {
+            shardCounts.forEach((name, count) -> counts.merge(name, count, Long::sum));
+        }
+        return counts;
+    }
+
+    @Override
+    public List<String> getAllTagNamesForUser(Long userId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("userId", userId);
+        List<String> names = fanOut(allShards(), shard -> shard.jdbc.queryForList(
+                "SELECT DISTINCT t.name FROM pins p " +
+                        "JOIN pin_tags pt ON pt.pin_id = p.id JOIN tags t ON t.id = pt.tag_id " +
+                        "WHERE p.user_id = :userId", params, String.class));
+        return new ArrayList<>(new TreeSet<>(names));
+    }
+
+    // --- Area reads (only the shards the area overlaps) ---
+
+    @Override
+    public List<PinDto> findNearbyPins(double latitude, double longitude, double radiusInMeters) {
+        return findNearby(null, latitude, longitude, radiusInMeters);
+    }
+
+    @Override
+    public NearbyResult<PinDto> findNearbyPins(double latitude, double longitude, double radiusInMeters, Deadline deadline) {
+        return NearbyResult.scan(radiusInMeters, deadline,
+                radius -> findNearby(null, latitude, longitude, radius, deadline));
+    }
+
+    @Override
+    public List<PinDto> findNearbyPinsForUser(Long userId, double latitude, double longitude, double radiusInMeters) {
+        return findNearby(userId, latitude, longitude, radiusInMeters);
+    }
+
+    @Override
+    public List<PinSummaryDto> findNearbyPinSummaries(double latitude, double longitude, double radiusInMeters) {
+        return findNearbySummaries(null, latitude, longitude, radiusInMeters);
+    }
+
+    @Override
+    public NearbyResult<PinSummaryDto> findNearbyPinSummaries(double latitude, double longitude, double radiusInMeters,
+                                                              Deadline deadline) {
+        return NearbyResult.scan(radiusInMeters, deadline,
+                radius -> findNearbySummaries(null, latitude, longitude, radius, deadline));
+    }
+
+    @Override
+    public List<PinSummaryDto> findNearbyPinSummariesForUser(Long userId, double latitude, double longitude, double radiusInMeters) {
+        return findNearbySummaries(userId, latitude, longitude, radiusInMeters);
+    }
+
+    @Override
+    public List<PinDto> findPinsInBoundingBox(double minLat, double maxLat, double minLng, double maxLng) {
+        MapSqlParameterSource params = boundingBoxParams(new double[]{minLat, maxLat, minLng, maxLng});
+        return mergePins(fanOut(router.shardsFor(minLat, maxLat, minLng, maxLng),
+                shard -> queryPins(shard, "WHERE " + BOUNDING_BOX, params, null)));
+    }
+
+    @Override
+    public List<PinSummaryDto> findPinSummariesInBoundingBox(double minLat, double maxLat, double minLng, double maxLng) {
+        MapSqlParameterSource params = boundingBoxParams(new double[]{minLat, maxLat, minLng, maxLng});
+        return mergeSummaries(fanOut(router.shardsFor(minLat, maxLat, minLng, maxLng),
+                shard -> querySummaries(shard, "WHERE " + BOUNDING_BOX, params, null)));
+    }
+
+    // --- Time-window pages (each shard's own keyset range, merged) ---
+
+    @Override
+    public PinPageDto<PinDto> findPinsInTimeWindow(TimeWindowQuery query) {
+        return timeWindowPage(query, (shard, localIds) ->
+                        queryPins(shard, "WHERE id IN (:ids)", new MapSqlParameterSource("ids", localIds), null),
+                PinDto::getId, PinDto::getLatitude, PinDto::getLongitude);
+    }
+
+    @Override
+    public PinPageDto<PinSummaryDto> findPinSummariesInTimeWindow(TimeWindowQuery query) {
+        return timeWindowPage(query, (shard, localIds) ->
+                        querySummaries(shard, "WHERE id IN (:ids)", new MapSqlParameterSource("ids", localIds), null),
+                PinSummaryDto::getId, PinSummaryDto::getLatitude, PinSummaryDto::getLongitude);
+    }
+
+    // every shard reads the keys of its first limit rows after the start key, the page is the first limit
+    // of all of them - only those pins are loaded then, in full or as summaries
+    private <T> PinPageDto<T> timeWindowPage(TimeWindowQuery query, BiFunction<Shard, List<Long>, List<T>> load,
+                                             Function<T, Long> id, ToDoubleFunction<T> latitude, ToDoubleFunction<T> longitude) {
+        PinCursor start = query.start();
+        double[] box = query.boundingBox();
+        BitSet shardSet = query.hasArea() ? router.shardsFor(box[0], box[1], box[2], box[3]) : allShards();
+        boolean byCreated = query.getOrder() == TimeWindowQuery.Order.CREATED;
+        String column = byCreated ? "created_at" : "updated_at";
+
+        List<PinCursor> keys = fanOut(shardSet, shard -> {
+            // same keyset as PinRepository's findPageIds* queries
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("afterTime", start.getTime())
+                    .addValue("afterId", localIdAfter(shard.index, start.getId()))
+                    .addValue("limit", query.getLimit());
+            String where = "WHERE " + column + " >= :afterTime AND (" + column + " > :afterTime OR id > :afterId)";
+            if (query.hasArea()) {
+                where += " AND " + BOUNDING_BOX;
+                params.addValues(boundingBoxParams(box).getValues());
+            }
+            if (byCreated) {
+                where += " AND created_at < :createdBefore AND updated_at >= :updatedFrom";
+                params.addValue("createdBefore", query.createdUpperBound())
+                        .addValue("updatedFrom", query.updatedLowerBound());
+            }
+            return shard.jdbc.query("SELECT id, " + column + " FROM pins " + where + " ORDER BY " + column + ", id LIMIT :limit",
+                    params, (rs, rowNum) -> new PinCursor(query.getOrder(), rs.getObject(2, LocalDateTime.class),
+                            GeoShardRouter.toGlobalId(shard.index, rs.getLong(1))));
+        });
+        keys.sort(Comparator.comparing(PinCursor::getTime).thenComparingLong(PinCursor::getId));
+        keys = keys.subList(0, Math.min(keys.size(), query.getLimit()));
+        if (keys.isEmpty()) {
+            return query.page(List.of(), null, latitude, longitude);
+        }
+
+        BitSet pageShards = new BitSet(shards.size());
+        Map<Integer, List<Long>> localIds = new HashMap<>();
+        for (PinCursor key : keys) {
+            int shard = GeoShardRouter.shardOf(key.getId());
+            pageShards.set(shard);
+            localIds.computeIfAbsent(shard, k -> new ArrayList<>()).add(GeoShardRouter.localIdOf(key.getId()));
+        }
+        Map<Long, T> loaded = new HashMap<>();
+        for (T pin : fanOut(pageShards, shard -> load.apply(shard, localIds.get(shard.index)))) {
+            loaded.put(id.apply(pin), pin);
+        }
+        List<T> scanned = new ArrayList<>(keys.size());
+        for (PinCursor key : keys) {
+            T pin = loaded.get(key.getId());
+            if (pin != null) { // deleted since its key was read
+                scanned.add(pin);
+            }
+        }
+        return query.page(scanned, keys.get(keys.size() - 1), latitude, longitude);
+    }
+
+    // --- Helper Methods ---
+
+    private PinDto createOnShard(Long userId, CreatePinDto createPinDto) {
+        Shard shard = shards.get(router.shardFor(createPinDto.getLatitude(), createPinDto.getLongitude()));
+
+        return shard.tx.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            MapSqlParameterSource pin = new MapSqlParameterSource()
+                    .addValue("title", createPinDto.getTitle())
+                    .addValue("notes", createPinDto.getNotes())
+                    .addValue("latitude", createPinDto.getLatitude())
+                    .addValue("longitude", createPinDto.getLongitude())
+                    .addValue("user_id", userId)
+                    .addValue("created_at", now)
+                    .addValue("updated_at", now);
+            long localId = shard.pinInsert.executeAndReturnKey(pin).longValue();
+
+            Map<String, Long> tagIds = resolveTagIds(shard, TagNames.normalize(createPinDto.getTags()));
+            insertPinTags(shard, localId, tagIds.values());
+
+            long globalId = GeoShardRouter.toGlobalId(shard.index, localId);
+            eventPublisher.publishEvent(PinChangeEvent.created(globalId, userId,
+                    createPinDto.getLatitude(), createPinDto.getLongitude(), tagIds.keySet()));
+            return loadPin(shard, localId);
+        });
+    }
+
+    private PinDto updateOnShard(Long userId, Long id, UpdatePinDto updatePinDto) {
+        Shard shard = shardOf(id).orElseThrow(() -> notFound(userId, id));
+        long localId = GeoShardRouter.localIdOf(id);
+
+        return shard.tx.execute(status -> {
+            PinRow existing = lockPin(shard, userId, localId).orElseThrow(() -> notFound(userId, id));
+
+            shard.jdbc.update("UPDATE pins SET title = :title, notes = :notes, updated_at = :now WHERE id = :id",
+                    new MapSqlParameterSource()
+                            .addValue("title", updatePinDto.getTitle())
+                            .addValue("notes", updatePinDto.getNotes())
+                            .addValue("now", LocalDateTime.now())
+                            .addValue("id", localId));
+
+            // tag diff by id: only the join rows that actually change are touched
+            Map<Long, String> currentTags = currentTags(shard, localId);
+            Set<Long> currentTagIds = currentTags.keySet();
+            Map<String, Long> wantedTags = resolveTagIds(shard, TagNames.normalize(updatePinDto.getTags()));
+            Set<Long> wantedTagIds = new HashSet<>(wantedTags.values());
+
+            Set<Long> toRemove = new HashSet<>(currentTagIds);
+            toRemove.removeAll(wantedTagIds);
+            Set<Long> toAdd = new HashSet<>(wantedTagIds);
+            toAdd.removeAll(currentTagIds);
+
+            if (!toRemove.isEmpty()) {
+                shard.jdbc.update("DELETE FROM pin_tags WHERE pin_id = :id AND tag_id IN (:tagIds)",
+                        new MapSqlParameterSource("id", localId).addValue("tagIds", toRemove));
+            }
+            insertPinTags(shard, localId, toAdd);
+
+            List<String> addedTagNames = new ArrayList<>();
+            for (Map.Entry<String, Long> tag : wantedTags.entrySet()) {
+                if (toAdd.contains(tag.getValue())) {
+                    addedTagNames.add(tag.getKey());
+                }
+            }
+            List<String> removedTagNames = new ArrayList<>();
+            for (Long tagId : toRemove) {
+                removedTagNames.add(currentTags.get(tagId));
+            }
+            eventPublisher.publishEvent(PinChangeEvent.updated(id, existing.userId,
+                    existing.latitude, existing.longitude, existing.latitude, existing.longitude,
+                    addedTagNames, removedTagNames));
+            return loadPin(shard, localId);
+        });
+    }
+
+    private void deleteOnShard(Long userId, Long id) {
+        Shard shard = shardOf(id).orElseThrow(() -> notFound(userId, id));
+        long localId = GeoShardRouter.localIdOf(id);
+
+        shard.tx.executeWithoutResult(status -> {
+            PinRow existing = lockPin(shard, userId, localId).orElseThrow(() -> notFound(userId, id));
+
+            Collection<String> tagNames = currentTags(shard, localId).values();
+
+            MapSqlParameterSource params = new MapSqlParameterSource("id", localId);
+            shard.jdbc.update("DELETE FROM pin_tags WHERE pin_id = :id", params);
+            shard.jdbc.update("DELETE FROM pins WHERE id = :id", params);
+
+            eventPublisher.publishEvent(PinChangeEvent.deleted(id, existing.userId, existing.latitude, existing.longitude,
+                    tagNames));
+        });
+    }
+
+    private Optional<PinDto> findOnShard(Long userId, Long id) {
+        Optional<Shard> shard = shardOf(id);
+        if (shard.isEmpty()) {
+            return Optional.empty();
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource("id", GeoShardRouter.localIdOf(id));
+        String where = "WHERE id = :id";
+        if (userId != null) {
+            where += " AND user_id = :userId";
+            params.addValue("userId", userId);
+        }
+        List<PinDto> found = queryPins(shard.get(), where, params, null);
+        return found.isEmpty() ? Optional.empty() : Optional.of(found.get(0));
+    }
+
+    private List<PinDto> findNearby(Long userId, double latitude, double longitude, double radiusInMeters) {
+        return findNearby(userId, latitude, longitude, radiusInMeters, null);
+    }
+
+    private List<PinSummaryDto> findNearbySummaries(Long userId, double latitude, double longitude, double radiusInMeters) {
+        return findNearbySummaries(userId, latitude, longitude, radiusInMeters, null);
+    }
+
+    // deadline may be null
+    private List<PinDto> findNearby(Long userId, double latitude, double longitude, double radiusInMeters, Deadline deadline) {
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        MapSqlParameterSource params = boundingBoxParams(box);
+        String where = "WHERE " + BOUNDING_BOX + userFilter(userId, params);
+        Predicate<PinRow> inRadius = row ->
+                GeoMath.haversineDistance(latitude, longitude, row.latitude, row.longitude) <= radiusInMeters;
+
+        return mergePins(fanOut(router.shardsFor(box[0], box[1], box[2], box[3]),
+                shard -> withinDeadline(shard, deadline, () -> queryPins(shard, where, params, inRadius))));
+    }
+
+    private List<PinSummaryDto> findNearbySummaries(Long userId, double latitude, double longitude, double radiusInMeters,
+                                                    Deadline deadline) {
+        double[] box = GeoMath.boundingBox(latitude, longitude, radiusInMeters);
+        MapSqlParameterSource params = boundingBoxParams(box);
+        String where = "WHERE " + BOUNDING_BOX + userFilter(userId, params);
+        Predicate<PinRow> inRadius = row ->
+                GeoMath.haversineDistance(latitude, longitude, row.latitude, row.longitude) <= radiusInMeters;
+
+        return mergeSummaries(fanOut(router.shardsFor(box[0], box[1], box[2], box[3]),
+                shard -> withinDeadline(shard, deadline, () -> querySummaries(shard, where, params, inRadius))));
+    }
+
+    // with a deadline: a read-only transaction on the shard that times out with it, JdbcTemplate
+    // then gives every statement the time left as its query timeout
+    private static <T> T withinDeadline(Shard shard, Deadline deadline, Supplier<T> read) {
+        if (deadline == null) {
+            return read.get();
+        }
+        TransactionTemplate tx = new TransactionTemplate(shard.tx.getTransactionManager());
+        tx.setReadOnly(true);
+        tx.setTimeout(deadline.remainingSeconds());
+        return tx.execute(status -> read.get());
+    }
+
+    // pins matching the where clause on one shard, with their tags (2 queries + 1 per IN chunk)
+    private List<PinDto> queryPins(Shard shard, String where, SqlParameterSource params, Predicate<PinRow> filter) {
+        List<PinRow> rows = shard.jdbc.query("SELECT " + PIN_COLUMNS + " FROM pins " + where, params, PIN_ROW_MAPPER);
+        if (filter != null) {
+            rows.removeIf(filter.negate());
+        }
+
+        Map<Long, List<TagDto>> tagsByPin = loadTags(shard, rows);
+        List<PinDto> pins = new ArrayList<>(rows.size());
+        for (PinRow row : rows) {
+            List<TagDto> tags = tagsByPin.getOrDefault(row.localId, new ArrayList<>());
+            pins.add(PinDtos.pinDto(GeoShardRouter.toGlobalId(shard.index, row.localId), row.title, row.notes,
+                    row.latitude, row.longitude, row.userId, row.createdAt, row.updatedAt, tags));
+        }
+        return pins;
+    }
+
+    private List<PinSummaryDto> querySummaries(Shard shard, String where, SqlParameterSource params, Predicate<PinRow> filter) {
+        List<PinRow> rows = shard.jdbc.query("SELECT " + SUMMARY_COLUMNS + " FROM pins " + where, params, SUMMARY_ROW_MAPPER);
+        if (filter != null) {
+            rows.removeIf(filter.negate());
+        }
+
+        Map<Long, List<TagDto>> tagsByPin = loadTags(shard, rows);
+        List<PinSummaryDto> summaries = new ArrayList<>(rows.size());
+        for (PinRow row : rows) {
+            List<String> names = new ArrayList<>();
+            for (TagDto tag : tagsByPin.getOrDefault(row.localId, Collections.emptyList())) {
+                names.add(tag.getName());
+            }
+            summaries.add(PinDtos.pinSummaryDto(GeoShardRouter.toGlobalId(shard.index, row.localId), row.title,
+                    row.latitude, row.longitude, names));
+        }
+        return summaries;
+    }
+
+    private PinDto loadPin(Shard shard, long localId) {
+        return queryPins(shard, "WHERE id = :id", new MapSqlParameterSource("id", localId), null).get(0);
+    }
+
+    private Map<Long, List<TagDto>> loadTags(Shard shard, List<PinRow> rows) {
+        Map<Long, List<TagDto>> tagsByPin = new HashMap<>();
+        List<Long> pinIds = new ArrayList<>(rows.size());
+        for (PinRow row : rows) {
+            pinIds.add(row.localId);
+        }
+
+        for (int from = 0; from < pinIds.size(); from += IN_CLAUSE_CHUNK) {
+            List<Long> chunk = pinIds.subList(from, Math.min(pinIds.size(), from + IN_CLAUSE_CHUNK));
+            shard.jdbc.query("SELECT pt.pin_id, t.id, t.name FROM pin_tags pt JOIN tags t ON t.id = pt.tag_id " +
+                            "WHERE pt.pin_id IN (:pinIds)",
+                    new MapSqlParameterSource("pinIds", chunk),
+                    rs -> {
+                        tagsByPin.computeIfAbsent(rs.getLong(1), k -> new ArrayList<>())
+                                .add(new TagDto(GeoShardRouter.toGlobalId(shard.index, rs.getLong(2)), rs.getString(3)));
+                    });
+        }
+        return tagsByPin;
+    }
+
+    // local tag id -> name for the pin's tags
+    private Map<Long, String> currentTags(Shard shard, long localPinId) {
+        Map<Long, String> tags = new HashMap<>();
+        shard.jdbc.query("SELECT t.id, t.name FROM pin_tags pt JOIN tags t ON t.id = pt.tag_id WHERE pt.pin_id = :id",
+                new MapSqlParameterSource("id", localPinId),
+                rs -> {
+                    tags.put(rs.getLong(1), rs.getString(2));
+                });
+        return tags;
+    }
+
+    // tag name -> local tag id on this shard, creating the missing ones
+    private Map<String, Long> resolveTagIds(Shard shard, List<String> names) {
+        Map<String, Long> tagIds = new LinkedHashMap<>();
+        if (names.isEmpty()) {
+            return tagIds;
+        }
+
+        shard.jdbc.query("SELECT id, name FROM tags WHERE LOWER(name) IN (:names)",
+                new MapSqlParameterSource("names", names),
+                rs -> {
+                    tagIds.put(rs.getString(2).toLowerCase(Locale.ROOT), rs.getLong(1));
+                });
+
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            if (!tagIds.containsKey(name)) {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return tagIds;
+        }
+
+        // upsert + locking re-read, same as PinServiceImpl: a tag created concurrently by another
+        // request is reused instead of failing uk_tag_name. Sorted so overlapping batches lock in the same order
+        Collections.sort(missing);
+        LocalDateTime now = LocalDateTime.now();
+        SqlParameterSource[] batch = new SqlParameterSource[missing.size()];
+        for (int i = 0; i < missing.size(); i++) {
+            batch[i] = new MapSqlParameterSource("name", missing.get(i)).addValue("now", now);
+        }
+        shard.jdbc.batchUpdate("INSERT INTO tags (name, created_at, updated_at) VALUES (:name, :now, :now) " +
+                "ON DUPLICATE KEY UPDATE id = id", batch);
+
+        shard.jdbc.query("SELECT id, name FROM tags WHERE name IN (:names) FOR UPDATE",
+                new MapSqlParameterSource("names", missing),
+                rs -> {
+                    tagIds.put(rs.getString(2), rs.getLong(1));
+                });
+        return tagIds;
+    }
+
+    private void insertPinTags(Shard shard, long localPinId, Collection<Long> tagIds) {
+        if (tagIds.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = new SqlParameterSource[tagIds.size()];
+        int i = 0;
+        for (Long tagId : tagIds) {
+            batch[i++] = new MapSqlParameterSource("pinId", localPinId).addValue("tagId", tagId);
+        }
+        shard.jdbc.batchUpdate("INSERT INTO pin_tags (pin_id, tag_id) VALUES (:pinId, :tagId)", batch);
+    }
+
+    // locks the pin row and returns its owner and position (empty = not found, or owned by
+    // someone else for user-scoped calls)
+    private Optional<PinRow> lockPin(Shard shard, Long userId, long localId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("id", localId);
+        String where = "WHERE id = :id" + userFilter(userId, params);
+        List<PinRow> rows = shard.jdbc.query("SELECT id, user_id, latitude, longitude FROM pins " + where + " FOR UPDATE",
+                params, (rs, rowNum) -> {
+                    PinRow row = new PinRow();
+                    row.localId = rs.getLong("id");
+                    row.userId = rs.getObject("user_id", Long.class);
+                    row.latitude = rs.getDouble("latitude");
+                    row.longitude = rs.getDouble("longitude");
+                    return row;
+                });
+        return rows.stream().findFirst();
+    }
+
+    private <T> List<T> fanOut(BitSet shardSet, Function<Shard, List<T>> query) {
+        if (shardSet.cardinality() == 1) {
+            return query.apply(shards.get(shardSet.nextSetBit(0))); // no point paying for a thread hop
+        }
+
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        for (int i = shardSet.nextSetBit(0); i >= 0; i = shardSet.nextSetBit(i + 1)) {
+            Shard shard = shards.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), fanOutExecutor));
+        }
+
+        List<T> merged = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<T>> future : futures) {
+                merged.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+        return merged;
+    }
+
+    private BitSet allShards() {
+        BitSet all = new BitSet(shards.size());
+        all.set(0, shards.size());
+        return all;
+    }
+
+    private Optional<Shard> shardOf(Long id) {
+        if (id == null || id < 0) {
+            return Optional.empty();
+        }
+        int index = GeoShardRouter.shardOf(id);
+        return index < shards.size() ? Optional.of(shards.get(index)) : Optional.empty();
+    }
+
+    private static List<PinDto> mergePins(List<PinDto> pins) {
+        pins.sort(Comparator.comparing(PinDto::getId));
+        return pins;
+    }
+
+    private static List<PinSummaryDto> mergeSummaries(List<PinSummaryDto> summaries) {
+        summaries.sort(Comparator.comparing(PinSummaryDto::getId));
+        return summaries;
+    }
+
+    // the shard's pins with a global id above globalId are the ones with a local id above this
+    private static long localIdAfter(int shard, long globalId) {
+        long localId = GeoShardRouter.localIdOf(globalId);
+        return shard > GeoShardRouter.shardOf(globalId) ? localId - 1 : localId;
+    }
+
+    private static MapSqlParameterSource boundingBoxParams(double[] box) {
+        return new MapSqlParameterSource()
+                .addValue("minLat", box[0])
+                .addValue("maxLat", box[1])
+                .addValue("minLng", box[2])
+                .addValue("maxLng", box[3]);
+    }
+
+    private static String userFilter(Long userId, MapSqlParameterSource params) {
+        if (userId == null) {
+            return "";
+        }
+        params.addValue("userId", userId);
+        return " AND user_id = :userId";
+    }
+
+    private static ResourceNotFoundException notFound(Long userId, Long id) {
+        if (userId == null) {
+            return new ResourceNotFoundException("Pin not found with id: " + id);
+        }
+        return new ResourceNotFoundException("Pin not found with id: " + id + " for user: " + userId);
+    }
+
+    // --- Shard plumbing ---
+
+    private static final class Shard {
+        private final int index;
+        private final DataSource dataSource;
+        private final NamedParameterJdbcTemplate jdbc;
+        private final TransactionTemplate tx;
+        private final SimpleJdbcInsert pinInsert;
+
+        Shard(int index, DataSource dataSource) {
+            this.index = index;
+            this.dataSource = dataSource;
+            this.jdbc = new NamedParameterJdbcTemplate(dataSource);
+            this.tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            this.pinInsert = new SimpleJdbcInsert(dataSource)
+                    .withTableName("pins")
+                    .usingColumns("title", "notes", "latitude", "longitude", "user_id", "created_at", "updated_at")
+                    .usingGeneratedKeyColumns("id");
+        }
+    }
+
+    private static final class PinRow {
+        private long localId;
+        private String title;
+        private String notes;
+        private double latitude;
+        private double longitude;
+        private Long userId;
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+    }
+
+    private static final RowMapper<PinRow> PIN_ROW_MAPPER = (rs, rowNum) -> {
+        PinRow row = new PinRow();
+        row.localId = rs.getLong("id");
+        row.title = rs.getString("title");
+        row.notes = rs.getString("notes");
+        row.latitude = rs.getDouble("latitude");
+        row.longitude = rs.getDouble("longitude");
+        row.userId = rs.getObject("user_id", Long.class);
+        row.createdAt = rs.getObject("created_at", LocalDateTime.class);
+        row.updatedAt = rs.getObject("updated_at", LocalDateTime.class);
+        return row;
+    };
+
+    private static final RowMapper<PinRow> SUMMARY_ROW_MAPPER = (rs, rowNum) -> {
+        PinRow row = new PinRow();
+        row.localId = rs.getLong("id");
+        row.title = rs.getString("title");
+        row.latitude = rs.getDouble("latitude");
+        row.longitude = rs.getDouble("longitude");
+        return row;
+    };
+}
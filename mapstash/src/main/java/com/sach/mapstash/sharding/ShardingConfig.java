@@ -0,0 +1,50 @@
+package com.sach.mapstash.sharding;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wires the sharded PinService for the "sharded" profile. The single JPA datasource is
+ * switched off in application-sharded.properties; each shard gets its own pool instead.
+ * Transaction management is enabled explicitly so @TransactionalEventListener still
+ * fires after the shard commits (Boot only turns it on when there's a transaction manager bean).
+ */
+@Configuration
+@Profile("sharded")
+@EnableConfigurationProperties(ShardingProperties.class)
+@EnableTransactionManagement
+public class ShardingConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ShardedPinService shardedPinService(ShardingProperties properties, ApplicationEventPublisher eventPublisher) {
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("The sharded profile needs at least one mapstash.sharding.shards[n].url");
+        }
+
+        List<DataSource> dataSources = new ArrayList<>();
+        for (ShardingProperties.ShardDataSource shard : properties.getShards()) {
+            dataSources.add(DataSourceBuilder.create()
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .driverClassName(shard.getDriverClassName())
+                    .build());
+        }
+
+        GeoShardRouter router = new GeoShardRouter(dataSources.size(), properties.getRoutingPrecision());
+        ShardedPinService service = new ShardedPinService(dataSources, router, eventPublisher);
+        if (properties.isInitializeSchema()) {
+            service.initializeSchema();
+        }
+        return service;
+    }
+}
@@ -0,0 +1,44 @@
+package com.sach.mapstash.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * mapstash.sharding.* - only used with the "sharded" profile.
+ */
+@ConfigurationProperties(prefix = "mapstash.sharding")
+public class ShardingProperties {
+
+    private List<ShardDataSource> shards = new ArrayList<>();
+
+    // geohash precision of the routing cells (2 = roughly 1250km x 625km)
+    private int routingPrecision = 2;
+
+    // create the pins/tags/pin_tags tables on each shard if they're missing
+    private boolean initializeSchema = true;
+
+    public List<ShardDataSource> getShards() { return shards; }
+    public void setShards(List<ShardDataSource> shards) { this.shards = shards; }
+    public int getRoutingPrecision() { return routingPrecision; }
+    public void setRoutingPrecision(int routingPrecision) { this.routingPrecision = routingPrecision; }
+    public boolean isInitializeSchema() { return initializeSchema; }
+    public void setInitializeSchema(boolean initializeSchema) { this.initializeSchema = initializeSchema; }
+
+    public static class ShardDataSource {
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+        public String getDriverClassName() { return driverClassName; }
+        public void setDriverClassName(String driverClassName) { this.driverClassName = driverClassName; }
+    }
+}
@@ -0,0 +1,333 @@
+package com.sach.mapstash.suggest;
+
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.exception.BadRequestException;
+import com.sach.mapstash.service.PinService;
+import com.sach.mapstash.service.TagNames;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tag names with their pin counts, kept in memory for GET /api/tags/suggest.
+ * <p>
+ * The names are held in one sorted array, so the tags starting with a prefix are a contiguous
+ * range found by binary search. Over the array sits a max tree (a segment tree holding, for
+ * each node, the most used tag below it), and the top k of a range come out of a best-first
+ * walk of that tree - O(k log n), however many tags share the prefix.
+ * <p>
+ * Built once at startup from the pin service, then kept up to date from committed
+ * PinChangeEvents: count changes are a tree update. Tags that aren't indexed yet go to a small
+ * sorted side map, searched alongside the arrays. Once it holds MERGE_BATCH names they're merged
+ * into new arrays in one linear pass - built outside the lock, so suggestions keep being answered
+ * meanwhile, then swapped in. Like the heatmap this is per process: writes made by another
+ * instance aren't seen until a restart.
+ * <p>
+ * Deliberately global, not partitioned by user: suggestions count the tags of every pin, like
+ * /api/tags. A user's own tag names come from /api/users/{userId}/tags, which queries the service.
+ */
+@Component
+public class TagSuggestIndex implements SmartInitializingSingleton {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 50;
+
+    // new names held aside before a merge into the arrays
+    static final int MERGE_BATCH = 256;
+
+    private final PinService pinService;
+    private final int mergeBatch;
+
+    // reads share the lock, event updates take it exclusively
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private String[] names = new String[0]; // sorted
+    private long[] counts = new long[0];    // pin count per name
+    private int leaves = 1;                 // power of two >= names.length
+    private int[] best = {-1};              // tree node -> index of its most used name (-1 = none), root at 1
+
+    // names not in the arrays yet -> pin count
+    private final TreeMap<String, Long> pending = new TreeMap<>();
+
+    // while a merge is being built: the count changes it has to replay once swapped in
+    private boolean merging;
+    private final List<Map.Entry<String, Long>> changesDuringMerge = new ArrayList<>();
+
+    @Autowired
+    public TagSuggestIndex(PinService pinService) {
+        this(pinService, MERGE_BATCH);
+    }
+
+    TagSuggestIndex(PinService pinService, int mergeBatch) {
+        this.pinService = pinService;
+        this.mergeBatch = mergeBatch;
+    }
+
+    // load every tag once all beans are ready, before the web server takes requests
+    @Override
+    public void afterSingletonsInstantiated() {
+        Map<String, Long> usage = pinService.getTagUsageCounts();
+        lock.writeLock().lock();
+        try {
+            Map<String, Long> sorted = new TreeMap<>(usage);
+            String[] sortedNames = sorted.keySet().toArray(new String[0]);
+            long[] sortedCounts = new long[sortedNames.length];
+            for (int i = 0; i < sortedNames.length; i++) {
+                sortedCounts[i] = sorted.get(sortedNames[i]);
+            }
+            install(sortedNames, sortedCounts);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    public void onPinChange(PinChangeEvent event) {
+        if (event.getAddedTagNames().isEmpty() && event.getRemovedTagNames().isEmpty()) {
+            return;
+        }
+
+        TreeMap<String, Long> batch = null;
+        String[] mergeNames = null;
+        long[] mergeCounts = null;
+        lock.writeLock().lock();
+        try {
+            for (String name : event.getAddedTagNames()) {
+                adjust(name, 1);
+            }
+            for (String name : event.getRemovedTagNames()) {
+                adjust(name, -1); // the tag row stays, so does the name
+            }
+
+            if (!merging && pending.size() >= mergeBatch) {
+                merging = true;
+                batch = new TreeMap<>(pending);
+                mergeNames = names;
+                mergeCounts = counts.clone();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (batch != null) {
+            merge(mergeNames, mergeCounts, batch);
+        }
+    }
+
+    /**
+     * The most used tags starting with the prefix, most used first (ties alphabetically).
+     * @param prefix normalized like tag names (trimmed, lowercase), null or empty for all tags
+     * @param limit how many, 1 to MAX_LIMIT
+     */
+    public List<String> suggest(String prefix, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        String normalized = prefix == null ? "" : TagNames.normalize(prefix);
+
+        lock.readLock().lock();
+        try {
+            int from = lowerBound(normalized);
+            int to = normalized.isEmpty() ? names.length : lowerBound(normalized + Character.MAX_VALUE);
+            List<String> indexed = topK(from, to, limit);
+
+            SortedMap<String, Long> unmerged = normalized.isEmpty() ? pending
+                    : pending.subMap(normalized, normalized + Character.MAX_VALUE);
+            if (unmerged.isEmpty()) {
+                return indexed;
+            }
+            // at most MERGE_BATCH of these: combine with the indexed top k, same order
+            List<Map.Entry<String, Long>> candidates = new ArrayList<>(unmerged.entrySet());
+            for (String name : indexed) {
+                candidates.add(Map.entry(name, counts[Arrays.binarySearch(names, name)]));
+            }
+            candidates.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            List<String> result = new ArrayList<>(Math.min(limit, candidates.size()));
+            for (int i = 0; i < candidates.size() && i < limit; i++) {
+                result.add(candidates.get(i).getKey());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Helpers ---
+
+    // +1 / -1 pin for a name, in the arrays or the side map; counts don't go below 0
+    private void adjust(String name, long change) {
+        int index = Arrays.binarySearch(names, name);
+        if (index >= 0) {
+            setCount(index, Math.max(0, counts[index] + change));
+        } else if (change > 0 || pending.containsKey(name)) {
+            pending.put(name, Math.max(0, pending.getOrDefault(name, 0L) + change));
+        } else {
+            return; // removed from a tag we never saw added
+        }
+        if (merging) {
+            changesDuringMerge.add(Map.entry(name, change));
+        }
+    }
+
+    // merges the batch into a copy of the arrays without holding the lock, then swaps the result in
+    // and replays what changed meanwhile. Names that arrived after the batch stay in the side map.
+    private void merge(String[] oldNames, long[] oldCounts, TreeMap<String, Long> batch) {
+        try {
+            int n = oldNames.length + batch.size();
+            String[] mergedNames = new String[n];
+            long[] mergedCounts = new long[n];
+            int i = 0;
+            int out = 0;
+            for (Map.Entry<String, Long> entry : batch.entrySet()) {
+                while (i < oldNames.length && oldNames[i].compareTo(entry.getKey()) < 0) {
+                    mergedNames[out] = oldNames[i];
+                    mergedCounts[out++] = oldCounts[i++];
+                }
+                mergedNames[out] = entry.getKey();
+                mergedCounts[out++] = entry.getValue();
+            }
+            while (i < oldNames.length) {
+                mergedNames[out] = oldNames[i];
+                mergedCounts[out++] = oldCounts[i++];
+            }
+            int mergedLeaves = leavesFor(n);
+            int[] mergedBest = buildTree(mergedCounts, mergedLeaves);
+
+            lock.writeLock().lock();
+            try {
+                names = mergedNames;
+                counts = mergedCounts;
+                leaves = mergedLeaves;
+                best = mergedBest;
+                pending.keySet().removeAll(batch.keySet());
+                for (Map.Entry<String, Long> change : changesDuringMerge) {
+                    int index = Arrays.binarySearch(names, change.getKey());
+                    if (index >= 0) {
+                        setCount(index, Math.max(0, counts[index] + change.getValue()));
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                merging = false;
+                changesDuringMerge.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // replaces the arrays and the tree; sortedNames must be sorted
+    private void install(String[] sortedNames, long[] sortedCounts) {
+        names = sortedNames;
+        counts = sortedCounts;
+        leaves = leavesFor(sortedNames.length);
+        best = buildTree(sortedCounts, leaves);
+        pending.clear();
+    }
+
+    // power of two >= n
+    private static int leavesFor(int n) {
+        int leaves = 1;
+        while (leaves < n) {
+            leaves <<= 1;
+        }
+        return leaves;
+    }
+
+    private static int[] buildTree(long[] counts, int leaves) {
+        int[] tree = new int[2 * leaves];
+        Arrays.fill(tree, -1);
+        for (int i = 0; i < counts.length; i++) {
+            tree[leaves + i] = i;
+        }
+        for (int node = leaves - 1; node >= 1; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1], counts);
+        }
+        return tree;
+    }
+
+    private void setCount(int index, long count) {
+        counts[index] = count;
+        for (int node = (leaves + index) >> 1; node >= 1; node >>= 1) {
+            best[node] = better(best[2 * node], best[2 * node + 1], counts);
+        }
+    }
+
+    // the more used of two names, the first alphabetically (lower index) on a tie
+    private static int better(int a, int b, long[] counts) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        if (counts[a] != counts[b]) {
+            return counts[a] > counts[b] ? a : b;
+        }
+        return Math.min(a, b);
+    }
+
+    private int compareNodes(int nodeA, int nodeB) {
+        int a = best[nodeA];
+        int b = best[nodeB];
+        if (counts[a] != counts[b]) {
+            return Long.compare(counts[b], counts[a]);
+        }
+        return Integer.compare(a, b);
+    }
+
+    // first index whose name is >= key
+    private int lowerBound(String key) {
+        int index = Arrays.binarySearch(names, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // the k most used names in [from, to): start from the tree nodes covering the range, then
+    // repeatedly take the node with the most used name - a leaf is the next result, an inner
+    // node is replaced by its two children
+    private List<String> topK(int from, int to, int k) {
+        List<String> result = new ArrayList<>(Math.min(k, Math.max(0, to - from)));
+        if (from >= to) {
+            return result;
+        }
+
+        PriorityQueue<Integer> queue = new PriorityQueue<>(this::compareNodes);
+        for (int l = from + leaves, r = to + leaves; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                queue.add(l++);
+            }
+            if ((r & 1) == 1) {
+                queue.add(--r);
+            }
+        }
+
+        while (!queue.isEmpty() && result.size() < k) {
+            int node = queue.poll();
+            if (node >= leaves) {
+                result.add(names[node - leaves]);
+                continue;
+            }
+            for (int child = 2 * node; child <= 2 * node + 1; child++) {
+                if (best[child] >= 0) {
+                    queue.add(child);
+                }
+            }
+        }
+        return result;
+    }
+}
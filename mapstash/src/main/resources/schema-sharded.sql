@@ -0,0 +1,36 @@
+-- Per-shard schema for the "sharded" profile (same tables the JPA entities map to).
+-- Runs on every shard at startup unless mapstash.sharding.initialize-schema=false.
+
+CREATE TABLE IF NOT EXISTS pins (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    title VARCHAR(255) NOT NULL,
+    notes TEXT,
+    latitude DOUBLE NOT NULL,
+    longitude DOUBLE NOT NULL,
+    user_id BIGINT,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_pin_lat_lng (latitude, longitude),
+    INDEX idx_pin_user_id (user_id, id),
+    INDEX idx_pin_user_lat_lng (user_id, latitude, longitude),
+    INDEX idx_pin_created_at (created_at, id),
+    INDEX idx_pin_updated_at (updated_at, id)
+);
+
+CREATE TABLE IF NOT EXISTS tags (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    name VARCHAR(100) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_tag_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS pin_tags (
+    pin_id BIGINT NOT NULL,
+    tag_id BIGINT NOT NULL,
+    PRIMARY KEY (pin_id, tag_id),
+    CONSTRAINT fk_pin_tags_pin FOREIGN KEY (pin_id) REFERENCES pins (id) ON DELETE CASCADE,
+    CONSTRAINT fk_pin_tags_tag FOREIGN KEY (tag_id) REFERENCES tags (id)
+);
@@ -1,13 +1,32 @@
 package com.sach.mapstash;
 
+import com.sach.mapstash.reactive.ReactiveConfig;
+import io.r2dbc.spi.ConnectionFactory;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 class MapstashApplicationTests {
 
+	@Autowired
+	private ApplicationContext context;
+
 	@Test
 	void contextLoads() {
 	}
 
+	// WebFlux and R2DBC are on the classpath for the reactive profile, they must stay inert without it
+	@Test
+	void reactiveStackIsUnusedWithoutItsProfile() {
+		assertInstanceOf(WebApplicationContext.class, context);
+		assertTrue(context.getBeansOfType(ConnectionFactory.class).isEmpty());
+		assertTrue(context.getBeansOfType(ReactiveConfig.class).isEmpty());
+	}
+
 }
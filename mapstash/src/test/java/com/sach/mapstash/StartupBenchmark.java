@@ -0,0 +1,211 @@
+package com.sach.mapstash;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Time from "java ..." to the first 200 from /api/pins/nearby, default settings vs the fast-start
+// profile vs fast-start with a CDS archive. Each start is a fresh JVM against the same H2 file
+// database. The app classes are packed into a jar first: CDS only archives classes from jars.
+// Not part of the normal build: mvn test -Dtest=StartupBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StartupBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int PINS = 1000;
+    private static final String FIRST_REQUEST = "/api/pins/nearby?lat=51.5&lng=-0.1&radius=5000";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    void compareStartupModes() throws Exception {
+        String classpath = classpath();
+        Path archive = workDir.resolve("app.jsa");
+
+        // first start creates the schema (ddl-auto=update), then some pins for the indexes to load
+        int port = freePort();
+        Process setup = start(classpath, port, List.of(), List.of());
+        waitForFirstRequest(setup, port);
+        seedPins(port);
+        stop(setup);
+
+        // H2's MySQL mode stores the TEXT notes column as VARCHAR, which ddl-auto=validate rejects
+        // (MySQL reports it as TEXT). Give it the type the validator expects.
+        try (Connection connection = DriverManager.getConnection(databaseUrl(), "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE pins ALTER COLUMN notes CLOB");
+        }
+
+        // training run for the CDS archive: starts the context and exits after refresh
+        Process training = start(classpath, freePort(), List.of("-XX:ArchiveClassesAtExit=" + archive, "-Dspring.context.exit=onRefresh"),
+                List.of("--spring.profiles.active=fast-start"));
+        assertEquals(0, training.waitFor(5, TimeUnit.MINUTES) ? training.exitValue() : -1,
+                () -> "CDS training run failed: " + log());
+
+        List<Object[]> modes = List.of(
+                new Object[] {"default", List.of(), List.of()},
+                new Object[] {"fast-start", List.of(), List.of("--spring.profiles.active=fast-start")},
+                new Object[] {"fast-start+cds", List.of("-XX:SharedArchiveFile=" + archive), List.of("--spring.profiles.active=fast-start")});
+
+        System.out.printf("%n%-15s %12s %12s %12s%n", "mode", "median ms", "min ms", "max ms");
+        for (Object[] mode : modes) {
+            @SuppressWarnings("unchecked")
+            List<String> jvmArgs = (List<String>) mode[1];
+            @SuppressWarnings("unchecked")
+            List<String> appArgs = (List<String>) mode[2];
+
+            List<Long> millis = new ArrayList<>();
+            for (int run = 0; run < RUNS; run++) {
+                long begin = System.nanoTime();
+                port = freePort();
+                Process app = start(classpath, port, jvmArgs, appArgs);
+                waitForFirstRequest(app, port);
+                millis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+                stop(app);
+            }
+            Collections.sort(millis);
+            System.out.printf("%-15s %12d %12d %12d%n", mode[0], millis.get(RUNS / 2), millis.get(0), millis.get(RUNS - 1));
+        }
+    }
+
+    // --- Helpers ---
+
+    // the app's classes as a jar, plus every dependency jar (devtools left out, like in the packaged app)
+    private String classpath() throws IOException {
+        Path appJar = workDir.resolve("mapstash.jar");
+        Path classes = Paths.get("target", "classes");
+        try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(appJar));
+             Stream<Path> files = Files.walk(classes)) {
+            for (Path file : (Iterable<Path>) files.skip(1)::iterator) {
+                String name = classes.relativize(file).toString().replace(File.separatorChar, '/');
+                // directory entries too, component scanning looks for them
+                jar.putNextEntry(new JarEntry(Files.isDirectory(file) ? name + "/" : name));
+                if (Files.isRegularFile(file)) {
+                    Files.copy(file, jar);
+                }
+                jar.closeEntry();
+            }
+        }
+
+        List<String> entries = new ArrayList<>();
+        entries.add(appJar.toString());
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.endsWith(".jar") && !entry.contains("spring-boot-devtools")) {
+                entries.add(entry);
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private Process start(String classpath, int port, List<String> jvmArgs, List<String> appArgs) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(MapstashApplication.class.getName());
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=" + databaseUrl());
+        command.add("--spring.datasource.username=sa");
+        command.add("--spring.datasource.password=");
+        command.add("--spring.datasource.driver-class-name=org.h2.Driver");
+        command.add("--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect");
+        command.add("--spring.jpa.show-sql=false");
+        command.add("--mapstash.rate-limit.enabled=false");
+        command.add("--logging.level.root=WARN");
+        command.addAll(appArgs);
+
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve("app.log").toFile())
+                .start();
+    }
+
+    private String databaseUrl() {
+        return "jdbc:h2:file:" + workDir.resolve("startupdb").toAbsolutePath() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+    }
+
+    // polls until the first 200
+    private void waitForFirstRequest(Process app, int port) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + FIRST_REQUEST)).build();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (!app.isAlive()) {
+                throw new IllegalStateException("app exited with " + app.exitValue() + ": " + log());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                // not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("no response within 2 minutes");
+    }
+
+    private void seedPins(int port) throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < PINS; i++) {
+            String json = String.format(Locale.ROOT,
+                    "{\"title\":\"pin %d\",\"notes\":\"notes\",\"latitude\":%f,\"longitude\":%f,\"tags\":[\"tag%d\",\"tag%d\"]}",
+                    i, 51.3 + random.nextDouble() * 0.4, -0.4 + random.nextDouble() * 0.6, random.nextInt(50), random.nextInt(50));
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/pins"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+            assertEquals(201, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        }
+    }
+
+    private String log() {
+        try {
+            return Files.readString(workDir.resolve("app.log"));
+        } catch (IOException e) {
+            return e.toString();
+        }
+    }
+
+    private static void stop(Process app) throws InterruptedException {
+        app.destroy();
+        if (!app.waitFor(2, TimeUnit.MINUTES)) {
+            app.destroyForcibly().waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
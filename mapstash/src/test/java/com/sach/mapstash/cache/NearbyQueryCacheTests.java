@@ -0,0 +1,158 @@
+package com.sach.mapstash.cache;
+
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.geo.GeoMath;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearbyQueryCacheTests {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final NearbyQueryCache cache = new NearbyQueryCache(Duration.ofSeconds(5), 20_000, 100, clock::get);
+
+    // pins on a ~100m grid around central London
+    private final List<double[]> pins = new ArrayList<>();
+    private final AtomicInteger queries = new AtomicInteger();
+
+    NearbyQueryCacheTests() {
+        long id = 1;
+        for (int i = -30; i <= 30; i++) {
+            for (int j = -30; j <= 30; j++) {
+                pins.add(new double[]{id++, 51.5 + i * 0.0009, -0.12 + j * 0.0014});
+            }
+        }
+    }
+
+    @Test
+    void nearbyRequestsShareOneQueryAndGetExactResults() {
+        Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            double lat = 51.5 + random.nextDouble() * 0.0005;
+            double lng = -0.12 + random.nextDouble() * 0.0005;
+            double radius = 300 + random.nextDouble() * 100;
+            assertEquals(direct(lat, lng, radius), ids(cached(lat, lng, radius)), "request " + i);
+        }
+        assertTrue(queries.get() <= 4, "queries: " + queries.get()); // the points can straddle a cell border
+        assertTrue(cache.getHits() >= 46);
+    }
+
+    @Test
+    void coalescesConcurrentMisses() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<double[]>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get("full", 51.5, -0.12, 500, (lat, lng, radius) -> {
+                    queries.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return load(lat, lng, radius);
+                }, p -> (long) p[0], p -> p[1], p -> p[2])));
+            }
+            Thread.sleep(200); // let every thread reach the cache
+            release.countDown();
+            for (Future<List<double[]>> result : results) {
+                assertEquals(direct(51.5, -0.12, 500), ids(result.get(5, TimeUnit.SECONDS)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    void writesInsideAnEntryInvalidateIt() {
+        cached(51.5, -0.12, 400);
+        assertEquals(1, cache.size());
+
+        cache.onPinChange(PinChangeEvent.created(99L, null, 40.0, -74.0, List.of())); // New York, unrelated
+        assertEquals(1, cache.size());
+
+        cache.onPinChange(PinChangeEvent.updated(1L, null, 40.0, -74.0, 51.5001, -0.1201, List.of(), List.of())); // moved into the area
+        assertEquals(0, cache.size());
+        cached(51.5, -0.12, 400);
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() {
+        cached(51.5, -0.12, 400);
+        clock.addAndGet(Duration.ofSeconds(4).toNanos());
+        cached(51.5, -0.12, 400);
+        assertEquals(1, queries.get());
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        cached(51.5, -0.12, 400);
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void failedQueriesAreNotCached() {
+        NearbyQueryCache.Loader<double[]> failing = (lat, lng, radius) -> {
+            queries.incrementAndGet();
+            throw new IllegalStateException("db down");
+        };
+        assertThrows(IllegalStateException.class, () -> cache.get("full", 51.5, -0.12, 400, failing, p -> (long) p[0], p -> p[1], p -> p[2]));
+        assertEquals(0, cache.size());
+        cached(51.5, -0.12, 400);
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void bypassesTheCacheForHugeRadii() {
+        cached(51.5, -0.12, 50_000);
+        cached(51.5, -0.12, 50_000);
+        assertEquals(2, queries.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void uncachedResultsAreOrderedByIdToo() {
+        NearbyQueryCache.Loader<double[]> reversed = (lat, lng, radius) -> {
+            List<double[]> found = new ArrayList<>(load(lat, lng, radius));
+            Collections.reverse(found);
+            return found;
+        };
+        NearbyQueryCache full = new NearbyQueryCache(Duration.ofSeconds(5), 20_000, 0, clock::get);
+
+        // over the max radius, and with no room for an entry: both skip the cache
+        List<double[]> huge = cache.get("full", 51.5, -0.12, 30_000, reversed, p -> (long) p[0], p -> p[1], p -> p[2]);
+        List<double[]> noRoom = full.get("full", 51.5, -0.12, 400, reversed, p -> (long) p[0], p -> p[1], p -> p[2]);
+
+        assertEquals(direct(51.5, -0.12, 30_000), huge.stream().map(p -> (long) p[0]).toList());
+        assertEquals(direct(51.5, -0.12, 400), noRoom.stream().map(p -> (long) p[0]).toList());
+        assertEquals(0, full.size());
+    }
+
+    // --- Helpers ---
+
+    private List<double[]> cached(double latitude, double longitude, double radius) {
+        return cache.get("full", latitude, longitude, radius, (lat, lng, r) -> {
+            queries.incrementAndGet();
+            return load(lat, lng, r);
+        }, p -> (long) p[0], p -> p[1], p -> p[2]);
+    }
+
+    private List<double[]> load(double latitude, double longitude, double radius) {
+        return pins.stream().filter(p -> GeoMath.haversineDistance(latitude, longitude, p[1], p[2]) <= radius).toList();
+    }
+
+    private List<Long> direct(double latitude, double longitude, double radius) {
+        return ids(load(latitude, longitude, radius));
+    }
+
+    private static List<Long> ids(List<double[]> pins) {
+        return pins.stream().map(p -> (long) p[0]).sorted().toList();
+    }
+}
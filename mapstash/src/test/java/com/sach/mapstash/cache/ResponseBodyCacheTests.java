@@ -0,0 +1,150 @@
+package com.sach.mapstash.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sach.mapstash.event.PinChangeEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseBodyCacheTests {
+
+    private static final long USER = 7;
+    private static final long OTHER_USER = 8;
+
+    private final ResponseBodyCache cache = new ResponseBodyCache(new ObjectMapper(), 3);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void servesTheCachedBodyUntilAWrite() {
+        ResponseBodyCache.CachedBody first = cache.get("pins", () -> load("a"));
+        assertSame(first, cache.get("pins", () -> load("b")));
+        assertEquals(1, loads.get());
+
+        cache.onPinChange(write(null));
+        ResponseBodyCache.CachedBody second = cache.get("pins", () -> load("b"));
+        assertEquals(2, loads.get());
+        assertTrue(second.getVersion() > first.getVersion());
+        assertNotEquals(first.getEtag(), second.getEtag());
+        assertEquals("[\"b\"]", text(cache.toResponse(second, null, null)));
+    }
+
+    @Test
+    void aUsersWriteOnlyBumpsTheirOwnPartition() {
+        ResponseBodyCache.CachedBody mine = cache.getForUser(USER, "pins", () -> load("mine"));
+        ResponseBodyCache.CachedBody theirs = cache.getForUser(OTHER_USER, "pins", () -> load("theirs"));
+        cache.get("pins", () -> load("everyone"));
+
+        cache.onPinChange(write(USER));
+
+        assertNotSame(mine, cache.getForUser(USER, "pins", () -> load("mine")));
+        assertSame(theirs, cache.getForUser(OTHER_USER, "pins", () -> load("theirs")));
+        cache.get("pins", () -> load("everyone"));
+        assertEquals(5, loads.get()); // 3 cold, then the user's partition and the global one again
+    }
+
+    @Test
+    void aWriteDuringALoadIsNotCachedUnderTheOldVersion() {
+        // the loader read the data, then a write committed before the body was stored
+        ResponseBodyCache.CachedBody stale = cache.get("pins", () -> {
+            cache.onPinChange(write(null));
+            return load("before the write");
+        });
+        assertEquals("[\"before the write\"]", text(cache.toResponse(stale, null, null))); // still answers this request
+
+        ResponseBodyCache.CachedBody fresh = cache.get("pins", () -> load("after the write"));
+        assertNotSame(stale, fresh);
+        assertEquals("[\"after the write\"]", text(cache.toResponse(fresh, null, null)));
+    }
+
+    @Test
+    void gzipOnlyWhenAccepted() throws IOException {
+        ResponseBodyCache.CachedBody body = cache.get("pins", () -> load("a".repeat(500)));
+
+        ResponseEntity<byte[]> gzipped = cache.toResponse(body, "br;q=1.0, gzip;q=0.8", null);
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(body.getGzippedLength(), gzipped.getBody().length);
+        assertTrue(body.getGzippedLength() < body.getRawLength());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+            assertEquals("[\"" + "a".repeat(500) + "\"]", new String(in.readAllBytes()));
+        }
+
+        for (String acceptEncoding : new String[]{null, "gzip;q=0", "deflate, br", "identity"}) {
+            ResponseEntity<byte[]> plain = cache.toResponse(body, acceptEncoding, null);
+            assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), acceptEncoding);
+            assertEquals(body.getRawLength(), plain.getBody().length, acceptEncoding);
+        }
+        assertTrue(cache.toResponse(body, "gzip", null).getHeaders().getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Test
+    void notModifiedOnlyForAMatchingEntityTag() {
+        ResponseBodyCache.CachedBody body = cache.get("pins", () -> load("a"));
+        String etag = body.getEtag();
+        String strong = etag.substring(2); // "..." without the W/
+
+        for (String ifNoneMatch : List.of(etag, strong, "*", " * ", "\"other\", " + etag, "W/\"other\"," + strong)) {
+            ResponseEntity<byte[]> response = cache.toResponse(body, null, ifNoneMatch);
+            assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode(), ifNoneMatch);
+            assertNull(response.getBody());
+            assertEquals(etag, response.getHeaders().getETag());
+        }
+
+        // a tag that merely contains ours, or an older version, gets the body
+        String older = etag.replace("-" + body.getVersion() + "\"", "-" + (body.getVersion() - 1) + "\"");
+        String containing = "\"x" + strong.substring(1);
+        for (String ifNoneMatch : List.of(older, containing, "W/" + etag, "\"" + etag + "\"", "")) {
+            assertEquals(HttpStatus.OK, cache.toResponse(body, null, ifNoneMatch).getStatusCode(), ifNoneMatch);
+        }
+
+        cache.onPinChange(write(null));
+        ResponseBodyCache.CachedBody newer = cache.get("pins", () -> load("b"));
+        assertEquals(HttpStatus.OK, cache.toResponse(newer, null, etag).getStatusCode());
+    }
+
+    @Test
+    void idleUserPartitionsAreEvicted() throws InterruptedException {
+        cache.get("pins", () -> load("everyone"));
+        for (long user = 1; user <= 3; user++) {
+            long id = user;
+            cache.getForUser(id, "pins", () -> load("user " + id));
+            Thread.sleep(1); // distinct access times
+        }
+        assertEquals(4, cache.getPartitionCount()); // global + max-user-partitions
+        cache.getForUser(4L, "pins", () -> load("user 4"));
+        assertEquals(4, cache.getPartitionCount());
+
+        // user 1 was the least recently used: reading it again is a miss
+        int before = loads.get();
+        cache.getForUser(1L, "pins", () -> load("user 1"));
+        assertEquals(before + 1, loads.get());
+
+        cache.evictUser(4L);
+        before = loads.get();
+        cache.getForUser(4L, "pins", () -> load("user 4"));
+        assertEquals(before + 1, loads.get());
+    }
+
+    // --- Helpers ---
+
+    private List<String> load(String value) {
+        loads.incrementAndGet();
+        return List.of(value);
+    }
+
+    private static PinChangeEvent write(Long userId) {
+        return PinChangeEvent.created(1L, userId, 51.5, -0.12, List.of());
+    }
+
+    private static String text(ResponseEntity<byte[]> response) {
+        return new String(response.getBody());
+    }
+}
@@ -0,0 +1,247 @@
+package com.sach.mapstash.changelog;
+
+import com.sach.mapstash.event.PinChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PinChangeLogTests {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final List<PinChangeLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(PinChangeLog::close);
+    }
+
+    @Test
+    void replaysEveryFieldFromAnyOffset() {
+        PinChangeLog log = open(Duration.ofMillis(50), 0, Duration.ZERO);
+        PinChangeEvent create = PinChangeEvent.created(1L, 7L, 51.5, -0.12, List.of("coffee", "café", "🍩"));
+        long first = log.append(create, 10);
+        long second = log.append(PinChangeEvent.updated(1L, 7L, 51.5, -0.12, 48.85, 2.35, List.of("wifi"), List.of("coffee")), 20);
+        log.append(PinChangeEvent.deleted(2L, null, 40.7, -74.0, List.of()), 30);
+
+        List<PinChangeRecord> all = log.reader(0).poll(10);
+        assertEquals(3, all.size());
+
+        PinChangeRecord created = all.get(0);
+        assertEquals(first, created.getOffset());
+        assertEquals(10, created.getTimestamp());
+        assertEquals(create.getSequence(), created.getEvent().getSequence());
+        assertEquals(PinChangeEvent.Type.CREATED, created.getEvent().getType());
+        assertEquals(7L, created.getEvent().getUserId());
+        assertFalse(created.getEvent().hasOldLocation());
+        assertEquals(51.5, created.getEvent().getNewLatitude());
+        assertEquals(List.of("coffee", "café", "🍩"), created.getEvent().getAddedTagNames());
+
+        PinChangeRecord updated = all.get(1);
+        assertEquals(second, updated.getOffset());
+        assertEquals(created.getNextOffset(), updated.getOffset());
+        assertEquals(-0.12, updated.getEvent().getOldLongitude());
+        assertEquals(2.35, updated.getEvent().getNewLongitude());
+        assertEquals(List.of("wifi"), updated.getEvent().getAddedTagNames());
+        assertEquals(List.of("coffee"), updated.getEvent().getRemovedTagNames());
+
+        PinChangeRecord deleted = all.get(2);
+        assertNull(deleted.getEvent().getUserId());
+        assertFalse(deleted.getEvent().hasNewLocation());
+
+        // resume from a stored offset
+        List<PinChangeRecord> rest = log.reader(second).poll(10);
+        assertEquals(2, rest.size());
+        assertEquals(2L, rest.get(1).getEvent().getPinId());
+        assertEquals(log.endOffset(), rest.get(1).getNextOffset());
+    }
+
+    @Test
+    void tailsNewAppendsAcrossSegments() throws IOException {
+        PinChangeLog log = open(Duration.ofMillis(50), 0, Duration.ZERO);
+        PinChangeLogReader reader = log.reader(0);
+        assertNull(reader.next());
+
+        List<Long> seen = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            log.append(PinChangeEvent.created(id, null, 51.5, -0.12, List.of("tag" + id)), id);
+            if (id % 7 == 0) {
+                reader.poll(100).forEach(record -> seen.add(record.getEvent().getPinId()));
+            }
+        }
+        reader.poll(100).forEach(record -> seen.add(record.getEvent().getPinId()));
+
+        assertTrue(segmentCount() > 3, "should have rolled");
+        assertEquals(100, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i + 1, seen.get(i));
+        }
+        assertEquals(log.endOffset(), reader.position());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void dropsOldSegmentsAndSkipsReadersAhead() throws IOException {
+        PinChangeLog log = open(Duration.ZERO, 3, Duration.ZERO);
+        for (long id = 1; id <= 100; id++) {
+            log.append(PinChangeEvent.created(id, null, 51.5, -0.12, List.of()), id);
+        }
+        assertEquals(3, segmentCount());
+        assertTrue(log.startOffset() > 0);
+
+        PinChangeLogReader reader = log.reader(0);
+        assertEquals(log.startOffset(), reader.position());
+        List<PinChangeRecord> kept = reader.poll(1000);
+        assertEquals(100, kept.get(kept.size() - 1).getEvent().getPinId());
+    }
+
+    @Test
+    void dropsSegmentsPastRetention() throws IOException {
+        PinChangeLog log = open(Duration.ZERO, 0, Duration.ofMinutes(1));
+        for (long id = 1; id <= 30; id++) {
+            log.append(PinChangeEvent.created(id, null, 51.5, -0.12, List.of()), clock.get());
+        }
+        assertTrue(segmentCount() > 1);
+        assertEquals(0, log.startOffset()); // nothing old enough yet
+
+        clock.addAndGet(Duration.ofMinutes(2).toMillis());
+        for (long id = 31; id <= 60; id++) {
+            log.append(PinChangeEvent.created(id, null, 51.5, -0.12, List.of()), clock.get());
+        }
+
+        // old records went, but only whole segments: none of the recent ones is lost
+        List<PinChangeRecord> kept = log.reader(0).poll(1000);
+        long firstKept = kept.get(0).getEvent().getPinId();
+        assertTrue(log.startOffset() > 0);
+        assertTrue(firstKept > 1 && firstKept <= 31, "first kept pin " + firstKept);
+        assertEquals(60 - firstKept + 1, kept.size());
+    }
+
+    @Test
+    void sweepDropsExpiredSegmentsWhileTheLogIsQuiet() throws IOException {
+        PinChangeLog log = open(Duration.ZERO, 0, Duration.ofMinutes(1));
+        for (long id = 1; id <= 30; id++) {
+            log.append(PinChangeEvent.created(id, null, 51.5, -0.12, List.of()), clock.get());
+        }
+        int segments = segmentCount();
+        assertTrue(segments > 1);
+        log.sweep();
+        assertEquals(segments, segmentCount());
+
+        // no more appends, so no roll: only the sweep can drop them
+        clock.addAndGet(Duration.ofMinutes(2).toMillis());
+        log.sweep();
+        assertEquals(1, segmentCount()); // the active one stays
+        assertTrue(log.startOffset() > 0);
+        List<PinChangeRecord> kept = log.reader(0).poll(1000);
+        assertEquals(30, kept.get(kept.size() - 1).getEvent().getPinId());
+    }
+
+    @Test
+    void failedAppendsAreCountedNotThrown() {
+        PinChangeLog log = open(Duration.ofMillis(50), 0, Duration.ZERO);
+        long end = log.endOffset();
+
+        // bigger than a whole segment
+        log.onPinChange(PinChangeEvent.created(1L, null, 51.5, -0.12, List.of("x".repeat(SEGMENT_SIZE))));
+        assertEquals(1, log.getFailedAppendCount());
+        assertEquals(end, log.endOffset());
+
+        log.onPinChange(PinChangeEvent.created(2L, null, 51.5, -0.12, List.of("coffee")));
+        assertEquals(1, log.getFailedAppendCount());
+        assertEquals(List.of(2L), log.reader(0).poll(10).stream().map(record -> record.getEvent().getPinId()).toList());
+    }
+
+    @Test
+    void recordsKeepTheSequenceFromTheWriteWhateverTheAppendOrder() {
+        PinChangeLog log = open(Duration.ofMillis(50), 0, Duration.ZERO);
+        PinChangeEvent update = PinChangeEvent.updated(1L, null, 51.5, -0.12, 51.5, -0.12, List.of("wifi"), List.of());
+        PinChangeEvent delete = PinChangeEvent.deleted(1L, null, 51.5, -0.12, List.of("wifi"));
+        assertTrue(update.getSequence() < delete.getSequence());
+
+        // the delete's listener ran first
+        log.onPinChange(delete);
+        log.onPinChange(update);
+
+        List<PinChangeRecord> records = log.reader(0).poll(10);
+        assertEquals(PinChangeEvent.Type.DELETED, records.get(0).getEvent().getType());
+        // a consumer sees the update is older than the delete it already applied
+        assertTrue(records.get(1).getEvent().getSequence() < records.get(0).getEvent().getSequence());
+        assertEquals(update.getSequence(), records.get(1).getEvent().getSequence());
+    }
+
+    @Test
+    void recoversAfterRestartAndDropsTornTail() throws IOException {
+        PinChangeLog log = open(Duration.ofMillis(50), 0, Duration.ZERO);
+        log.append(PinChangeEvent.created(1L, null, 51.5, -0.12, List.of("a")), 1);
+        long end = log.append(PinChangeEvent.created(2L, null, 51.5, -0.12, List.of("b")), 2);
+        end = log.reader(end).next().getNextOffset();
+        log.close();
+
+        // half a record after the last complete one, as if the process died mid-append
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(PinChangeLogTests::isSegment).max(Path::compareTo).orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 9, 9, 9}), end);
+        }
+
+        PinChangeLog reopened = open(Duration.ofMillis(50), 0, Duration.ZERO);
+        assertEquals(end, reopened.endOffset());
+        long third = reopened.append(PinChangeEvent.created(3L, null, 51.5, -0.12, List.of()), 3);
+        assertEquals(end, third);
+
+        List<PinChangeRecord> records = reopened.reader(0).poll(10);
+        assertEquals(List.of(1L, 2L, 3L), records.stream().map(record -> record.getEvent().getPinId()).toList());
+    }
+
+    @Test
+    void aDirectoryIsOpenedByOneLogAtATime() {
+        PinChangeLog log = open(Duration.ofMillis(50), 0, Duration.ZERO);
+        long offset = log.append(PinChangeEvent.created(1L, null, 51.5, -0.12, List.of()), 1);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> open(Duration.ofMillis(50), 0, Duration.ZERO));
+        assertTrue(e.getMessage().contains("in use"), e.getMessage());
+
+        log.close();
+        PinChangeLog reopened = open(Duration.ofMillis(50), 0, Duration.ZERO);
+        assertEquals(offset, reopened.reader(0).next().getOffset());
+    }
+
+    // --- Helpers ---
+
+    private PinChangeLog open(Duration flushInterval, int maxSegments, Duration retention) {
+        PinChangeLog log = new PinChangeLog(directory, SEGMENT_SIZE, flushInterval, maxSegments, retention, clock::get);
+        opened.add(log);
+        return log;
+    }
+
+    private int segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return (int) files.filter(PinChangeLogTests::isSegment).count();
+        }
+    }
+
+    private static boolean isSegment(Path file) {
+        return file.getFileName().toString().endsWith(".log");
+    }
+}
@@ -0,0 +1,75 @@
+package com.sach.mapstash.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sach.mapstash.dto.PinDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+// Size and rough encode/decode time per format for 1000 pins. Not a JMH run.
+// Not part of the normal build: mvn test -Dtest=PinMessageConvertersBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PinMessageConvertersBenchmark {
+
+    private static final Type PIN_LIST_TYPE = new ParameterizedTypeReference<List<PinDto>>() {}.getType();
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 200;
+
+    private final List<PinDto> pins = PinMessageConvertersTests.samplePins(1000);
+
+    @Test
+    void encodeDecode() throws IOException {
+        ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        run("json", new MappingJackson2HttpMessageConverter(jsonMapper), MediaType.APPLICATION_JSON);
+        run("cbor", new MappingJackson2CborHttpMessageConverter(WebConfig.cborMapper(jsonMapper)), MediaType.APPLICATION_CBOR);
+        run("msgpack", new MessagePackHttpMessageConverter(WebConfig.messagePackMapper(jsonMapper)),
+                MessagePackHttpMessageConverter.APPLICATION_X_MSGPACK);
+    }
+
+    // --- Helpers ---
+
+    private void run(String name, GenericHttpMessageConverter<Object> converter, MediaType type) throws IOException {
+        byte[] body = null;
+        for (int i = 0; i < WARMUP; i++) {
+            body = encode(converter, type);
+            decode(converter, type, body);
+        }
+
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            body = encode(converter, type);
+            long mid = System.nanoTime();
+            decode(converter, type, body);
+            decodeNanos += System.nanoTime() - mid;
+            encodeNanos += mid - start;
+        }
+
+        System.out.printf("%-8s encode %8.1f us/op, decode %8.1f us/op (%d pins, %d bytes)%n",
+                name, encodeNanos / 1000.0 / ITERATIONS, decodeNanos / 1000.0 / ITERATIONS, pins.size(), body.length);
+    }
+
+    private byte[] encode(GenericHttpMessageConverter<Object> converter, MediaType type) throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(pins, PIN_LIST_TYPE, type, output);
+        return output.getBodyAsBytes();
+    }
+
+    private void decode(GenericHttpMessageConverter<Object> converter, MediaType type, byte[] body) throws IOException {
+        MockHttpInputMessage input = new MockHttpInputMessage(body);
+        input.getHeaders().setContentType(type);
+        converter.read(PIN_LIST_TYPE, null, input);
+    }
+}
@@ -0,0 +1,105 @@
+package com.sach.mapstash.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.TagDto;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PinMessageConvertersTests {
+
+    private static final Type PIN_LIST_TYPE = new ParameterizedTypeReference<List<PinDto>>() {}.getType();
+
+    private static GenericHttpMessageConverter<Object> json;
+    private static GenericHttpMessageConverter<Object> cbor;
+    private static GenericHttpMessageConverter<Object> msgpack;
+    private static List<PinDto> pins;
+
+    @BeforeAll
+    static void setUp() {
+        ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        json = new MappingJackson2HttpMessageConverter(jsonMapper);
+        cbor = new MappingJackson2CborHttpMessageConverter(WebConfig.cborMapper(jsonMapper));
+        msgpack = new MessagePackHttpMessageConverter(WebConfig.messagePackMapper(jsonMapper));
+        pins = samplePins(1000);
+    }
+
+    @Test
+    void jsonRoundTrip() throws IOException {
+        assertEquals(pins, decode(json, MediaType.APPLICATION_JSON, encode(json, MediaType.APPLICATION_JSON)));
+    }
+
+    @Test
+    void cborRoundTrip() throws IOException {
+        assertEquals(pins, decode(cbor, MediaType.APPLICATION_CBOR, encode(cbor, MediaType.APPLICATION_CBOR)));
+    }
+
+    @Test
+    void messagePackRoundTrip() throws IOException {
+        MediaType type = MessagePackHttpMessageConverter.APPLICATION_X_MSGPACK;
+        assertEquals(pins, decode(msgpack, type, encode(msgpack, type)));
+    }
+
+    @Test
+    void binaryFormatsAreSmallerThanJson() throws IOException {
+        int jsonSize = encode(json, MediaType.APPLICATION_JSON).length;
+        int cborSize = encode(cbor, MediaType.APPLICATION_CBOR).length;
+        int msgpackSize = encode(msgpack, MessagePackHttpMessageConverter.APPLICATION_X_MSGPACK).length;
+
+        assertTrue(msgpackSize < jsonSize, "msgpack " + msgpackSize + " vs json " + jsonSize);
+        // string references mean repeated tag names and field names are only written once,
+        // which msgpack (no string dictionary) can't do
+        assertTrue(cborSize < msgpackSize, "cbor " + cborSize + " vs msgpack " + msgpackSize);
+    }
+
+    // --- Helpers ---
+
+    private static byte[] encode(GenericHttpMessageConverter<Object> converter, MediaType type) throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(pins, PIN_LIST_TYPE, type, output);
+        return output.getBodyAsBytes();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<PinDto> decode(GenericHttpMessageConverter<Object> converter, MediaType type, byte[] body) throws IOException {
+        MockHttpInputMessage input = new MockHttpInputMessage(body);
+        input.getHeaders().setContentType(type);
+        return (List<PinDto>) converter.read(PIN_LIST_TYPE, null, input);
+    }
+
+    // a handful of tags shared across many pins, like real data
+    static List<PinDto> samplePins(int count) {
+        String[] tagNames = {"food", "coffee", "park", "museum", "bar", "viewpoint", "shopping", "beach"};
+        LocalDateTime created = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+        List<PinDto> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<TagDto> tags = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                int tagIndex = (i + t * 3) % tagNames.length;
+                tags.add(new TagDto((long) tagIndex + 1, tagNames[tagIndex]));
+            }
+            result.add(new PinDto((long) i + 1, "Pin " + i, "Some notes for pin " + i,
+                    51.5 + i * 0.0001, -0.12 - i * 0.0001, null,
+                    created.plusMinutes(i), created.plusMinutes(i * 2L), tags));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,36 @@
+package com.sach.mapstash.controller;
+
+import com.sach.mapstash.heatmap.HeatmapIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// mapstash.heatmap.enabled=false: no grid is built at startup, and the endpoint is a 404
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:heatmapdisableddb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "mapstash.rate-limit.enabled=false",
+        "mapstash.heatmap.enabled=false"})
+@AutoConfigureMockMvc
+class HeatmapDisabledTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void noIndexAndNoEndpoint() throws Exception {
+        assertTrue(context.getBeansOfType(HeatmapIndex.class).isEmpty());
+        mockMvc.perform(get("/api/pins/heatmap").param("bbox", "-0.2,51.4,0.0,51.6"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/pins")).andExpect(status().isOk()); // the rest still works
+    }
+}
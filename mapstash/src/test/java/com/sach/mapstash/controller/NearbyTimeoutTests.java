@@ -0,0 +1,134 @@
+package com.sach.mapstash.controller;
+
+import com.sach.mapstash.cache.NearbyQueryCache;
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.service.Deadline;
+import com.sach.mapstash.service.NearbyResult;
+import com.sach.mapstash.service.PinService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// GET /api/pins/nearby with ?timeout= / X-Request-Timeout. The service is a spy, so a search can be
+// made to outlast its deadline without depending on how fast the database is
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:nearbytimeoutdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "mapstash.rate-limit.enabled=false"})
+@AutoConfigureMockMvc
+class NearbyTimeoutTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoSpyBean
+    private PinService pinService;
+
+    @Autowired
+    private NearbyQueryCache nearbyCache;
+
+    @BeforeEach
+    void emptyStore() {
+        for (PinDto pin : pinService.getAllPins()) {
+            pinService.deletePin(pin.getId());
+        }
+    }
+
+    @Test
+    void searchCutShortSaysHowFarItGot() throws Exception {
+        pinService.createPin(new CreatePinDto("center", null, 51.5074, -0.1278, List.of()));
+        pinService.createPin(new CreatePinDto("farther", null, 51.5209, -0.1278, List.of())); // ~1.5km north
+
+        // every ring takes longer than the whole timeout: only the first (250m) one finishes
+        doAnswer(invocation -> {
+            double lat = invocation.getArgument(0);
+            double lng = invocation.getArgument(1);
+            return NearbyResult.scan(invocation.getArgument(2), invocation.getArgument(3), radius -> {
+                sleep(Duration.ofMillis(60));
+                return pinService.findNearbyPins(lat, lng, radius);
+            });
+        }).when(pinService).findNearbyPins(anyDouble(), anyDouble(), anyDouble(), any(Deadline.class));
+
+        mockMvc.perform(get("/api/pins/nearby").param("lat", "51.5074").param("lng", "-0.1278")
+                        .header(PinController.REQUEST_TIMEOUT_HEADER, "50"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(PinController.PARTIAL_RESULTS_HEADER, "true"))
+                .andExpect(header().string(PinController.SEARCHED_RADIUS_HEADER, "250.0"))
+                .andExpect(jsonPath("$[*].title", contains("center")));
+    }
+
+    @Test
+    void completeSearchHasNoPartialHeaders() throws Exception {
+        pinService.createPin(new CreatePinDto("center", null, 51.5074, -0.1278, List.of("cafe")));
+        pinService.createPin(new CreatePinDto("farther", null, 51.5209, -0.1278, List.of()));
+
+        mockMvc.perform(get("/api/pins/nearby").param("lat", "51.5074").param("lng", "-0.1278")
+                        .param("fields", "summary").param("timeout", "60000"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(PinController.PARTIAL_RESULTS_HEADER))
+                .andExpect(header().doesNotExist(PinController.SEARCHED_RADIUS_HEADER))
+                .andExpect(jsonPath("$[*].title", contains("center", "farther")))
+                .andExpect(jsonPath("$[0].tags", contains("cafe")));
+    }
+
+    @Test
+    void finishedCacheEntryAnswersWithoutSearching() throws Exception {
+        pinService.createPin(new CreatePinDto("center", null, 51.5074, -0.1278, List.of()));
+        pinService.createPin(new CreatePinDto("far", null, 51.6, -0.1278, List.of())); // ~10km north
+
+        // no timeout: goes through the cache and fills it
+        mockMvc.perform(get("/api/pins/nearby").param("lat", "51.5074").param("lng", "-0.1278"))
+                .andExpect(jsonPath("$[*].title", contains("center")));
+        long hits = nearbyCache.getHits();
+
+        mockMvc.perform(get("/api/pins/nearby").param("lat", "51.5074").param("lng", "-0.1278").param("timeout", "50"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(PinController.PARTIAL_RESULTS_HEADER))
+                .andExpect(jsonPath("$[*].title", contains("center")));
+        assertEquals(hits + 1, nearbyCache.getHits());
+        verify(pinService, never()).findNearbyPins(anyDouble(), anyDouble(), anyDouble(), any(Deadline.class));
+    }
+
+    @Test
+    void timeoutsOutsideOneMillisecondToAMinuteAre400s() throws Exception {
+        for (String timeout : List.of("0", "-5", "60001", "9223372036854775807", "soon")) {
+            mockMvc.perform(get("/api/pins/nearby").param("lat", "51.5").param("lng", "-0.1").param("timeout", timeout))
+                    .andExpect(result -> assertEquals(400, result.getResponse().getStatus(), "timeout " + timeout));
+            mockMvc.perform(get("/api/pins/nearby").param("lat", "51.5").param("lng", "-0.1")
+                            .header(PinController.REQUEST_TIMEOUT_HEADER, timeout))
+                    .andExpect(result -> assertEquals(400, result.getResponse().getStatus(), "header " + timeout));
+        }
+        mockMvc.perform(get("/api/pins/nearby").param("lat", "51.5").param("lng", "-0.1").param("timeout", "60000"))
+                .andExpect(status().isOk());
+    }
+
+    // --- Helpers ---
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
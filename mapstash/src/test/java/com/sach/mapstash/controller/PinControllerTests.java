@@ -0,0 +1,212 @@
+package com.sach.mapstash.controller;
+
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.geo.PolygonIndex;
+import com.sach.mapstash.service.PinService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// /api/pins through the web layer, on its own database. Without open-in-view (like the fast-start
+// profile), so anything read outside the service's transaction fails here.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pincontrollerdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.jpa.open-in-view=false",
+        "mapstash.rate-limit.enabled=false"})
+@AutoConfigureMockMvc
+class PinControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PinService pinService;
+
+    // through the service, so the caches and indexes hear about it
+    @BeforeEach
+    void emptyStore() {
+        for (PinDto pin : pinService.getAllPins()) {
+            pinService.deletePin(pin.getId());
+        }
+    }
+
+    @Test
+    void summaryLeavesOutNotesAndKeepsTagNames() throws Exception {
+        pinService.createPin(new CreatePinDto("cafe", "long private notes", 51.5074, -0.1278, List.of("Wifi", "coffee")));
+
+        mockMvc.perform(get("/api/pins").param("fields", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].title").value("cafe"))
+                .andExpect(jsonPath("$[0].notes").doesNotExist())
+                .andExpect(jsonPath("$[0].createdAt").doesNotExist())
+                .andExpect(jsonPath("$[0].tags", contains("coffee", "wifi")));
+
+        mockMvc.perform(get("/api/pins/nearby").param("lat", "51.5074").param("lng", "-0.1278").param("fields", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].notes").doesNotExist())
+                .andExpect(jsonPath("$[0].tags", contains("coffee", "wifi")));
+
+        // the full representation still has them
+        mockMvc.perform(get("/api/pins"))
+                .andExpect(jsonPath("$[0].notes").value("long private notes"))
+                .andExpect(jsonPath("$[0].tags[*].name", contains("coffee", "wifi")));
+    }
+
+    @Test
+    void summaryIsSmallerThanTheFullList() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            pinService.createPin(new CreatePinDto("pin " + i, "notes ".repeat(20) + i,
+                    51.5 + i * 0.001, -0.12, List.of("food", "coffee")));
+        }
+
+        int full = mockMvc.perform(get("/api/pins")).andReturn().getResponse().getContentAsByteArray().length;
+        int summary = mockMvc.perform(get("/api/pins").param("fields", "summary"))
+                .andReturn().getResponse().getContentAsByteArray().length;
+        // no notes, timestamps, owner or tag ids: well under half with notes this size
+        assertTrue(summary * 2 < full, "summary " + summary + " bytes vs full " + full);
+    }
+
+    @Test
+    void heatmapCountsPinsInTheBbox() throws Exception {
+        pinService.createPin(new CreatePinDto("a", null, 51.5074, -0.1278, List.of()));
+        pinService.createPin(new CreatePinDto("b", null, 51.5075, -0.1279, List.of()));
+        pinService.createPin(new CreatePinDto("far", null, 40.7128, -74.0060, List.of()));
+
+        // bbox is minLng,minLat,maxLng,maxLat, spaces allowed
+        mockMvc.perform(get("/api/pins/heatmap").param("bbox", "-0.2, 51.4, 0.0, 51.6").param("resolution", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resolution").value(5))
+                .andExpect(jsonPath("$.cells.length()").value(1))
+                .andExpect(jsonPath("$.cells[0].count").value(2));
+
+        // minLng > maxLng crosses the antimeridian: everything but the Americas here
+        mockMvc.perform(get("/api/pins/heatmap").param("bbox", "-30,-90,-150,90").param("resolution", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cells[*].count", contains(2)));
+    }
+
+    @Test
+    void badHeatmapRequestsAre400s() throws Exception {
+        for (String bbox : List.of("", "-0.2,51.4,0.0", "-0.2,51.4,0.0,51.6,1", "a,51.4,0.0,51.6", "-0.2,NaN,0.0,51.6",
+                "-0.2,51.6,0.0,51.4", "-0.2,-91,0.0,51.6", "-181,51.4,0.0,51.6", "-0.2,51.4,180.5,51.6")) {
+            mockMvc.perform(get("/api/pins/heatmap").param("bbox", bbox))
+                    .andExpect(result -> assertEquals(400, result.getResponse().getStatus(), "bbox " + bbox));
+        }
+        mockMvc.perform(get("/api/pins/heatmap")).andExpect(status().isBadRequest()); // bbox is required
+        mockMvc.perform(get("/api/pins/heatmap").param("bbox", "-0.2,51.4,0.0,51.6").param("resolution", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/pins/heatmap").param("bbox", "-0.2,51.4,0.0,51.6").param("resolution", "13"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/pins/heatmap").param("bbox", "-0.2,51.4,0.0,51.6").param("resolution", "x"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void alongRouteFindsPinsNearTheRouteInOrder() throws Exception {
+        // west to east along the Thames-ish; the off-route pin is ~1km north
+        pinService.createPin(new CreatePinDto("east", null, 51.5074, -0.0500, List.of("cafe")));
+        pinService.createPin(new CreatePinDto("west", null, 51.5074, -0.1900, List.of("park", "cafe")));
+        pinService.createPin(new CreatePinDto("off route", null, 51.5164, -0.1200, List.of("cafe")));
+        String route = "{\"points\":[[51.5074,-0.2000],[51.5074,0.0]],\"buffer\":300}";
+
+        mockMvc.perform(post("/api/pins/along-route").contentType(MediaType.APPLICATION_JSON).content(route))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", contains("west", "east")))
+                .andExpect(jsonPath("$[0].tags[*].name", contains("cafe", "park"))); // read inside the transaction
+        mockMvc.perform(post("/api/pins/along-route").param("fields", "summary")
+                        .contentType(MediaType.APPLICATION_JSON).content(route))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", contains("west", "east")))
+                .andExpect(jsonPath("$[0].notes").doesNotExist())
+                .andExpect(jsonPath("$[0].tags", contains("cafe", "park")));
+
+        // a wider buffer reaches the off-route pin
+        mockMvc.perform(post("/api/pins/along-route").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"points\":[[51.5074,-0.2000],[51.5074,0.0]],\"buffer\":2000}"))
+                .andExpect(jsonPath("$.length()").value(3));
+    }
+
+    @Test
+    void alongRouteTakesAnEncodedPolyline() throws Exception {
+        pinService.createPin(new CreatePinDto("on the way", null, 40.7, -120.95, List.of()));
+
+        // Google's example polyline: (38.5, -120.2), (40.7, -120.95), (43.252, -126.453)
+        mockMvc.perform(post("/api/pins/along-route").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"polyline\":\"_p~iF~ps|U_ulLnnqC_mqNvxq`@\",\"buffer\":100}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", contains("on the way")));
+    }
+
+    @Test
+    void badRoutesAre400s() throws Exception {
+        for (String body : List.of(
+                "{}",
+                "{\"points\":[[51.5,-0.1]]}",
+                "{\"points\":[[51.5,-0.1],[51.5]]}",
+                "{\"points\":[[51.5,-0.1],[91,-0.1]]}",
+                "{\"points\":[[0,179],[0,-179]]}", // crosses the antimeridian
+                "{\"points\":[[51.5,-0.2],[51.5,0.0]],\"buffer\":0}",
+                "{\"points\":[[51.5,-0.2],[51.5,0.0]],\"buffer\":50001}",
+                "{\"polyline\":\"_p~iF~ps|U_\"}")) {
+            mockMvc.perform(post("/api/pins/along-route").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(result -> assertEquals(400, result.getResponse().getStatus(), body));
+        }
+    }
+
+    @Test
+    void withinRespectsHolesAndTags() throws Exception {
+        pinService.createPin(new CreatePinDto("inside", null, 51.51, -0.19, List.of("coffee", "wifi")));
+        pinService.createPin(new CreatePinDto("inside, no wifi", null, 51.49, -0.01, List.of("coffee")));
+        pinService.createPin(new CreatePinDto("in the hole", null, 51.50, -0.10, List.of("coffee", "wifi")));
+        pinService.createPin(new CreatePinDto("outside", null, 51.60, -0.10, List.of("coffee", "wifi")));
+        // [lng, lat] like any GeoJSON, with a hole in the middle
+        String polygon = "{\"type\":\"Polygon\",\"coordinates\":["
+                + "[[-0.2,51.45],[0.0,51.45],[0.0,51.55],[-0.2,51.55],[-0.2,51.45]],"
+                + "[[-0.12,51.48],[-0.08,51.48],[-0.08,51.52],[-0.12,51.52],[-0.12,51.48]]]}";
+
+        mockMvc.perform(post("/api/pins/within").contentType(MediaType.APPLICATION_JSON).content(polygon))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", contains("inside", "inside, no wifi")))
+                .andExpect(jsonPath("$[0].tags[*].name", contains("coffee", "wifi"))); // read inside the transaction
+        mockMvc.perform(post("/api/pins/within").param("tags", "WiFi").param("fields", "summary")
+                        .contentType(MediaType.APPLICATION_JSON).content(polygon))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", contains("inside")))
+                .andExpect(jsonPath("$[0].notes").doesNotExist());
+    }
+
+    @Test
+    void badPolygonsAre400s() throws Exception {
+        StringBuilder tooMany = new StringBuilder("{\"type\":\"Polygon\",\"coordinates\":[[");
+        for (int i = 0; i <= PolygonIndex.MAX_VERTICES; i++) {
+            tooMany.append(i > 0 ? "," : "").append("[").append(i % 2 == 0 ? 0 : 1).append(",").append(i * 0.0001).append("]");
+        }
+        tooMany.append("]]}");
+
+        for (String body : List.of(
+                "{}",
+                "{\"type\":\"Point\",\"coordinates\":[0,0]}",
+                "{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,1]]]}",
+                "{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,95]]]}",
+                tooMany.toString())) {
+            mockMvc.perform(post("/api/pins/within").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(result -> assertEquals(400, result.getResponse().getStatus(),
+                            body.substring(0, Math.min(body.length(), 80))));
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.sach.mapstash.controller;
+
+import com.sach.mapstash.cache.ResponseBodyCache;
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.service.PinService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// How many SQL statements each endpoint may send, whatever the number of pins - an N+1 (say, touching
+// Pin.tags per pin outside a fetch) goes far over these with the seeded data and fails the build.
+// Caches are emptied before each measured request, so these are the cold-cache costs.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statementdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "mapstash.rate-limit.enabled=false",
+        "mapstash.nearby-cache.max-radius=0"}) // nearby always queries
+@AutoConfigureMockMvc
+@Import(SqlStatementBudgetTests.CountingConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SqlStatementBudgetTests {
+
+    private static final long USER = 7;
+    private static final int SHARED_PINS = 40;
+    private static final int USER_PINS = 30;
+    private static final List<String> TAGS = List.of("coffee", "wifi", "park", "museum", "food", "view");
+
+    // area around all the pins, [lng, lat] like any GeoJSON
+    private static final String POLYGON = "{\"type\":\"Polygon\",\"coordinates\":"
+            + "[[[-0.2,51.45],[0.0,51.45],[0.0,51.55],[-0.2,51.55],[-0.2,51.45]]]}";
+    private static final String ROUTE = "{\"points\":[[51.45,-0.2],[51.55,0.0]],\"buffer\":2000}";
+
+    @TestConfiguration
+    static class CountingConfig {
+        @Bean
+        static SqlStatementCounter sqlStatementCounter() {
+            return new SqlStatementCounter();
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SqlStatementCounter counter;
+
+    @Autowired
+    private ResponseBodyCache responseCache;
+
+    @Autowired
+    private PinService pinService;
+
+    private final List<Long> sharedIds = new ArrayList<>();
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        for (int i = 0; i < SHARED_PINS; i++) {
+            sharedIds.add(pinService.createPin(pin(i)).getId());
+        }
+        for (int i = 0; i < USER_PINS; i++) {
+            userIds.add(pinService.createPinForUser(USER, pin(i)).getId());
+        }
+    }
+
+    @Test
+    void pinWrites() throws Exception {
+        // one existing tag and one that has to be created - the pin_tags inserts grow with the pin's tags, never with the pins
+        assertBudget(6, post("/api/pins").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"new\",\"latitude\":51.5,\"longitude\":-0.1,\"tags\":[\"coffee\",\"created-shared\"]}"));
+        // existing tags only: the pin, the tags, the pin update, then the pin_tags select, delete and insert
+        assertBudget(6, put("/api/pins/" + sharedIds.get(0)).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"renamed\",\"tags\":[\"wifi\",\"park\"]}"));
+        // plus the upsert and locked re-read of a tag that has to be created
+        assertBudget(8, put("/api/pins/" + sharedIds.get(3)).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"renamed\",\"tags\":[\"wifi\",\"updated-shared\"]}"));
+        assertBudget(4, delete("/api/pins/" + sharedIds.get(1)));
+    }
+
+    @Test
+    void updatePinRewritesPinTagsWithOneDeleteAndOneInsert() throws Exception {
+        // keeps one tag, drops one, adds several (existing and new): still one statement each way
+        long id = sharedIds.get(5);
+        responseCache.onPinChange(PinChangeEvent.created(0L, USER, 0.0, 0.0, List.of()));
+        counter.reset();
+        mockMvc.perform(put("/api/pins/" + id).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"retagged\",\"tags\":[\"museum\",\"coffee\",\"park\",\"retag-1\",\"retag-2\"]}"))
+                .andExpect(status().isOk());
+
+        // the pin's current tag ids, then the diff - nothing that loads Pin.tags or Tag.pins
+        List<String> joinTable = counter.statements().stream()
+                .filter(sql -> sql.toLowerCase().contains("pin_tags"))
+                .map(sql -> sql.toLowerCase().substring(0, sql.toLowerCase().indexOf("pin_tags") + "pin_tags".length()))
+                .toList();
+        assertEquals(List.of("select t.* from pin_tags", "delete from pin_tags", "insert into pin_tags"), joinTable,
+                String.join("\n", counter.statements()));
+    }
+
+    @Test
+    void pinReads() throws Exception {
+        assertBudget(1, get("/api/pins"));
+        assertBudget(2, get("/api/pins").param("fields", "summary"));
+        assertBudget(1, get("/api/pins").accept(MediaType.APPLICATION_CBOR));
+        assertBudget(2, get("/api/pins").param("fields", "summary").accept(MediaType.APPLICATION_CBOR));
+        assertBudget(2, get("/api/pins/" + sharedIds.get(2))); // the pin, then its tags
+
+        // warm: straight from the response cache
+        mockMvc.perform(get("/api/pins"));
+        assertWarmBudget(0, get("/api/pins"));
+    }
+
+    @Test
+    void timeWindowPages() throws Exception {
+        assertBudget(2, get("/api/pins").param("createdAfter", "2000-01-01T00:00:00").param("limit", "50"));
+        // the page's ids, then the summary columns and the tag names
+        assertBudget(3, get("/api/pins").param("updatedAfter", "2000-01-01T00:00:00").param("fields", "summary"));
+        assertBudget(2, get("/api/pins").param("createdAfter", "2000-01-01T00:00:00")
+                .param("lat", "51.5").param("lng", "-0.1").param("radius", "20000"));
+    }
+
+    @Test
+    void geoQueries() throws Exception {
+        assertBudget(1, get("/api/pins/nearby").param("lat", "51.5").param("lng", "-0.1").param("radius", "20000"));
+        assertBudget(2, get("/api/pins/nearby").param("lat", "51.5").param("lng", "-0.1").param("radius", "20000")
+                .param("fields", "summary"));
+        assertBudget(1, post("/api/pins/along-route").contentType(MediaType.APPLICATION_JSON).content(ROUTE));
+        assertBudget(2, post("/api/pins/along-route").param("fields", "summary")
+                .contentType(MediaType.APPLICATION_JSON).content(ROUTE));
+        assertBudget(1, post("/api/pins/within").contentType(MediaType.APPLICATION_JSON).content(POLYGON));
+        assertBudget(2, post("/api/pins/within").param("fields", "summary").param("tags", "coffee")
+                .contentType(MediaType.APPLICATION_JSON).content(POLYGON));
+        assertBudget(0, get("/api/pins/heatmap").param("bbox", "-0.2,51.45,0.0,51.55")); // in-memory grid
+    }
+
+    @Test
+    void nearbyWithATimeout() throws Exception {
+        // a minute is plenty: the radius/8 ring, then straight to the full radius, each statement bounded by the time left
+        assertBudget(2, get("/api/pins/nearby").param("lat", "51.5").param("lng", "-0.1").param("radius", "20000")
+                .param("timeout", "60000"));
+        List<Integer> timeouts = counter.queryTimeouts();
+        assertFalse(timeouts.isEmpty());
+        assertTrue(timeouts.stream().allMatch(seconds -> seconds > 0 && seconds <= 60), timeouts.toString());
+
+        assertBudget(4, get("/api/pins/nearby").param("lat", "51.5").param("lng", "-0.1").param("radius", "20000")
+                .param("fields", "summary").header(PinController.REQUEST_TIMEOUT_HEADER, "60000"));
+    }
+
+    @Test
+    void tags() throws Exception {
+        assertBudget(1, get("/api/tags"));
+        assertBudget(1, get("/api/tags").accept(MediaType.APPLICATION_CBOR));
+        assertBudget(0, get("/api/tags/suggest").param("prefix", "co")); // in-memory index
+
+        mockMvc.perform(get("/api/tags"));
+        assertWarmBudget(0, get("/api/tags"));
+    }
+
+    @Test
+    void userPins() throws Exception {
+        String base = "/api/users/" + USER;
+        assertBudget(1, get(base + "/pins"));
+        assertBudget(2, get(base + "/pins").param("fields", "summary"));
+        assertBudget(1, get(base + "/pins").accept(MediaType.APPLICATION_CBOR));
+        assertBudget(2, get(base + "/pins/" + userIds.get(0)));
+        assertBudget(1, get(base + "/pins/nearby").param("lat", "51.5").param("lng", "-0.1").param("radius", "20000"));
+        assertBudget(2, get(base + "/pins/nearby").param("lat", "51.5").param("lng", "-0.1").param("radius", "20000")
+                .param("fields", "summary"));
+        assertBudget(1, get(base + "/tags"));
+
+        assertBudget(6, post(base + "/pins").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"mine\",\"latitude\":51.5,\"longitude\":-0.1,\"tags\":[\"park\",\"created-mine\"]}"));
+        assertBudget(8, put(base + "/pins/" + userIds.get(1)).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"mine\",\"notes\":\"edited\",\"tags\":[\"view\",\"updated-mine\"]}"));
+        assertBudget(4, delete(base + "/pins/" + userIds.get(2)));
+    }
+
+    // --- Helpers ---
+
+    private void assertBudget(int budget, RequestBuilder request) throws Exception {
+        // a write for the user empties both the global and the user's cached responses
+        responseCache.onPinChange(PinChangeEvent.created(0L, USER, 0.0, 0.0, List.of()));
+        assertWarmBudget(budget, request);
+    }
+
+    private void assertWarmBudget(int budget, RequestBuilder request) throws Exception {
+        counter.reset();
+        mockMvc.perform(request).andExpect(status().is2xxSuccessful());
+        List<String> statements = counter.statements();
+        assertTrue(statements.size() <= budget,
+                statements.size() + " statements, budget " + budget + ":\n" + String.join("\n", statements));
+    }
+
+    // spread over central London, each with a couple of the shared tags
+    private static CreatePinDto pin(int i) {
+        CreatePinDto dto = new CreatePinDto();
+        dto.setTitle("pin " + i);
+        dto.setNotes("notes " + i);
+        dto.setLatitude(51.46 + (i % 10) * 0.008);
+        dto.setLongitude(-0.19 + (i / 10) * 0.04);
+        dto.setTags(List.of(TAGS.get(i % TAGS.size()), TAGS.get((i + 1) % TAGS.size())));
+        return dto;
+    }
+}
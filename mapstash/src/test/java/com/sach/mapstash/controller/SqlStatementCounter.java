@@ -0,0 +1,105 @@
+package com.sach.mapstash.controller;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records every SQL statement sent through the application's DataSource - Hibernate, Spring Data
+ * queries and JdbcTemplate alike, they all get their connections from it. A batch counts as one
+ * statement (one round trip). Registered as a BeanPostProcessor, it wraps the DataSource bean.
+ * Query timeouts given to the statements are recorded too (not the resets to 0 when they're released).
+ */
+class SqlStatementCounter implements BeanPostProcessor {
+
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+    private final List<Integer> queryTimeouts = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (method, result, args) ->
+                    method.getName().equals("getConnection") ? countingConnection((Connection) result) : result);
+        }
+        return bean;
+    }
+
+    void reset() {
+        statements.clear();
+        queryTimeouts.clear();
+    }
+
+    // what ran since the last reset, in order
+    List<String> statements() {
+        return new ArrayList<>(statements);
+    }
+
+    // seconds, every timeout set on a statement since the last reset
+    List<Integer> queryTimeouts() {
+        return new ArrayList<>(queryTimeouts);
+    }
+
+    // --- Helpers ---
+
+    private Connection countingConnection(Connection connection) {
+        return proxy(Connection.class, connection, (method, result, args) -> switch (method.getName()) {
+            case "prepareStatement" -> countingStatement(PreparedStatement.class, (PreparedStatement) result, (String) args[0]);
+            case "prepareCall" -> countingStatement(CallableStatement.class, (CallableStatement) result, (String) args[0]);
+            case "createStatement" -> countingStatement(Statement.class, (Statement) result, null);
+            default -> result;
+        });
+    }
+
+    private <S extends Statement> S countingStatement(Class<S> type, S statement, String preparedSql) {
+        return proxy(type, statement, (method, result, args) -> result, (method, args) -> {
+            if (method.getName().startsWith("execute")) { // execute, executeQuery, executeUpdate, executeBatch, ...
+                statements.add(args != null && args.length > 0 && args[0] instanceof String sql ? sql
+                        : preparedSql != null ? preparedSql : "(batch)");
+            } else if (method.getName().equals("setQueryTimeout") && (Integer) args[0] > 0) {
+                queryTimeouts.add((Integer) args[0]);
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, T target, AfterCall afterCall) {
+        return proxy(type, target, afterCall, (method, args) -> { });
+    }
+
+    private static <T> T proxy(Class<T> type, T target, AfterCall afterCall, BeforeCall beforeCall) {
+        Object proxy = Proxy.newProxyInstance(SqlStatementCounter.class.getClassLoader(), new Class<?>[] {type},
+                (self, method, args) -> {
+                    if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+                        return self == args[0];
+                    }
+                    beforeCall.before(method, args);
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    return afterCall.after(method, result, args);
+                });
+        return type.cast(proxy);
+    }
+
+    @FunctionalInterface
+    private interface AfterCall {
+        Object after(Method method, Object result, Object[] args);
+    }
+
+    @FunctionalInterface
+    private interface BeforeCall {
+        void before(Method method, Object[] args);
+    }
+}
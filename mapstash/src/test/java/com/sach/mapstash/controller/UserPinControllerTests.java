@@ -0,0 +1,123 @@
+package com.sach.mapstash.controller;
+
+import com.sach.mapstash.cache.ResponseBodyCache;
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.service.PinService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// /api/users/{userId} through the web layer: ownership and the per-user response cache partitions
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:userpincontrollerdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "mapstash.rate-limit.enabled=false",
+        "mapstash.response-cache.max-user-partitions=3"})
+@AutoConfigureMockMvc
+class UserPinControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PinService pinService;
+
+    @Autowired
+    private ResponseBodyCache responseCache;
+
+    @Test
+    void anotherUsersPinIsNotFound() throws Exception {
+        PinDto theirs = pinService.createPinForUser(102L, pin("theirs"));
+
+        mockMvc.perform(get("/api/users/101/pins/" + theirs.getId())).andExpect(status().isNotFound());
+        mockMvc.perform(put("/api/users/101/pins/" + theirs.getId()).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"taken\"}")).andExpect(status().isNotFound());
+        mockMvc.perform(delete("/api/users/101/pins/" + theirs.getId())).andExpect(status().isNotFound());
+
+        // untouched, and still there for its owner
+        mockMvc.perform(get("/api/users/102/pins/" + theirs.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("theirs"));
+    }
+
+    @Test
+    void listsAndNearbyOnlyShowTheUsersOwnPins() throws Exception {
+        PinDto mine = pinService.createPinForUser(201L, pin("mine"));
+        PinDto theirs = pinService.createPinForUser(202L, pin("theirs"));
+        int mineId = mine.getId().intValue();
+        int theirsId = theirs.getId().intValue();
+
+        // the global nearby cache holds both - the user endpoint doesn't read it
+        mockMvc.perform(get("/api/pins/nearby").param("lat", "51.5").param("lng", "-0.12"))
+                .andExpect(jsonPath("$[*].id", hasItem(theirsId)));
+
+        mockMvc.perform(get("/api/users/201/pins"))
+                .andExpect(jsonPath("$[*].id", hasItem(mineId)))
+                .andExpect(jsonPath("$[*].id", not(hasItem(theirsId))));
+        mockMvc.perform(get("/api/users/201/pins/nearby").param("lat", "51.5").param("lng", "-0.12"))
+                .andExpect(jsonPath("$[*].id", hasItem(mineId)))
+                .andExpect(jsonPath("$[*].id", not(hasItem(theirsId))));
+        mockMvc.perform(get("/api/users/201/pins/nearby").param("lat", "51.5").param("lng", "-0.12").param("fields", "summary"))
+                .andExpect(jsonPath("$[*].id", not(hasItem(theirsId))));
+        mockMvc.perform(get("/api/users/202/tags"))
+                .andExpect(jsonPath("$", hasItem("theirs-tag")))
+                .andExpect(jsonPath("$", not(hasItem("mine-tag"))));
+    }
+
+    @Test
+    void aWriteOnlyChangesItsOwnersCachedList() throws Exception {
+        pinService.createPinForUser(301L, pin("a"));
+        pinService.createPinForUser(302L, pin("b"));
+        String mine = etag("/api/users/301/pins");
+        String theirs = etag("/api/users/302/pins");
+
+        mockMvc.perform(get("/api/users/301/pins").header(HttpHeaders.IF_NONE_MATCH, mine))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/api/users/301/pins").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"new\",\"latitude\":51.5,\"longitude\":-0.12}")).andExpect(status().isCreated());
+
+        assertNotEquals(mine, etag("/api/users/301/pins"));
+        assertEquals(theirs, etag("/api/users/302/pins"));
+        mockMvc.perform(get("/api/users/302/pins").header(HttpHeaders.IF_NONE_MATCH, theirs))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void idleUserPartitionsAreEvicted() throws Exception {
+        for (long user = 401; user <= 410; user++) {
+            mockMvc.perform(get("/api/users/" + user + "/pins")).andExpect(status().isOk());
+        }
+        // the global partition + at most max-user-partitions (3) user ones
+        assertTrue(responseCache.getPartitionCount() <= 4, "partitions: " + responseCache.getPartitionCount());
+
+        responseCache.evictUser(410L);
+        mockMvc.perform(get("/api/users/410/pins")).andExpect(status().isOk()); // just rebuilt
+    }
+
+    // --- Helpers ---
+
+    private String etag(String path) throws Exception {
+        return mockMvc.perform(get(path)).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private static CreatePinDto pin(String title) {
+        return new CreatePinDto(title, null, 51.5, -0.12, List.of(title + "-tag"));
+    }
+}
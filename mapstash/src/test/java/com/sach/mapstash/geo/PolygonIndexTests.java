@@ -0,0 +1,150 @@
+package com.sach.mapstash.geo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolygonIndexTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void respectsHoles() throws Exception {
+        // 0..10 square with a 4..6 hole
+        PolygonIndex index = PolygonIndex.fromGeoJson(json("""
+                {"type": "Polygon", "coordinates": [
+                  [[0, 0], [10, 0], [10, 10], [0, 10], [0, 0]],
+                  [[4, 4], [6, 4], [6, 6], [4, 6], [4, 4]]]}"""));
+
+        assertTrue(index.contains(1, 1));
+        assertTrue(index.contains(9, 5));
+        assertFalse(index.contains(5, 5)); // in the hole
+        assertFalse(index.contains(11, 5));
+        assertFalse(index.contains(5, -0.5));
+        assertEquals(1, index.getSearchBoxes().size());
+    }
+
+    @Test
+    void multiPolygonGetsOneSearchBoxPerPart() throws Exception {
+        PolygonIndex index = PolygonIndex.fromGeoJson(json("""
+                {"type": "Feature", "properties": {}, "geometry": {"type": "MultiPolygon", "coordinates": [
+                  [[[0, 0], [1, 0], [1, 1], [0, 1]]],
+                  [[[20, 20], [21, 20], [21, 21], [20, 21], [20, 20]]]]}}"""));
+
+        assertTrue(index.contains(0.5, 0.5)); // first ring isn't explicitly closed
+        assertTrue(index.contains(20.5, 20.5));
+        assertFalse(index.contains(10, 10));
+        assertEquals(2, index.getSearchBoxes().size());
+        assertArrayEquals(new double[]{20, 21, 20, 21}, index.getSearchBoxes().get(1));
+    }
+
+    @Test
+    void matchesABruteForceCheck() throws Exception {
+        // a jagged star with ~2000 vertices, so points are spread over many bands
+        Random random = new Random(7);
+        int vertices = 2000;
+        double[][] ring = new double[vertices][];
+        StringBuilder coordinates = new StringBuilder("[[");
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = 1 + (i % 2 == 0 ? 0.5 : 0) + random.nextDouble() * 0.3;
+            ring[i] = new double[]{10 + radius * Math.cos(angle), 50 + radius * Math.sin(angle)}; // {lng, lat}
+            coordinates.append(i > 0 ? "," : "").append('[').append(ring[i][0]).append(',').append(ring[i][1]).append(']');
+        }
+        coordinates.append("]]");
+        PolygonIndex index = PolygonIndex.fromGeoJson(json("{\"type\": \"Polygon\", \"coordinates\": " + coordinates + "}"));
+
+        int inside = 0;
+        for (int i = 0; i < 20_000; i++) {
+            double lng = 8 + random.nextDouble() * 4;
+            double lat = 48 + random.nextDouble() * 4;
+            boolean expected = bruteForceContains(ring, lat, lng);
+            assertEquals(expected, index.contains(lat, lng), "point " + lat + ", " + lng);
+            inside += expected ? 1 : 0;
+        }
+        assertTrue(inside > 1000);
+    }
+
+    @Test
+    void tallZigZagEdgesStayWithinTheBandBudget() throws Exception {
+        // a comb: every tooth edge spans the full height, so each would be listed in every band
+        int teeth = PolygonIndex.MAX_VERTICES / 2 - 1;
+        double[][] ring = new double[teeth * 2 + 2][];
+        StringBuilder coordinates = new StringBuilder("[[");
+        for (int i = 0; i < teeth * 2; i++) {
+            ring[i] = new double[]{i * 0.001, i % 2 == 0 ? 0 : 10}; // {lng, lat}
+        }
+        ring[teeth * 2] = new double[]{(teeth * 2 - 1) * 0.001, -1};
+        ring[teeth * 2 + 1] = new double[]{0, -1};
+        for (int i = 0; i < ring.length; i++) {
+            coordinates.append(i > 0 ? "," : "").append('[').append(ring[i][0]).append(',').append(ring[i][1]).append(']');
+        }
+        coordinates.append("]]");
+        PolygonIndex index = PolygonIndex.fromGeoJson(json("{\"type\": \"Polygon\", \"coordinates\": " + coordinates + "}"));
+
+        assertTrue(index.getBandEntryCount() <= (long) PolygonIndex.MAX_BAND_ENTRIES_PER_EDGE * ring.length,
+                "band entries: " + index.getBandEntryCount());
+
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            double lng = random.nextDouble() * teeth * 0.002;
+            double lat = -1.5 + random.nextDouble() * 12;
+            assertEquals(bruteForceContains(ring, lat, lng), index.contains(lat, lng), "point " + lat + ", " + lng);
+        }
+    }
+
+    @Test
+    void selectDedupesOverlappingBoxesAndOrdersById() throws Exception {
+        PolygonIndex index = PolygonIndex.fromGeoJson(json("""
+                {"type": "MultiPolygon", "coordinates": [
+                  [[[0, 0], [2, 0], [2, 2], [0, 2], [0, 0]]],
+                  [[[1, 1], [3, 1], [3, 3], [1, 3], [1, 1]]]]}"""));
+
+        List<double[]> pins = List.of(
+                new double[]{3, 1.5, 1.5}, // inside both parts
+                new double[]{1, 0.5, 0.5},
+                new double[]{2, 2.5, 2.5},
+                new double[]{4, 0.5, 2.5}); // outside both parts
+        List<double[]> found = index.select(box -> pins, p -> (long) p[0], p -> p[1], p -> p[2]);
+        assertEquals(List.of(1L, 2L, 3L), found.stream().map(p -> (long) p[0]).toList());
+    }
+
+    @Test
+    void sameShapeGetsTheSameKeyRegardlessOfFormatting() throws Exception {
+        String key = PolygonIndex.geoJsonKey(json("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,1],[0,0]]]}"));
+        assertEquals(key, PolygonIndex.geoJsonKey(json("""
+                { "coordinates": [[ [0.0, 0], [1, 0.0], [1, 1], [0, 0] ]], "type": "Polygon" }""")));
+        assertNotEquals(key, PolygonIndex.geoJsonKey(json("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,2],[0,0]]]}")));
+    }
+
+    @Test
+    void rejectsInvalidGeometry() {
+        assertThrows(IllegalArgumentException.class, () -> PolygonIndex.fromGeoJson(json("{\"type\": \"Point\", \"coordinates\": [0, 0]}")));
+        assertThrows(IllegalArgumentException.class, () -> PolygonIndex.fromGeoJson(json("{\"type\": \"Polygon\", \"coordinates\": [[[0, 0], [1, 1]]]}")));
+        assertThrows(IllegalArgumentException.class, () -> PolygonIndex.fromGeoJson(json("{\"type\": \"Polygon\", \"coordinates\": [[[0, 0], [1, 0], [1, 95]]]}")));
+        assertThrows(IllegalArgumentException.class, () -> PolygonIndex.fromGeoJson(json("{\"type\": \"Polygon\", \"coordinates\": [[[0, 0], [\"a\", 0], [1, 1]]]}")));
+        assertThrows(IllegalArgumentException.class, () -> PolygonIndex.fromGeoJson(json("[]")));
+    }
+
+    // --- Helpers ---
+
+    private JsonNode json(String text) throws Exception {
+        return objectMapper.readTree(text);
+    }
+
+    // plain even-odd ray casting over every edge
+    private static boolean bruteForceContains(double[][] ring, double lat, double lng) {
+        boolean inside = false;
+        for (int i = 0, j = ring.length - 1; i < ring.length; j = i++) {
+            double lng1 = ring[j][0], lat1 = ring[j][1], lng2 = ring[i][0], lat2 = ring[i][1];
+            if ((lat1 > lat) != (lat2 > lat) && lng < lng1 + (lat - lat1) / (lat2 - lat1) * (lng2 - lng1)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
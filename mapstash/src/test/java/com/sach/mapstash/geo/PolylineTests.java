@@ -0,0 +1,27 @@
+package com.sach.mapstash.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolylineTests {
+
+    @Test
+    void decodesTheReferenceExample() {
+        // example from the Encoded Polyline Algorithm Format docs
+        List<double[]> points = Polyline.decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@", 5);
+
+        assertEquals(3, points.size());
+        assertArrayEquals(new double[]{38.5, -120.2}, points.get(0), 1e-9);
+        assertArrayEquals(new double[]{40.7, -120.95}, points.get(1), 1e-9);
+        assertArrayEquals(new double[]{43.252, -126.453}, points.get(2), 1e-9);
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        assertThrows(IllegalArgumentException.class, () -> Polyline.decode("_p~iF~ps|U_", 5)); // cut off mid-point
+        assertThrows(IllegalArgumentException.class, () -> Polyline.decode("_p~iF ps|U", 5));
+    }
+}
@@ -0,0 +1,121 @@
+package com.sach.mapstash.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCorridorTests {
+
+    private static final double METERS_PER_DEGREE_LAT = Math.toRadians(1) * GeoMath.EARTH_RADIUS_METERS;
+
+    @Test
+    void keepsPinsWithinTheBufferInRouteOrder() {
+        List<double[]> route = List.of(new double[]{51.50, -0.12}, new double[]{51.75, -1.25});
+        RouteCorridor corridor = new RouteCorridor(route, 1000);
+
+        List<Point> pins = List.of(
+                point(1, along(route, 0.75), 0),
+                point(2, along(route, 0.25), 500), // 500m north of the line
+                point(3, along(route, 0.50), 2000), // too far
+                point(4, along(route, 0.10), -900),
+                point(5, new double[]{51.90, -1.60}, 0)); // past the end of the route
+
+        List<Point> found = corridor.select(box -> pins, p -> p.id, p -> p.latitude, p -> p.longitude);
+        assertEquals(List.of(4L, 2L, 1L), found.stream().map(p -> p.id).toList());
+    }
+
+    @Test
+    void matchesABruteForceCheck() {
+        Random random = new Random(42);
+        List<double[]> route = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            route.add(new double[]{45 + i * 0.02, 7 + (i % 2 == 0 ? 0 : 0.05) + random.nextDouble() * 0.01});
+        }
+        double buffer = 500;
+        RouteCorridor corridor = new RouteCorridor(route, buffer);
+
+        List<Point> pins = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            pins.add(new Point(i, 44.99 + random.nextDouble() * 0.82, 6.98 + random.nextDouble() * 0.1));
+        }
+
+        Set<Long> found = new HashSet<>();
+        corridor.select(box -> inBox(pins, box), p -> p.id, p -> p.latitude, p -> p.longitude)
+                .forEach(p -> found.add(p.id));
+
+        int checked = 0;
+        for (Point pin : pins) {
+            double distance = bruteForceDistance(route, pin);
+            if (Math.abs(distance - buffer) < buffer * 0.03) {
+                continue; // too close to the edge to call either way
+            }
+            assertEquals(distance < buffer, found.contains(pin.id), "pin " + pin.id + " at " + distance + "m");
+            checked++;
+        }
+        assertTrue(checked > 2500);
+    }
+
+    @Test
+    void longRoutesUseABoundedNumberOfQueriesAndDeduplicate() {
+        List<double[]> route = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            route.add(new double[]{40 + i * 0.01, -100 + i * 0.01}); // ~1400km
+        }
+        RouteCorridor corridor = new RouteCorridor(route, 100);
+        assertTrue(corridor.getSearchBoxes().size() <= RouteCorridor.MAX_SEARCH_BOXES + 1);
+
+        Point onRoute = point(7, route.get(500), 0);
+        int[] queries = {0};
+        List<Point> found = corridor.select(box -> {
+            queries[0]++;
+            return List.of(onRoute); // every box returns it
+        }, p -> p.id, p -> p.latitude, p -> p.longitude);
+
+        assertEquals(corridor.getSearchBoxes().size(), queries[0]);
+        assertEquals(List.of(onRoute), found);
+    }
+
+    // --- Helpers ---
+
+    private record Point(long id, double latitude, double longitude) {
+    }
+
+    // pin at the given position, nudged north by the given meters
+    private static Point point(long id, double[] position, double metersNorth) {
+        return new Point(id, position[0] + metersNorth / METERS_PER_DEGREE_LAT, position[1]);
+    }
+
+    // point at a fraction of the way along a straight 2-point route
+    private static double[] along(List<double[]> route, double fraction) {
+        double[] a = route.get(0);
+        double[] b = route.get(1);
+        return new double[]{a[0] + (b[0] - a[0]) * fraction, a[1] + (b[1] - a[1]) * fraction};
+    }
+
+    private static List<Point> inBox(List<Point> pins, double[] box) {
+        List<Point> inside = new ArrayList<>();
+        for (Point pin : pins) {
+            if (pin.latitude >= box[0] && pin.latitude <= box[1] && pin.longitude >= box[2] && pin.longitude <= box[3]) {
+                inside.add(pin);
+            }
+        }
+        return inside;
+    }
+
+    // min haversine distance to densely sampled points on every segment
+    private static double bruteForceDistance(List<double[]> route, Point pin) {
+        double best = Double.MAX_VALUE;
+        for (int i = 1; i < route.size(); i++) {
+            double[] a = route.get(i - 1);
+            double[] b = route.get(i);
+            for (int s = 0; s <= 250; s++) {
+                double t = s / 250.0;
+                best = Math.min(best, GeoMath.haversineDistance(pin.latitude, pin.longitude,
+                        a[0] + (b[0] - a[0]) * t, a[1] + (b[1] - a[1]) * t));
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,101 @@
+package com.sach.mapstash.heatmap;
+
+import com.sach.mapstash.dto.HeatmapCellDto;
+import com.sach.mapstash.dto.HeatmapDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.exception.BadRequestException;
+import com.sach.mapstash.geo.Geohash;
+import com.sach.mapstash.service.PinService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HeatmapIndexTests {
+
+    private static final double[] LONDON = {51.5074, -0.1278};
+    private static final double[] PARIS = {48.8566, 2.3522};
+    private static final double[] FIJI_EAST = {-17.7, 179.9};
+    private static final double[] FIJI_WEST = {-16.5, -179.9};
+
+    private HeatmapIndex index;
+
+    @BeforeEach
+    void setUp() {
+        PinService pinService = mock(PinService.class);
+        when(pinService.getAllPinSummaries()).thenReturn(List.of(
+                summary(1L, LONDON), summary(2L, LONDON), summary(3L, PARIS)));
+        index = new HeatmapIndex(pinService, 8);
+        index.afterSingletonsInstantiated();
+    }
+
+    @Test
+    void countsExistingPinsAtEveryResolution() {
+        for (int resolution = 1; resolution <= 8; resolution++) {
+            HeatmapDto heatmap = index.heatmap(-90, 90, -180, 180, resolution);
+            int total = heatmap.getCells().stream().mapToInt(HeatmapCellDto::getCount).sum();
+            assertEquals(3, total, "resolution " + heatmap.getResolution());
+        }
+
+        Map<String, Integer> fine = counts(index.heatmap(48, 52, -1, 3, 8));
+        assertEquals(2, fine.get(Geohash.encodeToString(LONDON[0], LONDON[1], 8)));
+        assertEquals(1, fine.get(Geohash.encodeToString(PARIS[0], PARIS[1], 8)));
+    }
+
+    @Test
+    void createsMovesAndDeletesAreApplied() {
+        index.onPinChange(PinChangeEvent.created(4L, null, PARIS[0], PARIS[1], List.of()));
+        index.onPinChange(PinChangeEvent.updated(1L, null, LONDON[0], LONDON[1], PARIS[0], PARIS[1], List.of(), List.of()));
+        index.onPinChange(PinChangeEvent.updated(2L, null, LONDON[0], LONDON[1], LONDON[0], LONDON[1], List.of(), List.of())); // no move
+
+        Map<String, Integer> fine = counts(index.heatmap(48, 52, -1, 3, 8));
+        assertEquals(1, fine.get(Geohash.encodeToString(LONDON[0], LONDON[1], 8)));
+        assertEquals(3, fine.get(Geohash.encodeToString(PARIS[0], PARIS[1], 8)));
+
+        index.onPinChange(PinChangeEvent.deleted(2L, null, LONDON[0], LONDON[1], List.of()));
+        fine = counts(index.heatmap(48, 52, -1, 3, 8));
+        assertFalse(fine.containsKey(Geohash.encodeToString(LONDON[0], LONDON[1], 8))); // empty cells disappear
+        assertEquals(3, counts(index.heatmap(-90, 90, -180, 180, 1)).values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void bboxCanCrossTheAntimeridian() {
+        index.onPinChange(PinChangeEvent.created(5L, null, FIJI_EAST[0], FIJI_EAST[1], List.of()));
+        index.onPinChange(PinChangeEvent.created(6L, null, FIJI_WEST[0], FIJI_WEST[1], List.of()));
+
+        HeatmapDto heatmap = index.heatmap(-20, -15, 179, -179, 5);
+        assertEquals(2, heatmap.getCells().stream().mapToInt(HeatmapCellDto::getCount).sum());
+    }
+
+    @Test
+    void autoResolutionKeepsTheViewportSmall() {
+        HeatmapDto world = index.heatmap(-90, 90, -180, 180, null);
+        assertEquals(2, world.getResolution()); // 1024 cells
+        HeatmapDto city = index.heatmap(51.4, 51.6, -0.3, 0.1, null);
+        assertTrue(city.getResolution() > 4);
+    }
+
+    @Test
+    void rejectsBadInput() {
+        assertThrows(BadRequestException.class, () -> index.heatmap(60, 50, 0, 1, null));
+        assertThrows(BadRequestException.class, () -> index.heatmap(Double.NaN, 50, 0, 1, null));
+        assertThrows(BadRequestException.class, () -> index.heatmap(0, 1, 0, 1, 9));
+    }
+
+    // --- Helpers ---
+
+    private static PinSummaryDto summary(Long id, double[] point) {
+        return new PinSummaryDto(id, "pin " + id, point[0], point[1], List.of());
+    }
+
+    private static Map<String, Integer> counts(HeatmapDto heatmap) {
+        return heatmap.getCells().stream().collect(Collectors.toMap(HeatmapCellDto::getGeohash, HeatmapCellDto::getCount));
+    }
+}
@@ -0,0 +1,34 @@
+package com.sach.mapstash.memory;
+
+import com.sach.mapstash.service.PinService;
+import com.sach.mapstash.service.PinServiceContractTests;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+// InMemoryPinService against the same contract as PinServiceImpl
+class InMemoryPinServiceContractTests extends PinServiceContractTests {
+
+    @TempDir
+    Path directory;
+
+    private InMemoryPinService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new InMemoryPinService(directory, Duration.ofMillis(50), Duration.ofHours(1), event -> { });
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Override
+    protected PinService pinService() {
+        return service;
+    }
+}
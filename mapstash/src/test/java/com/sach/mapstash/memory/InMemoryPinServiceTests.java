@@ -0,0 +1,164 @@
+package com.sach.mapstash.memory;
+
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.event.PinChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Durability of the in-memory engine: what a restart brings back. The contract tests cover the queries
+class InMemoryPinServiceTests {
+
+    @TempDir
+    Path directory;
+
+    private final List<InMemoryPinService> opened = new ArrayList<>();
+    private final List<Object> events = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(InMemoryPinService::close);
+    }
+
+    @Test
+    void restartReplaysTheJournal() {
+        InMemoryPinService service = open();
+        PinDto cafe = service.createPinForUser(7L, new CreatePinDto("cafe", "long notes ".repeat(10_000), 51.5, -0.12, List.of("coffee", "café")));
+        PinDto park = service.createPin(new CreatePinDto("park", null, 51.6, -0.13, List.of("green")));
+        PinDto updated = service.updatePin(cafe.getId(), new UpdatePinDto("cafe 2", null, List.of("café", "wifi")));
+        service.deletePin(park.getId());
+
+        crash(service);
+        InMemoryPinService restarted = open();
+        assertEquals(List.of(updated), restarted.getAllPins());
+        assertEquals(Map.of("coffee", 0L, "café", 1L, "green", 0L, "wifi", 1L), restarted.getTagUsageCounts());
+
+        // ids carry on after the deleted (highest) one, tags keep theirs
+        PinDto next = restarted.createPin(new CreatePinDto("next", null, 51.5, -0.12, List.of("green")));
+        assertTrue(next.getId() > park.getId());
+        assertEquals(park.getTags(), next.getTags());
+    }
+
+    @Test
+    void restartLoadsTheSnapshotThenTheJournalAfterIt() throws IOException {
+        InMemoryPinService service = open();
+        PinDto first = service.createPin(new CreatePinDto("first", null, 10.0, 10.0, List.of("a")));
+        service.snapshot();
+        assertEquals(0, Files.size(directory.resolve("journal.log")));
+
+        PinDto second = service.createPin(new CreatePinDto("second", null, 11.0, 11.0, List.of("a", "b")));
+        service.deletePin(first.getId());
+
+        crash(service);
+        InMemoryPinService restarted = open();
+        assertEquals(List.of(second), restarted.getAllPins());
+        assertEquals(Map.of("a", 1L, "b", 1L), restarted.getTagUsageCounts());
+    }
+
+    @Test
+    void crashBetweenSnapshotAndEmptyingTheJournalReplaysHarmlessly() throws IOException {
+        InMemoryPinService service = open();
+        PinDto first = service.createPin(new CreatePinDto("first", null, 10.0, 10.0, List.of("a")));
+        service.createPin(new CreatePinDto("second", null, 11.0, 11.0, List.of("a", "b")));
+        service.updatePin(first.getId(), new UpdatePinDto("first 2", null, List.of("b")));
+        service.deletePin(first.getId());
+
+        Path journal = directory.resolve("journal.log");
+        byte[] records = Files.readAllBytes(journal);
+        service.snapshot();
+        Files.write(journal, records); // the snapshot has these changes already
+
+        crash(service);
+        InMemoryPinService restarted = open();
+        assertEquals(service.getAllPins(), restarted.getAllPins());
+        assertEquals(service.getTagUsageCounts(), restarted.getTagUsageCounts());
+    }
+
+    @Test
+    void tornRecordAtTheEndIsDropped() throws IOException {
+        InMemoryPinService service = open();
+        PinDto kept = service.createPin(new CreatePinDto("kept", null, 10.0, 10.0, List.of("a")));
+        Files.write(directory.resolve("journal.log"), new byte[] {0, 0, 0, 90, 1, 2, 3, 4, 1, 0, 0}, StandardOpenOption.APPEND);
+
+        crash(service);
+        InMemoryPinService restarted = open();
+        assertEquals(List.of(kept), restarted.getAllPins());
+        PinDto next = restarted.createPin(new CreatePinDto("next", null, 10.0, 10.0, List.of("a")));
+
+        crash(restarted);
+        assertEquals(List.of(kept, next), open().getAllPins());
+    }
+
+    @Test
+    void aDirectoryIsOpenedByOneInstanceAtATime() {
+        InMemoryPinService service = open();
+        PinDto pin = service.createPin(new CreatePinDto("cafe", null, 51.5, -0.12, List.of("coffee")));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, this::open);
+        assertTrue(e.getMessage().contains("in use"), e.getMessage());
+
+        service.close();
+        opened.remove(service);
+        assertEquals(List.of(pin), open().getAllPins());
+    }
+
+    @Test
+    void invalidWritesChangeNothing() {
+        InMemoryPinService service = open();
+        assertThrows(DataIntegrityViolationException.class,
+                () -> service.createPin(new CreatePinDto(null, null, 10.0, 10.0, List.of("a"))));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> service.createPin(new CreatePinDto("x", null, 10.0, 10.0, List.of("t".repeat(101)))));
+
+        assertEquals(List.of(), service.getAllPins());
+        assertEquals(List.of(), service.getAllTagNames());
+        assertEquals(List.of(), events);
+    }
+
+    @Test
+    void publishesAChangeEventPerWrite() {
+        InMemoryPinService service = open();
+        PinDto pin = service.createPin(new CreatePinDto("cafe", null, 51.5, -0.12, List.of("coffee")));
+        service.updatePin(pin.getId(), new UpdatePinDto("cafe", null, List.of("wifi")));
+        service.deletePin(pin.getId());
+
+        assertEquals(3, events.size());
+        PinChangeEvent created = (PinChangeEvent) events.get(0);
+        PinChangeEvent updated = (PinChangeEvent) events.get(1);
+        PinChangeEvent deleted = (PinChangeEvent) events.get(2);
+        assertEquals(PinChangeEvent.Type.CREATED, created.getType());
+        assertEquals(List.of("coffee"), created.getAddedTagNames());
+        assertEquals(List.of("wifi"), updated.getAddedTagNames());
+        assertEquals(List.of("coffee"), updated.getRemovedTagNames());
+        assertEquals(PinChangeEvent.Type.DELETED, deleted.getType());
+        assertEquals(51.5, deleted.getOldLatitude());
+    }
+
+    // --- Helpers ---
+
+    private InMemoryPinService open() {
+        InMemoryPinService service = new InMemoryPinService(directory, Duration.ZERO, Duration.ofHours(1), events::add);
+        opened.add(service);
+        return service;
+    }
+
+    // the process dies: no close, no final snapshot
+    private void crash(InMemoryPinService service) {
+        service.halt();
+        opened.remove(service);
+    }
+}
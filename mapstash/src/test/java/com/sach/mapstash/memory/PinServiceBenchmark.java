@@ -0,0 +1,122 @@
+package com.sach.mapstash.memory;
+
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.service.PinService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+// Per-call latency of the JPA engine against the in-memory one, same workload on both. H2 runs
+// in-process here, so the JPA numbers have no network round trip in them - against MySQL the gap
+// is bigger. The in-memory engine flushes its journal on the default 100ms interval.
+// Not part of the normal build: mvn test -Dtest=PinServiceBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:enginebenchmarkdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "logging.level.root=WARN"})
+class PinServiceBenchmark {
+
+    private static final int PINS = 5000;
+    private static final int OPERATIONS = 2000;
+
+    @Autowired
+    private PinService jpaPinService;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void compareEngines() {
+        try (InMemoryPinService inMemoryPinService = new InMemoryPinService(directory, Duration.ofMillis(100),
+                Duration.ofHours(1), event -> { })) {
+            List<Long> jpaIds = load(jpaPinService);
+            List<Long> inMemoryIds = load(inMemoryPinService);
+
+            System.out.printf("%n%-16s %-10s %10s %10s%n", "operation", "engine", "p50 us", "p99 us");
+            for (int round = 0; round < 2; round++) { // the first round warms up
+                boolean print = round == 1;
+                compare(print, operations(jpaPinService, jpaIds), operations(inMemoryPinService, inMemoryIds));
+            }
+        }
+    }
+
+    // --- Helpers ---
+
+    private static List<Long> load(PinService pinService) {
+        Random random = new Random(42);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < PINS; i++) {
+            ids.add(pinService.createPin(randomPin(random, i)).getId());
+        }
+        return ids;
+    }
+
+    private static CreatePinDto randomPin(Random random, int i) {
+        return new CreatePinDto("pin " + i, "notes for pin " + i,
+                51.3 + random.nextDouble() * 0.4, -0.4 + random.nextDouble() * 0.6,
+                List.of("tag" + random.nextInt(50), "tag" + random.nextInt(50)));
+    }
+
+    private static List<Operation> operations(PinService pinService, List<Long> ids) {
+        Random random = new Random(7);
+        return List.of(
+                new Operation("create", i -> pinService.createPin(randomPin(random, PINS + i))),
+                new Operation("getById", i -> pinService.getPinById(ids.get(random.nextInt(ids.size())))),
+                new Operation("nearby 1km", i -> pinService.findNearbyPins(
+                        51.3 + random.nextDouble() * 0.4, -0.4 + random.nextDouble() * 0.6, 1000)),
+                new Operation("nearby summary", i -> pinService.findNearbyPinSummaries(
+                        51.3 + random.nextDouble() * 0.4, -0.4 + random.nextDouble() * 0.6, 1000)),
+                new Operation("update", i -> {
+                    PinDto pin = pinService.getPinById(ids.get(random.nextInt(ids.size()))).orElseThrow();
+                    pinService.updatePin(pin.getId(), new UpdatePinDto(pin.getTitle() + "'", pin.getNotes(),
+                            List.of("tag" + random.nextInt(50))));
+                }));
+    }
+
+    private static void compare(boolean print, List<Operation> jpa, List<Operation> inMemory) {
+        for (int o = 0; o < jpa.size(); o++) {
+            long[] jpaNanos = time(jpa.get(o).body);
+            long[] inMemoryNanos = time(inMemory.get(o).body);
+            if (print) {
+                print(jpa.get(o).name, "jpa", jpaNanos);
+                print(jpa.get(o).name, "in-memory", inMemoryNanos);
+            }
+        }
+    }
+
+    private static long[] time(IntConsumer body) {
+        long[] nanos = new long[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            long begin = System.nanoTime();
+            body.accept(i);
+            nanos[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void print(String operation, String engine, long[] sortedNanos) {
+        System.out.printf("%-16s %-10s %10.1f %10.1f%n", operation, engine,
+                percentile(sortedNanos, 0.50), percentile(sortedNanos, 0.99));
+    }
+
+    private static double percentile(long[] sortedNanos, double p) {
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(p * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(0, index)] / 1e3;
+    }
+
+    private record Operation(String name, IntConsumer body) {
+    }
+}
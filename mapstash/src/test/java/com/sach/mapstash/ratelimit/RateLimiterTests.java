@@ -0,0 +1,159 @@
+package com.sach.mapstash.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTests {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void allowsABurstThenRefillsAtTheConfiguredRate() {
+        RateLimiter limiter = limiter(10, 5, 8); // 10 tokens, one back every 200ms
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAdmit("a", 2, false));
+        }
+        long wait = limiter.tryAdmit("a", 2, false);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(400), wait); // two tokens short
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(limiter.tryAdmit("a", 2, false) > 0);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(0, limiter.tryAdmit("a", 2, false));
+
+        assertEquals(0, limiter.tryAdmit("b", 10, false)); // other clients have their own bucket
+        assertEquals(0, limiter.tryAdmit("c", 500, false)); // cost is capped at the capacity
+
+        assertEquals(8, meterRegistry.counter("mapstash.ratelimit.requests", "outcome", "allowed").count());
+        assertEquals(2, meterRegistry.counter("mapstash.ratelimit.requests", "outcome", "throttled").count());
+    }
+
+    @Test
+    void limitsConcurrentExpensiveQueries() {
+        RateLimiter limiter = limiter(100, 10, 2);
+
+        assertEquals(0, limiter.tryAdmit("a", 1, true));
+        assertEquals(0, limiter.tryAdmit("b", 1, true));
+        assertEquals(RateLimiter.OVERLOADED_RETRY_NANOS, limiter.tryAdmit("c", 1, true));
+        assertEquals(0, limiter.tryAdmit("c", 1, false)); // cheap requests aren't affected
+
+        limiter.exitExpensive();
+        assertEquals(0, limiter.tryAdmit("c", 1, true));
+        assertEquals(1, meterRegistry.counter("mapstash.ratelimit.requests", "outcome", "overloaded").count());
+        assertEquals(2, meterRegistry.get("mapstash.ratelimit.expensive.in-flight").gauge().value());
+    }
+
+    @Test
+    void refusedExpensivePermitGivesTheTokensBack() {
+        RateLimiter limiter = limiter(10, 1, 1);
+        assertEquals(0, limiter.tryAdmit("a", 1, true)); // holds the only permit
+
+        // b is turned away for overload many times over, its bucket stays full
+        for (int i = 0; i < 20; i++) {
+            assertEquals(RateLimiter.OVERLOADED_RETRY_NANOS, limiter.tryAdmit("b", 5, true));
+        }
+        limiter.exitExpensive();
+        assertEquals(0, limiter.tryAdmit("b", 10, true));
+        assertTrue(limiter.tryAdmit("b", 1, false) > 0); // now it's spent
+    }
+
+    @Test
+    void clientIdIsTheAddressOurProxyAppended() {
+        RateLimitProperties properties = properties(10, 10, 8);
+        properties.setClientIdHeader("X-Forwarded-For");
+        RateLimiter limiter = new RateLimiter(properties, meterRegistry, clock::get);
+
+        assertEquals("203.0.113.7", limiter.clientId(header("203.0.113.7"), "10.0.0.1"));
+        // a forged leading entry doesn't change who the request counts against
+        assertEquals("203.0.113.7", limiter.clientId(header("1.2.3.4, 203.0.113.7"), "10.0.0.1"));
+        assertEquals("203.0.113.7", limiter.clientId(header("evil, 5.6.7.8,203.0.113.7"), "10.0.0.1"));
+        assertEquals("10.0.0.1", limiter.clientId(header(null), "10.0.0.1"));
+        assertEquals("10.0.0.1", limiter.clientId(header(" "), "10.0.0.1"));
+
+        // two proxies of ours: the CDN appends the client, the load balancer appends the CDN
+        properties.setTrustedProxyHops(2);
+        assertEquals("203.0.113.7", limiter.clientId(header("1.2.3.4, 203.0.113.7, 198.51.100.2"), "10.0.0.1"));
+        assertEquals("203.0.113.7", limiter.clientId(header("203.0.113.7"), "10.0.0.1")); // shorter than the hops
+    }
+
+    @Test
+    void retryAfterRoundsUpToWholeSeconds() {
+        assertEquals(1, RateLimiter.retryAfterSeconds(1));
+        assertEquals(1, RateLimiter.retryAfterSeconds(TimeUnit.MILLISECONDS.toNanos(400)));
+        assertEquals(1, RateLimiter.retryAfterSeconds(TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(2, RateLimiter.retryAfterSeconds(TimeUnit.SECONDS.toNanos(1) + 1));
+        assertEquals(1, RateLimiter.retryAfterSeconds(RateLimiter.OVERLOADED_RETRY_NANOS));
+    }
+
+    @Test
+    void dropsRefilledBucketsPastMaxClients() {
+        RateLimitProperties properties = properties(10, 10, 8);
+        properties.setMaxClients(100);
+        RateLimiter limiter = new RateLimiter(properties, meterRegistry, clock::get);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAdmit("client-" + i, 1, false);
+        }
+        assertEquals(100, limiter.getClientCount());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1)); // everyone is full again
+        limiter.tryAdmit("new-client", 1, false);
+        assertEquals(1, limiter.getClientCount());
+    }
+
+    @Test
+    void neverAdmitsMoreThanTheCapacityUnderContention() throws Exception {
+        RateLimiter limiter = limiter(1000, 1, 8); // the fake clock doesn't move, so nothing refills
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger admitted = new AtomicInteger();
+        try {
+            for (int thread = 0; thread < 8; thread++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 500; i++) {
+                        if (limiter.tryAdmit("shared", 1, false) == 0) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1000, admitted.get());
+    }
+
+    // --- Helpers ---
+
+    private static UnaryOperator<String> header(String forwardedFor) {
+        return name -> name.equals("X-Forwarded-For") ? forwardedFor : null;
+    }
+
+    private RateLimiter limiter(int capacity, double refillPerSecond, int maxConcurrentExpensive) {
+        return new RateLimiter(properties(capacity, refillPerSecond, maxConcurrentExpensive), meterRegistry, clock::get);
+    }
+
+    private static RateLimitProperties properties(int capacity, double refillPerSecond, int maxConcurrentExpensive) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setCapacity(capacity);
+        properties.setRefillPerSecond(refillPerSecond);
+        properties.setMaxConcurrentExpensive(maxConcurrentExpensive);
+        return properties;
+    }
+}
@@ -0,0 +1,119 @@
+package com.sach.mapstash.reactive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.service.PinService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The reactive endpoints must answer exactly like the servlet ones, over the same database
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.profiles.active=reactive",
+        "spring.datasource.url=jdbc:h2:mem:reactivedb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "mapstash.reactive.url=r2dbc:h2:mem:///reactivedb?options=MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "mapstash.reactive.username=sa",
+        "mapstash.reactive.password=",
+        "mapstash.rate-limit.enabled=false"})
+class ReactivePinReadTests {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PinService pinService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<PinDto> pins = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        pinService.getAllPins().forEach(pin -> pinService.deletePin(pin.getId()));
+        pins.clear();
+        pins.add(pinService.createPin(new CreatePinDto("Flat white", "good beans", 51.5074, -0.1278, List.of("Coffee", "wifi"))));
+        pins.add(pinService.createPin(new CreatePinDto("Bookshop", null, 51.5080, -0.1290, List.of())));
+        pins.add(pinService.createPin(new CreatePinDto("Harbour", "far away", 48.8566, 2.3522, List.of("coffee", "View"))));
+    }
+
+    @Test
+    void listMatchesServletEndpoint() throws Exception {
+        assertSameJson("/api/pins", "/api/reactive/pins");
+        assertSameJson("/api/pins?fields=summary", "/api/reactive/pins?fields=summary");
+    }
+
+    @Test
+    void pinByIdMatchesServletEndpoint() throws Exception {
+        long id = pins.get(0).getId();
+        assertSameJson("/api/pins/" + id, "/api/reactive/pins/" + id);
+
+        assertEquals(404, get("/api/reactive/pins/999999999", "application/json").statusCode());
+        assertEquals(400, get("/api/reactive/pins/abc", "application/json").statusCode());
+    }
+
+    @Test
+    void nearbyMatchesServletEndpoint() throws Exception {
+        String query = "?lat=51.5074&lng=-0.1278&radius=500";
+        assertSameJson("/api/pins/nearby" + query, "/api/reactive/pins/nearby" + query);
+        assertSameJson("/api/pins/nearby" + query + "&fields=summary", "/api/reactive/pins/nearby" + query + "&fields=summary");
+        assertEquals(2, json("/api/reactive/pins/nearby" + query).size());
+
+        assertEquals(400, get("/api/reactive/pins/nearby?lng=-0.1278", "application/json").statusCode());
+    }
+
+    @Test
+    void tagsMatchServletEndpoint() throws Exception {
+        assertSameJson("/api/tags", "/api/reactive/tags");
+    }
+
+    @Test
+    void streamsOnePinPerLineForNdjson() throws Exception {
+        HttpResponse<String> response = get("/api/reactive/pins", "application/x-ndjson");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+
+        String[] lines = response.body().trim().split("\n");
+        assertEquals(pins.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(pins.get(i).getId(), objectMapper.readTree(lines[i]).get("id").asLong());
+        }
+    }
+
+    // --- Helpers ---
+
+    private void assertSameJson(String servletPath, String reactivePath) throws Exception {
+        assertEquals(json(servletPath), json(reactivePath), reactivePath);
+    }
+
+    private JsonNode json(String path) throws Exception {
+        HttpResponse<String> response = get(path, "application/json");
+        assertEquals(200, response.statusCode(), path);
+        return objectMapper.readTree(response.body());
+    }
+
+    private HttpResponse<String> get(String path, String accept) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Accept", accept)
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,163 @@
+package com.sach.mapstash.reactive;
+
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.service.PinService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Servlet vs reactive read path under many slow clients (each one reads its response in small
+// pieces with a pause in between). Tomcat gets a small thread pool, like a busy server would.
+// Not part of the normal build: mvn test -Dtest=ReadPathBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.profiles.active=reactive",
+        "spring.datasource.url=jdbc:h2:mem:benchmarkdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "mapstash.reactive.url=r2dbc:h2:mem:///benchmarkdb?options=MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "mapstash.reactive.username=sa",
+        "mapstash.reactive.password=",
+        "mapstash.rate-limit.enabled=false",
+        "server.tomcat.threads.max=16",
+        "server.tomcat.max-connections=1000",
+        "logging.level.root=WARN"})
+class ReadPathBenchmark {
+
+    private static final int PINS = 2000;
+    private static final int CLIENTS = 128;
+    private static final int REQUESTS_PER_CLIENT = 5;
+    private static final int READ_CHUNK = 8 * 1024;
+    private static final long READ_PAUSE_MILLIS = 2;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PinService pinService;
+
+    @Test
+    void compareReadPaths() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < PINS; i++) {
+            pinService.createPin(new CreatePinDto("pin " + i, "notes for pin " + i,
+                    51.3 + random.nextDouble() * 0.4, -0.4 + random.nextDouble() * 0.6,
+                    List.of("tag" + random.nextInt(50), "tag" + random.nextInt(50))));
+        }
+
+        String nearby = "/pins/nearby?lat=51.5&lng=-0.1&radius=5000";
+        List<String[]> runs = List.of(
+                new String[] {"list", "/api/pins", "/api/reactive/pins"},
+                new String[] {"nearby", "/api" + nearby, "/api/reactive" + nearby});
+
+        run("/api/pins"); // warm up both stacks
+        run("/api/reactive/pins");
+
+        System.out.printf("%n%-8s %-9s %10s %10s %10s %13s%n", "endpoint", "stack", "req/s", "p50 ms", "p99 ms", "peak threads");
+        for (String[] endpoint : runs) {
+            print(endpoint[0], "servlet", run(endpoint[1]));
+            print(endpoint[0], "reactive", run(endpoint[2]));
+        }
+    }
+
+    // --- Helpers ---
+
+    private Result run(String path) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> clients = new ArrayList<>();
+        try {
+            for (int c = 0; c < CLIENTS; c++) {
+                clients.add(executor.submit(() -> {
+                    start.await();
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        long begin = System.nanoTime();
+                        slowGet(path);
+                        latencies.add(System.nanoTime() - begin);
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> client : clients) {
+                client.get(5, TimeUnit.MINUTES);
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            // the client threads are ours, not the server's
+            int serverPeak = threads.getPeakThreadCount() - CLIENTS;
+            return new Result(latencies, elapsed, serverPeak);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void slowGet(String path) throws IOException, InterruptedException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nAccept: application/json\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[READ_CHUNK];
+            int read = in.read(buffer);
+            if (read < 12 || !new String(buffer, 0, 12, StandardCharsets.US_ASCII).equals("HTTP/1.1 200")) {
+                throw new IOException("no 200 response for " + path);
+            }
+            while (read != -1) {
+                Thread.sleep(READ_PAUSE_MILLIS);
+                read = in.read(buffer);
+            }
+        }
+    }
+
+    private static void print(String endpoint, String stack, Result result) {
+        System.out.printf("%-8s %-9s %10.1f %10.1f %10.1f %13d%n", endpoint, stack,
+                result.throughput(), result.percentile(0.50), result.percentile(0.99), result.peakThreads);
+    }
+
+    private static final class Result {
+        private final List<Long> latencies;
+        private final long elapsedNanos;
+        private final int peakThreads;
+
+        private Result(List<Long> latencies, long elapsedNanos, int peakThreads) {
+            this.latencies = new ArrayList<>(latencies);
+            Collections.sort(this.latencies);
+            this.elapsedNanos = elapsedNanos;
+            this.peakThreads = peakThreads;
+        }
+
+        double throughput() {
+            return latencies.size() / (elapsedNanos / 1e9);
+        }
+
+        double percentile(double p) {
+            int index = (int) Math.min(latencies.size() - 1, Math.ceil(p * latencies.size()) - 1);
+            return latencies.get(Math.max(0, index)) / 1e6;
+        }
+    }
+}
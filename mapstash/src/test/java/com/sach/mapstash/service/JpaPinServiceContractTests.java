@@ -0,0 +1,108 @@
+package com.sach.mapstash.service;
+
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.repository.PinRepository;
+import com.sach.mapstash.repository.TagRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// PinServiceImpl against the contract, on its own database so the other tests' pins don't show up
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:contractdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.sach.mapstash.service.JpaPinServiceContractTests$RecordingInspector"})
+class JpaPinServiceContractTests extends PinServiceContractTests {
+
+    @Autowired
+    private PinService pinService;
+
+    @Autowired
+    private PinRepository pinRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void emptyStore() {
+        pinRepository.deleteAll();
+        tagRepository.deleteAll();
+    }
+
+    @Override
+    protected PinService pinService() {
+        return pinService;
+    }
+
+    @Test
+    void timeWindowPagesReadTheTimeIndexInOrder() {
+        pinService.createPin(create("pin", null, 10, 10, "t"));
+
+        assertIndexSorted(new TimeWindowQuery(LocalDateTime.of(2000, 1, 1, 0, 0), null, null, null, null, null, null, 10),
+                "idx_pin_created_at");
+        assertIndexSorted(new TimeWindowQuery(null, null, LocalDateTime.of(2000, 1, 1, 0, 0), null, null, null, null, 10),
+                "idx_pin_updated_at");
+    }
+
+    @Test
+    void nearbyPastTheDeadlineKeepsTheClosestPins() {
+        PinDto center = pinService.createPin(create("center", null, 51.5074, -0.1278, "a"));
+        pinService.createPin(create("close", null, 51.5110, -0.1278, "b")); // ~400m north
+        pinService.createPin(create("farther", null, 51.5209, -0.1278)); // ~1.5km north
+
+        // runs out as soon as the first ring (250m) has sent its statement
+        RecordingInspector.statements.clear();
+        Deadline deadline = new Deadline(Duration.ofSeconds(5),
+                () -> RecordingInspector.statements.isEmpty() ? 0 : Duration.ofSeconds(10).toNanos());
+
+        NearbyResult<PinDto> nearby = pinService.findNearbyPins(51.5074, -0.1278, 2000, deadline);
+        assertTrue(nearby.isPartial());
+        assertEquals(250, nearby.getSearchedRadius());
+        assertEquals(List.of(center), nearby.getPins());
+        assertEquals(1, RecordingInspector.statements.size()); // the other rings never ran
+    }
+
+    // --- Helpers ---
+
+    // runs the query and asks H2 for the plan of the statement Hibernate sent for the page's ids
+    private void assertIndexSorted(TimeWindowQuery query, String index) {
+        RecordingInspector.statements.clear();
+        pinService.findPinsInTimeWindow(query);
+        String sql = RecordingInspector.statements.stream()
+                .filter(statement -> statement.contains("order by")).findFirst().orElseThrow();
+
+        String plan = jdbcTemplate.execute("EXPLAIN " + sql, (java.sql.PreparedStatement statement) -> {
+            for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                statement.setObject(i, null);
+            }
+            try (var result = statement.executeQuery()) {
+                result.next();
+                return result.getString(1);
+            }
+        });
+        assertTrue(plan.contains("public." + index + ":"), plan); // a range of the index...
+        assertTrue(plan.contains("/* index sorted */"), plan);   // ...read in order, no sort step
+    }
+
+    public static class RecordingInspector implements StatementInspector {
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.sach.mapstash.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the ring search on a fake clock: each ring "takes" time in proportion to its area
+class NearbyResultTests {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<Double> rings = new ArrayList<>();
+
+    @Test
+    void farDeadlineGoesStraightFromTheFirstRingToTheFullRadius() {
+        NearbyResult<Double> result = scan(8000, Duration.ofSeconds(30), Duration.ofMillis(10));
+
+        assertEquals(List.of(1000.0, 8000.0), rings);
+        assertFalse(result.isPartial());
+        assertEquals(8000, result.getSearchedRadius());
+        assertEquals(List.of(8000.0), result.getPins());
+    }
+
+    @Test
+    void tightDeadlineWalksEveryRing() {
+        // the full radius takes 6.4s: twice that never fits in what's left, but the search still finishes
+        NearbyResult<Double> result = scan(8000, Duration.ofSeconds(10), Duration.ofMillis(100));
+
+        assertEquals(List.of(1000.0, 2000.0, 4000.0, 8000.0), rings);
+        assertFalse(result.isPartial());
+    }
+
+    @Test
+    void expiredDeadlineKeepsTheLastFinishedRing() {
+        NearbyResult<Double> result = scan(8000, Duration.ofSeconds(1), Duration.ofMillis(100));
+
+        assertEquals(List.of(1000.0, 2000.0, 4000.0), rings); // 2.1s in
+        assertTrue(result.isPartial());
+        assertEquals(4000, result.getSearchedRadius());
+        assertEquals(List.of(4000.0), result.getPins());
+    }
+
+    // --- Helpers ---
+
+    // the "pins" found are just the ring's radius
+    private NearbyResult<Double> scan(double radius, Duration timeout, Duration firstRingTime) {
+        Deadline deadline = new Deadline(timeout, clock::get);
+        return NearbyResult.scan(radius, deadline, ring -> {
+            rings.add(ring);
+            double area = (ring * NearbyResult.FIRST_RING_DIVISOR / radius) * (ring * NearbyResult.FIRST_RING_DIVISOR / radius);
+            clock.addAndGet((long) (firstRingTime.toNanos() * area));
+            return List.of(ring);
+        });
+    }
+}
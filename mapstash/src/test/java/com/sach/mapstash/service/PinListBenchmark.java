@@ -0,0 +1,61 @@
+package com.sach.mapstash.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sach.mapstash.dto.CreatePinDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+// Full pin list vs ?fields=summary: JSON bytes per pin and query + mapping time.
+// Not part of the normal build: mvn test -Dtest=PinListBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pinlistbenchmarkdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "logging.level.root=WARN"})
+class PinListBenchmark {
+
+    private static final int PINS = 5000;
+    private static final int RUNS = 20;
+
+    @Autowired
+    private PinService pinService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void compareFullAndSummary() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < PINS; i++) {
+            pinService.createPin(new CreatePinDto("pin " + i, "notes for pin " + i + " ".repeat(random.nextInt(400)),
+                    51.3 + random.nextDouble() * 0.4, -0.4 + random.nextDouble() * 0.6,
+                    List.of("tag" + random.nextInt(50), "tag" + random.nextInt(50))));
+        }
+
+        System.out.printf("%n%-8s %12s %10s %10s%n", "list", "bytes/pin", "p50 ms", "max ms");
+        run("full", pinService::getAllPins);
+        run("summary", pinService::getAllPinSummaries);
+    }
+
+    // --- Helpers ---
+
+    private void run(String name, Supplier<List<?>> list) throws Exception {
+        list.get(); // warm up
+        long[] millis = new long[RUNS];
+        List<?> pins = null;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            pins = list.get();
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(millis);
+        int bytes = objectMapper.writeValueAsBytes(pins).length;
+        System.out.printf("%-8s %12.1f %10d %10d%n", name, (double) bytes / pins.size(), millis[RUNS / 2], millis[RUNS - 1]);
+    }
+}
@@ -0,0 +1,333 @@
+package com.sach.mapstash.service;
+
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinPageDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.dto.TagDto;
+import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// What every PinService engine has to do the same way. Each engine's test class extends this and
+// hands it an empty store. Where an engine may pick the order, results are compared sorted by id.
+public abstract class PinServiceContractTests {
+
+    protected abstract PinService pinService();
+
+    @Test
+    void createdPinsReadBackWithNormalizedSortedTags() {
+        PinDto created = pinService().createPin(create("Flat white", "good beans", 51.5074, -0.1278, "Work", " coffee", "COFFEE", ""));
+
+        assertNotNull(created.getId());
+        assertEquals("Flat white", created.getTitle());
+        assertEquals("good beans", created.getNotes());
+        assertNull(created.getUserId());
+        assertNotNull(created.getCreatedAt());
+        assertFalse(created.getUpdatedAt().isBefore(created.getCreatedAt()));
+        assertEquals(List.of("coffee", "work"), tagNames(created));
+        assertEquals(Optional.of(created), pinService().getPinById(created.getId()));
+        assertTrue(pinService().getPinById(created.getId() + 1000).isEmpty());
+
+        // the same tag is the same tag (id) on every pin
+        PinDto other = pinService().createPin(create("Espresso bar", null, 51.51, -0.13, "coffee"));
+        assertEquals(created.getTags().get(0), other.getTags().get(0));
+        assertNull(other.getNotes());
+    }
+
+    @Test
+    void listsAreInIdOrderAndSummariesLeaveOutNotes() {
+        PinDto first = pinService().createPin(create("a", "notes a", 10, 10, "x"));
+        PinDto second = pinService().createPin(create("b", "notes b", -10, -10, "z", "y"));
+
+        assertEquals(List.of(first, second), sortedById(pinService().getAllPins()));
+        assertEquals(List.of(
+                        new PinSummaryDto(first.getId(), "a", 10.0, 10.0, List.of("x")),
+                        new PinSummaryDto(second.getId(), "b", -10.0, -10.0, List.of("y", "z"))),
+                pinService().getAllPinSummaries());
+    }
+
+    @Test
+    void updateReplacesTitleNotesAndTags() {
+        PinDto pin = pinService().createPin(create("cafe", "old", 51.5074, -0.1278, "coffee", "work"));
+
+        PinDto updated = pinService().updatePin(pin.getId(), update("cafe 2", "new", "work", "Wifi"));
+        assertEquals("cafe 2", updated.getTitle());
+        assertEquals("new", updated.getNotes());
+        assertEquals(List.of("wifi", "work"), tagNames(updated));
+        assertEquals(pin.getCreatedAt(), updated.getCreatedAt());
+        assertFalse(updated.getUpdatedAt().isBefore(pin.getUpdatedAt()));
+        assertEquals(pin.getLatitude(), updated.getLatitude()); // position can't be changed
+        assertEquals(Optional.of(updated), pinService().getPinById(pin.getId()));
+
+        // tags stay around when no pin uses them anymore
+        assertEquals(List.of("coffee", "wifi", "work"), pinService().getAllTagNames());
+        assertEquals(Map.of("coffee", 0L, "wifi", 1L, "work", 1L), pinService().getTagUsageCounts());
+
+        PinDto untagged = pinService().updatePin(pin.getId(), update("cafe 2", "new"));
+        assertEquals(List.of(), untagged.getTags());
+
+        assertThrows(ResourceNotFoundException.class, () -> pinService().updatePin(pin.getId() + 1000, update("x", null)));
+    }
+
+    @Test
+    void deleteRemovesThePinButNotItsTags() {
+        PinDto pin = pinService().createPin(create("gone soon", null, 51.5074, -0.1278, "temp"));
+        PinDto kept = pinService().createPin(create("kept", null, 51.5074, -0.1278, "temp"));
+
+        pinService().deletePin(pin.getId());
+        assertTrue(pinService().getPinById(pin.getId()).isEmpty());
+        assertThrows(ResourceNotFoundException.class, () -> pinService().deletePin(pin.getId()));
+        assertEquals(List.of(kept), pinService().getAllPins());
+        assertEquals(Map.of("temp", 1L), pinService().getTagUsageCounts());
+    }
+
+    @Test
+    void nearbyKeepsOnlyPinsInsideTheRadius() {
+        PinDto center = pinService().createPin(create("center", null, 51.5074, -0.1278, "a"));
+        PinDto close = pinService().createPin(create("close", null, 51.5110, -0.1278, "b")); // ~400m north
+        // inside the bounding box of a 1km radius, but in its corner: ~1.3km away
+        pinService().createPin(create("corner", null, 51.5074 + 0.0085, -0.1278 + 0.0135));
+        pinService().createPin(create("far", null, 48.8566, 2.3522));
+
+        assertEquals(ids(center, close), sortedIds(pinService().findNearbyPins(51.5074, -0.1278, 1000)));
+        assertEquals(ids(center, close), pinService().findNearbyPinSummaries(51.5074, -0.1278, 1000).stream()
+                .map(PinSummaryDto::getId).sorted().toList());
+        assertEquals(ids(center), sortedIds(pinService().findNearbyPins(51.5074, -0.1278, 100)));
+        assertEquals(List.of(), pinService().findNearbyPins(0, 0, 1000));
+
+        PinSummaryDto summary = pinService().findNearbyPinSummaries(51.5110, -0.1278, 10).get(0);
+        assertEquals(new PinSummaryDto(close.getId(), "close", 51.5110, -0.1278, List.of("b")), summary);
+    }
+
+    @Test
+    void nearbyWithTimeToSpareIsComplete() {
+        PinDto center = pinService().createPin(create("center", null, 51.5074, -0.1278, "a"));
+        PinDto close = pinService().createPin(create("close", null, 51.5110, -0.1278, "b")); // ~400m north
+        pinService().createPin(create("far", null, 48.8566, 2.3522));
+        Deadline deadline = Deadline.after(Duration.ofMinutes(1));
+
+        NearbyResult<PinDto> nearby = pinService().findNearbyPins(51.5074, -0.1278, 1000, deadline);
+        assertFalse(nearby.isPartial());
+        assertEquals(1000, nearby.getSearchedRadius());
+        assertEquals(ids(center, close), sortedIds(nearby.getPins()));
+
+        NearbyResult<PinSummaryDto> summaries = pinService().findNearbyPinSummaries(51.5074, -0.1278, 1000, deadline);
+        assertFalse(summaries.isPartial());
+        assertEquals(ids(center, close), summaries.getPins().stream().map(PinSummaryDto::getId).sorted().toList());
+    }
+
+    @Test
+    void boundingBoxIncludesItsEdges() {
+        PinDto inside = pinService().createPin(create("inside", null, 10, 20));
+        PinDto onEdge = pinService().createPin(create("edge", null, 11, 21, "t"));
+        pinService().createPin(create("outside", null, 11.5, 20));
+
+        assertEquals(ids(inside, onEdge), sortedIds(pinService().findPinsInBoundingBox(10, 11, 20, 21)));
+        assertEquals(ids(inside, onEdge), pinService().findPinSummariesInBoundingBox(10, 11, 20, 21).stream()
+                .map(PinSummaryDto::getId).sorted().toList());
+        assertEquals(List.of(), pinService().findPinsInBoundingBox(10, 11, 22, 23));
+    }
+
+    @Test
+    void userScopedCallsOnlySeeTheirOwnPins() {
+        PinDto mine = pinService().createPinForUser(1L, create("mine", "n", 51.5074, -0.1278, "home", "cosy"));
+        PinDto mineToo = pinService().createPinForUser(1L, create("mine too", null, 51.5080, -0.1280, "home"));
+        PinDto theirs = pinService().createPinForUser(2L, create("theirs", null, 51.5074, -0.1278, "beach"));
+        PinDto shared = pinService().createPin(create("shared", null, 51.5074, -0.1278, "park"));
+
+        assertEquals(1L, mine.getUserId());
+        assertEquals(List.of(mine, mineToo), pinService().getAllPinsForUser(1L));
+        assertEquals(List.of(mine.getId(), mineToo.getId()),
+                pinService().getAllPinSummariesForUser(1L).stream().map(PinSummaryDto::getId).toList());
+        assertEquals(List.of("cosy", "home"), pinService().getAllTagNamesForUser(1L));
+        assertEquals(List.of(), pinService().getAllPinsForUser(3L));
+
+        assertEquals(Optional.of(mine), pinService().getPinByIdForUser(1L, mine.getId()));
+        assertTrue(pinService().getPinByIdForUser(1L, theirs.getId()).isEmpty());
+        assertTrue(pinService().getPinByIdForUser(1L, shared.getId()).isEmpty());
+        assertThrows(ResourceNotFoundException.class, () -> pinService().updatePinForUser(1L, theirs.getId(), update("x", null)));
+        assertThrows(ResourceNotFoundException.class, () -> pinService().deletePinForUser(1L, theirs.getId()));
+
+        assertEquals(ids(mine, mineToo), sortedIds(pinService().findNearbyPinsForUser(1L, 51.5074, -0.1278, 500)));
+        assertEquals(ids(theirs), pinService().findNearbyPinSummariesForUser(2L, 51.5074, -0.1278, 500).stream()
+                .map(PinSummaryDto::getId).toList());
+
+        PinDto renamed = pinService().updatePinForUser(1L, mine.getId(), update("renamed", "n", "home"));
+        assertEquals(List.of("home"), tagNames(renamed));
+        assertEquals(List.of("home"), pinService().getAllTagNamesForUser(1L));
+        pinService().deletePinForUser(1L, mine.getId());
+        assertEquals(List.of(mineToo), pinService().getAllPinsForUser(1L));
+        assertEquals(3, pinService().getAllPins().size());
+    }
+
+    @Test
+    void polygonAndRouteQueriesWorkOnTopOfTheBoundingBox() {
+        PinDto onRoute = pinService().createPin(create("on route", null, 51.5074, -0.1000, "cafe"));
+        pinService().createPin(create("off route", null, 51.6000, -0.1000, "cafe"));
+
+        List<double[]> route = List.of(new double[]{51.5074, -0.2000}, new double[]{51.5074, 0.0});
+        assertEquals(ids(onRoute), pinService().findPinsAlongRoute(route, 200).stream().map(PinDto::getId).toList());
+        assertEquals(ids(onRoute), pinService().findPinSummariesAlongRoute(route, 200).stream()
+                .map(PinSummaryDto::getId).toList());
+    }
+
+    @Test
+    void timeWindowPagesInCreationOrderWithHalfOpenBounds() {
+        List<PinDto> pins = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            pins.add(pinService().createPin(create("pin " + i, null, 10 + i, 10, "t" + i)));
+        }
+        pins.sort(Comparator.comparing(PinDto::getCreatedAt).thenComparing(PinDto::getId));
+
+        // pages of 2 walk every pin once, the last (short) page has no cursor
+        List<List<PinDto>> pages = allPages(null, null, null, null, 2);
+        assertEquals(List.of(pins.subList(0, 2), pins.subList(2, 4), pins.subList(4, 5)), pages);
+
+        LocalDateTime from = pins.get(1).getCreatedAt();
+        LocalDateTime to = pins.get(3).getCreatedAt();
+        List<PinDto> expected = pins.stream()
+                .filter(pin -> !pin.getCreatedAt().isBefore(from) && pin.getCreatedAt().isBefore(to)).toList();
+        assertEquals(expected, flatten(allPages(from, to, null, null, 1)));
+        assertEquals(List.of(), flatten(allPages(to, from, null, null, 10)));
+    }
+
+    @Test
+    void updatedAfterAloneListsRecentlyEditedPinsInUpdateOrder() {
+        PinDto first = pinService().createPin(create("first", null, 10, 10));
+        PinDto second = pinService().createPin(create("second", null, 11, 11));
+        PinDto edited = pinService().updatePin(first.getId(), update("first, edited", null));
+
+        List<PinDto> expected = sortedBy(List.of(edited, second), PinDto::getUpdatedAt).stream()
+                .filter(pin -> !pin.getUpdatedAt().isBefore(edited.getUpdatedAt())).toList();
+        assertTrue(expected.contains(edited));
+        assertEquals(expected, flatten(allPages(null, null, edited.getUpdatedAt(), null, 1)));
+
+        // with a created bound as well it's creation order again, updatedAfter filters
+        LocalDateTime beginning = LocalDateTime.of(2000, 1, 1, 0, 0);
+        assertEquals(sortedBy(expected, PinDto::getCreatedAt),
+                flatten(allPages(beginning, null, edited.getUpdatedAt(), null, 1)));
+    }
+
+    @Test
+    void tagOnlyEditsCountAsUpdates() {
+        PinDto pin = pinService().createPin(create("cafe", null, 10, 10, "coffee"));
+        PinDto other = pinService().createPin(create("other", null, 11, 11));
+
+        PinDto retagged = pinService().updatePin(pin.getId(), update("cafe", null, "coffee", "wifi"));
+        assertTrue(retagged.getUpdatedAt().isAfter(other.getUpdatedAt()));
+        assertEquals(List.of(retagged), flatten(allPages(null, null, other.getUpdatedAt().plusNanos(1000), null, 10)));
+
+        // nothing changed, nothing moves
+        PinDto same = pinService().updatePin(pin.getId(), update("cafe", null, "wifi", "coffee"));
+        assertEquals(retagged.getUpdatedAt(), same.getUpdatedAt());
+    }
+
+    @Test
+    void timeWindowCombinesWithTheNearbyFilter() {
+        // inside the bounding box of a 1km radius, but ~1.3km away
+        pinService().createPin(create("corner", null, 51.5074 + 0.0085, -0.1278 + 0.0135));
+        PinDto center = pinService().createPin(create("center", null, 51.5074, -0.1278, "a"));
+        pinService().createPin(create("far", null, 48.8566, 2.3522));
+
+        // the corner takes a row of the first page, so that page is empty but not the last one
+        List<List<PinDto>> pages = allPages(null, null, null, new double[]{51.5074, -0.1278, 1000}, 1);
+        assertEquals(List.of(), pages.get(0));
+        assertEquals(List.of(center), flatten(pages));
+    }
+
+    @Test
+    void timeWindowSummariesPageLikeTheFullPins() {
+        pinService().createPin(create("corner", null, 51.5074 + 0.0085, -0.1278 + 0.0135, "b"));
+        for (int i = 0; i < 4; i++) {
+            pinService().createPin(create("pin " + i, "notes " + i, 51.5074, -0.1278 + i * 0.001, "a", "t" + i));
+        }
+
+        for (double[] area : new double[][] {null, {51.5074, -0.1278, 1000}}) {
+            List<PinPageDto<PinDto>> full = new ArrayList<>();
+            List<PinPageDto<PinSummaryDto>> summaries = new ArrayList<>();
+            PinCursor cursor = null;
+            do {
+                TimeWindowQuery query = new TimeWindowQuery(null, null, null, area != null ? area[0] : null,
+                        area != null ? area[1] : null, area != null ? area[2] : null, cursor, 2);
+                full.add(pinService().findPinsInTimeWindow(query));
+                summaries.add(pinService().findPinSummariesInTimeWindow(query));
+                String next = full.get(full.size() - 1).getNextCursor();
+                cursor = next != null ? PinCursor.decode(next) : null;
+            } while (cursor != null);
+
+            assertEquals(full.stream().map(PinPageDto::getNextCursor).toList(),
+                    summaries.stream().map(PinPageDto::getNextCursor).toList());
+            for (int i = 0; i < full.size(); i++) {
+                List<PinSummaryDto> expected = full.get(i).getItems().stream()
+                        .map(pin -> PinDtos.pinSummaryDto(pin.getId(), pin.getTitle(), pin.getLatitude(), pin.getLongitude(), new ArrayList<>(tagNames(pin))))
+                        .toList();
+                assertEquals(expected, summaries.get(i).getItems(), "page " + i);
+            }
+        }
+    }
+
+    // --- Helpers ---
+
+    // every page of the window, following the cursors
+    private List<List<PinDto>> allPages(LocalDateTime createdAfter, LocalDateTime createdBefore,
+                                        LocalDateTime updatedAfter, double[] area, int limit) {
+        List<List<PinDto>> pages = new ArrayList<>();
+        PinCursor cursor = null;
+        do {
+            TimeWindowQuery query = new TimeWindowQuery(createdAfter, createdBefore, updatedAfter,
+                    area != null ? area[0] : null, area != null ? area[1] : null, area != null ? area[2] : null,
+                    cursor, limit);
+            PinPageDto<PinDto> page = pinService().findPinsInTimeWindow(query);
+            pages.add(page.getItems());
+            cursor = page.getNextCursor() != null ? PinCursor.decode(page.getNextCursor()) : null;
+            assertTrue(pages.size() < 100, "cursor doesn't move");
+        } while (cursor != null);
+        return pages;
+    }
+
+    private static List<PinDto> flatten(List<List<PinDto>> pages) {
+        return pages.stream().flatMap(List::stream).toList();
+    }
+
+    private static List<PinDto> sortedBy(List<PinDto> pins, Function<PinDto, LocalDateTime> time) {
+        return pins.stream().sorted(Comparator.comparing(time).thenComparing(PinDto::getId)).toList();
+    }
+
+
+    protected static CreatePinDto create(String title, String notes, double latitude, double longitude, String... tags) {
+        return new CreatePinDto(title, notes, latitude, longitude, Arrays.asList(tags));
+    }
+
+    protected static UpdatePinDto update(String title, String notes, String... tags) {
+        return new UpdatePinDto(title, notes, Arrays.asList(tags));
+    }
+
+    private static List<String> tagNames(PinDto pin) {
+        return pin.getTags().stream().map(TagDto::getName).toList();
+    }
+
+    private static List<PinDto> sortedById(List<PinDto> pins) {
+        return pins.stream().sorted((a, b) -> Long.compare(a.getId(), b.getId())).toList();
+    }
+
+    private static List<Long> sortedIds(List<PinDto> pins) {
+        return pins.stream().map(PinDto::getId).sorted().toList();
+    }
+
+    private static List<Long> ids(PinDto... pins) {
+        return Arrays.stream(pins).map(PinDto::getId).sorted().toList();
+    }
+}
@@ -0,0 +1,72 @@
+package com.sach.mapstash.service;
+
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.TagDto;
+import com.sach.mapstash.model.Tag;
+import com.sach.mapstash.repository.TagRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Many requests creating pins with the same brand new tags at the same moment: none of them may fail
+@SpringBootTest
+class TagUpsertConcurrencyTests {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private PinService pinService;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Test
+    void concurrentPinsWithTheSameNewTagsAllSucceed() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                String prefix = "race-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+                List<String> sharedTags = List.of(prefix + "a", prefix + "b", prefix + "c", prefix + "d");
+
+                CyclicBarrier start = new CyclicBarrier(THREADS);
+                List<Future<PinDto>> results = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    List<String> tags = new ArrayList<>(sharedTags);
+                    Collections.shuffle(tags); // different request order shouldn't matter either
+                    tags.add(prefix + "own-" + i);
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return pinService.createPin(new CreatePinDto("pin", null, 51.5, -0.12, tags));
+                    }));
+                }
+
+                for (Future<PinDto> result : results) {
+                    PinDto pin = result.get(30, TimeUnit.SECONDS); // throws if that request failed
+                    List<String> names = pin.getTags().stream().map(TagDto::getName).toList();
+                    assertEquals(5, names.size());
+                    assertEquals(true, names.containsAll(sharedTags));
+                }
+
+                // exactly one row per shared name, and every pin points at it
+                List<Tag> rows = tagRepository.findByNameInIgnoreCase(sharedTags);
+                assertEquals(sharedTags.size(), rows.size());
+                Set<Long> sharedIds = new HashSet<>();
+                rows.forEach(tag -> sharedIds.add(tag.getId()));
+                for (Future<PinDto> result : results) {
+                    Set<Long> pinTagIds = new HashSet<>();
+                    result.get().getTags().forEach(tag -> pinTagIds.add(tag.getId()));
+                    assertEquals(true, pinTagIds.containsAll(sharedIds));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
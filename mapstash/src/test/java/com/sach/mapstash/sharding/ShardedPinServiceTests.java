@@ -0,0 +1,222 @@
+package com.sach.mapstash.sharding;
+
+import com.sach.mapstash.dto.CreatePinDto;
+import com.sach.mapstash.dto.PinDto;
+import com.sach.mapstash.dto.PinPageDto;
+import com.sach.mapstash.dto.PinSummaryDto;
+import com.sach.mapstash.dto.TagDto;
+import com.sach.mapstash.dto.UpdatePinDto;
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.exception.ResourceNotFoundException;
+import com.sach.mapstash.service.Deadline;
+import com.sach.mapstash.service.NearbyResult;
+import com.sach.mapstash.service.PinCursor;
+import com.sach.mapstash.service.TimeWindowQuery;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedPinServiceTests {
+
+    private static final int SHARDS = 3;
+
+    private final List<Object> events = new ArrayList<>();
+    private GeoShardRouter router;
+    private ShardedPinService service;
+
+    @BeforeEach
+    void setUp() {
+        List<DataSource> dataSources = new ArrayList<>();
+        String run = UUID.randomUUID().toString();
+        for (int i = 0; i < SHARDS; i++) {
+            dataSources.add(new SimpleDriverDataSource(new org.h2.Driver(),
+                    "jdbc:h2:mem:shard" + i + "-" + run + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", ""));
+        }
+        router = new GeoShardRouter(SHARDS, 2);
+        service = new ShardedPinService(dataSources, router, events::add);
+        service.initializeSchema();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void pinsAreStoredOnTheShardOfTheirRegion() {
+        for (double[] city : new double[][] { {51.5074, -0.1278}, {40.7128, -74.0060}, {-33.8688, 151.2093}, {35.6762, 139.6503} }) {
+            PinDto pin = service.createPin(create("pin", city[0], city[1]));
+
+            assertEquals(router.shardFor(city[0], city[1]), GeoShardRouter.shardOf(pin.getId()));
+            assertEquals(Optional.of(pin), service.getPinById(pin.getId()));
+        }
+        // same local id on another shard is a different pin
+        assertEquals(4, service.getAllPins().size());
+    }
+
+    @Test
+    void nearbyMergesMatchesFromEveryOverlappingShard() {
+        PinDto london = service.createPin(create("london", 51.5074, -0.1278));
+        PinDto paris = service.createPin(create("paris", 48.8566, 2.3522));
+        PinDto newYork = service.createPin(create("new york", 40.7128, -74.0060));
+        service.createPin(create("sydney", -33.8688, 151.2093));
+
+        List<PinDto> nearby = service.findNearbyPins(51.5074, -0.1278, 6_000_000);
+        assertEquals(sortedIds(london, paris, newYork), nearby.stream().map(PinDto::getId).toList());
+
+        List<PinSummaryDto> close = service.findNearbyPinSummaries(51.5074, -0.1278, 400_000);
+        assertEquals(sortedIds(london, paris), close.stream().map(PinSummaryDto::getId).toList());
+    }
+
+    @Test
+    void nearbyWithADeadlineSearchesEveryRing() {
+        PinDto london = service.createPin(create("london", 51.5074, -0.1278));
+        PinDto paris = service.createPin(create("paris", 48.8566, 2.3522));
+        PinDto newYork = service.createPin(create("new york", 40.7128, -74.0060));
+
+        NearbyResult<PinDto> nearby = service.findNearbyPins(51.5074, -0.1278, 6_000_000, Deadline.after(Duration.ofMinutes(1)));
+        assertFalse(nearby.isPartial());
+        assertEquals(sortedIds(london, paris, newYork), nearby.getPins().stream().map(PinDto::getId).toList());
+
+        NearbyResult<PinSummaryDto> close = service.findNearbyPinSummaries(51.5074, -0.1278, 400_000,
+                Deadline.after(Duration.ofMinutes(1)));
+        assertEquals(400_000, close.getSearchedRadius());
+        assertEquals(sortedIds(london, paris), close.getPins().stream().map(PinSummaryDto::getId).toList());
+    }
+
+    @Test
+    void updateDiffsTagsAndDeleteRemovesThePin() {
+        PinDto pin = service.createPin(create("cafe", 51.5074, -0.1278, "Coffee", "work", "coffee"));
+        assertEquals(List.of("coffee", "work"), tagNames(pin));
+
+        PinDto updated = service.updatePin(pin.getId(), update("cafe 2", "work", "wifi"));
+        assertEquals("cafe 2", updated.getTitle());
+        assertEquals(List.of("wifi", "work"), tagNames(updated));
+        assertEquals(List.of("coffee", "wifi", "work"), service.getAllTagNames());
+
+        service.deletePin(pin.getId());
+        assertTrue(service.getPinById(pin.getId()).isEmpty());
+        assertThrows(ResourceNotFoundException.class, () -> service.deletePin(pin.getId()));
+
+        assertEquals(List.of(PinChangeEvent.Type.CREATED, PinChangeEvent.Type.UPDATED, PinChangeEvent.Type.DELETED),
+                events.stream().map(event -> ((PinChangeEvent) event).getType()).toList());
+    }
+
+    @Test
+    void tagNamesAreMergedAcrossShards() {
+        service.createPin(create("a", 51.5074, -0.1278, "food", "park"));
+        service.createPin(create("b", -33.8688, 151.2093, "beach", "food"));
+        service.createPin(create("c", 40.7128, -74.0060, "art"));
+
+        assertEquals(List.of("art", "beach", "food", "park"), service.getAllTagNames());
+    }
+
+    @Test
+    void userScopedCallsOnlySeeTheirOwnPins() {
+        PinDto mine = service.createPinForUser(1L, create("mine", 51.5074, -0.1278, "home"));
+        PinDto theirs = service.createPinForUser(2L, create("theirs", -33.8688, 151.2093, "beach"));
+
+        assertEquals(List.of(mine), service.getAllPinsForUser(1L));
+        assertEquals(List.of("home"), service.getAllTagNamesForUser(1L));
+        assertTrue(service.getPinByIdForUser(1L, theirs.getId()).isEmpty());
+        assertThrows(ResourceNotFoundException.class, () -> service.updatePinForUser(1L, theirs.getId(), update("x")));
+        assertThrows(ResourceNotFoundException.class, () -> service.deletePinForUser(1L, theirs.getId()));
+        assertEquals(2, service.getAllPins().size());
+    }
+
+    @Test
+    void timeWindowPagesMergeTheShardsInCreationOrder() {
+        List<PinDto> pins = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (double[] city : new double[][] { {51.5074, -0.1278}, {40.7128, -74.0060}, {-33.8688, 151.2093}, {35.6762, 139.6503} }) {
+                pins.add(service.createPin(create("pin " + round, city[0], city[1])));
+            }
+        }
+        pins.sort(Comparator.comparing(PinDto::getCreatedAt).thenComparing(PinDto::getId));
+
+        // cursors hop between shards, every pin still comes exactly once
+        List<PinDto> seen = new ArrayList<>();
+        PinCursor cursor = null;
+        do {
+            PinPageDto<PinDto> page = service.findPinsInTimeWindow(
+                    new TimeWindowQuery(null, null, null, null, null, null, cursor, 5));
+            seen.addAll(page.getItems());
+            cursor = page.getNextCursor() != null ? PinCursor.decode(page.getNextCursor()) : null;
+        } while (cursor != null);
+        assertEquals(pins, seen);
+
+        // summaries come in the same pages
+        List<Long> summaryIds = new ArrayList<>();
+        do {
+            PinPageDto<PinSummaryDto> page = service.findPinSummariesInTimeWindow(
+                    new TimeWindowQuery(null, null, null, null, null, null, cursor, 5));
+            page.getItems().forEach(pin -> summaryIds.add(pin.getId()));
+            cursor = page.getNextCursor() != null ? PinCursor.decode(page.getNextCursor()) : null;
+        } while (cursor != null);
+        assertEquals(pins.stream().map(PinDto::getId).toList(), summaryIds);
+
+        // with an area, only the shards it overlaps
+        PinPageDto<PinDto> london = service.findPinsInTimeWindow(
+                new TimeWindowQuery(null, null, null, 51.5074, -0.1278, 1000.0, null, 5));
+        assertEquals(pins.stream().filter(pin -> pin.getLatitude() == 51.5074).toList(), london.getItems());
+        assertNull(london.getNextCursor());
+    }
+
+    @Test
+    void idsPointingAtMissingShardsAreNotFound() {
+        long onUnknownShard = GeoShardRouter.toGlobalId(SHARDS + 1, 1);
+
+        assertTrue(service.getPinById(onUnknownShard).isEmpty());
+        assertThrows(ResourceNotFoundException.class, () -> service.deletePin(onUnknownShard));
+    }
+
+    @Test
+    void shutdownClosesTheShardPools() {
+        List<HikariDataSource> pools = new ArrayList<>();
+        String run = UUID.randomUUID().toString();
+        for (int i = 0; i < 2; i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setJdbcUrl("jdbc:h2:mem:pool" + i + "-" + run + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+            pools.add(pool);
+        }
+        ShardedPinService pooled = new ShardedPinService(new ArrayList<>(pools), new GeoShardRouter(2, 2), event -> { });
+        pooled.initializeSchema(); // opens the pools
+
+        pooled.shutdown();
+        assertTrue(pools.stream().allMatch(HikariDataSource::isClosed));
+    }
+
+    // --- Helpers ---
+
+    private static CreatePinDto create(String title, double latitude, double longitude, String... tags) {
+        CreatePinDto dto = new CreatePinDto();
+        dto.setTitle(title);
+        dto.setLatitude(latitude);
+        dto.setLongitude(longitude);
+        dto.setTags(List.of(tags));
+        return dto;
+    }
+
+    private static UpdatePinDto update(String title, String... tags) {
+        UpdatePinDto dto = new UpdatePinDto();
+        dto.setTitle(title);
+        dto.setTags(List.of(tags));
+        return dto;
+    }
+
+    private static List<String> tagNames(PinDto pin) {
+        return pin.getTags().stream().map(TagDto::getName).toList();
+    }
+
+    private static List<Long> sortedIds(PinDto... pins) {
+        return Arrays.stream(pins).map(PinDto::getId).sorted().toList();
+    }
+}
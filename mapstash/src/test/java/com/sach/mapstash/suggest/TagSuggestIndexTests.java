@@ -0,0 +1,187 @@
+package com.sach.mapstash.suggest;
+
+import com.sach.mapstash.event.PinChangeEvent;
+import com.sach.mapstash.exception.BadRequestException;
+import com.sach.mapstash.service.PinService;
+import com.sach.mapstash.service.TagNames;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TagSuggestIndexTests {
+
+    private PinService pinService;
+    private TagSuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        pinService = mock(PinService.class);
+        when(pinService.getTagUsageCounts()).thenReturn(Map.of(
+                "coffee", 5L, "cocktails", 9L, "coworking", 5L, "cinema", 2L, "park", 7L, "unused", 0L));
+        index = new TagSuggestIndex(pinService);
+        index.afterSingletonsInstantiated();
+    }
+
+    @Test
+    void ranksCompletionsByPinCountThenName() {
+        assertEquals(List.of("cocktails", "coffee", "coworking"), index.suggest("co", 10));
+        assertEquals(List.of("cocktails", "coffee"), index.suggest("co", 2));
+        assertEquals(List.of("cocktails", "park", "coffee"), index.suggest("", 3));
+        assertEquals(List.of("cocktails", "park", "coffee"), index.suggest(null, 3));
+        assertEquals(List.of("coffee"), index.suggest("  COF ", 10));
+        assertEquals(List.of(), index.suggest("zebra", 10));
+    }
+
+    @Test
+    void followsPinChanges() {
+        // a brand new tag, and one more pin for an existing one
+        index.onPinChange(PinChangeEvent.created(10L, null, 51.5, -0.1, List.of("coat", "coworking")));
+        assertEquals(List.of("cocktails", "coworking", "coffee", "coat"), index.suggest("co", 10));
+
+        index.onPinChange(PinChangeEvent.updated(10L, null, 51.5, -0.1, 51.5, -0.1, List.of("coat"), List.of("coworking")));
+        assertEquals(List.of("cocktails", "coffee", "coworking", "coat"), index.suggest("co", 10));
+
+        // counts go down to 0, the name stays (the tag row isn't deleted)
+        index.onPinChange(PinChangeEvent.deleted(10L, null, 51.5, -0.1, List.of("coat", "coat")));
+        assertEquals(List.of("cocktails", "coffee", "coworking", "coat"), index.suggest("co", 10));
+    }
+
+    @Test
+    void rejectsBadLimits() {
+        assertThrows(BadRequestException.class, () -> index.suggest("co", 0));
+        assertThrows(BadRequestException.class, () -> index.suggest("co", TagSuggestIndex.MAX_LIMIT + 1));
+    }
+
+    @Test
+    void newTagsAreSuggestedBeforeAndAfterTheirMerge() {
+        index = new TagSuggestIndex(pinService, 3);
+        index.afterSingletonsInstantiated();
+
+        // two new names wait in the side map, already suggested with the right rank
+        index.onPinChange(PinChangeEvent.created(10L, null, 51.5, -0.1, List.of("coat", "cobalt")));
+        index.onPinChange(PinChangeEvent.created(11L, null, 51.5, -0.1, List.of("cobalt")));
+        assertEquals(List.of("cocktails", "coffee", "coworking", "cobalt", "coat"), index.suggest("co", 10));
+        assertEquals(List.of("cocktails", "park", "coffee", "coworking", "cinema", "cobalt"), index.suggest("", 6));
+
+        index.onPinChange(PinChangeEvent.updated(11L, null, 51.5, -0.1, 51.5, -0.1, List.of(), List.of("cobalt")));
+        // the third one triggers the merge
+        index.onPinChange(PinChangeEvent.created(12L, null, 51.5, -0.1, List.of("coda")));
+        assertEquals(List.of("cocktails", "coffee", "coworking", "coat", "cobalt", "coda"), index.suggest("co", 10));
+        assertEquals(List.of("coda"), index.suggest("COD", 10));
+    }
+
+    @Test
+    void prefixesAreLowercasedTheSameWayEverywhere() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr")); // "I".toLowerCase() would be a dotless i
+            when(pinService.getTagUsageCounts()).thenReturn(Map.of("ice cream", 3L));
+            index.afterSingletonsInstantiated();
+            assertEquals(List.of("ice cream"), index.suggest("ICE", 10));
+
+            // a tag saved from the same input is found by the same prefix
+            List<String> saved = TagNames.normalize(List.of("ISTANBUL"));
+            assertEquals(List.of("istanbul"), saved);
+            index.onPinChange(PinChangeEvent.created(10L, null, 41.0, 29.0, saved));
+            assertEquals(List.of("istanbul"), index.suggest("IST", 10));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void concurrentChangesAreKeptAcrossMerges() throws Exception {
+        index = new TagSuggestIndex(pinService, 8);
+        index.afterSingletonsInstantiated();
+        Map<String, Long> usage = new ConcurrentHashMap<>(pinService.getTagUsageCounts());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                Random random = new Random(thread);
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        String name = randomName(random);
+                        usage.merge(name, 1L, Long::sum);
+                        index.onPinChange(PinChangeEvent.created((long) i, null, 0.0, 0.0, List.of(name)));
+                        index.suggest(name.substring(0, 1), 5);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertSuggestionsMatch(usage);
+    }
+
+    @Test
+    void matchesBruteForceOnRandomTags() {
+        for (int mergeBatch : new int[]{1, 16, TagSuggestIndex.MERGE_BATCH}) {
+            matchesBruteForceOnRandomTags(mergeBatch);
+        }
+    }
+
+    private void matchesBruteForceOnRandomTags(int mergeBatch) {
+        Random random = new Random(7);
+        Map<String, Long> usage = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            usage.put(randomName(random), (long) random.nextInt(20));
+        }
+        when(pinService.getTagUsageCounts()).thenReturn(usage);
+        index = new TagSuggestIndex(pinService, mergeBatch);
+        index.afterSingletonsInstantiated();
+
+        for (int i = 0; i < 200; i++) {
+            String name = randomName(random);
+            usage.merge(name, 1L, Long::sum);
+            index.onPinChange(PinChangeEvent.created((long) i, null, 0.0, 0.0, List.of(name)));
+        }
+        assertSuggestionsMatch(usage);
+    }
+
+    // --- Helpers ---
+
+    private void assertSuggestionsMatch(Map<String, Long> usage) {
+        Comparator<Map.Entry<String, Long>> order = Map.Entry.<String, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        for (String prefix : List.of("", "a", "b", "ab", "cab", "zz")) {
+            List<String> expected = new ArrayList<>();
+            usage.entrySet().stream()
+                    .filter(entry -> entry.getKey().startsWith(prefix))
+                    .sorted(order)
+                    .limit(TagSuggestIndex.MAX_LIMIT)
+                    .forEach(entry -> expected.add(entry.getKey()));
+            assertEquals(expected, index.suggest(prefix, TagSuggestIndex.MAX_LIMIT), "prefix '" + prefix + "'");
+        }
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            name.append((char) ('a' + random.nextInt(4)));
+        }
+        return name.toString();
+    }
+}